@@ -0,0 +1,24 @@
+package com.hankcs.hanlp.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口，在JMH命令行参数的基础上默认开启GC分析器，以便报告每次调用的内存分配量<br>
+ * 用法：java -jar benchmark/target/benchmarks.jar [JMH参数]，比如只测Viterbi短文本：
+ * java -jar benchmark/target/benchmarks.jar SegmentBenchmark -p segmenter=viterbi -p length=short
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws Exception
+    {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
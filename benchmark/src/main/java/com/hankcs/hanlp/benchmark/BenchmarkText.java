@@ -0,0 +1,59 @@
+package com.hankcs.hanlp.benchmark;
+
+/**
+ * 基准测试用的固定文本，保证每次运行的输入完全一致
+ */
+public final class BenchmarkText
+{
+    private static final String[] SENTENCES = new String[]{
+        "江西鄱阳湖干枯，中国最大淡水湖变成大草原。",
+        "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰。",
+        "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。",
+        "2012年3月4日下午3点，上海市浦东新区张江高科技园区的微软亚洲研究院召开了会议。",
+        "北京大学生喝进口红酒，在北京大学生活区喝进口红酒。",
+        "工信处女干事每月经过下属科室都要亲口交代24口交换机等技术性器件的安装工作。",
+        "HanLP是由一系列模型与算法组成的Java工具包，目标是普及自然语言处理在生产环境中的应用。",
+        "总统普京与特朗普通电话讨论美国太空探索技术公司。",
+    };
+
+    /**
+     * 短文本，约20字，模拟搜索词
+     */
+    public static final String SHORT = SENTENCES[0];
+    /**
+     * 中等文本，约500字，模拟一段新闻
+     */
+    public static final String MEDIUM = repeat(500);
+    /**
+     * 长文本，约10000字，模拟一篇长文档
+     */
+    public static final String LONG = repeat(10000);
+
+    private BenchmarkText()
+    {
+    }
+
+    /**
+     * 按名称获取文本
+     *
+     * @param name short、medium或long
+     * @return 文本
+     */
+    public static String get(String name)
+    {
+        if ("short".equals(name)) return SHORT;
+        if ("medium".equals(name)) return MEDIUM;
+        if ("long".equals(name)) return LONG;
+        throw new IllegalArgumentException("未知的文本长度：" + name);
+    }
+
+    private static String repeat(int length)
+    {
+        StringBuilder sb = new StringBuilder(length + 64);
+        for (int i = 0; sb.length() < length; ++i)
+        {
+            sb.append(SENTENCES[i % SENTENCES.length]);
+        }
+        return sb.toString();
+    }
+}
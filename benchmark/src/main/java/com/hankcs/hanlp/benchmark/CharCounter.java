@@ -0,0 +1,26 @@
+package com.hankcs.hanlp.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 已处理字符数的辅助计数器，JMH会将其换算为吞吐量（字/秒）
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CharCounter
+{
+    /**
+     * 已处理的字符数
+     */
+    public long chars;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        chars = 0;
+    }
+}
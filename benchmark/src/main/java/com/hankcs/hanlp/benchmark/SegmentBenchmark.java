@@ -0,0 +1,67 @@
+package com.hankcs.hanlp.benchmark;
+
+import com.hankcs.hanlp.model.crf.CRFLexicalAnalyzer;
+import com.hankcs.hanlp.model.perceptron.PerceptronLexicalAnalyzer;
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.HMM.HMMSegment;
+import com.hankcs.hanlp.seg.NShort.NShortSegment;
+import com.hankcs.hanlp.seg.Other.AhoCorasickDoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.Viterbi.ViterbiSegment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各分词器的基准测试<br>
+ * 吞吐量见辅助计数器chars（字/秒），平均耗时与长尾延迟见AverageTime与SampleTime模式，
+ * 每次调用的内存分配量请配合-prof gc（{@link BenchmarkRunner}默认开启）查看gc.alloc.rate.norm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentBenchmark
+{
+    @Param({"viterbi", "dijkstra", "nshort", "dat", "acdat", "hmm", "crf", "perceptron"})
+    public String segmenter;
+
+    @Param({"short", "medium", "long"})
+    public String length;
+
+    private Segment segment;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        segment = newSegment(segmenter);
+        text = BenchmarkText.get(length);
+        segment.seg(text);  // 触发词典与模型的加载
+    }
+
+    @Benchmark
+    public List<Term> seg(CharCounter counter)
+    {
+        counter.chars += text.length();
+        return segment.seg(text);
+    }
+
+    static Segment newSegment(String name) throws Exception
+    {
+        if ("viterbi".equals(name)) return new ViterbiSegment();
+        if ("dijkstra".equals(name)) return new DijkstraSegment();
+        if ("nshort".equals(name)) return new NShortSegment();
+        if ("dat".equals(name)) return new DoubleArrayTrieSegment();
+        if ("acdat".equals(name)) return new AhoCorasickDoubleArrayTrieSegment();
+        if ("hmm".equals(name)) return new HMMSegment();
+        if ("crf".equals(name)) return new CRFLexicalAnalyzer();
+        if ("perceptron".equals(name)) return new PerceptronLexicalAnalyzer();
+        throw new IllegalArgumentException("未知的分词器：" + name);
+    }
+}
@@ -0,0 +1,55 @@
+package com.hankcs.hanlp.benchmark;
+
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.tokenizer.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tokenizer包中各分词器的基准测试，指标同{@link SegmentBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark
+{
+    @Param({"basic", "standard", "index", "nlp", "notional", "speed", "traditional", "url"})
+    public String tokenizer;
+
+    @Param({"short", "medium", "long"})
+    public String length;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        text = BenchmarkText.get(length);
+        segment(tokenizer, text);  // 触发词典与模型的加载
+    }
+
+    @Benchmark
+    public List<Term> segment(CharCounter counter)
+    {
+        counter.chars += text.length();
+        return segment(tokenizer, text);
+    }
+
+    static List<Term> segment(String name, String text)
+    {
+        if ("basic".equals(name)) return BasicTokenizer.segment(text);
+        if ("standard".equals(name)) return StandardTokenizer.segment(text);
+        if ("index".equals(name)) return IndexTokenizer.segment(text);
+        if ("nlp".equals(name)) return NLPTokenizer.segment(text);
+        if ("notional".equals(name)) return NotionalTokenizer.segment(text);
+        if ("speed".equals(name)) return SpeedTokenizer.segment(text);
+        if ("traditional".equals(name)) return TraditionalChineseTokenizer.segment(text);
+        if ("url".equals(name)) return URLTokenizer.segment(text);
+        throw new IllegalArgumentException("未知的分词器：" + name);
+    }
+}
@@ -0,0 +1,130 @@
+package com.hankcs.hanlp.benchmark;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.collection.dartsclone.DartMap;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.ITrie;
+import com.hankcs.hanlp.collection.trie.TailDoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.bintrie.BinTrie;
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 人名、地名、机构名词典上各种Trie的精确查询基准测试<br>
+ * 每次调用按打乱的顺序查一个词典中存在的键，平均耗时即每次查询的耗时。<br>
+ * 每个键占用的字节数对所有结构用同一种方法测量：键与值在整个测试期间都留在内存里，
+ * 反复GC后记下堆的用量，构建结构后再反复GC，两者之差即结构本身占用的堆（含值数组，不含共用的键与值对象），
+ * 在每个fork开始时打印出来。双数组与TAIL双数组像词典一样从二进制缓存加载，不计构建时预留的空间
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieBenchmark
+{
+    @Param({"tail", "dat", "dart", "bintrie"})
+    public String trie;
+
+    private TreeMap<String, Integer> map;
+    private ITrie<Integer> structure;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        map = loadKeys();
+        List<String> keys = new ArrayList<String>(map.keySet());
+        Collections.shuffle(keys, new Random(0));
+        queries = keys.toArray(new String[0]);
+        long before = usedMemory();
+        structure = newTrie(trie, map);
+        long bytes = usedMemory() - before;
+        System.out.printf("\n%s: %d keys, %.1f B/key\n", trie, map.size(), bytes / (double) map.size());
+    }
+
+    @Benchmark
+    public Integer get()
+    {
+        String key = queries[next];
+        if (++next == queries.length) next = 0;
+        return structure.get(key);
+    }
+
+    static TreeMap<String, Integer> loadKeys()
+    {
+        TreeSet<String> keySet = new TreeSet<String>();
+        for (String path : new String[]{HanLP.Config.PersonDictionaryPath, HanLP.Config.PlaceDictionaryPath, HanLP.Config.OrganizationDictionaryPath})
+        {
+            for (String line : IOUtil.readLineListWithLessMemory(path))
+            {
+                String key = line.split("\\s")[0];
+                if (key.length() > 0) keySet.add(key);
+            }
+        }
+        TreeMap<String, Integer> map = new TreeMap<String, Integer>();
+        int i = 0;
+        for (String key : keySet)
+        {
+            map.put(key, i++);
+        }
+        return map;
+    }
+
+    static ITrie<Integer> newTrie(String name, TreeMap<String, Integer> map)
+    {
+        if ("tail".equals(name))
+        {
+            TailDoubleArrayTrie<Integer> trie = new TailDoubleArrayTrie<Integer>();
+            trie.build(map);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            trie.save(new DataOutputStream(out));
+            trie = new TailDoubleArrayTrie<Integer>();
+            trie.load(new ByteArray(out.toByteArray()), map.values().toArray(new Integer[0]));
+            return trie;
+        }
+        if ("dat".equals(name))
+        {
+            DoubleArrayTrie<Integer> trie = new DoubleArrayTrie<Integer>();
+            trie.build(map);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            trie.save(new DataOutputStream(out));
+            trie = new DoubleArrayTrie<Integer>();
+            trie.load(new ByteArray(out.toByteArray()), map.values().toArray(new Integer[0]));
+            return trie;
+        }
+        if ("dart".equals(name)) return new DartMap<Integer>(map);
+        if ("bintrie".equals(name)) return new BinTrie<Integer>(map);
+        throw new IllegalArgumentException("未知的Trie：" + name);
+    }
+
+    /**
+     * 多次Full GC后堆用量的最小值
+     */
+    static long usedMemory()
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; ++i)
+        {
+            memory.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -12,7 +12,9 @@
 package com.hankcs.hanlp;
 
 import com.hankcs.hanlp.corpus.dependency.CoNll.CoNLLSentence;
+import com.hankcs.hanlp.corpus.io.DictionaryPack;
 import com.hankcs.hanlp.corpus.io.IIOAdapter;
+import com.hankcs.hanlp.corpus.io.PackIOAdapter;
 import com.hankcs.hanlp.dependency.nnparser.NeuralNetworkDependencyParser;
 import com.hankcs.hanlp.dictionary.py.Pinyin;
 import com.hankcs.hanlp.dictionary.py.PinyinDictionary;
@@ -34,12 +36,14 @@ import com.hankcs.hanlp.summary.TextRankKeyword;
 import com.hankcs.hanlp.summary.TextRankSentence;
 import com.hankcs.hanlp.tokenizer.StandardTokenizer;
 import com.hankcs.hanlp.utility.Predefine;
+import com.hankcs.hanlp.utility.Preloader;
 import com.hankcs.hanlp.utility.TextUtility;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import static com.hankcs.hanlp.utility.Predefine.logger;
@@ -201,6 +205,30 @@ public class HanLP
          * 是否执行字符正规化（繁体->简体，全角->半角，大写->小写），切换配置后必须删CustomDictionary.txt.bin缓存
          */
         public static boolean Normalization = false;
+        /**
+         * 二元接续词典是否采用哈希表储存（查询为O(1)，内存与默认的二分结构相当），切换后会自动重建CoreNatureDictionary.ngram.txt.table.bin缓存
+         */
+        public static boolean BiGramHashTable = false;
+        /**
+         * 核心词典是否以内存映射方式加载（不反序列化，不占堆内存，多个JVM共享页缓存），首次使用时自动生成CoreNatureDictionary.txt.map，
+         * 修改词典后须与.bin缓存一起删除
+         */
+        public static boolean CoreDictionaryMapped = false;
+        /**
+         * 用户词典与人名、地名、机构名等词典是否映射.bin缓存中的双数组（base与check直接从映射中读取，不复制到堆上，值仍在堆上解码），
+         * 只对本地文件与词典包有效
+         */
+        public static boolean DictionaryMapped = false;
+        /**
+         * 人名、地名、机构名等通用词典是否用带TAIL的双数组（{@link com.hankcs.hanlp.collection.trie.TailDoubleArrayTrie}）存储，
+         * 只存有分叉的前缀，唯一的后缀放在TAIL里，内存约为普通双数组的一半。开启后.bin缓存格式不同，切换时自动重建
+         */
+        public static boolean DictionaryCompact = false;
+        /**
+         * 词典包路径（默认null，表示不使用），由com.hankcs.hanlp.corpus.io.DictionaryPack打包生成。
+         * 配置后启动时只映射这一个文件，词典缓存与模型优先从包中读取，包中没有的再交给IOAdapter
+         */
+        public static String DictionaryPackPath;
         /**
          * IO适配器（默认null，表示从本地文件系统读取），实现com.hankcs.hanlp.corpus.io.IIOAdapter接口
          * 以在不同的平台（Hadoop、Redis等）上运行HanLP
@@ -290,6 +318,10 @@ public class HanLP
                 PerceptronNERModelPath = root + p.getProperty("PerceptronNERModelPath", PerceptronNERModelPath);
                 ShowTermNature = "true".equals(p.getProperty("ShowTermNature", "true"));
                 Normalization = "true".equals(p.getProperty("Normalization", "false"));
+                BiGramHashTable = "true".equals(p.getProperty("BiGramHashTable", "false"));
+                CoreDictionaryMapped = "true".equals(p.getProperty("CoreDictionaryMapped", "false"));
+                DictionaryMapped = "true".equals(p.getProperty("DictionaryMapped", "false"));
+                DictionaryCompact = "true".equals(p.getProperty("DictionaryCompact", "false"));
                 String ioAdapterClassName = p.getProperty("IOAdapter");
                 if (ioAdapterClassName != null)
                 {
@@ -317,6 +349,14 @@ public class HanLP
                         logger.warning(String.format("工厂类[%s]构造失败：%s\n", ioAdapterClassName, TextUtility.exceptionToString(e)));
                     }
                 }
+                String dictionaryPackPath = p.getProperty("DictionaryPackPath");
+                if (dictionaryPackPath != null)
+                {
+                    DictionaryPackPath = root + dictionaryPackPath;
+                    DictionaryPack pack = DictionaryPack.open(DictionaryPackPath);
+                    if (pack != null) IOAdapter = new PackIOAdapter(pack, root, IOAdapter);
+                    else logger.warning("词典包" + DictionaryPackPath + "加载失败，改为逐个读取词典文件");
+                }
             }
             catch (Exception e)
             {
@@ -624,6 +664,28 @@ public class HanLP
         return StandardTokenizer.segment(text.toCharArray());
     }
 
+    /**
+     * 批量分词，多篇文本并行处理
+     *
+     * @param textList 文本列表
+     * @return 每篇文本切分后的单词，顺序与输入一致
+     */
+    public static List<List<Term>> segment(List<String> textList)
+    {
+        return StandardTokenizer.segment(textList);
+    }
+
+    /**
+     * 在后台并行预加载全部词典，并用默认分词器预热，服务可以等它完成后再接入流量
+     *
+     * @return 完成后得到每个组件的耗时
+     * @see Preloader
+     */
+    public static Future<Preloader.Report> preload()
+    {
+        return new Preloader().addAll().warmup(newSegment()).start();
+    }
+
     /**
      * 创建一个分词器<br>
      * 这是一个工厂方法<br>
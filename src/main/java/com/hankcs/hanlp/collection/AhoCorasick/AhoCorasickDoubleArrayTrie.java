@@ -13,13 +13,16 @@ package com.hankcs.hanlp.collection.AhoCorasick;
 
 
 import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.seg.SegmentExecutor;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 基于双数组Trie树的AhoCorasick自动机
@@ -169,6 +172,107 @@ public class AhoCorasickDoubleArrayTrie<V>
         }
     }
 
+    /**
+     * 匹配text[begin, end)，命中追加到缓冲区里，不为命中创建对象
+     *
+     * @param text   文本
+     * @param begin  起点
+     * @param end    终点（不含）
+     * @param buffer 命中缓冲区，不会被清空
+     */
+    public void parseText(char[] text, int begin, int end, HitBuffer buffer)
+    {
+        int currentState = 0;
+        for (int i = begin; i < end; ++i)
+        {
+            currentState = getState(currentState, text[i]);
+            int[] hitArray = output[currentState];
+            if (hitArray != null)
+            {
+                for (int hit : hitArray)
+                {
+                    buffer.add(i + 1 - l[hit], i + 1, hit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 匹配文本，命中追加到缓冲区里，不为命中创建对象
+     *
+     * @param text   文本
+     * @param buffer 命中缓冲区，不会被清空
+     */
+    public void parseText(CharSequence text, HitBuffer buffer)
+    {
+        int currentState = 0;
+        for (int i = 0, length = text.length(); i < length; ++i)
+        {
+            currentState = getState(currentState, text.charAt(i));
+            int[] hitArray = output[currentState];
+            if (hitArray != null)
+            {
+                for (int hit : hitArray)
+                {
+                    buffer.add(i + 1 - l[hit], i + 1, hit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 用所有CPU核心批量匹配多篇文档
+     *
+     * @param textList 文档
+     * @return 每篇文档的命中，格式见{@link #parseTexts(List, Executor, int)}
+     */
+    public int[][] parseTexts(List<? extends CharSequence> textList)
+    {
+        return parseTexts(textList, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 批量匹配多篇文档<br>
+     * 自动机是只读的，所有线程共用一份；每个线程持有一个命中缓冲区，一块一块地领取文档，
+     * 每篇文档匹配完把缓冲区复制成一个int数组，所以除了每篇文档的结果数组之外不分配任何对象，没有命中的文档共用一个空数组。
+     *
+     * @param textList     文档
+     * @param executor     线程池，null表示使用{@link SegmentExecutor}的默认共享线程池
+     * @param threadNumber 并行度（包括调用线程）
+     * @return 与textList等长的数组，第i个元素是第i篇文档的命中，每三个int为一个命中：起点、终点（不含）、模式串下标，
+     * 按终点升序。模式串的值可以用{@link #get(int)}取得
+     */
+    public int[][] parseTexts(List<? extends CharSequence> textList, Executor executor, int threadNumber)
+    {
+        if (threadNumber < 1) throw new IllegalArgumentException("线程数应当大于等于1");
+        final CharSequence[] textArray = textList.toArray(new CharSequence[0]);
+        final int[][] hitsArray = new int[textArray.length][];
+        // 块不宜太大，否则最后领到大块的线程拖慢整体；也不宜太小，否则都在抢计数器
+        final int blockSize = Math.max(1, Math.min(256, textArray.length / (threadNumber * 16)));
+        final AtomicInteger next = new AtomicInteger();
+        int workerCount = Math.min(threadNumber, (textArray.length + blockSize - 1) / blockSize);
+        SegmentExecutor.invokeAll(executor, workerCount, workerCount, new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                HitBuffer buffer = new HitBuffer();
+                int begin;
+                while ((begin = next.getAndAdd(blockSize)) < textArray.length)
+                {
+                    int end = Math.min(begin + blockSize, textArray.length);
+                    for (int i = begin; i < end; ++i)
+                    {
+                        buffer.clear();
+                        parseText(textArray[i], buffer);
+                        hitsArray[i] = buffer.toArray();
+                    }
+                }
+            }
+        });
+        return hitsArray;
+    }
+
     /**
      * 持久化
      *
@@ -386,6 +490,91 @@ public class AhoCorasickDoubleArrayTrie<V>
         }
     }
 
+    /**
+     * 可以反复使用的命中缓冲区，每个命中占三个int：起点、终点（不含）、模式串下标
+     */
+    public static class HitBuffer
+    {
+        private static final int[] EMPTY = new int[0];
+        private int[] hits;
+        private int size;
+
+        public HitBuffer()
+        {
+            this(16);
+        }
+
+        /**
+         * @param capacity 预计的命中数
+         */
+        public HitBuffer(int capacity)
+        {
+            hits = new int[Math.max(1, capacity) * 3];
+        }
+
+        void add(int begin, int end, int index)
+        {
+            if (size + 3 > hits.length)
+            {
+                hits = Arrays.copyOf(hits, hits.length * 2);
+            }
+            hits[size] = begin;
+            hits[size + 1] = end;
+            hits[size + 2] = index;
+            size += 3;
+        }
+
+        /**
+         * 命中数
+         */
+        public int size()
+        {
+            return size / 3;
+        }
+
+        /**
+         * 第i个命中的起点
+         */
+        public int begin(int i)
+        {
+            return hits[i * 3];
+        }
+
+        /**
+         * 第i个命中的终点（不含）
+         */
+        public int end(int i)
+        {
+            return hits[i * 3 + 1];
+        }
+
+        /**
+         * 第i个命中的模式串下标
+         */
+        public int index(int i)
+        {
+            return hits[i * 3 + 2];
+        }
+
+        /**
+         * 清空，容量保留
+         */
+        public void clear()
+        {
+            size = 0;
+        }
+
+        /**
+         * 复制出所有命中，没有命中时返回共用的空数组
+         *
+         * @return 每三个int为一个命中
+         */
+        public int[] toArray()
+        {
+            return size == 0 ? EMPTY : Arrays.copyOf(hits, size);
+        }
+    }
+
     /**
      * 转移状态，支持failure转移
      *
@@ -393,7 +582,7 @@ public class AhoCorasickDoubleArrayTrie<V>
      * @param character
      * @return
      */
-    private int getState(int currentState, char character)
+    int getState(int currentState, char character)
     {
         int newCurrentState = transitionWithRoot(currentState, character);  // 先按success跳转
         while (newCurrentState == -1) // 跳转失败的话，按failure跳转
@@ -0,0 +1,349 @@
+package com.hankcs.hanlp.collection.AhoCorasick;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * AhoCorasick自动机的流式匹配器<br>
+ * 自动机的状态只是一个int，跨过缓冲区的边界照样往下走，所以横跨两块的模式串也能命中，不必把几个G的日志整个读进内存。
+ * 匹配器只持有一块固定大小的缓冲区，内存与输入的大小无关。<br>
+ * 从Reader读取时，命中的位置是全局的字符（char）下标；从UTF-8字节流读取时，命中的位置是全局的字节下标，可以直接用来定位文件。
+ * 为了从终点推出起点的字节下标，匹配器记下最近若干个字的起始字节，个数等于最长模式串的长度。<br>
+ * 同一个流只能用一种输入：字符或字节，混用时抛出IllegalStateException，{@link #reset()}之后可以换一种。<br>
+ * 匹配器有状态，不是线程安全的，每个线程或每个流用一个；自动机本身可以共用。
+ */
+public class AhoCorasickStreamMatcher<V>
+{
+    /**
+     * 默认的缓冲区大小（字或字节数）
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final int INPUT_NONE = 0;
+    private static final int INPUT_CHAR = 1;
+    private static final int INPUT_BYTE = 2;
+
+    private final AhoCorasickDoubleArrayTrie<V> trie;
+    private final int bufferSize;
+    /**
+     * 自动机的当前状态
+     */
+    private int state;
+    /**
+     * 当前流的输入方式，字节流的下标依赖charBegin，字符输入不记录它，所以两者不能混用
+     */
+    private int input;
+    /**
+     * 已经消费的字数
+     */
+    private long charCount;
+    /**
+     * 已经消费的字节数（只用于字节流）
+     */
+    private long byteCount;
+    /**
+     * 最近maxLength个字的起始字节，环形使用
+     */
+    private final long[] charBegin;
+    /**
+     * 下一个字在charBegin中的位置
+     */
+    private int ring;
+    /**
+     * 直接缓冲区的中转
+     */
+    private byte[] chunk;
+    /**
+     * 正在解码的UTF-8序列：还差几个字节、已拼出的码点、序列的总字节数、序列的起始字节
+     */
+    private int pending;
+    private int codePoint;
+    private int sequenceLength;
+    private long sequenceBegin;
+
+    public AhoCorasickStreamMatcher(AhoCorasickDoubleArrayTrie<V> trie)
+    {
+        this(trie, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param trie       自动机
+     * @param bufferSize 每次读取的字数（Reader）或字节数（字节流）
+     */
+    public AhoCorasickStreamMatcher(AhoCorasickDoubleArrayTrie<V> trie, int bufferSize)
+    {
+        if (bufferSize < 1) throw new IllegalArgumentException("缓冲区大小应当大于等于1");
+        this.trie = trie;
+        this.bufferSize = bufferSize;
+        int maxLength = 1;
+        if (trie.l != null)
+        {
+            for (int length : trie.l)
+            {
+                maxLength = Math.max(maxLength, length);
+            }
+        }
+        charBegin = new long[maxLength];
+    }
+
+    /**
+     * 命中一个模式串的处理方法，位置为全局下标
+     */
+    public interface IHit<V>
+    {
+        /**
+         * 命中一个模式串
+         *
+         * @param begin 模式串在流中的起始位置
+         * @param end   模式串在流中的终止位置（不含）
+         * @param value 模式串对应的值
+         * @param index 模式串对应的值的下标
+         */
+        void hit(long begin, long end, V value, int index);
+    }
+
+    /**
+     * 回到流的开头，清空自动机状态与计数
+     */
+    public void reset()
+    {
+        state = 0;
+        charCount = 0;
+        byteCount = 0;
+        pending = 0;
+        ring = 0;
+        input = INPUT_NONE;
+    }
+
+    private void checkInput(int expected)
+    {
+        if (input == INPUT_NONE) input = expected;
+        else if (input != expected) throw new IllegalStateException("同一个流不能混用字符与字节输入，请先调用reset()");
+    }
+
+    /**
+     * 已经消费的字数
+     */
+    public long getCharCount()
+    {
+        return charCount;
+    }
+
+    /**
+     * 已经消费的字节数（只对字节流有意义）
+     */
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+
+    /**
+     * 匹配Reader中的全部文本，位置为字符下标
+     *
+     * @param reader    文本，读完后不关闭
+     * @param processor 处理器
+     * @return 读取的字数
+     * @throws IOException 读取失败
+     */
+    public long parseText(Reader reader, IHit<V> processor) throws IOException
+    {
+        reset();
+        char[] buffer = new char[bufferSize];
+        int length;
+        while ((length = reader.read(buffer)) != -1)
+        {
+            feed(buffer, 0, length, processor);
+        }
+        return charCount;
+    }
+
+    /**
+     * 匹配UTF-8字节流中的全部文本，位置为字节下标，非法的字节按U+FFFD处理
+     *
+     * @param channel   字节流，读完后不关闭
+     * @param processor 处理器
+     * @return 读取的字节数
+     * @throws IOException 读取失败
+     */
+    public long parseText(ReadableByteChannel channel, IHit<V> processor) throws IOException
+    {
+        reset();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        while (channel.read(buffer) != -1)
+        {
+            buffer.flip();
+            feed(buffer, processor);
+            buffer.clear();
+        }
+        finish(processor);
+        return byteCount;
+    }
+
+    /**
+     * 接着上一块继续匹配一块字符，位置为字符下标
+     *
+     * @param text      缓冲区
+     * @param offset    起点
+     * @param length    长度
+     * @param processor 处理器
+     * @throws IllegalStateException 当前流已经用字节输入过
+     */
+    public void feed(char[] text, int offset, int length, IHit<V> processor)
+    {
+        checkInput(INPUT_CHAR);
+        int[][] output = trie.output;
+        int[] l = trie.l;
+        for (int i = offset, end = offset + length; i < end; ++i)
+        {
+            state = trie.getState(state, text[i]);
+            ++charCount;
+            int[] hitArray = output[state];
+            if (hitArray != null)
+            {
+                for (int hit : hitArray)
+                {
+                    processor.hit(charCount - l[hit], charCount, trie.v[hit], hit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 接着上一块继续匹配一块UTF-8字节，位置为字节下标。跨块的多字节序列会接上
+     *
+     * @param bytes     字节，从position读到limit
+     * @param processor 处理器
+     * @throws IllegalStateException 当前流已经用字符输入过
+     */
+    public void feed(ByteBuffer bytes, IHit<V> processor)
+    {
+        checkInput(INPUT_BYTE);
+        if (bytes.hasArray())
+        {
+            int from = bytes.arrayOffset() + bytes.position();
+            feed(bytes.array(), from, from + bytes.remaining(), processor);
+            bytes.position(bytes.limit());
+            return;
+        }
+        // 直接缓冲区先复制到堆上再解码
+        if (chunk == null) chunk = new byte[bufferSize];
+        while (bytes.hasRemaining())
+        {
+            int length = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            feed(chunk, 0, length, processor);
+        }
+    }
+
+    private void feed(byte[] bytes, int from, int to, IHit<V> processor)
+    {
+        int i = from;
+        while (i < to)
+        {
+            int b = bytes[i] & 0xFF;
+            if (pending > 0)
+            {
+                if ((b & 0xC0) != 0x80)
+                {
+                    // 序列没写完就断了，断掉的部分算一个替换字符，当前字节重新处理
+                    pending = 0;
+                    step(REPLACEMENT, sequenceBegin, processor);
+                    continue;
+                }
+                ++i;
+                ++byteCount;
+                codePoint = (codePoint << 6) | (b & 0x3F);
+                if (--pending == 0) decoded(processor);
+                continue;
+            }
+            ++i;
+            sequenceBegin = byteCount++;
+            if (b < 0x80)
+            {
+                step((char) b, sequenceBegin, processor);
+            }
+            else if (b >= 0xC2 && b < 0xE0)
+            {
+                start(b & 0x1F, 2);
+            }
+            else if (b >= 0xE0 && b < 0xF0)
+            {
+                start(b & 0x0F, 3);
+            }
+            else if (b >= 0xF0 && b < 0xF5)
+            {
+                start(b & 0x07, 4);
+            }
+            else
+            {
+                step(REPLACEMENT, sequenceBegin, processor);
+            }
+        }
+    }
+
+    /**
+     * 字节流结束，没写完的序列算一个替换字符
+     *
+     * @param processor 处理器
+     * @throws IllegalStateException 当前流已经用字符输入过
+     */
+    public void finish(IHit<V> processor)
+    {
+        checkInput(INPUT_BYTE);
+        if (pending > 0)
+        {
+            pending = 0;
+            step(REPLACEMENT, sequenceBegin, processor);
+        }
+    }
+
+    private void start(int bits, int length)
+    {
+        codePoint = bits;
+        sequenceLength = length;
+        pending = length - 1;
+    }
+
+    private void decoded(IHit<V> processor)
+    {
+        int cp = codePoint;
+        boolean overlong = sequenceLength == 3 ? cp < 0x800 : sequenceLength == 4 && cp < 0x10000;
+        if (overlong || (cp >= 0xD800 && cp <= 0xDFFF) || cp > 0x10FFFF)
+        {
+            step(REPLACEMENT, sequenceBegin, processor);
+        }
+        else if (cp >= 0x10000)
+        {
+            cp -= 0x10000;
+            step((char) (0xD800 + (cp >>> 10)), sequenceBegin, processor);
+            step((char) (0xDC00 + (cp & 0x3FF)), sequenceBegin, processor);
+        }
+        else
+        {
+            step((char) cp, sequenceBegin, processor);
+        }
+    }
+
+    /**
+     * 走一个字，这个字从第begin个字节开始，到当前已消费的字节为止
+     */
+    private void step(char c, long begin, IHit<V> processor)
+    {
+        charBegin[ring] = begin;
+        state = trie.getState(state, c);
+        ++charCount;
+        int[] hitArray = trie.output[state];
+        if (hitArray != null)
+        {
+            for (int hit : hitArray)
+            {
+                int p = ring + 1 - trie.l[hit];
+                if (p < 0) p += charBegin.length;
+                processor.hit(charBegin[p], byteCount, trie.v[hit], hit);
+            }
+        }
+        if (++ring == charBegin.length) ring = 0;
+    }
+}
@@ -70,6 +70,10 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
     private int length[];
     private int value[];
     protected V[] v;
+    /**
+     * 前缀过滤器，为null时不过滤
+     */
+    protected PrefixFilter prefilter;
     private int progress;
     private int nextCheckPos;
     // boolean no_delete_;
@@ -400,6 +404,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         value = _value;
         progress = 0;
 
+        prefilter = null;
         resize(65536 * 32); // 32个双字节
 
         base[0] = 1;
@@ -428,6 +433,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
     {
         File file = new File(fileName);
         size = (int) file.length() / UNIT_SIZE;
+        prefilter = null;
         check = new int[size];
         base = new int[size];
 
@@ -536,6 +542,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
     {
         if (byteArray == null) return false;
         size = byteArray.nextInt();
+        prefilter = null;
         base = new int[size + 65535];   // 多留一些，防止越界
         check = new int[size + 65535];
         for (int i = 0; i < size; i++)
@@ -560,6 +567,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         if (bytes == null) return false;
         size = ByteUtil.bytesHighFirstToInt(bytes, offset);
         offset += 4;
+        prefilter = null;
         base = new int[size + 65535];   // 多留一些，防止越界
         check = new int[size + 65535];
         for (int i = 0; i < size; i++)
@@ -600,6 +608,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
                     IOAdapter.open(path)
             ));
             size = in.readInt();
+            prefilter = null;
             base = new int[size + 65535];   // 多留一些，防止越界
             check = new int[size + 65535];
             for (int i = 0; i < size; i++)
@@ -643,6 +652,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
             int index = 0;
             size = ByteUtil.bytesHighFirstToInt(bytes, index);
             index += 4;
+            prefilter = null;
             base = new int[size + 65535];   // 多留一些，防止越界
             check = new int[size + 65535];
             for (int i = 0; i < size; i++)
@@ -713,7 +723,10 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         if (len <= 0)
             len = key.length();
         if (nodePos <= 0)
+        {
             nodePos = 0;
+            if (prefilter != null && !mayContain(key, pos, len)) return -1;
+        }
 
         int result = -1;
 
@@ -749,6 +762,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
      */
     public int exactMatchSearch(char[] keyChars, int pos, int len, int nodePos)
     {
+        if (nodePos == 0 && prefilter != null && !mayContain(keyChars, pos, len)) return -1;
         int result = -1;
 
         int b = base[nodePos];
@@ -977,11 +991,11 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
      * 获取index对应的值
      *
      * @param index
-     * @return
+     * @return 没有值数组（当作set加载）时为null
      */
     public V getValueAt(int index)
     {
-        return v[index];
+        return v == null ? null : v[index];
     }
 
     /**
@@ -1125,6 +1139,131 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         return null;
     }
 
+    /**
+     * 根节点的base值，即从根节点出发调用{@link #transition(char, int)}时的初始状态
+     *
+     * @return base[0]
+     */
+    public int rootBase()
+    {
+        return base[0];
+    }
+
+    /**
+     * 状态上的输出
+     *
+     * @param state 状态
+     * @return 值的下标，-1表示没有输出
+     */
+    protected int outputIndex(int state)
+    {
+        int n = base[state];
+        if (state == check[state] && n < 0)
+        {
+            return -n - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 命中一个词条时的回调，只传递位置与值的下标，不创建任何对象
+     */
+    public interface IHitIndex
+    {
+        /**
+         * 命中一个词条
+         *
+         * @param begin 起点（包含）
+         * @param end   终点（不包含）
+         * @param index 值的下标，可通过{@link #get(int)}取值
+         */
+        void hit(int begin, int end, int index);
+    }
+
+    /**
+     * 全切分，扫描过程中不创建任何对象
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器
+     */
+    public void parseText(char[] text, int begin, int end, IHitIndex processor)
+    {
+        int root = rootBase();
+        final PrefixFilter prefilter = this.prefilter;
+        int skip = 0;
+        for (int i = begin; i < end; ++i)
+        {
+            if (prefilter != null && !prefilter.mayStart(text, i, end))
+            {
+                ++skip;
+                continue;
+            }
+            int b = root;
+            for (int j = i; j < end; ++j)
+            {
+                b = transition(text[j], b);
+                if (b < 0) break;
+                int index = outputIndex(b);
+                if (index >= 0) processor.hit(i, j + 1, index);
+            }
+        }
+        if (prefilter != null && PrefixFilter.isStatisticsEnabled()) prefilter.count(end - begin, skip);
+    }
+
+    /**
+     * 最长匹配，扫描过程中不创建任何对象。值为null的词条视为已删除
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器
+     */
+    public void parseLongestText(char[] text, int begin, int end, IHitIndex processor)
+    {
+        int root = rootBase();
+        final PrefixFilter prefilter = this.prefilter;
+        int probe = 0, skip = 0;
+        for (int i = begin; i < end; )
+        {
+            if (prefilter != null)
+            {
+                ++probe;
+                if (!prefilter.mayStart(text, i, end))
+                {
+                    ++skip;
+                    ++i;
+                    continue;
+                }
+            }
+            int b = root;
+            int length = 0;
+            int index = -1;
+            for (int j = i; j < end; ++j)
+            {
+                b = transition(text[j], b);
+                if (b < 0) break;
+                int k = outputIndex(b);
+                if (k >= 0 && get(k) != null)
+                {
+                    length = j - i + 1;
+                    index = k;
+                }
+            }
+            if (index >= 0)
+            {
+                processor.hit(i, i + length, index);
+                i += length;
+            }
+            else
+            {
+                ++i;
+            }
+        }
+        if (prefilter != null && PrefixFilter.isStatisticsEnabled()) prefilter.count(probe, skip);
+    }
+
     /**
      * 一个搜索工具（注意，当调用next()返回false后不应该继续调用next()，除非reset状态）
      */
@@ -1149,19 +1288,19 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         /**
          * 传入的字符数组
          */
-        private char[] charArray;
+        protected char[] charArray;
         /**
          * 上一个node位置
          */
-        private int last;
+        protected int last;
         /**
          * 上一个字符的下标
          */
-        private int i;
+        protected int i;
         /**
          * charArray的长度，效率起见，开个变量
          */
-        private int arrayLength;
+        protected int arrayLength;
 
         /**
          * 构造一个双数组搜索工具
@@ -1173,7 +1312,7 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         {
             this.charArray = charArray;
             i = offset;
-            last = base[0];
+            last = rootBase();
             arrayLength = charArray.length;
             // A trick，如果文本长度为0的话，调用next()时，会带来越界的问题。
             // 所以我要在第一次调用next()的时候触发begin == arrayLength进而返回false。
@@ -1200,26 +1339,25 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
                     ++begin;
                     if (begin == arrayLength) break;
                     i = begin;
-                    b = base[0];
+                    b = rootBase();
                 }
                 p = b + (int) (charArray[i]) + 1;   // 状态转移 p = base[char[i-1]] + char[i] + 1
-                if (b == check[p])                  // base[char[i-1]] == check[base[char[i-1]] + char[i] + 1]
-                    b = base[p];                    // 转移成功
+                if (b == checkAt(p))                // base[char[i-1]] == check[base[char[i-1]] + char[i] + 1]
+                    b = baseAt(p);                  // 转移成功
                 else
                 {
                     i = begin;                      // 转移失败，也将起点往前挪一个，重新开始，状态归零
                     ++begin;
                     if (begin == arrayLength) break;
-                    b = base[0];
+                    b = rootBase();
                     continue;
                 }
-                p = b;
-                n = base[p];
-                if (b == check[p] && n < 0)         // base[p] == check[p] && base[p] < 0 查到一个词
+                n = outputIndex(b);
+                if (n >= 0)                         // base[b] == check[b] && base[b] < 0 查到一个词
                 {
                     length = i - begin + 1;
-                    index = -n - 1;
-                    value = v[index];
+                    index = n;
+                    value = getValueAt(index);
                     last = b;
                     ++i;
                     return true;
@@ -1269,15 +1407,15 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         /**
          * 传入的字符数组
          */
-        private char[] charArray;
+        protected char[] charArray;
         /**
          * 上一个字符的下标
          */
-        private int i;
+        protected int i;
         /**
          * charArray的长度，效率起见，开个变量
          */
-        private int arrayLength;
+        protected int arrayLength;
 
         /**
          * 构造一个双数组搜索工具
@@ -1301,8 +1439,9 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         public boolean next()
         {
             value = null;
+            boolean found = false;  // 没有值数组时value总是null，不能用它判断是否命中
             begin = i;
-            int b = base[0];
+            int b = rootBase();
             int n;
             int p;
 
@@ -1310,30 +1449,30 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
             {
                 if (i >= arrayLength)               // 指针到头了，将起点往前挪一个，重新开始，状态归零
                 {
-                    return value != null;
+                    return found;
                 }
                 p = b + (int) (charArray[i]) + 1;   // 状态转移 p = base[char[i-1]] + char[i] + 1
-                if (b == check[p])                  // base[char[i-1]] == check[base[char[i-1]] + char[i] + 1]
-                    b = base[p];                    // 转移成功
+                if (b == checkAt(p))                // base[char[i-1]] == check[base[char[i-1]] + char[i] + 1]
+                    b = baseAt(p);                  // 转移成功
                 else
                 {
                     if (begin == arrayLength) break;
-                    if (value != null)
+                    if (found)
                     {
                         return true;
                     }
 
                     i = begin;                      // 转移失败，也将起点往前挪一个，重新开始，状态归零
                     ++begin;
-                    b = base[0];
+                    b = rootBase();
                 }
-                p = b;
-                n = base[p];
-                if (b == check[p] && n < 0)         // base[p] == check[p] && base[p] < 0 查到一个词
+                n = outputIndex(b);
+                if (n >= 0 && isLive(n))            // 查到一个词（值为null的词条视为已删除）
                 {
+                    found = true;
                     length = i - begin + 1;
-                    index = -n - 1;
-                    value = v[index];
+                    index = n;
+                    value = getValueAt(index);
                 }
             }
 
@@ -1422,6 +1561,150 @@ public class DoubleArrayTrie<V> implements Serializable, ITrie<V>
         return false;
     }
 
+    /**
+     * 从base与check中还原出所有的键值对，不需要原始词典
+     *
+     * @return 按字典序排列的键值对
+     */
+    public List<Map.Entry<String, V>> entryList()
+    {
+        if (size == 0) return new ArrayList<Map.Entry<String, V>>();
+        // 按check（即父节点的base）将单元分桶，桶内下标升序，也就是字符升序
+        int bound = 0;
+        for (int p = 0; p < size; ++p)
+        {
+            int c = checkAt(p);
+            if (c > bound) bound = c;
+        }
+        int[] start = new int[bound + 2];
+        for (int p = 0; p < size; ++p)
+        {
+            int c = checkAt(p);
+            if (c > 0) ++start[c + 1];
+        }
+        for (int i = 1; i < start.length; ++i)
+        {
+            start[i] += start[i - 1];
+        }
+        int[] children = new int[start[start.length - 1]];
+        int[] fill = start.clone();
+        for (int p = 0; p < size; ++p)
+        {
+            int c = checkAt(p);
+            if (c > 0) children[fill[c]++] = p;
+        }
+        List<Map.Entry<String, V>> entryList = new ArrayList<Map.Entry<String, V>>();
+        walk(rootBase(), new StringBuilder(), start, children, entryList);
+        return entryList;
+    }
+
+    private void walk(int b, StringBuilder key, int[] start, int[] children, List<Map.Entry<String, V>> entryList)
+    {
+        if (b + 1 >= start.length) return;
+        for (int i = start[b]; i < start[b + 1]; ++i)
+        {
+            int p = children[i];
+            if (p == b)     // 终止单元，code为0
+            {
+                int index = -baseAt(p) - 1;
+                entryList.add(new AbstractMap.SimpleEntry<String, V>(key.toString(), getValueAt(index)));
+            }
+            else
+            {
+                key.append((char) (p - b - 1));
+                walk(baseAt(p), key, start, children, entryList);
+                key.setLength(key.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * 读取base数组的一个单元，供不关心存储方式的遍历使用（比如{@link #entryList()}与各搜索工具），子类可以换成别的存储
+     *
+     * @param p 下标，须小于{@link #getSize()}
+     * @return base[p]
+     */
+    protected int baseAt(int p)
+    {
+        return base[p];
+    }
+
+    /**
+     * 读取check数组的一个单元
+     *
+     * @param p 下标，须小于{@link #getSize()}
+     * @return check[p]
+     */
+    protected int checkAt(int p)
+    {
+        return check[p];
+    }
+
+    /**
+     * 词条是否有效。值为null的词条视为已删除；没有值数组（当作集合加载）时每个词条都有效
+     *
+     * @param index 值下标
+     * @return 是否有效
+     */
+    protected boolean isLive(int index)
+    {
+        return v == null || v[index] != null;
+    }
+
+    /**
+     * 复制一棵与本树共享base和check、但拥有独立值数组的双数组，之后对副本调用set不会影响本树（写时复制）
+     *
+     * @return 副本
+     */
+    public DoubleArrayTrie<V> shallowCopy()
+    {
+        DoubleArrayTrie<V> copy = new DoubleArrayTrie<V>();
+        copy.base = base;
+        copy.check = check;
+        copy.size = size;
+        copy.v = v == null ? null : v.clone();
+        copy.prefilter = prefilter;
+        copy.used = null;
+        return copy;
+    }
+
+    /**
+     * 设置前缀过滤器，之后的精确查询与区间扫描都会先询问它。过滤器必须与本树的词条一致
+     *
+     * @param prefilter 过滤器，null表示不过滤
+     */
+    public void setPrefilter(PrefixFilter prefilter)
+    {
+        this.prefilter = prefilter;
+    }
+
+    /**
+     * 获取前缀过滤器
+     *
+     * @return 过滤器，未设置时为null
+     */
+    public PrefixFilter getPrefilter()
+    {
+        return prefilter;
+    }
+
+    /**
+     * 询问前缀过滤器（须非null），顺便统计
+     */
+    protected boolean mayContain(CharSequence key, int begin, int end)
+    {
+        boolean may = prefilter.mayContain(key, begin, end);
+        if (PrefixFilter.isStatisticsEnabled()) prefilter.count(1, may ? 0 : 1);
+        return may;
+    }
+
+    protected boolean mayContain(char[] key, int begin, int end)
+    {
+        boolean may = prefilter.mayContain(key, begin, end);
+        if (PrefixFilter.isStatisticsEnabled()) prefilter.count(1, may ? 0 : 1);
+        return may;
+    }
+
     /**
      * 从值数组中提取下标为index的值<br>
      * 注意为了效率，此处不进行参数校验
@@ -0,0 +1,737 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.seg.SegmentExecutor;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 面向千万级词条的双数组trie树构造器<br>
+ * {@link DoubleArrayTrie#build(List, int[], int[], int)}需要把所有的键放在内存里深度优先构建，
+ * 为兄弟节点找位置时从nextCheckPos开始逐格扫描check数组，键多了以后构建时间和内存都成了瓶颈。本构造器：
+ * <ul>
+ * <li>逐个接收严格升序的键（可以边读文件边添加），键流过即丢，只在栈上保留当前键路径上的节点</li>
+ * <li>节点在它的子树全部到齐后（后序）才放置。格子的占用与base的使用各记在一张位图里，
+ * 寻找base时一次判断64个候选；每个转移码记住上次找到的位置，已经没有空位的区域不会被反复扫描</li>
+ * <li>按首字把键切成若干批，每批在自己的局部坐标中独立构建，多个线程并行；最后把各批的块依次接在根节点的子节点区之后，
+ * 平移其中的base与check</li>
+ * </ul>
+ * 构建结果与{@link DoubleArrayTrie}的语义完全相同（根的base为1，转移码为字符加一，词尾转移码为0，值的下标就是键的序号），
+ * {@link #save(DataOutputStream)}写出的格式与{@link DoubleArrayTrie#save(DataOutputStream)}一致，
+ * 可以直接被{@link DoubleArrayTrie#load(byte[], int, Object[])}或{@link MappedDoubleArrayTrie}读取。
+ * 具体的布局与原构建方法不同，因此bin文件的字节不逐一相同。<br>
+ * 根节点的子节点区至少占到最大首字的位置，每个块末尾也会留下一些空格子，所以词条很少或者批很小时不如原构建方法紧凑，
+ * 小词典仍用原方法即可。
+ */
+public class DoubleArrayTrieBuilder
+{
+    /**
+     * 每批的默认键数，同一首字的键总是在同一批
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1 << 20;
+
+    private final int threadNumber;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ExecutorService executor;
+    /**
+     * 各批的构建结果，按批的顺序
+     */
+    private final List<Future<Block>> blockList = new ArrayList<Future<Block>>();
+    /**
+     * 已经等待过的批数
+     */
+    private int waited;
+
+    private List<String> batch = new ArrayList<String>();
+    private int batchStart;
+    private String last;
+    private int keyCount;
+    private boolean emptyKey;
+
+    /**
+     * 构建结束后的布局
+     */
+    private Block[] blocks;
+    private int[] offset;
+    private int[] rootBase;
+    private int[] rootCheck;
+    private int size;
+
+    /**
+     * 使用所有CPU核心构建
+     */
+    public DoubleArrayTrieBuilder()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadNumber 线程数，1表示在调用线程中构建
+     */
+    public DoubleArrayTrieBuilder(int threadNumber)
+    {
+        if (threadNumber < 1) throw new IllegalArgumentException("线程数应当大于等于1");
+        this.threadNumber = threadNumber;
+    }
+
+    /**
+     * 设置每批的键数。批越大，块越少、越紧凑；批越小，并行度和流式读取的内存越友好
+     *
+     * @param batchSize 每批的键数（首字相同的键不会被拆开，所以实际可能更多）
+     * @return 自己
+     */
+    public DoubleArrayTrieBuilder setBatchSize(int batchSize)
+    {
+        if (batchSize < 1) throw new IllegalArgumentException("批的大小应当大于等于1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 添加一个键，键的序号（从0开始）就是它在trie树中的值下标
+     *
+     * @param key 键，必须严格大于上一个键（按{@link String#compareTo(String)}，即字符编码的字典序）
+     * @throws IllegalArgumentException 键没有排序或者重复（此时线程池被关闭，已提交的批照常完成，构造器仍然可以继续添加）
+     */
+    public void add(String key)
+    {
+        if (blocks != null) throw new IllegalStateException("已经构建完毕，不能再添加");
+        if (last != null && last.compareTo(key) >= 0)
+        {
+            releaseExecutor();
+            throw new IllegalArgumentException("键必须严格升序，“" + key + "”出现在“" + last + "”之后");
+        }
+        if (key.length() == 0)
+        {
+            emptyKey = true;    // 空串只可能是第一个键
+            batchStart = 1;
+        }
+        else
+        {
+            if (batch.size() >= batchSize && last.charAt(0) != key.charAt(0))
+            {
+                try
+                {
+                    submit();
+                }
+                catch (RuntimeException e)
+                {
+                    releaseExecutor();
+                    throw e;
+                }
+            }
+            batch.add(key);
+        }
+        last = key;
+        ++keyCount;
+    }
+
+    /**
+     * 添加一批升序的键
+     *
+     * @param keys 键
+     * @return 添加的个数
+     */
+    public int addAll(Iterator<String> keys)
+    {
+        int count = 0;
+        try
+        {
+            while (keys.hasNext())
+            {
+                add(keys.next());
+                ++count;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            releaseExecutor();
+            throw e;
+        }
+        return count;
+    }
+
+    /**
+     * 从文本流中逐行读取键，每行的第一列（空格或制表符之前）是键，空行跳过，开头的UTF-8 BOM会被去掉。适合直接读取排好序的词典文件
+     *
+     * @param br 文本流，不会被关闭
+     * @return 添加的个数
+     * @throws IOException
+     */
+    public int addAll(BufferedReader br) throws IOException
+    {
+        int count = 0;
+        String line;
+        boolean firstLine = true;
+        try
+        {
+            while ((line = br.readLine()) != null)
+            {
+                if (firstLine)
+                {
+                    line = IOUtil.removeUTF8BOM(line);
+                    firstLine = false;
+                }
+                int end = 0;
+                while (end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != '\t') ++end;
+                if (end == 0) continue;
+                add(line.substring(0, end));
+                ++count;
+            }
+        }
+        catch (IOException e)
+        {
+            releaseExecutor();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            releaseExecutor();
+            throw e;
+        }
+        return count;
+    }
+
+    /**
+     * 从文件中逐行读取键，见{@link #addAll(BufferedReader)}
+     *
+     * @param path 文件路径（UTF-8）
+     * @return 添加的个数
+     * @throws IOException
+     */
+    public int addAll(String path) throws IOException
+    {
+        BufferedReader br = IOUtil.newBufferedReader(path);
+        try
+        {
+            return addAll(br);
+        }
+        finally
+        {
+            br.close();
+        }
+    }
+
+    /**
+     * 已添加的键数
+     */
+    public int size()
+    {
+        return keyCount;
+    }
+
+    /**
+     * 把当前的批交给线程池，线程池积压太多时等待最早的批，以限制流式读取时的内存
+     */
+    private void submit()
+    {
+        final List<String> keys = batch;
+        final int start = batchStart;
+        batch = new ArrayList<String>();
+        batchStart += keys.size();
+        Callable<Block> task = new Callable<Block>()
+        {
+            @Override
+            public Block call() throws Exception
+            {
+                return new Block().build(keys, start);
+            }
+        };
+        if (threadNumber == 1)
+        {
+            FutureTask<Block> future = new FutureTask<Block>(task);
+            future.run();
+            blockList.add(future);
+            return;
+        }
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(threadNumber, threadNumber, 0L, TimeUnit.MILLISECONDS,
+                                              new LinkedBlockingQueue<Runnable>(),
+                                              SegmentExecutor.newThreadFactory("HanLP-DAT-"));
+        }
+        blockList.add(executor.submit(task));
+        while (blockList.size() - waited > threadNumber * 2)
+        {
+            get(blockList.get(waited++));
+        }
+    }
+
+    /**
+     * 关闭线程池，已提交的批照常完成；之后再提交时重新创建
+     */
+    private void releaseExecutor()
+    {
+        if (executor != null) executor.shutdown();
+        executor = null;
+    }
+
+    private static Block get(Future<Block> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("构建被中断", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("构建失败", e.getCause());
+        }
+    }
+
+    /**
+     * 等待所有的批，计算各块的平移量，并构建根节点的子节点区
+     */
+    private void finish()
+    {
+        if (blocks != null) return;
+        if (!batch.isEmpty()) submit();
+        try
+        {
+            blocks = new Block[blockList.size()];
+            for (int i = 0; i < blocks.length; ++i)
+            {
+                blocks[i] = get(blockList.get(i));
+            }
+        }
+        finally
+        {
+            releaseExecutor();
+        }
+        blockList.clear();
+        batch = null;
+
+        int rootSize = 2;
+        for (Block block : blocks)
+        {
+            rootSize = Math.max(rootSize, 1 + block.topCode[block.topCount - 1] + 1);
+        }
+        rootBase = new int[rootSize];
+        rootCheck = new int[rootSize];
+        rootBase[0] = 1;
+        if (emptyKey)
+        {
+            rootBase[1] = -1;   // 空串是第0个键，词尾在根的base处
+            rootCheck[1] = 1;
+        }
+        offset = new int[blocks.length];
+        int begin = rootSize;
+        for (int i = 0; i < blocks.length; ++i)
+        {
+            Block block = blocks[i];
+            offset[i] = begin;
+            for (int j = 0; j < block.topCount; ++j)
+            {
+                int p = 1 + block.topCode[j];
+                rootBase[p] = block.topBegin[j] + begin;
+                rootCheck[p] = 1;
+            }
+            begin += block.size;
+        }
+        size = begin;
+    }
+
+    /**
+     * 构建双数组trie树
+     *
+     * @param value 值，第i个值对应第i个键，可以为null（此时trie树只用作集合）
+     * @return 双数组trie树
+     */
+    public <V> DoubleArrayTrie<V> build(V[] value)
+    {
+        if (value != null && value.length != keyCount)
+        {
+            throw new IllegalArgumentException("键的个数" + keyCount + "与值的个数" + value.length + "不一样");
+        }
+        finish();
+        DoubleArrayTrie<V> trie = new DoubleArrayTrie<V>();
+        int[] base = new int[size + 65536];     // 多留一些，防止越界
+        int[] check = new int[size + 65536];
+        System.arraycopy(rootBase, 0, base, 0, rootBase.length);
+        System.arraycopy(rootCheck, 0, check, 0, rootCheck.length);
+        for (int i = 0; i < blocks.length; ++i)
+        {
+            blocks[i].relocate(offset[i], base, check);
+        }
+        trie.base = base;
+        trie.check = check;
+        trie.size = size;
+        trie.v = value;
+        return trie;
+    }
+
+    /**
+     * 不组装完整的数组，直接按{@link DoubleArrayTrie#save(DataOutputStream)}的格式写出双数组
+     *
+     * @param out 输出流
+     * @return 是否成功
+     */
+    public boolean save(DataOutputStream out)
+    {
+        try
+        {
+            finish();
+            out.writeInt(size);
+            for (int i = 0; i < rootBase.length; ++i)
+            {
+                out.writeInt(rootBase[i]);
+                out.writeInt(rootCheck[i]);
+            }
+            for (int i = 0; i < blocks.length; ++i)
+            {
+                blocks[i].save(offset[i], out);
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warning("保存双数组失败" + e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 双数组的大小（最大的已用下标加一）
+     */
+    public int getSize()
+    {
+        finish();
+        return size;
+    }
+
+    /**
+     * 一批键构成的块，局部坐标从0开始，位置0永远空着，所以check为0的格子就是空格
+     */
+    private static class Block
+    {
+        /**
+         * 寻找base时最多逐字扫描多少个字（每字64个下标）
+         */
+        static final int MAX_SCAN = 4096;
+
+        int[] base = new int[1024];
+        int[] check = new int[1024];
+        /**
+         * 已占用的格子
+         */
+        long[] occupied = new long[16];
+        /**
+         * 已用作base的下标
+         */
+        long[] used = new long[16];
+        /**
+         * 每个转移码作为第一个子节点时，下一次从哪里开始找base
+         */
+        int[] hint = new int[65537];
+        /**
+         * 第一个空闲的格子
+         */
+        int frontier;
+        /**
+         * 上次寻找base时逐字扫描到的位置，之前已经没有候选
+         */
+        int scanEnd;
+        /**
+         * 最大的base
+         */
+        int maxBegin;
+        /**
+         * 多个子节点时按整组转移码的散列记下上次的base，只影响紧凑程度，不影响正确性
+         */
+        int[] setKey = new int[4096];
+        int[] setHint = new int[4096];
+        int size = 1;
+
+        /**
+         * 块中的首字：转移码与它的子节点的base
+         */
+        int[] topCode = new int[16];
+        int[] topBegin = new int[16];
+        int topCount;
+
+        /**
+         * 当前键路径上每一层节点已完成的子节点：转移码与base（叶子为负的值下标）
+         */
+        int[][] childCode = new int[16][];
+        int[][] childBase = new int[16][];
+        int[] childCount = new int[16];
+
+        Block build(List<String> keys, int start)
+        {
+            set(used, 0);   // base为0的节点与空格子无法区分
+            set(occupied, 0);   // 位置0永远空着，标记为占用，frontier才能越过它
+            frontier = 1;
+            String previous = "";
+            for (int i = 0; i < keys.size(); ++i)
+            {
+                String key = keys.get(i);
+                int prefix = 0;
+                int max = Math.min(previous.length(), key.length());
+                while (prefix < max && previous.charAt(prefix) == key.charAt(prefix)) ++prefix;
+                for (int depth = previous.length(); depth > prefix; --depth)
+                {
+                    close(previous, depth);
+                }
+                if (key.length() >= childCount.length) grow(key.length() + 1);
+                for (int depth = prefix + 1; depth <= key.length(); ++depth)
+                {
+                    childCount[depth] = 0;
+                }
+                addChild(key.length(), 0, -(start + i) - 1);
+                previous = key;
+            }
+            for (int depth = previous.length(); depth > 0; --depth)
+            {
+                close(previous, depth);
+            }
+            occupied = null;
+            used = null;
+            childCode = null;
+            childBase = null;
+            hint = null;
+            setKey = null;
+            setHint = null;
+            return this;
+        }
+
+        private void grow(int depth)
+        {
+            int length = Math.max(depth, childCount.length * 2);
+            int[][] code = new int[length][];
+            int[][] base = new int[length][];
+            System.arraycopy(childCode, 0, code, 0, childCode.length);
+            System.arraycopy(childBase, 0, base, 0, childBase.length);
+            int[] count = new int[length];
+            System.arraycopy(childCount, 0, count, 0, childCount.length);
+            childCode = code;
+            childBase = base;
+            childCount = count;
+        }
+
+        private void addChild(int depth, int code, int base)
+        {
+            int n = childCount[depth];
+            if (childCode[depth] == null)
+            {
+                childCode[depth] = new int[4];
+                childBase[depth] = new int[4];
+            }
+            else if (n == childCode[depth].length)
+            {
+                int length = Math.min(n * 2, 65537);
+                int[] c = new int[length];
+                int[] b = new int[length];
+                System.arraycopy(childCode[depth], 0, c, 0, n);
+                System.arraycopy(childBase[depth], 0, b, 0, n);
+                childCode[depth] = c;
+                childBase[depth] = b;
+            }
+            childCode[depth][n] = code;
+            childBase[depth][n] = base;
+            childCount[depth] = n + 1;
+        }
+
+        /**
+         * 某一层的节点的子节点已经到齐，放置它们，并把该节点挂到上一层
+         */
+        private void close(String key, int depth)
+        {
+            int begin = place(childCode[depth], childBase[depth], childCount[depth]);
+            int code = key.charAt(depth - 1) + 1;
+            if (depth > 1)
+            {
+                addChild(depth - 1, code, begin);
+            }
+            else
+            {
+                if (topCount == topCode.length)
+                {
+                    int[] c = new int[topCount * 2];
+                    int[] b = new int[topCount * 2];
+                    System.arraycopy(topCode, 0, c, 0, topCount);
+                    System.arraycopy(topBegin, 0, b, 0, topCount);
+                    topCode = c;
+                    topBegin = b;
+                }
+                topCode[topCount] = code;
+                topBegin[topCount] = begin;
+                ++topCount;
+            }
+        }
+
+        /**
+         * 为一组升序的兄弟节点找一个base，使得所有子节点的格子都空闲且base没有被用过
+         */
+        private int place(int[] code, int[] child, int n)
+        {
+            int first = code[0];
+            // 格子只会被占用、base只会被用掉，所以上次找到的第一个候选之前不会再有候选；
+            // frontier之前的格子全满，base也不会小于frontier - first
+            int last = code[n - 1];
+            int begin = nextCandidate(Math.max(hint[first], frontier - first), code, 1, last);
+            hint[first] = Math.min(begin, scanEnd);
+            if (n > 1)
+            {
+                // 相同的一组转移码（比如一串数字后缀）反复出现时，从上次的位置接着找
+                int key = 1;
+                for (int i = 0; i < n; ++i)
+                {
+                    key = key * 31 + code[i];
+                }
+                int slot = key & (setHint.length - 1);
+                if (setKey[slot] == key) begin = Math.max(begin, setHint[slot]);
+                begin = nextCandidate(begin, code, n, last);
+                setKey[slot] = key;
+                setHint[slot] = begin;
+            }
+            ensure(begin + code[n - 1] + 1);
+            set(used, begin);
+            if (begin > maxBegin) maxBegin = begin;
+            for (int i = 0; i < n; ++i)
+            {
+                int p = begin + code[i];
+                check[p] = begin;
+                base[p] = child[i];
+                set(occupied, p);
+            }
+            size = Math.max(size, begin + code[n - 1] + 1);
+            frontier = nextFree(frontier);
+            return begin;
+        }
+
+        private void ensure(int capacity)
+        {
+            if (capacity > base.length)
+            {
+                int length = Math.max(capacity, base.length * 2);
+                int[] b = new int[length];
+                int[] c = new int[length];
+                System.arraycopy(base, 0, b, 0, size);
+                System.arraycopy(check, 0, c, 0, size);
+                base = b;
+                check = c;
+            }
+            int words = (capacity + 63) >>> 6;
+            if (words > occupied.length)
+            {
+                int length = Math.max(words, occupied.length * 2);
+                long[] o = new long[length];
+                long[] u = new long[length];
+                System.arraycopy(occupied, 0, o, 0, occupied.length);
+                System.arraycopy(used, 0, u, 0, used.length);
+                occupied = o;
+                used = u;
+            }
+        }
+
+        private static void set(long[] bitmap, int i)
+        {
+            bitmap[i >>> 6] |= 1L << i;
+        }
+
+        /**
+         * 从pos开始的第一个空闲格子，一次跳过64个
+         */
+        private int nextFree(int pos)
+        {
+            int i = pos >>> 6;
+            if (i >= occupied.length) return pos;
+            long word = ~occupied[i] & (-1L << pos);
+            while (true)
+            {
+                if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+                if (++i == occupied.length) return i << 6;
+                word = ~occupied[i];
+            }
+        }
+
+        /**
+         * 从begin开始第一个没用作base、且前n个子节点的格子都空闲的下标，一次判断64个
+         *
+         * @param last 最大的转移码，跳跃时不让它越过已用区域的末尾
+         */
+        private int nextCandidate(int begin, int[] code, int n, int last)
+        {
+            int scanned = 0;
+            scanEnd = Integer.MAX_VALUE;
+            while (true)
+            {
+                int i = begin >>> 6;
+                if (i >= used.length) return begin;
+                long word = ~used[i] & (-1L << begin);
+                for (int j = 0; j < n && word != 0; ++j)
+                {
+                    word &= ~window((i << 6) + code[j]);
+                }
+                if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+                begin = (i + 1) << 6;
+                // 类似原构建方法中95%的启发：扫了太久还没找到，就跳到最大的base之后（那里的base都没用过），
+                // 子节点落在已分配的稀疏区域或者末尾
+                if (++scanned == MAX_SCAN)
+                {
+                    int jump = Math.min(maxBegin + 1, size - last);
+                    if (begin < jump)
+                    {
+                        scanEnd = begin;
+                        begin = jump;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 从p开始的64个格子的占用情况
+         */
+        private long window(int p)
+        {
+            int i = p >>> 6;
+            int shift = p & 63;
+            long low = i < occupied.length ? occupied[i] : 0;
+            if (shift == 0) return low;
+            long high = i + 1 < occupied.length ? occupied[i + 1] : 0;
+            return (low >>> shift) | (high << (64 - shift));
+        }
+
+        /**
+         * 平移到全局坐标中
+         */
+        void relocate(int offset, int[] globalBase, int[] globalCheck)
+        {
+            for (int i = 0; i < size; ++i)
+            {
+                if (check[i] == 0) continue;
+                globalCheck[offset + i] = check[i] + offset;
+                globalBase[offset + i] = base[i] > 0 ? base[i] + offset : base[i];
+            }
+        }
+
+        void save(int offset, DataOutputStream out) throws IOException
+        {
+            for (int i = 0; i < size; ++i)
+            {
+                if (check[i] == 0)
+                {
+                    out.writeInt(0);
+                    out.writeInt(0);
+                }
+                else
+                {
+                    out.writeInt(base[i] > 0 ? base[i] + offset : base[i]);
+                    out.writeInt(check[i] + offset);
+                }
+            }
+        }
+    }
+}
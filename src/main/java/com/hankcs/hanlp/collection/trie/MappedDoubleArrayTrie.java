@@ -0,0 +1,630 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 内存映射的只读双数组trie树<br>
+ * base、check与值都直接从映射的文件中读取，加载时不做任何反序列化，几乎瞬间完成，也不占用堆内存。
+ * 文件以只读方式映射，同一台机器上的多个JVM共享操作系统的页缓存。<br>
+ * 值在第一次被访问时才解码，解码后缓存起来。文件格式（大端int）：<br>
+ * MAGIC, size, 值个数n, size对(base, check), n+1个值偏移, 值数据<br>
+ * 也可以直接映射普通bin缓存中{@link DoubleArrayTrie#save(DataOutputStream)}写出的那一段（size, size对(base, check)），
+ * 此时值由调用者解码好放在堆上，见{@link #open(ByteBuffer, int, Object[])}。
+ */
+public class MappedDoubleArrayTrie<V> extends DoubleArrayTrie<V>
+{
+    /**
+     * 文件头魔数
+     */
+    private static final int MAGIC = 0x48444154;  // HDAT
+    private static final int HEADER_SIZE = 3;
+
+    /**
+     * 值的编码器，值被编码为int序列
+     */
+    public interface ValueCodec<V>
+    {
+        /**
+         * 编码
+         *
+         * @param value 值
+         * @return int序列
+         */
+        int[] encode(V value);
+
+        /**
+         * 解码
+         *
+         * @param buffer 映射的缓冲区
+         * @param offset 值在缓冲区中的起点
+         * @param length 值的int个数
+         * @return 值
+         */
+        V decode(IntBuffer buffer, int offset, int length);
+    }
+
+    /**
+     * 映射的整个文件
+     */
+    private final IntBuffer buffer;
+    /**
+     * (base, check)对在buffer中的起点
+     */
+    private final int arrayBegin;
+    /**
+     * 值偏移在buffer中的起点
+     */
+    private final int valueOffsetBegin;
+    /**
+     * 已解码的值
+     */
+    private final AtomicReferenceArray<V> valueCache;
+    /**
+     * 值的编码器，为null表示值全部在valueCache中
+     */
+    private final ValueCodec<V> codec;
+    private final int root;
+
+    private MappedDoubleArrayTrie(IntBuffer buffer, int arrayBegin, int size, AtomicReferenceArray<V> valueCache, ValueCodec<V> codec)
+    {
+        this.buffer = buffer;
+        this.arrayBegin = arrayBegin;
+        this.size = size;
+        this.codec = codec;
+        this.valueOffsetBegin = arrayBegin + size * 2;
+        this.valueCache = valueCache;
+        this.root = base(0);
+    }
+
+    /**
+     * 将一棵双数组trie树保存为可映射的文件
+     *
+     * @param trie  双数组trie树
+     * @param codec 值的编码器
+     * @param path  文件路径
+     * @return 是否成功
+     */
+    public static <V> boolean save(DoubleArrayTrie<V> trie, ValueCodec<V> codec, String path)
+    {
+        int[] base = trie.getBase();
+        int[] check = trie.getCheck();
+        if (base == null || check == null) return false;
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(IOUtil.newOutputStream(path)));
+            int size = trie.getSize();
+            int valueCount = trie.size();
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            out.writeInt(valueCount);
+            for (int i = 0; i < size; ++i)
+            {
+                out.writeInt(base[i]);
+                out.writeInt(check[i]);
+            }
+            int[][] encoded = new int[valueCount][];
+            int offset = HEADER_SIZE + size * 2 + valueCount + 1;
+            for (int i = 0; i < valueCount; ++i)
+            {
+                V value = trie.getValueAt(i);
+                encoded[i] = value == null ? new int[0] : codec.encode(value);
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+            for (int[] ints : encoded)
+            {
+                for (int n : ints)
+                {
+                    out.writeInt(n);
+                }
+            }
+            out.close();
+            out = null;
+        }
+        catch (Exception e)
+        {
+            logger.warning("保存映射文件" + path + "失败" + e);
+            return false;
+        }
+        finally
+        {
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (Exception ignored)
+                {
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 映射一个由{@link #save(DoubleArrayTrie, ValueCodec, String)}生成的文件
+     *
+     * @param path  文件路径（必须是本地文件）
+     * @param codec 值的编码器
+     * @return 映射的trie树，失败时返回null
+     */
+    public static <V> MappedDoubleArrayTrie<V> open(String path, ValueCodec<V> codec)
+    {
+        ByteBuffer mapped = IOUtil.mapFile(path);
+        return mapped == null ? null : open(mapped, codec);
+    }
+
+    /**
+     * 在一段已映射的字节上打开trie树，比如词典包中的一个分区
+     *
+     * @param bytes 内容与{@link #save(DoubleArrayTrie, ValueCodec, String)}生成的文件相同
+     * @param codec 值的编码器
+     * @return 映射的trie树，格式不对时返回null
+     */
+    public static <V> MappedDoubleArrayTrie<V> open(ByteBuffer bytes, ValueCodec<V> codec)
+    {
+        if (bytes.remaining() < HEADER_SIZE * 4 || bytes.remaining() % 4 != 0) return null;
+        IntBuffer buffer = bytes.slice().asIntBuffer();
+        if (buffer.get(0) != MAGIC) return null;
+        int size = buffer.get(1);
+        int valueCount = buffer.get(2);
+        long valueEnd = HEADER_SIZE + size * 2L + valueCount + 1;
+        if (size <= 0 || valueCount < 0 || valueEnd > buffer.limit() ||
+            buffer.get((int) valueEnd - 1) != buffer.limit()) return null;
+        return new MappedDoubleArrayTrie<V>(buffer, HEADER_SIZE, size, new AtomicReferenceArray<V>(valueCount), codec);
+    }
+
+    /**
+     * 映射bin缓存中由{@link DoubleArrayTrie#save(DataOutputStream)}写出的双数组，值由调用者提供<br>
+     * 普通的bin缓存里值在前、双数组在后，调用者先从映射的字节中解码出值（通常只占很小一部分），
+     * 再把双数组的起点交给本方法，base与check不复制，直接从映射中读取。
+     *
+     * @param bytes    映射的bin文件
+     * @param position 双数组在bytes中的起点（绝对位置）
+     * @param value    值数组
+     * @return 映射的trie树，格式不对时返回null
+     */
+    public static <V> MappedDoubleArrayTrie<V> open(ByteBuffer bytes, int position, V[] value)
+    {
+        if (position < 0 || position + 4 > bytes.limit()) return null;
+        ByteBuffer section = bytes.duplicate();
+        section.position(position);
+        IntBuffer buffer = section.slice().asIntBuffer();
+        int size = buffer.get(0);
+        if (size <= 0 || 1 + size * 2L > buffer.limit()) return null;
+        return new MappedDoubleArrayTrie<V>(buffer, 1, size, new AtomicReferenceArray<V>(value), null);
+    }
+
+    private int base(int p)
+    {
+        return p < size ? buffer.get(arrayBegin + (p << 1)) : 0;
+    }
+
+    private int check(int p)
+    {
+        return p < size ? buffer.get(arrayBegin + (p << 1) + 1) : 0;
+    }
+
+    @Override
+    protected int baseAt(int p)
+    {
+        return base(p);
+    }
+
+    @Override
+    protected int checkAt(int p)
+    {
+        return check(p);
+    }
+
+    @Override
+    public int rootBase()
+    {
+        return root;
+    }
+
+    @Override
+    public int exactMatchSearch(String key, int pos, int len, int nodePos)
+    {
+        if (len <= 0)
+            len = key.length();
+        if (nodePos <= 0)
+        {
+            nodePos = 0;
+            if (prefilter != null && !mayContain(key, pos, len)) return -1;
+        }
+
+        int b = base(nodePos);
+        int p;
+
+        for (int i = pos; i < len; i++)
+        {
+            p = b + (int) (key.charAt(i)) + 1;
+            if (b == check(p))
+                b = base(p);
+            else
+                return -1;
+        }
+
+        return outputIndex(b);
+    }
+
+    @Override
+    public int exactMatchSearch(char[] keyChars, int pos, int len, int nodePos)
+    {
+        if (nodePos == 0 && prefilter != null && !mayContain(keyChars, pos, len)) return -1;
+        int b = base(nodePos);
+        int p;
+
+        for (int i = pos; i < len; i++)
+        {
+            p = b + (int) (keyChars[i]) + 1;
+            if (b == check(p))
+                b = base(p);
+            else
+                return -1;
+        }
+
+        return outputIndex(b);
+    }
+
+    @Override
+    protected int outputIndex(int b)
+    {
+        int n = base(b);
+        if (b == check(b) && n < 0)
+        {
+            return -n - 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<Integer> commonPrefixSearch(String key, int pos, int len, int nodePos)
+    {
+        if (len <= 0)
+            len = key.length();
+        if (nodePos <= 0)
+            nodePos = 0;
+
+        List<Integer> result = new ArrayList<Integer>();
+        int b = base(nodePos);
+        int p;
+
+        for (int i = pos; i < len; i++)
+        {
+            p = b + (int) (key.charAt(i)) + 1;
+            if (b == check(p))
+                b = base(p);
+            else
+                return result;
+            int index = outputIndex(b);
+            if (index >= 0)
+            {
+                result.add(index);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    @Deprecated
+    public LinkedList<Map.Entry<String, V>> commonPrefixSearchWithValue(String key)
+    {
+        return commonPrefixSearchWithValue(key.toCharArray(), 0);
+    }
+
+    @Override
+    public LinkedList<Map.Entry<String, V>> commonPrefixSearchWithValue(char[] keyChars, int begin)
+    {
+        LinkedList<Map.Entry<String, V>> result = new LinkedList<Map.Entry<String, V>>();
+        int b = root;
+        int p;
+
+        for (int i = begin; i < keyChars.length; ++i)
+        {
+            p = b + (int) (keyChars[i]) + 1;
+            if (b == check(p))
+                b = base(p);
+            else
+                return result;
+            int index = outputIndex(b);
+            if (index >= 0)
+            {
+                result.add(new AbstractMap.SimpleEntry<String, V>(new String(keyChars, begin, i - begin + 1), getValueAt(index)));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int size()
+    {
+        return valueCache.length();
+    }
+
+    @Override
+    public V getValueAt(int index)
+    {
+        V value = valueCache.get(index);
+        if (value == null && codec != null)
+        {
+            int position = valueOffsetBegin + index;
+            int offset = buffer.get(position);
+            int length = buffer.get(position + 1) - offset;
+            if (length == 0) return null;
+            value = codec.decode(buffer, offset, length);
+            if (!valueCache.compareAndSet(index, null, value))
+            {
+                value = valueCache.get(index);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public V get(int index)
+    {
+        return getValueAt(index);
+    }
+
+    @Override
+    protected boolean isLive(int index)
+    {
+        return getValueAt(index) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V[] getValueArray(V[] a)
+    {
+        int size = size();
+        if (a.length < size)
+            a = (V[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        for (int i = 0; i < size; ++i)
+        {
+            a[i] = getValueAt(i);
+        }
+        return a;
+    }
+
+    /**
+     * 更新某个键对应的值（只在内存中生效，不会写回文件）
+     */
+    @Override
+    public boolean set(String key, V value)
+    {
+        int index = exactMatchSearch(key);
+        if (index >= 0)
+        {
+            valueCache.set(index, value);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public DoubleArrayTrie<V> shallowCopy()
+    {
+        AtomicReferenceArray<V> cache = new AtomicReferenceArray<V>(valueCache.length());
+        for (int i = 0; i < valueCache.length(); ++i)
+        {
+            cache.set(i, valueCache.get(i));
+        }
+        MappedDoubleArrayTrie<V> copy = new MappedDoubleArrayTrie<V>(buffer, arrayBegin, size, cache, codec);
+        copy.prefilter = prefilter;
+        return copy;
+    }
+
+    @Override
+    protected int transition(char[] path)
+    {
+        return transition(new String(path), root);
+    }
+
+    @Override
+    public int transition(String path, int from)
+    {
+        int b = from;
+        int p;
+
+        for (int i = 0; i < path.length(); ++i)
+        {
+            p = b + (int) (path.charAt(i)) + 1;
+            if (b == check(p))
+                b = base(p);
+            else
+                return -1;
+        }
+
+        return b;
+    }
+
+    @Override
+    public int transition(char c, int from)
+    {
+        int p = from + (int) (c) + 1;
+        if (from == check(p))
+            return base(p);
+        return -1;
+    }
+
+    @Override
+    protected int transition(int current, char c)
+    {
+        int b = base(current);
+        int p = b + c + 1;
+        if (b == check(p))
+            return base(p);
+        return -1;
+    }
+
+    @Override
+    public V output(int state)
+    {
+        if (state < 0) return null;
+        int index = outputIndex(state);
+        return index < 0 ? null : getValueAt(index);
+    }
+
+    @Override
+    public boolean save(DataOutputStream out)
+    {
+        try
+        {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++)
+            {
+                out.writeInt(base(i));
+                out.writeInt(check(i));
+            }
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean save(String fileName)
+    {
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(IOUtil.newOutputStream(fileName)));
+            if (!save(out)) return false;
+            out.close();
+            out = null;
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+        finally
+        {
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (Exception ignored)
+                {
+                }
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void save(ObjectOutputStream out) throws IOException
+    {
+        out.writeObject(getBase());
+        out.writeObject(getCheck());
+    }
+
+    @Override
+    public int getNonzeroSize()
+    {
+        int result = 0;
+        for (int i = 0; i < size; ++i)
+            if (check(i) != 0)
+                ++result;
+        return result;
+    }
+
+    /**
+     * 映射的双数组没有base数组，返回从缓冲区复制出来的一份
+     *
+     * @return base数组的副本
+     */
+    @Override
+    public int[] getBase()
+    {
+        int[] base = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            base[i] = base(i);
+        }
+        return base;
+    }
+
+    /**
+     * 映射的双数组没有check数组，返回从缓冲区复制出来的一份
+     *
+     * @return check数组的副本
+     */
+    @Override
+    public int[] getCheck()
+    {
+        int[] check = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            check[i] = check(i);
+        }
+        return check;
+    }
+
+    @Override
+    public int build(List<String> _key, int[] _length, int[] _value, int _keySize)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public void open(String fileName)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public boolean load(String path)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public boolean load(String path, List<V> value)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public boolean load(String path, V[] value)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public boolean load(ByteArray byteArray, V[] value)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+
+    @Override
+    public boolean load(byte[] bytes, int offset, V[] value)
+    {
+        throw new UnsupportedOperationException("映射的双数组是只读的");
+    }
+}
@@ -0,0 +1,365 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.ByteBufferArray;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 词典的前缀过滤器：首字位图加上二元组（前两个字）的布隆过滤器<br>
+ * 扫描句子时，绝大多数起点连一个词条的开头都凑不上，却仍然要在几兆到几十兆的base/check数组里随机访存一两次。
+ * 过滤器只有几百KB，常驻缓存，先问它“这个位置能不能开始一个词条”，答否的位置直接跳过；精确查询也先问它，查不到的词不必走双数组。
+ * 过滤器只会误报不会漏报，所以跳过的位置一定没有命中，结果与不过滤时完全相同。<br>
+ * 布隆过滤器的每次查询只读一个long（三个比特落在同一个字里），核心词典上实测误报率约为千分之五。<br>
+ * 过滤器在生成bin缓存时构建，追加在双数组之后，旧的缓存没有这一段，加载时现场从双数组构建即可。
+ */
+public class PrefixFilter
+{
+    /**
+     * bin文件中过滤器段的魔数
+     */
+    private static final int MAGIC = 0x50524632;    // "PRF2"，旧的"PREF"段哈希不同，加载时丢弃重建
+    /**
+     * 每个二元组分到的比特数
+     */
+    private static final int BITS_PER_BIGRAM = 16;
+    /**
+     * 是否统计跳过率
+     */
+    private static volatile boolean statistics = false;
+
+    /**
+     * 首字位图，词条的第一个字
+     */
+    private final long[] first;
+    /**
+     * 单字词条位图
+     */
+    private final long[] single;
+    /**
+     * 二元组的布隆过滤器
+     */
+    private final long[] bigram;
+
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong skipCount = new AtomicLong();
+
+    private PrefixFilter(long[] first, long[] single, long[] bigram)
+    {
+        this.first = first;
+        this.single = single;
+        this.bigram = bigram;
+    }
+
+    /**
+     * 开启或关闭跳过率的统计（默认关闭，开启后每次扫描多一次原子加法）
+     *
+     * @param enable 是否开启
+     */
+    public static void enableStatistics(boolean enable)
+    {
+        statistics = enable;
+    }
+
+    /**
+     * 是否在统计跳过率
+     */
+    public static boolean isStatisticsEnabled()
+    {
+        return statistics;
+    }
+
+    /**
+     * 从双数组构建过滤器，只需扫描一遍check数组
+     *
+     * @param trie 双数组（也可以是映射的）
+     * @return 过滤器，双数组为空时返回null
+     */
+    public static PrefixFilter build(DoubleArrayTrie<?> trie)
+    {
+        int length = trie.getSize();
+        if (length <= 0) return null;
+        long[] first = new long[1024];
+        long[] single = new long[1024];
+        // 根节点的每个子节点的base各不相同，记下base对应的首字
+        int[] owner = new int[length];
+        int root = trie.rootBase();
+        int firstCount = 0;
+        for (int c = 0; c < 65536; ++c)
+        {
+            int p = root + c + 1;
+            if (p >= length) break;
+            if (trie.checkAt(p) == root)
+            {
+                int b = trie.baseAt(p);
+                if (b > 0 && b < length) owner[b] = c + 1;
+                first[c >>> 6] |= 1L << c;
+                ++firstCount;
+            }
+        }
+        // 第一遍数二元组，确定布隆过滤器的大小
+        int bigramCount = 0;
+        for (int p = 0; p < length; ++p)
+        {
+            int b = trie.checkAt(p);
+            if (b > 0 && b < length && owner[b] != 0 && p != b) ++bigramCount;
+        }
+        int words = 1;
+        while (words * 64L < (long) Math.max(bigramCount, firstCount) * BITS_PER_BIGRAM) words <<= 1;
+        PrefixFilter filter = new PrefixFilter(first, single, new long[words]);
+        for (int p = 0; p < length; ++p)
+        {
+            int b = trie.checkAt(p);
+            if (b <= 0 || b >= length || owner[b] == 0) continue;
+            char c1 = (char) (owner[b] - 1);
+            if (p == b)
+            {
+                if (trie.baseAt(p) < 0) single[c1 >>> 6] |= 1L << c1;     // 转移码0是词尾
+            }
+            else
+            {
+                filter.addBigram(c1, (char) (p - b - 1));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * 二元组的64位哈希，murmur3的finalizer，每一位都与两个字的每一位相关
+     */
+    private static long hash(char c1, char c2)
+    {
+        long h = ((long) c1 << 16) | c2;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 低18位决定字内的三个比特
+     */
+    private static long bits(long h)
+    {
+        return (1L << h) | (1L << (h >>> 6)) | (1L << (h >>> 12));
+    }
+
+    /**
+     * 高32位乘以字数再取高32位，得到字的下标，过滤器多大都能均匀寻址
+     */
+    private int index(long h)
+    {
+        return (int) (((h >>> 32) * bigram.length) >>> 32);
+    }
+
+    private void addBigram(char c1, char c2)
+    {
+        long h = hash(c1, c2);
+        bigram[index(h)] |= bits(h);
+    }
+
+    private boolean containsBigram(char c1, char c2)
+    {
+        long h = hash(c1, c2);
+        long bits = bits(h);
+        return (bigram[index(h)] & bits) == bits;
+    }
+
+    private static boolean test(long[] bitmap, char c)
+    {
+        return (bitmap[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * 是否存在以某个字开头的词条
+     *
+     * @param c 字
+     * @return 否则以它开头的位置都可以跳过
+     */
+    public boolean mayStartWith(char c)
+    {
+        return test(first, c);
+    }
+
+    /**
+     * 文本的某个位置是否可能是一个词条的起点
+     *
+     * @param text 文本
+     * @param i    位置
+     * @param end  文本的终点（不包含）
+     * @return false表示一定不是
+     */
+    public boolean mayStart(char[] text, int i, int end)
+    {
+        char c1 = text[i];
+        if (!test(first, c1)) return false;
+        if (test(single, c1)) return true;
+        return i + 1 < end && containsBigram(c1, text[i + 1]);
+    }
+
+    /**
+     * 某个键是否可能在词典中
+     *
+     * @param key   键
+     * @param begin 键的起点
+     * @param end   键的终点（不包含）
+     * @return false表示一定不在
+     */
+    public boolean mayContain(CharSequence key, int begin, int end)
+    {
+        if (begin >= end) return true;
+        char c1 = key.charAt(begin);
+        if (!test(first, c1)) return false;
+        if (end - begin == 1) return test(single, c1);
+        return containsBigram(c1, key.charAt(begin + 1));
+    }
+
+    /**
+     * 某个键是否可能在词典中
+     *
+     * @param key   键
+     * @param begin 键的起点
+     * @param end   键的终点（不包含）
+     * @return false表示一定不在
+     */
+    public boolean mayContain(char[] key, int begin, int end)
+    {
+        if (begin >= end) return true;
+        char c1 = key[begin];
+        if (!test(first, c1)) return false;
+        if (end - begin == 1) return test(single, c1);
+        return containsBigram(c1, key[begin + 1]);
+    }
+
+    /**
+     * 记录一次扫描或查询的结果，由调用者在未开启统计时省去
+     *
+     * @param probe 询问的次数
+     * @param skip  答否的次数
+     */
+    public void count(int probe, int skip)
+    {
+        probeCount.addAndGet(probe);
+        skipCount.addAndGet(skip);
+    }
+
+    /**
+     * 询问过滤器的总次数（扫描的起点加上精确查询）
+     */
+    public long getProbeCount()
+    {
+        return probeCount.get();
+    }
+
+    /**
+     * 被过滤器跳过的次数
+     */
+    public long getSkipCount()
+    {
+        return skipCount.get();
+    }
+
+    /**
+     * 跳过率
+     *
+     * @return 被跳过的次数占询问次数的比例，没有询问过时为0
+     */
+    public double getSkipRatio()
+    {
+        long probe = probeCount.get();
+        return probe == 0 ? 0 : skipCount.get() / (double) probe;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetStatistics()
+    {
+        probeCount.set(0);
+        skipCount.set(0);
+    }
+
+    /**
+     * 过滤器占用的字节数
+     */
+    public int getMemoryUsage()
+    {
+        return (first.length + single.length + bigram.length) * 8;
+    }
+
+    /**
+     * 追加到bin文件中
+     *
+     * @param out 输出流
+     * @throws IOException
+     */
+    public void save(DataOutputStream out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(bigram.length);
+        for (long word : first) out.writeLong(word);
+        for (long word : single) out.writeLong(word);
+        for (long word : bigram) out.writeLong(word);
+    }
+
+    /**
+     * 从bin文件中读取
+     *
+     * @param bytes  文件内容
+     * @param offset 过滤器段的起点
+     * @return 过滤器，没有这一段（旧的缓存）或者长度不对时返回null
+     */
+    public static PrefixFilter load(byte[] bytes, int offset)
+    {
+        if (bytes == null) return null;
+        return load(ByteBuffer.wrap(bytes), offset);
+    }
+
+    /**
+     * 从bin文件中读取
+     *
+     * @param byteArray 文件内容，当前位置就是过滤器段的起点；可以是映射的{@link ByteBufferArray}
+     * @return 过滤器，没有这一段（旧的缓存）或者长度不对时返回null
+     */
+    public static PrefixFilter load(ByteArray byteArray)
+    {
+        if (byteArray instanceof ByteBufferArray) return load(((ByteBufferArray) byteArray).getBuffer(), byteArray.getOffset());
+        return load(byteArray.getBytes(), byteArray.getOffset());
+    }
+
+    /**
+     * 从bin文件中读取，文件可以是映射的
+     *
+     * @param buffer   文件内容
+     * @param position 过滤器段的起点（绝对位置）
+     * @return 过滤器，没有这一段（旧的缓存）或者长度不对时返回null
+     */
+    public static PrefixFilter load(ByteBuffer buffer, int position)
+    {
+        if (position < 0 || position + 8L > buffer.limit() || buffer.getInt(position) != MAGIC) return null;
+        int words = buffer.getInt(position + 4);
+        if (words <= 0 || (words & (words - 1)) != 0 || position + 8 + (2048L + words) * 8 > buffer.limit()) return null;
+        ByteBuffer section = buffer.duplicate();
+        section.position(position + 8);
+        long[] first = new long[1024];
+        long[] single = new long[1024];
+        long[] bigram = new long[words];
+        section.asLongBuffer().get(first).get(single).get(bigram);
+        return new PrefixFilter(first, single, bigram);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PrefixFilter{" +
+                "memory=" + getMemoryUsage() +
+                ", probe=" + getProbeCount() +
+                ", skip=" + getSkipCount() +
+                '}';
+    }
+}
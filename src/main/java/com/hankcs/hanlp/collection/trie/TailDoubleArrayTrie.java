@@ -0,0 +1,634 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.corpus.io.ByteArray;
+
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 带TAIL的双数组trie树（Aoe的DA+TAIL）<br>
+ * 普通的双数组每个节点占一对base/check，机构名、地名这类长词条的后半截往往只属于一个词条，却要一个字一个格子地排下去。
+ * 这里双数组只存有分叉的前缀，某个节点以下只剩一个词条时，就把剩下的后缀原样放进一个char数组（TAIL）里，
+ * 叶子的base为负数，记录词条的下标，查询走到叶子后直接与后缀比较。<br>
+ * 每个后缀字只占2个字节，一对base/check要8个字节，而且不必为它们在双数组中找空位，所以既省内存又省构建时间。<br>
+ * 另外，汉字的码点分散在两万多的范围里，兄弟节点隔得很远，双数组中间留下大片空洞。这里按字频把字重新编号，常用字的转移码很小，
+ * 兄弟节点挤在一起，双数组就紧凑多了，不在字母表里的字也能直接判负。
+ * 词条按字典序编号，下标就是值的下标，与{@link DoubleArrayTrie}的约定相同。
+ */
+public class TailDoubleArrayTrie<V> implements ITrie<V>
+{
+    /**
+     * 序列化时的魔数，为负数，不会与{@link DoubleArrayTrie#save(DataOutputStream)}开头的大小混淆
+     */
+    public static final int MAGIC = 0xDA7A7A11;
+    /**
+     * 根节点的下标
+     */
+    private static final int ROOT = 1;
+    /**
+     * 一个空位作为多子节点的起点最多试几次
+     */
+    private static final int MAX_TRIAL = 32;
+
+    /**
+     * 字到转移码的映射，按字频降序从1开始编号，0表示字母表里没有这个字（转移码0留给词尾）
+     */
+    private char[] charCode;
+    /**
+     * 内部节点的base为子节点的起点，叶子节点的base为-(词条下标+1)
+     */
+    private int[] base;
+    /**
+     * 父节点的下标，0表示空闲
+     */
+    private int[] check;
+    /**
+     * 双数组实际用到的长度
+     */
+    private int size;
+    /**
+     * 所有后缀首尾相接
+     */
+    private char[] tail;
+    /**
+     * 第i个词条的后缀为tail[tailOffset[i], tailOffset[i + 1])
+     */
+    private int[] tailOffset;
+    /**
+     * 词条数
+     */
+    private int keyCount;
+    private V[] v;
+
+    // 以下只在构建时使用
+    private List<String> keyList;
+    private StringBuilder tailBuilder;
+    /**
+     * 空位的并查集，已占用的格子指向下一格
+     */
+    private int[] nextFree;
+    /**
+     * 多子节点起点的并查集，除了已占用的，试过多次都不行的空位也跳过（留给单子节点）
+     */
+    private int[] nextCandidate;
+    /**
+     * 每个空位作为起点失败的次数
+     */
+    private byte[] trial;
+
+    public TailDoubleArrayTrie()
+    {
+        clear();
+    }
+
+    private void clear()
+    {
+        charCode = new char[65536];
+        base = new int[ROOT + 1];
+        check = new int[ROOT + 1];
+        size = ROOT + 1;
+        tail = new char[0];
+        tailOffset = new int[1];
+        keyCount = 0;
+        v = null;
+    }
+
+    /**
+     * 构建
+     *
+     * @param keyValueMap 键值对
+     * @return 0表示成功
+     */
+    public int build(TreeMap<String, V> keyValueMap)
+    {
+        List<String> keyList = new ArrayList<String>(keyValueMap.size());
+        List<V> valueList = new ArrayList<V>(keyValueMap.size());
+        for (Map.Entry<String, V> entry : keyValueMap.entrySet())
+        {
+            keyList.add(entry.getKey());
+            valueList.add(entry.getValue());
+        }
+        return build(keyList, valueList);
+    }
+
+    /**
+     * 构建
+     *
+     * @param keyList   严格按字典序升序排列的键
+     * @param valueList 对应的值
+     * @return 0表示成功，-1表示键不是严格升序的或者字母表太大
+     */
+    @SuppressWarnings("unchecked")
+    public int build(List<String> keyList, List<V> valueList)
+    {
+        return build(keyList, (V[]) valueList.toArray());
+    }
+
+    /**
+     * 构建
+     *
+     * @param keyList 严格按字典序升序排列的键
+     * @param value   对应的值，可以为null，此时本trie相当于一个set
+     * @return 0表示成功，-1表示键不是严格升序的或者字母表太大
+     */
+    public int build(List<String> keyList, V[] value)
+    {
+        for (int i = 1; i < keyList.size(); ++i)
+        {
+            if (keyList.get(i - 1).compareTo(keyList.get(i)) >= 0)
+            {
+                logger.warning("键未严格升序：" + keyList.get(i - 1) + "，" + keyList.get(i));
+                return -1;
+            }
+        }
+        clear();
+        if (!buildCharCode(keyList)) return -1;
+        keyCount = keyList.size();
+        v = value;
+        if (keyCount == 0) return 0;
+
+        this.keyList = keyList;
+        int capacity = Math.max(keyCount * 2, 65536 + ROOT + 1);
+        base = new int[capacity];
+        check = new int[capacity];
+        check[ROOT] = -1;
+        nextFree = new int[capacity];
+        nextCandidate = new int[capacity];
+        trial = new byte[capacity];
+        for (int i = 0; i < capacity; ++i)
+        {
+            nextFree[i] = nextCandidate[i] = i;
+        }
+        for (int i = 0; i <= ROOT; ++i)
+        {
+            nextFree[i] = nextCandidate[i] = i + 1;
+        }
+        tailBuilder = new StringBuilder();
+        tailOffset = new int[keyCount + 1];
+        insert(ROOT, 0, 0, keyCount);
+        tailOffset[keyCount] = tailBuilder.length();
+        tail = tailBuilder.toString().toCharArray();
+        base = shrink(base, size);
+        check = shrink(check, size);
+        this.keyList = null;
+        tailBuilder = null;
+        nextFree = nextCandidate = null;
+        trial = null;
+        return 0;
+    }
+
+    /**
+     * 按字频降序给字编号
+     */
+    private boolean buildCharCode(List<String> keyList)
+    {
+        final int[] frequency = new int[65536];
+        int alphabetSize = 0;
+        for (String key : keyList)
+        {
+            for (int i = 0; i < key.length(); ++i)
+            {
+                if (frequency[key.charAt(i)]++ == 0) ++alphabetSize;
+            }
+        }
+        if (alphabetSize >= 65536)
+        {
+            logger.warning("字母表太大：" + alphabetSize);
+            return false;
+        }
+        Integer[] alphabet = new Integer[alphabetSize];
+        for (int c = 0, i = 0; c < 65536; ++c)
+        {
+            if (frequency[c] != 0) alphabet[i++] = c;
+        }
+        Arrays.sort(alphabet, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return frequency[o2] != frequency[o1] ? frequency[o2] - frequency[o1] : o1 - o2;
+            }
+        });
+        for (int i = 0; i < alphabetSize; ++i)
+        {
+            charCode[alphabet[i]] = (char) (i + 1);
+        }
+        return true;
+    }
+
+    private static int[] shrink(int[] array, int length)
+    {
+        int[] newArray = new int[length];
+        System.arraycopy(array, 0, newArray, 0, length);
+        return newArray;
+    }
+
+    private void resize(int newSize)
+    {
+        int capacity = Math.max(newSize, base.length + (base.length >>> 1));
+        int[] newBase = new int[capacity];
+        int[] newCheck = new int[capacity];
+        int[] newNextFree = new int[capacity];
+        int[] newNextCandidate = new int[capacity];
+        byte[] newTrial = new byte[capacity];
+        System.arraycopy(base, 0, newBase, 0, base.length);
+        System.arraycopy(check, 0, newCheck, 0, check.length);
+        System.arraycopy(nextFree, 0, newNextFree, 0, nextFree.length);
+        System.arraycopy(nextCandidate, 0, newNextCandidate, 0, nextCandidate.length);
+        System.arraycopy(trial, 0, newTrial, 0, trial.length);
+        for (int i = nextFree.length; i < capacity; ++i)
+        {
+            newNextFree[i] = newNextCandidate[i] = i;
+        }
+        base = newBase;
+        check = newCheck;
+        nextFree = newNextFree;
+        nextCandidate = newNextCandidate;
+        trial = newTrial;
+    }
+
+    /**
+     * 并查集中不小于p的第一个根，已删除的格子指向后面，路径压缩后扫描时不必一格一格地跳过
+     */
+    private int find(int[] next, int p)
+    {
+        int root = p;
+        while (root < next.length && next[root] != root) root = next[root];
+        while (p < next.length && next[p] != p)
+        {
+            int parent = next[p];
+            next[p] = root;
+            p = parent;
+        }
+        if (root >= base.length) resize(root + 1);
+        return root;
+    }
+
+    private int code(String key, int depth)
+    {
+        return depth < key.length() ? charCode[key.charAt(depth)] : 0;
+    }
+
+    /**
+     * 把keyList[begin, end)挂到节点s下，它们的前depth个字相同
+     */
+    private void insert(int s, int depth, int begin, int end)
+    {
+        if (end - begin == 1)
+        {
+            // 只剩一个词条，后缀进TAIL
+            String key = keyList.get(begin);
+            base[s] = -(begin + 1);
+            tailOffset[begin] = tailBuilder.length();
+            if (depth < key.length()) tailBuilder.append(key, depth, key.length());
+            return;
+        }
+        // 按下一个字分组，键是升序的，同一个字的键挨在一起
+        List<int[]> siblings = new ArrayList<int[]>();
+        int last = -1;
+        int first = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = begin; i < end; ++i)
+        {
+            int code = code(keyList.get(i), depth);
+            if (code != last)
+            {
+                siblings.add(new int[]{code, i});
+                last = code;
+                first = Math.min(first, code);
+                max = Math.max(max, code);
+            }
+        }
+        int b;
+        if (siblings.size() == 1)
+        {
+            // 单个子节点放进第一个空位，把前面的空洞填上
+            b = find(nextFree, first + 1) - first;
+            if (b + max >= base.length) resize(b + max + 1);
+        }
+        else
+        {
+            int pos = find(nextCandidate, first + 1);
+            outer:
+            while (true)
+            {
+                b = pos - first;
+                if (b + max >= base.length) resize(b + max + 1);
+                for (int[] sibling : siblings)
+                {
+                    if (check[b + sibling[0]] != 0)
+                    {
+                        // 总是失败的空位不再作为起点，否则每个多子节点都要从头试一遍
+                        if (++trial[pos] >= MAX_TRIAL) nextCandidate[pos] = pos + 1;
+                        pos = find(nextCandidate, pos + 1);
+                        continue outer;
+                    }
+                }
+                break;
+            }
+        }
+
+        base[s] = b;
+        for (int[] sibling : siblings)
+        {
+            int t = b + sibling[0];
+            check[t] = s;
+            nextFree[t] = nextCandidate[t] = t + 1;
+            if (t >= size) size = t + 1;
+        }
+        for (int i = 0; i < siblings.size(); ++i)
+        {
+            int childBegin = siblings.get(i)[1];
+            int childEnd = i + 1 < siblings.size() ? siblings.get(i + 1)[1] : end;
+            insert(b + siblings.get(i)[0], depth + 1, childBegin, childEnd);
+        }
+    }
+
+    /**
+     * 叶子节点的后缀是否与key[begin, end)相同
+     */
+    private boolean tailEquals(int index, char[] key, int begin, int end)
+    {
+        int from = tailOffset[index];
+        if (tailOffset[index + 1] - from != end - begin) return false;
+        for (int i = begin; i < end; ++i, ++from)
+        {
+            if (tail[from] != key[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 叶子节点的后缀是否为key[begin, end)的前缀
+     */
+    private boolean tailIsPrefix(int index, char[] key, int begin, int end)
+    {
+        int from = tailOffset[index];
+        int to = tailOffset[index + 1];
+        if (to - from > end - begin) return false;
+        for (int i = begin; from < to; ++i, ++from)
+        {
+            if (tail[from] != key[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 精确查询
+     *
+     * @param key   文本
+     * @param begin 起点
+     * @param end   终点（不含）
+     * @return 词条的下标，-1表示不存在
+     */
+    public int exactMatchSearch(char[] key, int begin, int end)
+    {
+        if (keyCount == 0) return -1;
+        int s = ROOT;
+        for (int i = begin; i < end; ++i)
+        {
+            int b = base[s];
+            if (b < 0) return tailEquals(-b - 1, key, i, end) ? -b - 1 : -1;
+            int c = charCode[key[i]];
+            if (c == 0) return -1;
+            int t = b + c;
+            if (t >= size || check[t] != s) return -1;
+            s = t;
+        }
+        int b = base[s];
+        if (b < 0) return tailEquals(-b - 1, key, end, end) ? -b - 1 : -1;
+        if (b < size && check[b] == s) return -base[b] - 1;
+        return -1;
+    }
+
+    public int exactMatchSearch(char[] key)
+    {
+        return exactMatchSearch(key, 0, key.length);
+    }
+
+    public int exactMatchSearch(String key)
+    {
+        return exactMatchSearch(key.toCharArray());
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param key   文本
+     * @param begin 起点
+     * @param end   终点（不含）
+     * @return 所有是key[begin, end)前缀的词条的下标，按长度升序
+     */
+    public List<Integer> commonPrefixSearch(char[] key, int begin, int end)
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        if (keyCount == 0) return result;
+        int s = ROOT;
+        for (int i = begin; i < end; ++i)
+        {
+            int b = base[s];
+            if (b < 0)
+            {
+                if (tailIsPrefix(-b - 1, key, i, end)) result.add(-b - 1);
+                return result;
+            }
+            if (b < size && check[b] == s) result.add(-base[b] - 1);
+            int c = charCode[key[i]];
+            if (c == 0) return result;
+            int t = b + c;
+            if (t >= size || check[t] != s) return result;
+            s = t;
+        }
+        int b = base[s];
+        if (b < 0)
+        {
+            if (tailOffset[-b] == tailOffset[-b - 1]) result.add(-b - 1);
+        }
+        else if (b < size && check[b] == s) result.add(-base[b] - 1);
+        return result;
+    }
+
+    public List<Integer> commonPrefixSearch(String key)
+    {
+        char[] charArray = key.toCharArray();
+        return commonPrefixSearch(charArray, 0, charArray.length);
+    }
+
+    public V get(char[] key)
+    {
+        int index = exactMatchSearch(key, 0, key.length);
+        return index < 0 || v == null ? null : v[index];
+    }
+
+    public V get(String key)
+    {
+        return get(key.toCharArray());
+    }
+
+    /**
+     * 获取第index个词条的值
+     *
+     * @param index 词条下标
+     * @return 值
+     */
+    public V getValueAt(int index)
+    {
+        return v[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V[] getValueArray(V[] a)
+    {
+        int size = v.length;
+        if (a.length < size)
+            a = (V[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        System.arraycopy(v, 0, a, 0, size);
+        return a;
+    }
+
+    public boolean containsKey(String key)
+    {
+        return exactMatchSearch(key) >= 0;
+    }
+
+    /**
+     * 词条数
+     */
+    public int size()
+    {
+        return keyCount;
+    }
+
+    /**
+     * 双数组的长度
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * TAIL的长度（字数）
+     */
+    public int getTailSize()
+    {
+        return tail.length;
+    }
+
+    /**
+     * 双数组、TAIL与字母表占用的字节数（不含值）
+     *
+     * @return 字节数
+     */
+    public long getMemoryUsage()
+    {
+        return size * 8L + tail.length * 2L + tailOffset.length * 4L + charCode.length * 2L;
+    }
+
+    /**
+     * 保存双数组与TAIL，值由调用者另行保存
+     *
+     * @param out 输出流
+     * @return 是否成功
+     */
+    public boolean save(DataOutputStream out)
+    {
+        try
+        {
+            out.writeInt(MAGIC);
+            char[] alphabet = new char[65536];
+            int alphabetSize = 0;
+            for (int c = 0; c < 65536; ++c)
+            {
+                if (charCode[c] != 0)
+                {
+                    alphabet[charCode[c] - 1] = (char) c;
+                    ++alphabetSize;
+                }
+            }
+            out.writeInt(alphabetSize);
+            for (int i = 0; i < alphabetSize; ++i)
+            {
+                out.writeChar(alphabet[i]);
+            }
+            out.writeInt(size);
+            for (int i = 0; i < size; ++i)
+            {
+                out.writeInt(base[i]);
+                out.writeInt(check[i]);
+            }
+            out.writeInt(keyCount);
+            for (int i = 0; i <= keyCount; ++i)
+            {
+                out.writeInt(tailOffset[i]);
+            }
+            out.writeInt(tail.length);
+            for (char c : tail)
+            {
+                out.writeChar(c);
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warning("保存TAIL双数组失败" + e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 加载{@link #save(DataOutputStream)}写出的内容
+     *
+     * @param byteArray 字节
+     * @param value     值数组
+     * @return 格式不对时返回false
+     */
+    public boolean load(ByteArray byteArray, V[] value)
+    {
+        if (byteArray == null || byteArray.nextInt() != MAGIC) return false;
+        int alphabetSize = byteArray.nextInt();
+        if (alphabetSize < 0 || alphabetSize >= 65536) return false;
+        char[] charCode = new char[65536];
+        for (int i = 0; i < alphabetSize; ++i)
+        {
+            charCode[byteArray.nextChar()] = (char) (i + 1);
+        }
+        int size = byteArray.nextInt();
+        if (size < ROOT + 1) return false;
+        int[] base = new int[size];
+        int[] check = new int[size];
+        for (int i = 0; i < size; ++i)
+        {
+            base[i] = byteArray.nextInt();
+            check[i] = byteArray.nextInt();
+        }
+        int keyCount = byteArray.nextInt();
+        if (keyCount < 0 || (value != null && value.length < keyCount)) return false;
+        int[] tailOffset = new int[keyCount + 1];
+        for (int i = 0; i <= keyCount; ++i)
+        {
+            tailOffset[i] = byteArray.nextInt();
+        }
+        char[] tail = new char[byteArray.nextInt()];
+        for (int i = 0; i < tail.length; ++i)
+        {
+            tail[i] = byteArray.nextChar();
+        }
+        this.charCode = charCode;
+        this.base = base;
+        this.check = check;
+        this.size = size;
+        this.keyCount = keyCount;
+        this.tailOffset = tailOffset;
+        this.tail = tail;
+        this.v = value;
+        return true;
+    }
+}
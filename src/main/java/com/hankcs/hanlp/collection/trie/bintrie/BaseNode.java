@@ -11,6 +11,7 @@
  */
 package com.hankcs.hanlp.collection.trie.bintrie;
 
+import com.hankcs.hanlp.collection.trie.bintrie.util.ArrayTool;
 import com.hankcs.hanlp.corpus.io.ByteArray;
 
 import java.io.DataOutputStream;
@@ -98,6 +99,30 @@ public abstract class BaseNode<V> implements Comparable<BaseNode>
      * @param c 子节点的char
      * @return 是否含有
      */
+    /**
+     * 复制一个子节点（连同它的子节点数组），并用副本替换原来的子节点，用于写时复制<br>
+     * 调用者必须保证本节点自己已经是副本
+     *
+     * @param c 子节点的字符
+     * @return 子节点的副本，子节点不存在时返回null
+     */
+    protected BaseNode copyChild(char c)
+    {
+        if (child == null) return null;
+        int index = ArrayTool.binarySearch(child, c);
+        if (index < 0) return null;
+        BaseNode copy = copyOf(child[index]);
+        child[index] = copy;
+        return copy;
+    }
+
+    static BaseNode copyOf(BaseNode node)
+    {
+        BaseNode copy = new Node(node.c, node.status, node.value);
+        if (node.child != null) copy.child = node.child.clone();
+        return copy;
+    }
+
     protected boolean hasChild(char c)
     {
         return getChild(c) != null;
@@ -38,6 +38,13 @@ public class BinTrie<V> extends BaseNode<V> implements ITrie<V>, Externalizable
         status = Status.NOT_WORD_1;
     }
 
+    private BinTrie(BaseNode[] child, int size)
+    {
+        this.child = child;
+        this.size = size;
+        status = Status.NOT_WORD_1;
+    }
+
     public BinTrie(Map<String, V> map)
     {
         this();
@@ -119,6 +126,58 @@ public class BinTrie<V> extends BaseNode<V> implements ITrie<V>, Externalizable
         }
     }
 
+    /**
+     * 写时复制地插入一个词：返回插入后的新树，本树保持不变<br>
+     * 新树只复制首字数组和这个词经过的节点，其余节点与本树共享，所以本树可以同时被其他线程读取
+     *
+     * @param key   词语
+     * @param value 值
+     * @return 新树
+     */
+    public BinTrie<V> copyAndPut(String key, V value)
+    {
+        BinTrie<V> copy = copyPath(key);
+        copy.put(key, value);
+        return copy;
+    }
+
+    /**
+     * 写时复制地删除一个词：返回删除后的新树，本树保持不变
+     *
+     * @param key 词语
+     * @return 新树
+     */
+    public BinTrie<V> copyAndRemove(String key)
+    {
+        BinTrie<V> copy = copyPath(key);
+        copy.remove(key);
+        return copy;
+    }
+
+    /**
+     * 复制根节点以及key经过的节点
+     */
+    private BinTrie<V> copyPath(String key)
+    {
+        BinTrie<V> copy = new BinTrie<V>(child.clone(), size);
+        BaseNode branch = copy;
+        for (int i = 0; i < key.length() && branch != null; ++i)
+        {
+            branch = branch.copyChild(key.charAt(i));
+        }
+        return copy;
+    }
+
+    @Override
+    protected BaseNode copyChild(char c)
+    {
+        BaseNode target = child[c];
+        if (target == null) return null;
+        BaseNode copy = copyOf(target);
+        child[c] = copy;
+        return copy;
+    }
+
     public boolean containsKey(String key)
     {
         BaseNode branch = this;
@@ -411,10 +470,9 @@ public class BinTrie<V> extends BaseNode<V> implements ITrie<V>, Externalizable
      */
     public boolean load(String path, V[] value)
     {
-        byte[] bytes = IOUtil.readBytes(path);
-        if (bytes == null) return false;
+        ByteArray byteArray = ByteArray.createByteArray(path);
+        if (byteArray == null) return false;
         _ValueArray valueArray = new _ValueArray(value);
-        ByteArray byteArray = new ByteArray(bytes);
         for (int i = 0; i < child.length; ++i)
         {
             int flag = byteArray.nextInt();
@@ -437,10 +495,9 @@ public class BinTrie<V> extends BaseNode<V> implements ITrie<V>, Externalizable
      */
     public boolean load(String path)
     {
-        byte[] bytes = IOUtil.readBytes(path);
-        if (bytes == null) return false;
+        ByteArray byteArray = ByteArray.createByteArray(path);
+        if (byteArray == null) return false;
         _ValueArray valueArray = new _EmptyValueArray();
-        ByteArray byteArray = new ByteArray(bytes);
         for (int i = 0; i < child.length; ++i)
         {
             int flag = byteArray.nextInt();
@@ -11,8 +11,11 @@
  */
 package com.hankcs.hanlp.corpus.io;
 
+import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.utility.ByteUtil;
 
+import java.nio.ByteBuffer;
+
 import static com.hankcs.hanlp.utility.Predefine.logger;
 
 /**
@@ -44,6 +47,13 @@ public class ByteArray
      */
     public static ByteArray createByteArray(String path)
     {
+        IIOAdapter adapter = HanLP.Config.IOAdapter;
+        if (adapter instanceof PackIOAdapter)
+        {
+            // 词典包中的分区本身就是映射的，直接在上面读取，不复制到堆上
+            ByteBuffer section = ((PackIOAdapter) adapter).section(path);
+            if (section != null) return new ByteBufferArray(section);
+        }
         byte[] bytes = IOUtil.readBytes(path);
         if (bytes == null) return null;
         return new ByteArray(bytes);
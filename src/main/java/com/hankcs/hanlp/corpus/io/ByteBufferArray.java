@@ -0,0 +1,93 @@
+package com.hankcs.hanlp.corpus.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 在ByteBuffer（通常是映射的文件）上顺序读取，接口与{@link ByteArray}相同，但不把文件复制到堆上<br>
+ * 用来解码bin缓存中位于双数组之前的值，读完之后{@link #getOffset()}就是双数组的起点，双数组本身交给映射的trie树直接读取。
+ * 启用词典包时，{@link ByteArray#createByteArray(String)}也直接返回分区上的ByteBufferArray，各个模型与词典在映射上解码。
+ */
+public class ByteBufferArray extends ByteArray
+{
+    private final ByteBuffer buffer;
+
+    /**
+     * 从缓冲区的起点开始读取
+     *
+     * @param buffer 缓冲区，不会修改它的位置
+     */
+    public ByteBufferArray(ByteBuffer buffer)
+    {
+        super(null);
+        this.buffer = buffer.duplicate();
+        this.buffer.position(0);
+    }
+
+    @Override
+    public int nextInt()
+    {
+        return buffer.getInt();
+    }
+
+    @Override
+    public double nextDouble()
+    {
+        return buffer.getDouble();
+    }
+
+    @Override
+    public char nextChar()
+    {
+        return buffer.getChar();
+    }
+
+    @Override
+    public byte nextByte()
+    {
+        return buffer.get();
+    }
+
+    @Override
+    public float nextFloat()
+    {
+        return buffer.getFloat();
+    }
+
+    @Override
+    public boolean hasMore()
+    {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * 下一个字节在缓冲区中的位置
+     */
+    @Override
+    public int getOffset()
+    {
+        return buffer.position();
+    }
+
+    @Override
+    public int getLength()
+    {
+        return buffer.limit();
+    }
+
+    /**
+     * 字节不在堆上，不支持
+     */
+    @Override
+    public byte[] getBytes()
+    {
+        throw new UnsupportedOperationException("映射的字节不在堆上");
+    }
+
+    /**
+     * 映射的缓冲区
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+}
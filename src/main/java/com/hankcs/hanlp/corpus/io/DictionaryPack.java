@@ -0,0 +1,405 @@
+package com.hankcs.hanlp.corpus.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 词典包<br>
+ * 把编译好的词典缓存（.bin、.dat、.map）、转移矩阵等数据文件打包成一个可以内存映射的文件，启动时只需映射一次，
+ * 各个词典在第一次读取时才得到自己的分区视图，不再逐个打开几十个文件。文件格式（大端）：<br>
+ * MAGIC, 版本, 分区个数n, n个(名称, 偏移, 长度, CRC32), 按8字节对齐的各个分区<br>
+ * 分区的名称是数据文件相对于HanLP根目录的路径，比如data/dictionary/CoreNatureDictionary.txt.bin。
+ * 每个分区在第一次被读取时校验CRC32，损坏的分区被当作不存在。<br>
+ * 打包工具见{@link #main(String[])}，启用方法是在hanlp.properties中配置DictionaryPackPath。
+ */
+public class DictionaryPack
+{
+    /**
+     * 文件头魔数
+     */
+    private static final int MAGIC = 0x48504143;  // HPAC
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * 映射的整个文件
+     */
+    private final ByteBuffer buffer;
+    /**
+     * 分区名称 -> 分区
+     */
+    private final Map<String, Section> sectionMap;
+    /**
+     * 是否校验CRC32
+     */
+    private final boolean verify;
+
+    private DictionaryPack(ByteBuffer buffer, Map<String, Section> sectionMap, boolean verify)
+    {
+        this.buffer = buffer;
+        this.sectionMap = sectionMap;
+        this.verify = verify;
+    }
+
+    /**
+     * 映射一个词典包，第一次读取每个分区时校验
+     *
+     * @param path 词典包路径（必须是本地文件）
+     * @return 词典包，失败时返回null
+     */
+    public static DictionaryPack open(String path)
+    {
+        return open(path, true);
+    }
+
+    /**
+     * 映射一个词典包
+     *
+     * @param path   词典包路径（必须是本地文件）
+     * @param verify 是否校验CRC32
+     * @return 词典包，失败时返回null
+     */
+    public static DictionaryPack open(String path, boolean verify)
+    {
+        ByteBuffer buffer = IOUtil.mapFile(path);
+        if (buffer == null) return null;
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            int count = in.readInt();
+            Map<String, Section> sectionMap = new HashMap<String, Section>(count * 2);
+            for (int i = 0; i < count; ++i)
+            {
+                String name = in.readUTF();
+                long offset = in.readLong();
+                long length = in.readLong();
+                long crc = in.readLong();
+                if (offset < 0 || length < 0 || offset + length > buffer.capacity()) return null;
+                sectionMap.put(name, new Section((int) offset, (int) length, crc));
+            }
+            return new DictionaryPack(buffer, sectionMap, verify);
+        }
+        catch (Exception e)
+        {
+            logger.warning("读取词典包" + path + "的目录失败" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 是否包含某个分区
+     *
+     * @param name 分区名称
+     * @return 是否包含
+     */
+    public boolean contains(String name)
+    {
+        return sectionMap.containsKey(name);
+    }
+
+    /**
+     * 获取一个分区的只读视图（不复制数据）
+     *
+     * @param name 分区名称
+     * @return 从0开始、长度为分区大小的缓冲区，不存在或校验失败时返回null
+     */
+    public ByteBuffer section(String name)
+    {
+        Section section = sectionMap.get(name);
+        if (section == null) return null;
+        ByteBuffer view = buffer.duplicate();
+        view.position(section.offset);
+        view.limit(section.offset + section.length);
+        view = view.slice();
+        if (verify && !section.verified)
+        {
+            if (crc32(view.duplicate()) != section.crc)
+            {
+                logger.warning("词典包中的" + name + "校验失败，已忽略");
+                return null;
+            }
+            section.verified = true;
+        }
+        return view.asReadOnlyBuffer();
+    }
+
+    /**
+     * 以输入流的形式读取一个分区
+     *
+     * @param name 分区名称
+     * @return 输入流，不存在或校验失败时返回null
+     */
+    public InputStream openSection(String name)
+    {
+        ByteBuffer view = section(name);
+        if (view == null) return null;
+        return new ByteBufferInputStream(view);
+    }
+
+    /**
+     * 所有分区的名称
+     */
+    public Set<String> names()
+    {
+        return Collections.unmodifiableSet(sectionMap.keySet());
+    }
+
+    /**
+     * 分区个数
+     */
+    public int size()
+    {
+        return sectionMap.size();
+    }
+
+    /**
+     * 将一些数据文件打包
+     *
+     * @param root   HanLP根目录
+     * @param names  相对于根目录的路径，也是分区的名称
+     * @param output 输出的词典包路径
+     * @throws IOException 任何IO异常
+     */
+    public static void pack(String root, Collection<String> names, String output) throws IOException
+    {
+        List<String> nameList = new ArrayList<String>(names);
+        Collections.sort(nameList);
+        long[] length = new long[nameList.size()];
+        long[] crc = new long[nameList.size()];
+        // 先算出目录的长度
+        ByteArrayOutputStream toc = new ByteArrayOutputStream();
+        DataOutputStream tocOut = new DataOutputStream(toc);
+        for (String name : nameList)
+        {
+            tocOut.writeUTF(name);
+            tocOut.writeLong(0);
+            tocOut.writeLong(0);
+            tocOut.writeLong(0);
+        }
+        long offset = align(12 + toc.size());
+        long[] begin = new long[nameList.size()];
+        for (int i = 0; i < nameList.size(); ++i)
+        {
+            File file = new File(root, nameList.get(i));
+            if (!file.isFile()) throw new FileNotFoundException(file.getPath());
+            begin[i] = offset;
+            length[i] = file.length();
+            crc[i] = crc32(file);
+            offset = align(offset + length[i]);
+        }
+        if (offset > Integer.MAX_VALUE) throw new IOException("词典包超过2G");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nameList.size());
+            for (int i = 0; i < nameList.size(); ++i)
+            {
+                out.writeUTF(nameList.get(i));
+                out.writeLong(begin[i]);
+                out.writeLong(length[i]);
+                out.writeLong(crc[i]);
+            }
+            long written = out.size();
+            byte[] buffer = new byte[1 << 16];
+            for (int i = 0; i < nameList.size(); ++i)
+            {
+                for (; written < begin[i]; ++written) out.write(0);
+                InputStream in = new FileInputStream(new File(root, nameList.get(i)));
+                try
+                {
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                    {
+                        out.write(buffer, 0, read);
+                        written += read;
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * 列出一个目录下所有可以打包的数据文件
+     *
+     * @param root 根目录
+     * @param dir  相对于根目录的子目录，比如data
+     * @return 相对于根目录的路径
+     */
+    public static List<String> list(String root, String dir)
+    {
+        List<String> nameList = new LinkedList<String>();
+        list(new File(root), dir, nameList);
+        return nameList;
+    }
+
+    private static void list(File root, String dir, List<String> nameList)
+    {
+        File[] files = new File(root, dir).listFiles();
+        if (files == null) return;
+        for (File file : files)
+        {
+            String name = dir + '/' + file.getName();
+            if (file.isDirectory()) list(root, name, nameList);
+            else if (file.isFile()) nameList.add(name);
+        }
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static long crc32(ByteBuffer buffer)
+    {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = new byte[1 << 16];
+        while (buffer.hasRemaining())
+        {
+            int length = Math.min(bytes.length, buffer.remaining());
+            buffer.get(bytes, 0, length);
+            crc32.update(bytes, 0, length);
+        }
+        return crc32.getValue();
+    }
+
+    private static long crc32(File file) throws IOException
+    {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = new byte[1 << 16];
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            int read;
+            while ((read = in.read(bytes)) != -1)
+            {
+                crc32.update(bytes, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc32.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DictionaryPack{size=" + size() + ", bytes=" + buffer.capacity() + '}';
+    }
+
+    /**
+     * 打包工具<br>
+     * 用法：DictionaryPack HanLP根目录 输出路径 [子目录...]，子目录默认为data。
+     * 请先正常运行一次HanLP，让各个词典生成缓存，再打包。
+     *
+     * @param args 参数
+     * @throws IOException 任何IO异常
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("用法：DictionaryPack HanLP根目录 输出路径 [子目录...]");
+            return;
+        }
+        String root = args[0];
+        List<String> nameList = new ArrayList<String>();
+        if (args.length == 2)
+        {
+            nameList.addAll(list(root, "data"));
+        }
+        else
+        {
+            for (int i = 2; i < args.length; ++i)
+            {
+                nameList.addAll(list(root, args[i]));
+            }
+        }
+        long start = System.currentTimeMillis();
+        pack(root, nameList, args[1]);
+        System.out.printf("打包了%d个文件到%s，耗时%dms\n", nameList.size(), args[1], System.currentTimeMillis() - start);
+    }
+
+    private static class Section
+    {
+        final int offset;
+        final int length;
+        final long crc;
+        volatile boolean verified;
+
+        Section(int offset, int length, long crc)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * 基于ByteBuffer的输入流
+     */
+    static class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        /**
+         * 尚未读取的部分（不复制）
+         */
+        ByteBuffer remaining()
+        {
+            return buffer.slice();
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
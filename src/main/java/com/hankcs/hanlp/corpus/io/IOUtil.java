@@ -180,6 +180,8 @@ public class IOUtil
             InputStream is = IOAdapter.open(path);
             if (is instanceof FileInputStream)
                 return readBytesFromFileInputStream((FileInputStream) is);
+            else if (is instanceof DictionaryPack.ByteBufferInputStream)
+                return readBytesFromByteBuffer(((DictionaryPack.ByteBufferInputStream) is).remaining());
             else
                 return readBytesFromOtherInputStream(is);
         }
@@ -191,6 +193,81 @@ public class IOUtil
         return null;
     }
 
+    /**
+     * 将ByteBuffer中剩余的数据一次性复制到字节数组中
+     *
+     * @param buffer
+     * @return
+     */
+    private static byte[] readBytesFromByteBuffer(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 以只读方式映射一个本地文件，映射在文件关闭之后依然有效
+     *
+     * @param path 本地文件路径
+     * @return 映射的缓冲区，文件不存在、超过2G或映射失败时返回null
+     */
+    public static ByteBuffer mapFile(String path)
+    {
+        File file = new File(path);
+        if (!file.isFile()) return null;
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE)
+            {
+                logger.warning(path + "超过2G，无法映射");
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        catch (Exception e)
+        {
+            logger.warning("映射文件" + path + "失败" + e);
+            return null;
+        }
+        finally
+        {
+            if (raf != null)
+            {
+                try
+                {
+                    raf.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * 经过IO适配器映射一个文件：词典包中的分区本身就是映射的，本地文件现场映射，其他适配器无法映射
+     *
+     * @param path 文件路径
+     * @return 只读缓冲区，无法映射时返回null
+     */
+    public static ByteBuffer map(String path)
+    {
+        IIOAdapter adapter = IOAdapter;
+        if (adapter instanceof PackIOAdapter)
+        {
+            ByteBuffer section = ((PackIOAdapter) adapter).section(path);
+            if (section != null) return section;
+            adapter = ((PackIOAdapter) adapter).getFallback();
+        }
+        if (adapter != null && !(adapter instanceof FileIOAdapter)) return null;
+        return mapFile(path);
+    }
+
     public static String readTxt(String file, String charsetName) throws IOException
     {
         InputStream is = IOAdapter.open(file);
@@ -0,0 +1,88 @@
+package com.hankcs.hanlp.corpus.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 从词典包读取的IO适配器<br>
+ * 读取时先在词典包中查找，找不到再交给后备的适配器；写入（比如生成缓存）总是交给后备的适配器。
+ */
+public class PackIOAdapter implements IIOAdapter
+{
+    private final DictionaryPack pack;
+    /**
+     * HanLP根目录，路径去掉这个前缀后就是分区名称
+     */
+    private final String root;
+    private final IIOAdapter fallback;
+
+    /**
+     * 构造一个适配器
+     *
+     * @param pack     词典包
+     * @param root     HanLP根目录（配置文件中的root）
+     * @param fallback 后备的适配器，null表示本地文件系统
+     */
+    public PackIOAdapter(DictionaryPack pack, String root, IIOAdapter fallback)
+    {
+        this.pack = pack;
+        root = root == null ? "" : root.replace('\\', '/');
+        if (root.length() > 0 && !root.endsWith("/")) root += '/';
+        this.root = root;
+        this.fallback = fallback == null ? new FileIOAdapter() : fallback;
+    }
+
+    /**
+     * 路径对应的分区名称
+     *
+     * @param path 路径
+     * @return 分区名称
+     */
+    public String nameOf(String path)
+    {
+        String name = path.replace('\\', '/');
+        if (name.startsWith(root)) name = name.substring(root.length());
+        while (name.startsWith("./")) name = name.substring(2);
+        return name;
+    }
+
+    /**
+     * 获取一个路径对应的分区视图
+     *
+     * @param path 路径
+     * @return 只读缓冲区，不在词典包中时返回null
+     */
+    public ByteBuffer section(String path)
+    {
+        return pack.section(nameOf(path));
+    }
+
+    public DictionaryPack getPack()
+    {
+        return pack;
+    }
+
+    /**
+     * 后备的适配器
+     */
+    public IIOAdapter getFallback()
+    {
+        return fallback;
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException
+    {
+        InputStream in = pack.openSection(nameOf(path));
+        if (in != null) return in;
+        return fallback.open(path);
+    }
+
+    @Override
+    public OutputStream create(String path) throws IOException
+    {
+        return fallback.create(path);
+    }
+}
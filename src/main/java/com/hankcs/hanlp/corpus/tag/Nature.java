@@ -762,23 +762,27 @@ public class Nature
      */
     public static final Nature begin = new Nature("begin");
 
-    private static TreeMap<String, Integer> idMap;
-    private static Nature[] values;
+    /**
+     * 写时复制，读取无需加锁；创建新词性时先发布values再发布idMap
+     */
+    private static volatile TreeMap<String, Integer> idMap;
+    private static volatile Nature[] values;
     private int ordinal;
     private final String name;
 
     private Nature(String name)
     {
-        if (idMap == null) idMap = new TreeMap<String, Integer>();
-        assert !idMap.containsKey(name);
+        TreeMap<String, Integer> newIdMap = idMap == null ? new TreeMap<String, Integer>() : new TreeMap<String, Integer>(idMap);
+        assert !newIdMap.containsKey(name);
         this.name = name;
-        ordinal = idMap.size();
-        idMap.put(name, ordinal);
-        Nature[] extended = new Nature[idMap.size()];
+        ordinal = newIdMap.size();
+        newIdMap.put(name, ordinal);
+        Nature[] extended = new Nature[newIdMap.size()];
         if (values != null)
             System.arraycopy(values, 0, extended, 0, values.length);
         extended[ordinal] = this;
         values = extended;
+        idMap = newIdMap;
     }
 
     /**
@@ -836,7 +840,7 @@ public class Nature
      * @param name 字符串词性
      * @return Enum词性
      */
-    public static final Nature create(String name)
+    public static synchronized Nature create(String name)
     {
         Nature nature = fromString(name);
         if (nature == null)
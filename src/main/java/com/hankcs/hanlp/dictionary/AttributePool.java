@@ -0,0 +1,147 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.tag.Nature;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 词条属性的驻留池<br>
+ * 词典里绝大多数词语的属性（词性与词频的组合）都落在几千种“签名”之内，比如用户词典中大量的“nz 1”。
+ * 驻留池按签名去重，每种签名只对应一个{@link CoreDictionary.Attribute}享元，
+ * 签名相同的词语共享同一个享元，不再各自持有一份属性对象和两个数组。<br>
+ * 驻留池只在一次词典加载期间使用，加载完毕即可丢弃，享元由词典继续持有；多个线程可以同时驻留。<br>
+ * 享元是共享的，不应修改其中的词性或词频；词典公开的查询方法返回的是副本，见{@link CoreDictionary.Attribute}。
+ */
+public class AttributePool
+{
+    /**
+     * 签名 -> 享元
+     */
+    private final ConcurrentHashMap<Signature, CoreDictionary.Attribute> map = new ConcurrentHashMap<Signature, CoreDictionary.Attribute>();
+
+    /**
+     * 驻留一个属性
+     *
+     * @param value 属性
+     * @return 签名相同的享元（第一次出现时就是value本身）
+     */
+    public CoreDictionary.Attribute intern(CoreDictionary.Attribute value)
+    {
+        if (value == null) return null;
+        int natureCount = value.nature.length;
+        int[] record = new int[2 + 2 * natureCount];
+        record[0] = value.totalFrequency;
+        record[1] = natureCount;
+        for (int i = 0; i < natureCount; ++i)
+        {
+            if (value.nature[i] == null) return value;  // 尚未填写完整的属性不参与驻留
+            record[2 + 2 * i] = value.nature[i].ordinal();
+            record[3 + 2 * i] = value.frequency[i];
+        }
+        Signature signature = new Signature(record);
+        CoreDictionary.Attribute shared = map.get(signature);
+        if (shared != null) return shared;
+        shared = map.putIfAbsent(signature, value);
+        return shared == null ? value : shared;
+    }
+
+    /**
+     * 从字节流中读入一个属性并驻留，签名已存在时不创建属性对象
+     *
+     * @param byteArray        字节流，格式为全部频次、词性个数、(词性编号, 词频)*词性个数
+     * @param natureIndexArray 词性编号到词性的映射
+     * @return 享元
+     */
+    public CoreDictionary.Attribute read(ByteArray byteArray, Nature[] natureIndexArray)
+    {
+        int totalFrequency = byteArray.nextInt();
+        int natureCount = byteArray.nextInt();
+        int[] record = new int[2 + 2 * natureCount];
+        record[0] = totalFrequency;
+        record[1] = natureCount;
+        for (int i = 2; i < record.length; ++i)
+        {
+            record[i] = byteArray.nextInt();
+        }
+        return resolve(record, natureIndexArray);
+    }
+
+    /**
+     * 从int缓冲区中读入一个属性并驻留，签名已存在时不创建属性对象
+     *
+     * @param buffer           缓冲区，格式为全部频次、词性个数、(词性编号, 词频)*词性个数
+     * @param offset           属性的起点
+     * @param natureIndexArray 词性编号到词性的映射
+     * @return 享元
+     */
+    public CoreDictionary.Attribute read(IntBuffer buffer, int offset, Nature[] natureIndexArray)
+    {
+        int[] record = new int[2 + 2 * buffer.get(offset + 1)];
+        for (int i = 0; i < record.length; ++i)
+        {
+            record[i] = buffer.get(offset + i);
+        }
+        return resolve(record, natureIndexArray);
+    }
+
+    /**
+     * 不同签名的个数
+     */
+    public int size()
+    {
+        return map.size();
+    }
+
+    private CoreDictionary.Attribute resolve(int[] record, Nature[] natureIndexArray)
+    {
+        Signature signature = new Signature(record);
+        CoreDictionary.Attribute shared = map.get(signature);
+        if (shared != null) return shared;
+        int natureCount = record[1];
+        CoreDictionary.Attribute value = new CoreDictionary.Attribute(natureCount);
+        value.totalFrequency = record[0];
+        for (int i = 0; i < natureCount; ++i)
+        {
+            value.nature[i] = natureIndexArray[record[2 + 2 * i]];
+            value.frequency[i] = record[3 + 2 * i];
+        }
+        shared = map.putIfAbsent(signature, value);
+        return shared == null ? value : shared;
+    }
+
+    /**
+     * 签名：全部频次、词性个数、(词性编号, 词频)*词性个数
+     */
+    private static final class Signature
+    {
+        final int[] record;
+        final int hash;
+
+        Signature(int[] record)
+        {
+            this.record = record;
+            this.hash = Arrays.hashCode(record);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Signature && Arrays.equals(record, ((Signature) o).record);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AttributePool{size=" + size() + '}';
+    }
+}
@@ -0,0 +1,435 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.MappedDoubleArrayTrie;
+
+import com.hankcs.hanlp.seg.SegmentExecutor;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 核心词典与用户词典合并而成的双数组Trie树<br>
+ * 分别查询时，生成词网要用核心词典扫描一遍句子，强制使用用户词典时再用用户词典扫描一遍，粗分之后合并用户词语时还要沿着路径再查一遍用户词典。
+ * 合并词典中的每个词条都标记了来源（核心词典、用户词典或两者皆是），从左到右扫描一遍就得到词网的全部候选，
+ * 用户词典的命中记录在{@link Scan}中供粗分之后的合并使用，各阶段的优先级与分别查询时完全相同。<br>
+ * 之所以不用AhoCorasick自动机，是因为词网需要按起点排列的命中，而自动机按终点报告；
+ * 况且对十几万词条的词典，失败跳转与输出表的访存比从每个起点走几步双数组还要慢。<br>
+ * 合并词典只收录用户词典的主词典（DAT），动态插入的词条随时会变，仍然单独查询；用户词语的值在命中时从快照中读取，所以删除的词条照常被过滤。
+ * 合并词典在后台线程中构建，分词线程从不等待：构建完成之前照常分别查询两个词典，结果相同。
+ * 用户词典的主词典重新加载或合并动态词条后，新的合并词典同样在后台构建；也可以在预热阶段调用{@link #prepare(DoubleArrayTrie)}同步构建。
+ * 映射的词典不参与合并，合并词典本身在堆上，映射就失去了意义。
+ */
+public class CombinedDictionary
+{
+    /**
+     * 词条来自核心词典
+     */
+    public static final byte CORE = 1;
+    /**
+     * 词条来自用户词典
+     */
+    public static final byte CUSTOM = 2;
+
+    /**
+     * 已构建的合并词典，通常只有默认用户词典的那一个
+     */
+    private static final List<CombinedDictionary> cache = new LinkedList<CombinedDictionary>();
+    /**
+     * 正在后台构建的用户词典，键同{@link #custom}
+     */
+    private static final Map<Object, Boolean> building = new IdentityHashMap<Object, Boolean>();
+    /**
+     * 后台构建用的线程，空闲时自动退出
+     */
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * 构建时的核心词典
+     */
+    private final WeakReference<DoubleArrayTrie<CoreDictionary.Attribute>> core;
+    /**
+     * 构建时用户词典的base数组，写时复制的副本（增删词语产生的快照）与原词典共享同一个数组
+     */
+    private final WeakReference<Object> custom;
+    /**
+     * 值为来源
+     */
+    private final DoubleArrayTrie<Byte> trie;
+    /**
+     * 词条在核心词典中的下标，不在核心词典中时为-1
+     */
+    private final int[] coreIndex;
+    /**
+     * 词条在用户词典中的下标，不在用户词典中时为-1
+     */
+    private final int[] customIndex;
+
+    private CombinedDictionary(DoubleArrayTrie<CoreDictionary.Attribute> core, DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        // 两个词典的词条都是有序的，归并即可
+        List<Map.Entry<String, CoreDictionary.Attribute>> coreList = core.entryList();
+        // 已删除（值为null）的词条也收录，写时复制的副本可能重新设置它的值
+        List<Map.Entry<String, CoreDictionary.Attribute>> customList = custom.entryList();
+        List<String> keyList = new ArrayList<String>(coreList.size() + customList.size());
+        List<Byte> sourceList = new ArrayList<Byte>(coreList.size() + customList.size());
+        int i = 0, j = 0;
+        while (i < coreList.size() || j < customList.size())
+        {
+            int cmp = i == coreList.size() ? 1 : j == customList.size() ? -1 : coreList.get(i).getKey().compareTo(customList.get(j).getKey());
+            if (cmp <= 0)
+            {
+                keyList.add(coreList.get(i++).getKey());
+                sourceList.add(cmp == 0 ? (byte) (CORE | CUSTOM) : CORE);
+                if (cmp == 0) ++j;
+            }
+            else
+            {
+                keyList.add(customList.get(j++).getKey());
+                sourceList.add(CUSTOM);
+            }
+        }
+        trie = new DoubleArrayTrie<Byte>();
+        trie.build(keyList, sourceList);
+        coreIndex = new int[keyList.size()];
+        customIndex = new int[keyList.size()];
+        for (i = 0; i < keyList.size(); ++i)
+        {
+            byte source = sourceList.get(i);
+            coreIndex[i] = (source & CORE) == 0 ? -1 : core.exactMatchSearch(keyList.get(i));
+            customIndex[i] = (source & CUSTOM) == 0 ? -1 : custom.exactMatchSearch(keyList.get(i));
+        }
+        this.core = new WeakReference<DoubleArrayTrie<CoreDictionary.Attribute>>(core);
+        this.custom = new WeakReference<Object>(keyOf(custom));
+    }
+
+    private static Object keyOf(DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        int[] base = custom.getBase();
+        return base == null ? custom : base;
+    }
+
+    private static boolean supported(DoubleArrayTrie<CoreDictionary.Attribute> core, DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        return !(core instanceof MappedDoubleArrayTrie || custom instanceof MappedDoubleArrayTrie || core.size() == 0);
+    }
+
+    /**
+     * 在缓存中查找，顺便清理过时的合并词典。调用时须持有cache的锁
+     */
+    private static CombinedDictionary find(DoubleArrayTrie<CoreDictionary.Attribute> core, Object key)
+    {
+        Iterator<CombinedDictionary> iterator = cache.iterator();
+        while (iterator.hasNext())
+        {
+            CombinedDictionary combined = iterator.next();
+            Object combinedCore = combined.core.get();
+            Object combinedCustom = combined.custom.get();
+            if (combinedCore != core || combinedCustom == null)
+            {
+                iterator.remove();  // 过时了
+            }
+            else if (combinedCustom == key)
+            {
+                return combined;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取当前核心词典与某个用户词典的合并词典，不会阻塞<br>
+     * 尚未构建时安排后台线程构建并返回null，调用者在构建完成之前照常分别查询两个词典。
+     *
+     * @param custom 用户词典的主词典，一般是{@link DynamicCustomDictionary.Snapshot#dat}
+     * @return 合并词典，尚未构建好、核心词典未加载或是映射的时返回null
+     */
+    public static CombinedDictionary of(DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> core = CoreDictionary.trie;
+        if (!supported(core, custom)) return null;
+        synchronized (cache)
+        {
+            CombinedDictionary combined = find(core, keyOf(custom));
+            if (combined == null) buildInBackground(custom);
+            return combined;
+        }
+    }
+
+    /**
+     * 在当前线程中构建合并词典（约需一两秒），已经构建过时直接返回，适合在预热阶段调用
+     *
+     * @param custom 用户词典的主词典，一般是{@link DynamicCustomDictionary.Snapshot#dat}
+     * @return 合并词典，核心词典未加载或是映射的时返回null
+     */
+    public static CombinedDictionary prepare(DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> core = CoreDictionary.trie;
+        if (!supported(core, custom)) return null;
+        Object key = keyOf(custom);
+        synchronized (cache)
+        {
+            CombinedDictionary combined = find(core, key);
+            if (combined != null) return combined;
+        }
+        // 构建不持有锁，其他线程照常查询
+        long start = System.currentTimeMillis();
+        CombinedDictionary combined = new CombinedDictionary(core, custom);
+        synchronized (cache)
+        {
+            CombinedDictionary existing = find(core, key);
+            if (existing != null) return existing;
+            if (CoreDictionary.trie != core) return combined;  // 构建期间核心词典换了，不缓存
+            cache.add(combined);
+        }
+        logger.info("合并词典构建完毕，" + combined.size() + "个词条，耗时" + (System.currentTimeMillis() - start) + "ms");
+        return combined;
+    }
+
+    /**
+     * 用户词典发布了新的主词典（重新加载或合并了动态词条），如果旧的主词典用过合并词典，就在后台为新的主词典构建，
+     * 构建完成之前分词照常分别查询两个词典
+     *
+     * @param previous 旧的主词典
+     * @param current  新的主词典
+     */
+    static void onPublish(DoubleArrayTrie<CoreDictionary.Attribute> previous, DoubleArrayTrie<CoreDictionary.Attribute> current)
+    {
+        if (previous == null || keyOf(previous) == keyOf(current)) return;
+        synchronized (cache)
+        {
+            if (cache.isEmpty()) return;
+            DoubleArrayTrie<CoreDictionary.Attribute> core = CoreDictionary.trie;
+            if (supported(core, current) && find(core, keyOf(previous)) != null) buildInBackground(current);
+        }
+    }
+
+    /**
+     * 安排后台线程构建，同一个主词典只排一次。调用时须持有cache的锁
+     */
+    private static void buildInBackground(final DoubleArrayTrie<CoreDictionary.Attribute> custom)
+    {
+        final Object key = keyOf(custom);
+        if (building.containsKey(key)) return;
+        building.put(key, Boolean.TRUE);
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                              SegmentExecutor.newThreadFactory("HanLP-CombinedDictionary-"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    prepare(custom);
+                }
+                catch (Exception e)
+                {
+                    logger.warning("合并词典构建失败，继续分别查询两个词典" + e);
+                }
+                finally
+                {
+                    synchronized (cache)
+                    {
+                        building.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 为用户词典的某个快照准备一次扫描
+     *
+     * @param dictionary 用户词典快照
+     * @return 尚未扫描的结果，不支持合并时返回null
+     */
+    public static Scan newScan(DynamicCustomDictionary.Snapshot dictionary)
+    {
+        CombinedDictionary combined = of(dictionary.dat);
+        if (combined == null) return null;
+        return combined.new Scan(combined.core.get(), dictionary.dat);
+    }
+
+    /**
+     * 词条数量
+     */
+    public int size()
+    {
+        return coreIndex.length;
+    }
+
+    /**
+     * 一个句子的扫描结果<br>
+     * 命中按起点升序、同一起点按长度升序排列，与分别用双数组查询时的顺序相同，所以加入词网的先后（也就是同长度词语的优先级）不变。
+     */
+    public final class Scan
+    {
+        private final DoubleArrayTrie<CoreDictionary.Attribute> core;
+        /**
+         * 快照中的主词典，提供用户词语当前的值
+         */
+        private final DoubleArrayTrie<CoreDictionary.Attribute> custom;
+        private int textLength;
+        /**
+         * 起点为position的命中是[from[position], from[position + 1])
+         */
+        private int[] from;
+        private int[] length;
+        private int[] index;
+        private int size;
+
+        private Scan(DoubleArrayTrie<CoreDictionary.Attribute> core, DoubleArrayTrie<CoreDictionary.Attribute> custom)
+        {
+            this.core = core;
+            this.custom = custom;
+        }
+
+        /**
+         * 扫描一个句子
+         *
+         * @param text 句子
+         */
+        public void scan(char[] text)
+        {
+            textLength = text.length;
+            final int[] from = new int[text.length + 2];
+            final int[][] buffer = new int[][]{new int[Math.max(16, text.length * 2)], new int[Math.max(16, text.length * 2)]};
+            final int[] filled = new int[1];
+            size = 0;
+            trie.parseText(text, 0, text.length, new DoubleArrayTrie.IHitIndex()
+            {
+                @Override
+                public void hit(int begin, int end, int index)
+                {
+                    // 命中按起点升序到达，顺便建立起点的索引
+                    while (filled[0] <= begin) from[filled[0]++] = size;
+                    if (size == buffer[0].length)
+                    {
+                        buffer[0] = Arrays.copyOf(buffer[0], size * 2);
+                        buffer[1] = Arrays.copyOf(buffer[1], size * 2);
+                    }
+                    buffer[0][size] = end - begin;
+                    buffer[1][size] = index;
+                    ++size;
+                }
+            });
+            while (filled[0] < from.length) from[filled[0]++] = size;
+            this.from = from;
+            this.length = buffer[0];
+            this.index = buffer[1];
+        }
+
+        /**
+         * 被扫描的句子的长度
+         */
+        public int textLength()
+        {
+            return textLength;
+        }
+
+        /**
+         * 命中总数
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * 起点为position的第一个命中
+         */
+        public int from(int position)
+        {
+            return from[position];
+        }
+
+        /**
+         * 起点为position的最后一个命中之后
+         */
+        public int to(int position)
+        {
+            return from[position + 1];
+        }
+
+        /**
+         * 第i个命中的长度
+         */
+        public int length(int i)
+        {
+            return length[i];
+        }
+
+        /**
+         * 第i个命中的来源，{@link #CORE}与{@link #CUSTOM}的组合
+         */
+        public byte source(int i)
+        {
+            return trie.get(index[i]);
+        }
+
+        /**
+         * 第i个命中是否在核心词典中
+         */
+        public boolean isCore(int i)
+        {
+            return coreIndex[index[i]] >= 0;
+        }
+
+        /**
+         * 第i个命中在核心词典中的下标，不在时为-1
+         */
+        public int coreIndex(int i)
+        {
+            return coreIndex[index[i]];
+        }
+
+        /**
+         * 第i个命中在核心词典中的属性
+         */
+        public CoreDictionary.Attribute coreValue(int i)
+        {
+            int k = coreIndex[index[i]];
+            return k < 0 ? null : core.get(k);
+        }
+
+        /**
+         * 第i个命中在用户词典（快照）中的属性，不在用户词典中或已删除时为null
+         */
+        public CoreDictionary.Attribute customValue(int i)
+        {
+            int k = customIndex[index[i]];
+            return k < 0 ? null : custom.get(k);
+        }
+
+        /**
+         * 报告用户词典（不含动态插入的词条）在某个区间内的全部命中，顺序与{@link DynamicCustomDictionary.Snapshot#parseText(char[], int, int, AhoCorasickDoubleArrayTrie.IHit)}中DAT的部分相同
+         *
+         * @param begin     区间的起点（包含）
+         * @param end       区间的终点（不包含）
+         * @param processor 处理器
+         */
+        public void parseCustomText(int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            for (int position = begin; position < end; ++position)
+            {
+                for (int i = from[position]; i < from[position + 1]; ++i)
+                {
+                    if (position + length[i] > end) break;
+                    CoreDictionary.Attribute value = customValue(i);
+                    if (value != null) processor.hit(position, position + length[i], value);
+                }
+            }
+        }
+    }
+}
@@ -39,6 +39,23 @@ public class CoreBiGramTableDictionary
      * pair[偶数n]表示key，pair[n+1]表示frequency
      */
     static int pair[];
+    /**
+     * 开放定址哈希表，仅在{@link HanLP.Config#BiGramHashTable}时使用<br>
+     * 每个槽是一个long：高位为(idA + 1, idB)拼成的键，低{@link #valueBits}位为频次，0表示空槽
+     */
+    static long hashTable[];
+    /**
+     * 词语id占的位数
+     */
+    private static int idBits;
+    /**
+     * 频次占的位数
+     */
+    private static int valueBits;
+    /**
+     * 哈希表的装填因子
+     */
+    private static final double LOAD_FACTOR = 0.8;
 
     static
     {
@@ -59,6 +76,7 @@ public class CoreBiGramTableDictionary
     {
         String datPath = HanLP.Config.BiGramDictionaryPath + ".table" + Predefine.BIN_EXT;
         if (loadDat(datPath)) return true;
+        hashTable = null;
         BufferedReader br;
         TreeMap<Integer, TreeMap<Integer, Integer>> map = new TreeMap<Integer, TreeMap<Integer, Integer>>();
         try
@@ -118,6 +136,10 @@ public class CoreBiGramTableDictionary
                 start[i + 1] = offset;
             }
 
+            if (HanLP.Config.BiGramHashTable && !buildHashTable())
+            {
+                logger.warning("频次超出了哈希表的表示范围，二元词典将使用二分结构");
+            }
             logger.info("二元词典读取完毕:" + path + "，构建为TableBin结构");
         }
         catch (FileNotFoundException e)
@@ -135,9 +157,90 @@ public class CoreBiGramTableDictionary
         {
             logger.warning("缓存二元词典到" + datPath + "失败");
         }
+        if (hashTable != null) pair = null;   // 哈希表模式下二分结构不再需要
+        return true;
+    }
+
+    /**
+     * 由start与pair构建开放定址（线性探查）哈希表
+     *
+     * @return 是否成功（频次太大、无法与键一起装进一个long时失败）
+     */
+    private static boolean buildHashTable()
+    {
+        if (!updateBits()) return false;
+        long maxValue = 1L << valueBits;
+        int size = pair.length / 2;
+        int capacity = (int) (size / LOAD_FACTOR) + 1;
+        long[] table = new long[capacity];
+        for (int idA = 0; idA < start.length - 1; ++idA)
+        {
+            for (int offset = start[idA]; offset < start[idA + 1]; ++offset)
+            {
+                int frequency = pair[(offset << 1) + 1];
+                if (frequency < 0 || frequency >= maxValue) return false;
+                long key = packKey(idA, pair[offset << 1]);
+                int i = slotOf(key, capacity);
+                while (table[i] != 0)
+                {
+                    if (++i == capacity) i = 0;
+                }
+                table[i] = (key << valueBits) | frequency;
+            }
+        }
+        hashTable = table;
         return true;
     }
 
+    /**
+     * 根据词语个数计算键与值各占的位数
+     *
+     * @return 是否还有位置留给频次
+     */
+    private static boolean updateBits()
+    {
+        int wordCount = start.length - 1;
+        idBits = Math.max(1, 64 - Long.numberOfLeadingZeros(wordCount));   // idA + 1 <= wordCount
+        valueBits = 64 - 2 * idBits;
+        return valueBits > 0;
+    }
+
+    private static long packKey(int idA, int idB)
+    {
+        return ((long) (idA + 1) << idBits) | idB;
+    }
+
+    /**
+     * 将键散列到[0, capacity)，先用MurmurHash3的finalizer打散，再用乘法代替取模
+     */
+    private static int slotOf(long key, int capacity)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) (((key >>> 33) * capacity) >>> 31);
+    }
+
+    /**
+     * 在哈希表中查询频次
+     */
+    private static int hashGet(int idA, int idB)
+    {
+        long[] table = hashTable;
+        int shift = valueBits;
+        long key = packKey(idA, idB);
+        int i = slotOf(key, table.length);
+        while (true)
+        {
+            long slot = table[i];
+            if (slot == 0) return 0;
+            if (slot >>> shift == key) return (int) (slot & ((1L << shift) - 1));
+            if (++i == table.length) i = 0;
+        }
+    }
+
     static boolean saveDat(String path)
     {
         try
@@ -157,6 +260,10 @@ public class CoreBiGramTableDictionary
             ObjectOutputStream out = new ObjectOutputStream(IOUtil.newOutputStream(path));
             out.writeObject(start);
             out.writeObject(pair);
+            if (hashTable != null)    // 哈希表追加在末尾，二分模式读取时会忽略它
+            {
+                out.writeObject(hashTable);
+            }
             out.close();
         }
         catch (Exception e)
@@ -197,6 +304,21 @@ public class CoreBiGramTableDictionary
                 return false;
             }
             pair = (int[]) in.readObject();
+            hashTable = null;
+            if (HanLP.Config.BiGramHashTable)
+            {
+                try
+                {
+                    hashTable = (long[]) in.readObject();
+                    updateBits();
+                }
+                catch (IOException e)   // 缓存中没有哈希表，由二分结构构建一份并重新缓存
+                {
+                    in.close();
+                    if (buildHashTable()) saveDat(path);
+                }
+                if (hashTable != null) pair = null;
+            }
             in.close();
         }
         catch (Exception e)
@@ -254,10 +376,7 @@ public class CoreBiGramTableDictionary
         {
             return 0;
         }
-        int index = binarySearch(pair, start[idA], start[idA + 1] - start[idA], idB);
-        if (index < 0) return 0;
-        index <<= 1;
-        return pair[index + 1];
+        return getBiFrequency(idA, idB);
     }
 
     /**
@@ -277,6 +396,7 @@ public class CoreBiGramTableDictionary
         {
             return -idB;
         }
+        if (hashTable != null) return hashGet(idA, idB);
         int index = binarySearch(pair, start[idA], start[idA + 1] - start[idA], idB);
         if (index < 0) return 0;
         index <<= 1;
@@ -13,14 +13,19 @@ package com.hankcs.hanlp.dictionary;
 
 import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.MappedDoubleArrayTrie;
 import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.FileIOAdapter;
 import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.corpus.io.PackIOAdapter;
 import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.utility.LexiconUtility;
 import com.hankcs.hanlp.utility.Predefine;
 import com.hankcs.hanlp.utility.TextUtility;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 
 import static com.hankcs.hanlp.utility.Predefine.logger;
@@ -35,11 +40,59 @@ public class CoreDictionary
     public final static String path = HanLP.Config.CoreDictionaryPath;
     public static final int totalFrequency = 221894;
 
+    /**
+     * 词属性在映射文件中的编码：全部频次、词性个数、(词性编号, 词频)*词性个数<br>
+     * 解码时每次创建新的属性，映射加载核心词典时用的是{@link #newAttributeCodec(AttributePool)}
+     */
+    public static final MappedDoubleArrayTrie.ValueCodec<Attribute> ATTRIBUTE_CODEC = newAttributeCodec(null);
+
+    /**
+     * 创建词属性的编码器
+     *
+     * @param pool 解码时使用的驻留池，随映射的双数组一起存活；null表示不驻留
+     * @return 编码器
+     */
+    public static MappedDoubleArrayTrie.ValueCodec<Attribute> newAttributeCodec(final AttributePool pool)
+    {
+        return new MappedDoubleArrayTrie.ValueCodec<Attribute>()
+        {
+            @Override
+            public int[] encode(Attribute value)
+            {
+                int[] ints = new int[2 + value.nature.length * 2];
+                ints[0] = value.totalFrequency;
+                ints[1] = value.nature.length;
+                for (int i = 0; i < value.nature.length; ++i)
+                {
+                    ints[2 + 2 * i] = value.nature[i].ordinal();
+                    ints[3 + 2 * i] = value.frequency[i];
+                }
+                return ints;
+            }
+
+            @Override
+            public Attribute decode(IntBuffer buffer, int offset, int length)
+            {
+                Nature[] natureIndexArray = Nature.values();
+                if (pool != null) return pool.read(buffer, offset, natureIndexArray);
+                int natureCount = buffer.get(offset + 1);
+                Attribute value = new Attribute(natureCount);
+                value.totalFrequency = buffer.get(offset);
+                for (int i = 0; i < natureCount; ++i)
+                {
+                    value.nature[i] = natureIndexArray[buffer.get(offset + 2 + 2 * i)];
+                    value.frequency[i] = buffer.get(offset + 3 + 2 * i);
+                }
+                return value;
+            }
+        };
+    }
+
     // 自动加载词典
     static
     {
         long start = System.currentTimeMillis();
-        if (!load(path))
+        if (!(HanLP.Config.CoreDictionaryMapped ? loadMapped(path) : load(path)))
         {
             throw new IllegalArgumentException("核心词典" + path + "加载失败");
         }
@@ -63,6 +116,7 @@ public class CoreDictionary
         logger.info("核心词典开始加载:" + path);
         if (loadDat(path)) return true;
         TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, Attribute>();
+        AttributePool pool = new AttributePool();
         BufferedReader br = null;
         try
         {
@@ -81,7 +135,7 @@ public class CoreDictionary
                     attribute.frequency[i] = Integer.parseInt(param[2 + 2 * i]);
                     attribute.totalFrequency += attribute.frequency[i];
                 }
-                map.put(param[0], attribute);
+                map.put(param[0], pool.intern(attribute));
                 MAX_FREQUENCY += attribute.totalFrequency;
             }
             logger.info("核心词典读入词条" + map.size() + " 全部频次" + MAX_FREQUENCY + "，耗时" + (System.currentTimeMillis() - start) + "ms");
@@ -126,6 +180,43 @@ public class CoreDictionary
         return true;
     }
 
+    /**
+     * 以内存映射的方式加载，映射文件不存在时先常规加载，再生成映射文件
+     *
+     * @param path 词典路径
+     * @return 是否成功
+     */
+    static boolean loadMapped(String path)
+    {
+        if (HanLP.Config.IOAdapter instanceof PackIOAdapter)
+        {
+            // 词典包中的分区本身就是映射的
+            ByteBuffer section = ((PackIOAdapter) HanLP.Config.IOAdapter).section(path + Predefine.MAP_EXT);
+            MappedDoubleArrayTrie<Attribute> mapped = section == null ? null : MappedDoubleArrayTrie.open(section, newAttributeCodec(new AttributePool()));
+            if (mapped != null)
+            {
+                trie = mapped;
+                return true;
+            }
+        }
+        if (HanLP.Config.IOAdapter != null && !(HanLP.Config.IOAdapter instanceof FileIOAdapter))
+        {
+            logger.warning("内存映射只支持本地文件，改为常规加载");
+            return load(path);
+        }
+        String mapPath = path + Predefine.MAP_EXT;
+        MappedDoubleArrayTrie<Attribute> mapped = MappedDoubleArrayTrie.open(mapPath, newAttributeCodec(new AttributePool()));
+        if (mapped == null)
+        {
+            if (!load(path)) return false;
+            if (!MappedDoubleArrayTrie.save(trie, ATTRIBUTE_CODEC, mapPath)) return true;
+            mapped = MappedDoubleArrayTrie.open(mapPath, newAttributeCodec(new AttributePool()));
+            if (mapped == null) return true;
+        }
+        trie = mapped;
+        return true;
+    }
+
     /**
      * 从磁盘加载双数组
      *
@@ -141,18 +232,11 @@ public class CoreDictionary
             int size = byteArray.nextInt();
             CoreDictionary.Attribute[] attributes = new CoreDictionary.Attribute[size];
             final Nature[] natureIndexArray = Nature.values();
+            AttributePool pool = new AttributePool();
             for (int i = 0; i < size; ++i)
             {
-                // 第一个是全部频次，第二个是词性个数
-                int currentTotalFrequency = byteArray.nextInt();
-                int length = byteArray.nextInt();
-                attributes[i] = new CoreDictionary.Attribute(length);
-                attributes[i].totalFrequency = currentTotalFrequency;
-                for (int j = 0; j < length; ++j)
-                {
-                    attributes[i].nature[j] = natureIndexArray[byteArray.nextInt()];
-                    attributes[i].frequency[j] = byteArray.nextInt();
-                }
+                // 第一个是全部频次，第二个是词性个数，签名相同的词语共享同一个属性
+                attributes[i] = pool.read(byteArray, natureIndexArray);
             }
             if (!trie.load(byteArray, attributes) || byteArray.hasMore()) return false;
         }
@@ -165,23 +249,27 @@ public class CoreDictionary
     }
 
     /**
-     * 获取条目
+     * 获取条目<br>
+     * 返回的是副本，修改它不会影响词典
      * @param key
      * @return
      */
     public static Attribute get(String key)
     {
-        return trie.get(key);
+        Attribute attribute = trie.get(key);
+        return attribute == null ? null : attribute.copy();
     }
 
     /**
-     * 获取条目
+     * 获取条目<br>
+     * 返回的是副本，修改它不会影响词典
      * @param wordID
      * @return
      */
     public static Attribute get(int wordID)
     {
-        return trie.get(wordID);
+        Attribute attribute = trie.get(wordID);
+        return attribute == null ? null : attribute.copy();
     }
 
     /**
@@ -208,7 +296,10 @@ public class CoreDictionary
     }
 
     /**
-     * 核心词典中的词属性
+     * 核心词典中的词属性<br>
+     * 词典里签名相同的词语共享同一个属性对象（见{@link AttributePool}），所以词典中的属性不应被修改。
+     * {@link CoreDictionary#get(String)}、{@link CustomDictionary#get(String)}等公开的查询方法返回副本；
+     * 要修改某个词语的属性，请构造新的属性，通过{@link com.hankcs.hanlp.utility.LexiconUtility#setAttribute(String, Attribute)}等方法替换。
      */
     static public class Attribute implements Serializable
     {
@@ -264,6 +355,16 @@ public class CoreDictionary
             this(nature, 1000);
         }
 
+        /**
+         * 复制一份，词性与词频数组也一并复制
+         *
+         * @return 可以随意修改的副本
+         */
+        public Attribute copy()
+        {
+            return new Attribute(nature.clone(), frequency.clone(), totalFrequency);
+        }
+
         public static Attribute create(String natureWithFrequency)
         {
             try
@@ -16,125 +16,42 @@ import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
 import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
 import com.hankcs.hanlp.collection.trie.bintrie.BinTrie;
-import com.hankcs.hanlp.corpus.io.ByteArray;
-import com.hankcs.hanlp.corpus.io.IOUtil;
 import com.hankcs.hanlp.corpus.tag.Nature;
-import com.hankcs.hanlp.dictionary.other.CharTable;
-import com.hankcs.hanlp.utility.LexiconUtility;
-import com.hankcs.hanlp.utility.Predefine;
-import com.hankcs.hanlp.utility.TextUtility;
 
-import java.io.*;
 import java.util.*;
 
-import static com.hankcs.hanlp.utility.Predefine.logger;
-
 /**
  * 用户自定义词典<br>
- *     注意自定义词典的动态增删改不是线程安全的。
+ *     全局唯一的用户词典，由HanLP.Config.CustomDictionaryPath指定，所有未挂载专属词典的分词器共用它。
+ *     实现都在{@link DynamicCustomDictionary}中，此类只是{@link #DEFAULT}的静态门面。
+ *     词典的内容以不可变的快照{@link DynamicCustomDictionary.Snapshot}发布：增删改时写线程复制出新的快照（只复制被修改的部分），
+ *     然后原子地替换旧快照。读线程无需加锁，分词时每个句子固定使用同一个快照，所以即使词典正在被频繁更新，
+ *     每个句子的结果也是一致的。
  *
  * @author He Han
  */
 public class CustomDictionary
 {
     /**
-     * 用于储存用户动态插入词条的二分trie树
+     * 用于储存用户动态插入词条的二分trie树（当前快照的引用，仅为兼容保留，请勿直接修改）
      */
-    public static BinTrie<CoreDictionary.Attribute> trie;
-    public static DoubleArrayTrie<CoreDictionary.Attribute> dat = new DoubleArrayTrie<CoreDictionary.Attribute>();
-
-    // 自动加载词典
-    static
-    {
-        String path[] = HanLP.Config.CustomDictionaryPath;
-        long start = System.currentTimeMillis();
-        if (!loadMainDictionary(path[0]))
-        {
-            logger.warning("自定义词典" + Arrays.toString(path) + "加载失败");
-        }
-        else
-        {
-            logger.info("自定义词典加载成功:" + dat.size() + "个词条，耗时" + (System.currentTimeMillis() - start) + "ms");
-        }
-    }
-
-    private static boolean loadMainDictionary(String mainPath)
+    public static volatile BinTrie<CoreDictionary.Attribute> trie;
+    /**
+     * 主词典（当前快照的引用，仅为兼容保留，请勿直接修改）
+     */
+    public static volatile DoubleArrayTrie<CoreDictionary.Attribute> dat;
+    /**
+     * 全局用户词典，自动加载
+     */
+    public static final DynamicCustomDictionary DEFAULT = new DynamicCustomDictionary(HanLP.Config.CustomDictionaryPath)
     {
-        logger.info("自定义词典开始加载:" + mainPath);
-        if (loadDat(mainPath)) return true;
-        dat = new DoubleArrayTrie<CoreDictionary.Attribute>();
-        TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, CoreDictionary.Attribute>();
-        LinkedHashSet<Nature> customNatureCollector = new LinkedHashSet<Nature>();
-        try
-        {
-            String path[] = HanLP.Config.CustomDictionaryPath;
-            for (String p : path)
-            {
-                Nature defaultNature = Nature.n;
-                int cut = p.indexOf(' ');
-                if (cut > 0)
-                {
-                    // 有默认词性
-                    String nature = p.substring(cut + 1);
-                    p = p.substring(0, cut);
-                    try
-                    {
-                        defaultNature = LexiconUtility.convertStringToNature(nature, customNatureCollector);
-                    }
-                    catch (Exception e)
-                    {
-                        logger.severe("配置文件【" + p + "】写错了！" + e);
-                        continue;
-                    }
-                }
-                logger.info("以默认词性[" + defaultNature + "]加载自定义词典" + p + "中……");
-                boolean success = load(p, defaultNature, map, customNatureCollector);
-                if (!success) logger.warning("失败：" + p);
-            }
-            if (map.size() == 0)
-            {
-                logger.warning("没有加载到任何词条");
-                map.put(Predefine.TAG_OTHER, null);     // 当作空白占位符
-            }
-            logger.info("正在构建DoubleArrayTrie……");
-            dat.build(map);
-            // 缓存成dat文件，下次加载会快很多
-            logger.info("正在缓存词典为dat文件……");
-            // 缓存值文件
-            List<CoreDictionary.Attribute> attributeList = new LinkedList<CoreDictionary.Attribute>();
-            for (Map.Entry<String, CoreDictionary.Attribute> entry : map.entrySet())
-            {
-                attributeList.add(entry.getValue());
-            }
-            DataOutputStream out = new DataOutputStream(IOUtil.newOutputStream(mainPath + Predefine.BIN_EXT));
-            // 缓存用户词性
-            IOUtil.writeCustomNature(out, customNatureCollector);
-            // 缓存正文
-            out.writeInt(attributeList.size());
-            for (CoreDictionary.Attribute attribute : attributeList)
-            {
-                attribute.save(out);
-            }
-            dat.save(out);
-            out.close();
-        }
-        catch (FileNotFoundException e)
-        {
-            logger.severe("自定义词典" + mainPath + "不存在！" + e);
-            return false;
-        }
-        catch (IOException e)
-        {
-            logger.severe("自定义词典" + mainPath + "读取错误！" + e);
-            return false;
-        }
-        catch (Exception e)
+        @Override
+        protected void onPublish(Snapshot snapshot)
         {
-            logger.warning("自定义词典" + mainPath + "缓存失败！\n" + TextUtility.exceptionToString(e));
+            dat = snapshot.dat;
+            trie = snapshot.trie;
         }
-        return true;
-    }
-
+    };
 
     /**
      * 加载用户词典（追加）
@@ -146,90 +63,7 @@ public class CustomDictionary
      */
     public static boolean load(String path, Nature defaultNature, TreeMap<String, CoreDictionary.Attribute> map, LinkedHashSet<Nature> customNatureCollector)
     {
-        try
-        {
-            String splitter = "\\s";
-            if (path.endsWith(".csv"))
-            {
-                splitter = ",";
-            }
-            BufferedReader br = new BufferedReader(new InputStreamReader(IOUtil.newInputStream(path), "UTF-8"));
-            String line;
-            boolean firstLine = true;
-            while ((line = br.readLine()) != null)
-            {
-                if (firstLine)
-                {
-                    line = IOUtil.removeUTF8BOM(line);
-                    firstLine = false;
-                }
-                String[] param = line.split(splitter);
-                if (param[0].length() == 0) continue;   // 排除空行
-                if (HanLP.Config.Normalization) param[0] = CharTable.convert(param[0]); // 正规化
-
-                int natureCount = (param.length - 1) / 2;
-                CoreDictionary.Attribute attribute;
-                if (natureCount == 0)
-                {
-                    attribute = new CoreDictionary.Attribute(defaultNature);
-                }
-                else
-                {
-                    attribute = new CoreDictionary.Attribute(natureCount);
-                    for (int i = 0; i < natureCount; ++i)
-                    {
-                        attribute.nature[i] = LexiconUtility.convertStringToNature(param[1 + 2 * i], customNatureCollector);
-                        attribute.frequency[i] = Integer.parseInt(param[2 + 2 * i]);
-                        attribute.totalFrequency += attribute.frequency[i];
-                    }
-                }
-//                if (updateAttributeIfExist(param[0], attribute, map, rewriteTable)) continue;
-                map.put(param[0], attribute);
-            }
-            br.close();
-        }
-        catch (Exception e)
-        {
-            logger.severe("自定义词典" + path + "读取错误！" + e);
-            return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * 如果已经存在该词条,直接更新该词条的属性
-     * @param key 词语
-     * @param attribute 词语的属性
-     * @param map 加载期间的map
-     * @param rewriteTable
-     * @return 是否更新了
-     */
-    private static boolean updateAttributeIfExist(String key, CoreDictionary.Attribute attribute, TreeMap<String, CoreDictionary.Attribute> map, TreeMap<Integer, CoreDictionary.Attribute> rewriteTable)
-    {
-        int wordID = CoreDictionary.getWordID(key);
-        CoreDictionary.Attribute attributeExisted;
-        if (wordID != -1)
-        {
-            attributeExisted = CoreDictionary.get(wordID);
-            attributeExisted.nature = attribute.nature;
-            attributeExisted.frequency = attribute.frequency;
-            attributeExisted.totalFrequency = attribute.totalFrequency;
-            // 收集该覆写
-            rewriteTable.put(wordID, attribute);
-            return true;
-        }
-
-        attributeExisted = map.get(key);
-        if (attributeExisted != null)
-        {
-            attributeExisted.nature = attribute.nature;
-            attributeExisted.frequency = attribute.frequency;
-            attributeExisted.totalFrequency = attribute.totalFrequency;
-            return true;
-        }
-
-        return false;
+        return DynamicCustomDictionary.load(path, defaultNature, map, customNatureCollector);
     }
 
     /**
@@ -242,8 +76,7 @@ public class CustomDictionary
      */
     public static boolean add(String word, String natureWithFrequency)
     {
-        if (contains(word)) return false;
-        return insert(word, natureWithFrequency);
+        return DEFAULT.add(word, natureWithFrequency);
     }
 
     /**
@@ -255,9 +88,7 @@ public class CustomDictionary
      */
     public static boolean add(String word)
     {
-        if (HanLP.Config.Normalization) word = CharTable.convert(word);
-        if (contains(word)) return false;
-        return insert(word, null);
+        return DEFAULT.add(word);
     }
 
     /**
@@ -270,14 +101,20 @@ public class CustomDictionary
      */
     public static boolean insert(String word, String natureWithFrequency)
     {
-        if (word == null) return false;
-        if (HanLP.Config.Normalization) word = CharTable.convert(word);
-        CoreDictionary.Attribute att = natureWithFrequency == null ? new CoreDictionary.Attribute(Nature.nz, 1) : CoreDictionary.Attribute.create(natureWithFrequency);
-        if (att == null) return false;
-        if (dat.set(word, att)) return true;
-        if (trie == null) trie = new BinTrie<CoreDictionary.Attribute>();
-        trie.put(word, att);
-        return true;
+        return DEFAULT.insert(word, natureWithFrequency);
+    }
+
+    /**
+     * 以覆盖模式增加新词，直接指定词条属性<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word      新词
+     * @param attribute 属性
+     * @return 是否插入成功
+     */
+    public static boolean put(String word, CoreDictionary.Attribute attribute)
+    {
+        return DEFAULT.put(word, attribute);
     }
 
     /**
@@ -289,7 +126,7 @@ public class CustomDictionary
      */
     public static boolean insert(String word)
     {
-        return insert(word, null);
+        return DEFAULT.insert(word);
     }
 
     /**
@@ -298,44 +135,9 @@ public class CustomDictionary
      * @param path
      * @return
      */
-    static boolean loadDat(String path)
+    static boolean loadDat(String path, DoubleArrayTrie<CoreDictionary.Attribute> dat)
     {
-        try
-        {
-            ByteArray byteArray = ByteArray.createByteArray(path + Predefine.BIN_EXT);
-            if (byteArray == null) return false;
-            int size = byteArray.nextInt();
-            if (size < 0)   // 一种兼容措施,当size小于零表示文件头部储存了-size个用户词性
-            {
-                while (++size <= 0)
-                {
-                    Nature.create(byteArray.nextString());
-                }
-                size = byteArray.nextInt();
-            }
-            CoreDictionary.Attribute[] attributes = new CoreDictionary.Attribute[size];
-            final Nature[] natureIndexArray = Nature.values();
-            for (int i = 0; i < size; ++i)
-            {
-                // 第一个是全部频次，第二个是词性个数
-                int currentTotalFrequency = byteArray.nextInt();
-                int length = byteArray.nextInt();
-                attributes[i] = new CoreDictionary.Attribute(length);
-                attributes[i].totalFrequency = currentTotalFrequency;
-                for (int j = 0; j < length; ++j)
-                {
-                    attributes[i].nature[j] = natureIndexArray[byteArray.nextInt()];
-                    attributes[i].frequency[j] = byteArray.nextInt();
-                }
-            }
-            if (!dat.load(byteArray, attributes)) return false;
-        }
-        catch (Exception e)
-        {
-            logger.warning("读取失败，问题发生在" + TextUtility.exceptionToString(e));
-            return false;
-        }
-        return true;
+        return DynamicCustomDictionary.loadDat(path, dat);
     }
 
     /**
@@ -346,11 +148,7 @@ public class CustomDictionary
      */
     public static CoreDictionary.Attribute get(String key)
     {
-        if (HanLP.Config.Normalization) key = CharTable.convert(key);
-        CoreDictionary.Attribute attribute = dat.get(key);
-        if (attribute != null) return attribute;
-        if (trie == null) return null;
-        return trie.get(key);
+        return DEFAULT.get(key);
     }
 
     /**
@@ -361,9 +159,7 @@ public class CustomDictionary
      */
     public static void remove(String key)
     {
-        if (HanLP.Config.Normalization) key = CharTable.convert(key);
-        if (trie == null) return;
-        trie.remove(key);
+        DEFAULT.remove(key);
     }
 
     /**
@@ -374,7 +170,7 @@ public class CustomDictionary
      */
     public static LinkedList<Map.Entry<String, CoreDictionary.Attribute>> commonPrefixSearch(String key)
     {
-        return trie.commonPrefixSearchWithValue(key);
+        return DEFAULT.commonPrefixSearch(key);
     }
 
     /**
@@ -386,12 +182,12 @@ public class CustomDictionary
      */
     public static LinkedList<Map.Entry<String, CoreDictionary.Attribute>> commonPrefixSearch(char[] chars, int begin)
     {
-        return trie.commonPrefixSearchWithValue(chars, begin);
+        return DEFAULT.commonPrefixSearch(chars, begin);
     }
 
     public static BaseSearcher getSearcher(String text)
     {
-        return new Searcher(text);
+        return DEFAULT.getSearcher(text);
     }
 
     @Override
@@ -409,8 +205,7 @@ public class CustomDictionary
      */
     public static boolean contains(String key)
     {
-        if (dat.exactMatchSearch(key) >= 0) return true;
-        return trie != null && trie.containsKey(key);
+        return DEFAULT.contains(key);
     }
 
     /**
@@ -420,54 +215,7 @@ public class CustomDictionary
      */
     public static BaseSearcher getSearcher(char[] charArray)
     {
-        return new Searcher(charArray);
-    }
-
-    static class Searcher extends BaseSearcher<CoreDictionary.Attribute>
-    {
-        /**
-         * 分词从何处开始，这是一个状态
-         */
-        int begin;
-
-        private LinkedList<Map.Entry<String, CoreDictionary.Attribute>> entryList;
-
-        protected Searcher(char[] c)
-        {
-            super(c);
-            entryList = new LinkedList<Map.Entry<String, CoreDictionary.Attribute>>();
-        }
-
-        protected Searcher(String text)
-        {
-            super(text);
-            entryList = new LinkedList<Map.Entry<String, CoreDictionary.Attribute>>();
-        }
-
-        @Override
-        public Map.Entry<String, CoreDictionary.Attribute> next()
-        {
-            // 保证首次调用找到一个词语
-            while (entryList.size() == 0 && begin < c.length)
-            {
-                entryList = trie.commonPrefixSearchWithValue(c, begin);
-                ++begin;
-            }
-            // 之后调用仅在缓存用完的时候调用一次
-            if (entryList.size() == 0 && begin < c.length)
-            {
-                entryList = trie.commonPrefixSearchWithValue(c, begin);
-                ++begin;
-            }
-            if (entryList.size() == 0)
-            {
-                return null;
-            }
-            Map.Entry<String, CoreDictionary.Attribute> result = entryList.getFirst();
-            entryList.removeFirst();
-            offset = begin - 1;
-            return result;
-        }
+        return DEFAULT.getSearcher(charArray);
     }
 
     /**
@@ -478,7 +226,7 @@ public class CustomDictionary
      */
     public static BinTrie<CoreDictionary.Attribute> getTrie()
     {
-        return trie;
+        return DEFAULT.getTrie();
     }
 
     /**
@@ -488,15 +236,7 @@ public class CustomDictionary
      */
     public static void parseText(char[] text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
     {
-        if (trie != null)
-        {
-            trie.parseText(text, processor);
-        }
-        DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = dat.getSearcher(text, 0);
-        while (searcher.next())
-        {
-            processor.hit(searcher.begin, searcher.begin + searcher.length, searcher.value);
-        }
+        DEFAULT.parseText(text, processor);
     }
 
     /**
@@ -506,22 +246,7 @@ public class CustomDictionary
      */
     public static void parseText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
     {
-        if (trie != null)
-        {
-            BaseSearcher searcher = CustomDictionary.getSearcher(text);
-            int offset;
-            Map.Entry<String, CoreDictionary.Attribute> entry;
-            while ((entry = searcher.next()) != null)
-            {
-                offset = searcher.getOffset();
-                processor.hit(offset, offset + entry.getKey().length(), entry.getValue());
-            }
-        }
-        DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = dat.getSearcher(text, 0);
-        while (searcher.next())
-        {
-            processor.hit(searcher.begin, searcher.begin + searcher.length, searcher.value);
-        }
+        DEFAULT.parseText(text, processor);
     }
 
     /**
@@ -532,45 +257,33 @@ public class CustomDictionary
      */
     public static void parseLongestText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
     {
-        if (trie != null)
-        {
-            final int[] lengthArray = new int[text.length()];
-            final CoreDictionary.Attribute[] attributeArray = new CoreDictionary.Attribute[text.length()];
-            char[] charArray = text.toCharArray();
-            DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = dat.getSearcher(charArray, 0);
-            while (searcher.next())
-            {
-                lengthArray[searcher.begin] = searcher.length;
-                attributeArray[searcher.begin] = searcher.value;
-            }
-            trie.parseText(charArray, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
-            {
-                @Override
-                public void hit(int begin, int end, CoreDictionary.Attribute value)
-                {
-                    int length = end - begin;
-                    if (length > lengthArray[begin])
-                    {
-                        lengthArray[begin] = length;
-                        attributeArray[begin] = value;
-                    }
-                }
-            });
-            for (int i = 0; i < charArray.length;)
-            {
-                if (lengthArray[i] == 0)
-                {
-                    ++i;
-                }
-                else
-                {
-                    processor.hit(i, i + lengthArray[i], attributeArray[i]);
-                    i += lengthArray[i];
-                }
-            }
-        }
-        else
-            dat.parseLongestText(text, processor);
+        DEFAULT.parseLongestText(text, processor);
+    }
+
+    /**
+     * 全切分，扫描过程中不创建词语字符串，也不为每个位置创建候选列表
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器，命中的位置相对于整个text
+     */
+    public static void parseText(char[] text, int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        DEFAULT.parseText(text, begin, end, processor);
+    }
+
+    /**
+     * 最长匹配，扫描过程中不创建任何对象
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器，命中的位置相对于整个text
+     */
+    public static void parseLongestText(char[] text, int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        DEFAULT.parseLongestText(text, begin, end, processor);
     }
 
     /**
@@ -580,9 +293,60 @@ public class CustomDictionary
      */
     public static boolean reload()
     {
-        String path[] = HanLP.Config.CustomDictionaryPath;
-        if (path == null || path.length == 0) return false;
-        IOUtil.deleteFile(path[0] + Predefine.BIN_EXT); // 删掉缓存
-        return loadMainDictionary(path[0]);
+        DEFAULT.path = HanLP.Config.CustomDictionaryPath;
+        return DEFAULT.reload();
+    }
+
+    /**
+     * 将动态插入的词条合并进主词典
+     *
+     * @param persist 是否将合并后的词典写入缓存文件（HanLP.Config.CustomDictionaryPath[0] + Predefine.BIN_EXT），下次启动直接加载
+     * @return 是否进行了合并
+     * @see DynamicCustomDictionary#compact(boolean)
+     */
+    public static boolean compact(boolean persist)
+    {
+        return DEFAULT.compact(persist);
+    }
+
+    /**
+     * 开启自动合并
+     *
+     * @param sizeThreshold 动态词条数达到多少时合并，小于等于0表示不按词条数触发
+     * @param periodMillis  每隔多少毫秒尝试合并一次，小于等于0表示不定时触发
+     * @param persist       合并后是否写入缓存文件
+     * @see DynamicCustomDictionary#enableAutoCompaction(int, long, boolean)
+     */
+    public static void enableAutoCompaction(int sizeThreshold, long periodMillis, boolean persist)
+    {
+        DEFAULT.enableAutoCompaction(sizeThreshold, periodMillis, persist);
+    }
+
+    /**
+     * 关闭自动合并
+     */
+    public static void disableAutoCompaction()
+    {
+        DEFAULT.disableAutoCompaction();
+    }
+
+    /**
+     * 词典版本号，词典每被修改一次（add、insert、remove、reload）就加一
+     *
+     * @return 版本号
+     */
+    public static long getVersion()
+    {
+        return DEFAULT.getVersion();
+    }
+
+    /**
+     * 获取当前快照。快照是不可变的，分词一个句子时应当自始至终使用同一个快照
+     *
+     * @return 当前快照
+     */
+    public static DynamicCustomDictionary.Snapshot snapshot()
+    {
+        return DEFAULT.snapshot();
     }
 }
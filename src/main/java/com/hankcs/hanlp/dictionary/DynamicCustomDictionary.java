@@ -0,0 +1,1198 @@
+package com.hankcs.hanlp.dictionary;
+
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrieBuilder;
+import com.hankcs.hanlp.collection.trie.MappedDoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.PrefixFilter;
+import com.hankcs.hanlp.collection.trie.bintrie.BaseNode;
+import com.hankcs.hanlp.collection.trie.bintrie.BinTrie;
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.ByteBufferArray;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.hanlp.seg.SegmentExecutor;
+import com.hankcs.hanlp.utility.LexiconUtility;
+import com.hankcs.hanlp.utility.Predefine;
+import com.hankcs.hanlp.utility.TextUtility;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 用户自定义词典的实例<br>
+ *     结构与全局的{@link CustomDictionary}相同（DAT主词典 + BinTrie动态词条，bin缓存），但每个实例相互独立，
+ *     可以通过{@link com.hankcs.hanlp.seg.Segment#enableCustomDictionary(DynamicCustomDictionary)}挂载到分词器上。
+ *     这样一个JVM可以同时服务多个租户：核心词典{@link CoreDictionary}等只读资源全局共享一份，每个租户只需付出自己词表的内存。<br>
+ *     词典的内容以不可变的快照{@link Snapshot}发布：增删改时写线程复制出新的快照（只复制被修改的部分），
+ *     然后原子地替换旧快照。读线程无需加锁，分词时每个句子固定使用同一个快照。
+ */
+public class DynamicCustomDictionary
+{
+    /**
+     * 并行构建双数组时每批至少的键数
+     */
+    private static final int MIN_BATCH_SIZE = 1 << 14;
+    /**
+     * 词典路径，第一个为主词典，其bin缓存的路径为path[0] + Predefine.BIN_EXT。每个路径后面可以用空格隔开跟一个默认词性
+     */
+    public String path[];
+    /**
+     * 当前快照
+     */
+    private volatile Snapshot snapshot;
+    /**
+     * 合并进行期间的增删记录，合并完成时重放；为null表示没有合并在进行
+     */
+    private List<Map.Entry<String, CoreDictionary.Attribute>> compactionLog;
+    /**
+     * 自动合并的后台线程
+     */
+    private ScheduledThreadPoolExecutor compactionExecutor;
+    /**
+     * 动态词条数达到多少时自动合并，0表示不按词条数合并
+     */
+    private volatile int compactionThreshold;
+    private volatile boolean compactionPersist;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    /**
+     * 构造一个空白的词典，之后可以动态地增加词条
+     */
+    public DynamicCustomDictionary()
+    {
+        publish(new Snapshot(emptyDat(), null, 0));
+    }
+
+    /**
+     * 从词典文件构造（优先加载bin缓存，没有缓存时读取文本并生成缓存）
+     *
+     * @param path 词典路径，第一个为主词典。每个路径后面可以用空格隔开跟一个默认词性，比如“我的词典.txt nrf”
+     */
+    public DynamicCustomDictionary(String... path)
+    {
+        this.path = path;
+        long start = System.currentTimeMillis();
+        DoubleArrayTrie<CoreDictionary.Attribute> mainDat = path == null || path.length == 0 ? null : loadMainDictionary(path[0]);
+        if (mainDat == null)
+        {
+            logger.warning("自定义词典" + Arrays.toString(path) + "加载失败");
+            mainDat = emptyDat();
+        }
+        else
+        {
+            logger.info("自定义词典加载成功:" + mainDat.size() + "个词条，耗时" + (System.currentTimeMillis() - start) + "ms");
+        }
+        publish(new Snapshot(mainDat, null, 0));
+    }
+
+    /**
+     * 没有任何词条的双数组
+     */
+    private static DoubleArrayTrie<CoreDictionary.Attribute> emptyDat()
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = new DoubleArrayTrie<CoreDictionary.Attribute>();
+        TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, CoreDictionary.Attribute>();
+        map.put(Predefine.TAG_OTHER, null);     // 当作空白占位符
+        dat.build(map);
+        return dat;
+    }
+
+    /**
+     * 加载主词典，配置了{@link HanLP.Config#DictionaryMapped}时映射bin缓存
+     *
+     * @param mainPath 主词典路径
+     * @return 主词典，失败时返回null
+     */
+    private DoubleArrayTrie<CoreDictionary.Attribute> loadMainDictionary(String mainPath)
+    {
+        if (HanLP.Config.DictionaryMapped)
+        {
+            DoubleArrayTrie<CoreDictionary.Attribute> mapped = mapDat(mainPath);
+            if (mapped != null) return mapped;
+        }
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = buildMainDictionary(mainPath);
+        if (dat == null) return null;
+        if (HanLP.Config.DictionaryMapped)
+        {
+            // 缓存刚刚生成，换成映射的
+            DoubleArrayTrie<CoreDictionary.Attribute> mapped = mapDat(mainPath);
+            if (mapped != null) return mapped;
+        }
+        return dat;
+    }
+
+    /**
+     * 加载主词典，优先读取bin缓存，没有缓存时并行解析文本、并行构建双数组并生成缓存
+     *
+     * @param mainPath 主词典路径
+     * @return 主词典，失败时返回null
+     */
+    private DoubleArrayTrie<CoreDictionary.Attribute> buildMainDictionary(String mainPath)
+    {
+        logger.info("自定义词典开始加载:" + mainPath);
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = new DoubleArrayTrie<CoreDictionary.Attribute>();
+        if (loadDat(mainPath, dat)) return dat;
+        List<String> keyList = new ArrayList<String>();
+        List<CoreDictionary.Attribute> attributeList = new ArrayList<CoreDictionary.Attribute>();
+        LinkedHashSet<Nature> customNatureCollector = new LinkedHashSet<Nature>();
+        try
+        {
+            // 多个文件并行解析，归并成有序的词条序列
+            boolean success = ParallelDictionaryLoader.load(path, keyList, attributeList, customNatureCollector);
+            if (keyList.size() == 0)
+            {
+                logger.warning("没有加载到任何词条");
+                keyList.add(Predefine.TAG_OTHER);   // 当作空白占位符
+                attributeList.add(null);
+            }
+            logger.info("正在构建DoubleArrayTrie……");
+            dat = buildDat(keyList, attributeList);
+            if (!success)
+            {
+                // 缓存只反映成功读取的部分，下次加载时会被当作完整的词典，所以不写
+                logger.warning("部分自定义词典加载失败，不生成缓存：" + mainPath + Predefine.BIN_EXT);
+                return dat;
+            }
+            // 缓存成dat文件，下次加载会快很多
+            logger.info("正在缓存词典为dat文件……");
+            // 缓存值文件
+            DataOutputStream out = new DataOutputStream(IOUtil.newOutputStream(mainPath + Predefine.BIN_EXT));
+            // 缓存用户词性
+            IOUtil.writeCustomNature(out, customNatureCollector);
+            // 缓存正文
+            out.writeInt(attributeList.size());
+            for (CoreDictionary.Attribute attribute : attributeList)
+            {
+                attribute.save(out);
+            }
+            dat.save(out);
+            dat.getPrefilter().save(out);
+            out.close();
+        }
+        catch (FileNotFoundException e)
+        {
+            logger.severe("自定义词典" + mainPath + "不存在！" + e);
+            return null;
+        }
+        catch (IOException e)
+        {
+            logger.severe("自定义词典" + mainPath + "读取错误！" + e);
+            return null;
+        }
+        catch (Exception e)
+        {
+            logger.warning("自定义词典" + mainPath + "缓存失败！\n" + TextUtility.exceptionToString(e));
+        }
+        return dat;
+    }
+
+    /**
+     * 用{@link DoubleArrayTrieBuilder}多线程构建双数组，并附上前缀过滤器
+     *
+     * @param keyList   严格升序的键
+     * @param valueList 对应的属性
+     * @return 双数组
+     */
+    private static DoubleArrayTrie<CoreDictionary.Attribute> buildDat(List<String> keyList, List<CoreDictionary.Attribute> valueList)
+    {
+        int threadNumber = Runtime.getRuntime().availableProcessors();
+        // 每个线程分到一批左右，批太小时块末尾的空格子占比变大
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(threadNumber)
+            .setBatchSize(Math.max(MIN_BATCH_SIZE, keyList.size() / threadNumber + 1));
+        builder.addAll(keyList.iterator());
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = builder.build(valueList.toArray(new CoreDictionary.Attribute[0]));
+        dat.setPrefilter(PrefixFilter.build(dat));
+        return dat;
+    }
+
+
+    /**
+     * 加载用户词典（追加）
+     *
+     * @param path          词典路径
+     * @param defaultNature 默认词性
+     * @param customNatureCollector 收集用户词性
+     * @return
+     */
+    public static boolean load(String path, Nature defaultNature, TreeMap<String, CoreDictionary.Attribute> map, LinkedHashSet<Nature> customNatureCollector)
+    {
+        try
+        {
+            String splitter = "\\s";
+            if (path.endsWith(".csv"))
+            {
+                splitter = ",";
+            }
+            BufferedReader br = new BufferedReader(new InputStreamReader(IOUtil.newInputStream(path), "UTF-8"));
+            AttributePool pool = new AttributePool();
+            String line;
+            boolean firstLine = true;
+            while ((line = br.readLine()) != null)
+            {
+                if (firstLine)
+                {
+                    line = IOUtil.removeUTF8BOM(line);
+                    firstLine = false;
+                }
+                String[] param = line.split(splitter);
+                if (param[0].length() == 0) continue;   // 排除空行
+                if (HanLP.Config.Normalization) param[0] = CharTable.convert(param[0]); // 正规化
+
+                int natureCount = (param.length - 1) / 2;
+                CoreDictionary.Attribute attribute;
+                if (natureCount == 0)
+                {
+                    attribute = new CoreDictionary.Attribute(defaultNature);
+                }
+                else
+                {
+                    attribute = new CoreDictionary.Attribute(natureCount);
+                    for (int i = 0; i < natureCount; ++i)
+                    {
+                        attribute.nature[i] = LexiconUtility.convertStringToNature(param[1 + 2 * i], customNatureCollector);
+                        attribute.frequency[i] = Integer.parseInt(param[2 + 2 * i]);
+                        attribute.totalFrequency += attribute.frequency[i];
+                    }
+                }
+//                if (updateAttributeIfExist(param[0], attribute, map, rewriteTable)) continue;
+                map.put(param[0], pool.intern(attribute));
+            }
+            br.close();
+        }
+        catch (Exception e)
+        {
+            logger.severe("自定义词典" + path + "读取错误！" + e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * 如果已经存在该词条,直接更新该词条的属性
+     * @param key 词语
+     * @param attribute 词语的属性
+     * @param map 加载期间的map
+     * @param rewriteTable
+     * @return 是否更新了
+     */
+    private static boolean updateAttributeIfExist(String key, CoreDictionary.Attribute attribute, TreeMap<String, CoreDictionary.Attribute> map, TreeMap<Integer, CoreDictionary.Attribute> rewriteTable)
+    {
+        int wordID = CoreDictionary.getWordID(key);
+        if (wordID != -1)
+        {
+            // 词典中的属性可能被其他词语共享，只能整个替换
+            CoreDictionary.trie.set(key, attribute);
+            // 收集该覆写
+            rewriteTable.put(wordID, attribute);
+            return true;
+        }
+
+        if (map.get(key) != null)
+        {
+            map.put(key, attribute);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * 往自定义词典中插入一个新词（非覆盖模式）<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word                新词 如“裸婚”
+     * @param natureWithFrequency 词性和其对应的频次，比如“nz 1 v 2”，null时表示“nz 1”
+     * @return 是否插入成功（失败的原因可能是不覆盖、natureWithFrequency有问题等，后者可以通过调试模式了解原因）
+     */
+    public synchronized boolean add(String word, String natureWithFrequency)
+    {
+        if (contains(word)) return false;
+        return insert(word, natureWithFrequency);
+    }
+
+    /**
+     * 往自定义词典中插入一个新词（非覆盖模式）<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word                新词 如“裸婚”
+     * @return 是否插入成功（失败的原因可能是不覆盖等，可以通过调试模式了解原因）
+     */
+    public synchronized boolean add(String word)
+    {
+        if (HanLP.Config.Normalization) word = CharTable.convert(word);
+        if (contains(word)) return false;
+        return insert(word, null);
+    }
+
+    /**
+     * 往自定义词典中插入一个新词（覆盖模式）<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word                新词 如“裸婚”
+     * @param natureWithFrequency 词性和其对应的频次，比如“nz 1 v 2”，null时表示“nz 1”。
+     * @return 是否插入成功（失败的原因可能是natureWithFrequency问题，可以通过调试模式了解原因）
+     */
+    public boolean insert(String word, String natureWithFrequency)
+    {
+        if (word == null) return false;
+        CoreDictionary.Attribute att = natureWithFrequency == null ? new CoreDictionary.Attribute(Nature.nz, 1) : CoreDictionary.Attribute.create(natureWithFrequency);
+        return put(word, att);
+    }
+
+    /**
+     * 以覆盖模式增加新词，直接指定词条属性<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word      新词
+     * @param attribute 属性
+     * @return 是否插入成功
+     */
+    public boolean put(String word, CoreDictionary.Attribute attribute)
+    {
+        if (word == null || attribute == null) return false;
+        if (HanLP.Config.Normalization) word = CharTable.convert(word);
+        boolean needCompaction;
+        synchronized (this)
+        {
+            update(word, attribute);
+            needCompaction = compactionThreshold > 0 && snapshot.trie != null && snapshot.trie.size() >= compactionThreshold;
+        }
+        if (needCompaction) compactInBackground();
+        return true;
+    }
+
+    /**
+     * 在当前快照上增加、修改或删除一个词条，发布新快照（调用者必须持有锁）
+     *
+     * @param word      词语（已规范化）
+     * @param attribute 属性，null表示删除
+     */
+    private void update(String word, CoreDictionary.Attribute attribute)
+    {
+        Snapshot current = snapshot;
+        Snapshot next = apply(current, word, attribute);
+        if (next == current) return;
+        publish(next);
+        if (compactionLog != null)
+        {
+            compactionLog.add(new AbstractMap.SimpleEntry<String, CoreDictionary.Attribute>(word, attribute));
+        }
+    }
+
+    /**
+     * 在某个快照上增加、修改或删除一个词条，复制出新快照
+     *
+     * @param current   旧快照
+     * @param word      词语（已规范化）
+     * @param attribute 属性，null表示删除
+     * @return 新快照，没有任何变化时返回旧快照本身
+     */
+    private static Snapshot apply(Snapshot current, String word, CoreDictionary.Attribute attribute)
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> newDat = current.dat;
+        BinTrie<CoreDictionary.Attribute> newTrie = current.trie;
+        int index = current.dat.exactMatchSearch(word);
+        if (attribute == null)
+        {
+            // 删除：双数组无法删键，将值置为null即视为删除
+            if (index >= 0 && current.dat.get(index) != null)
+            {
+                newDat = current.dat.shallowCopy();
+                newDat.set(word, null);
+            }
+            if (current.trie != null && current.trie.containsKey(word))
+            {
+                newTrie = current.trie.copyAndRemove(word);
+            }
+            if (newDat == current.dat && newTrie == current.trie) return current;
+        }
+        else if (index >= 0)
+        {
+            newDat = current.dat.shallowCopy();
+            newDat.set(word, attribute);
+        }
+        else if (current.trie == null)
+        {
+            newTrie = new BinTrie<CoreDictionary.Attribute>();
+            newTrie.put(word, attribute);
+        }
+        else
+        {
+            newTrie = current.trie.copyAndPut(word, attribute);
+        }
+        return new Snapshot(newDat, newTrie, current.version + 1);
+    }
+
+    /**
+     * 以覆盖模式增加新词<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param word
+     * @return
+     */
+    public boolean insert(String word)
+    {
+        return insert(word, null);
+    }
+
+    /**
+     * 从磁盘加载双数组
+     *
+     * @param path
+     * @return
+     */
+    static boolean loadDat(String path, DoubleArrayTrie<CoreDictionary.Attribute> dat)
+    {
+        try
+        {
+            ByteArray byteArray = ByteArray.createByteArray(path + Predefine.BIN_EXT);
+            if (byteArray == null) return false;
+            CoreDictionary.Attribute[] attributes = loadAttributes(byteArray);
+            if (!dat.load(byteArray, attributes)) return false;
+            // 过滤器追加在双数组之后，旧的缓存没有，现场构建
+            PrefixFilter prefilter = PrefixFilter.load(byteArray);
+            dat.setPrefilter(prefilter == null ? PrefixFilter.build(dat) : prefilter);
+        }
+        catch (Exception e)
+        {
+            logger.warning("读取失败，问题发生在" + TextUtility.exceptionToString(e));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 映射主词典的bin缓存，属性在堆上解码，双数组直接从映射中读取
+     *
+     * @param path 主词典路径
+     * @return 映射的双数组，缓存不存在或无法映射时返回null
+     */
+    static DoubleArrayTrie<CoreDictionary.Attribute> mapDat(String path)
+    {
+        ByteBuffer buffer = IOUtil.map(path + Predefine.BIN_EXT);
+        if (buffer == null) return null;
+        try
+        {
+            ByteBufferArray byteArray = new ByteBufferArray(buffer);
+            CoreDictionary.Attribute[] attributes = loadAttributes(byteArray);
+            MappedDoubleArrayTrie<CoreDictionary.Attribute> dat = MappedDoubleArrayTrie.open(buffer, byteArray.getOffset(), attributes);
+            if (dat == null) return null;
+            PrefixFilter prefilter = PrefixFilter.load(buffer, byteArray.getOffset() + 4 + dat.getSize() * 8);
+            dat.setPrefilter(prefilter == null ? PrefixFilter.build(dat) : prefilter);
+            return dat;
+        }
+        catch (Exception e)
+        {
+            logger.warning("映射失败，问题发生在" + TextUtility.exceptionToString(e));
+            return null;
+        }
+    }
+
+    /**
+     * 读取bin缓存中双数组之前的部分：用户词性与属性
+     *
+     * @param byteArray 从头开始读
+     * @return 属性数组，读完之后byteArray位于双数组的起点
+     */
+    private static CoreDictionary.Attribute[] loadAttributes(ByteArray byteArray)
+    {
+        int size = byteArray.nextInt();
+        if (size < 0)   // 一种兼容措施,当size小于零表示文件头部储存了-size个用户词性
+        {
+            while (++size <= 0)
+            {
+                Nature.create(byteArray.nextString());
+            }
+            size = byteArray.nextInt();
+        }
+        CoreDictionary.Attribute[] attributes = new CoreDictionary.Attribute[size];
+        final Nature[] natureIndexArray = Nature.values();
+        AttributePool pool = new AttributePool();
+        for (int i = 0; i < size; ++i)
+        {
+            // 第一个是全部频次，第二个是词性个数，签名相同的词语共享同一个属性
+            attributes[i] = pool.read(byteArray, natureIndexArray);
+        }
+        return attributes;
+    }
+
+    /**
+     * 查单词
+     *
+     * @param key
+     * @return 属性的副本，修改它不会影响词典
+     */
+    public CoreDictionary.Attribute get(String key)
+    {
+        CoreDictionary.Attribute attribute = snapshot.get(key);
+        return attribute == null ? null : attribute.copy();
+    }
+
+    /**
+     * 删除单词<br>
+     *     动态增删不会持久化到词典文件
+     *
+     * @param key
+     */
+    public synchronized void remove(String key)
+    {
+        if (HanLP.Config.Normalization) key = CharTable.convert(key);
+        update(key, null);
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param key
+     * @return
+     */
+    public LinkedList<Map.Entry<String, CoreDictionary.Attribute>> commonPrefixSearch(String key)
+    {
+        return snapshot.trie.commonPrefixSearchWithValue(key);
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param chars
+     * @param begin
+     * @return
+     */
+    public LinkedList<Map.Entry<String, CoreDictionary.Attribute>> commonPrefixSearch(char[] chars, int begin)
+    {
+        return snapshot.trie.commonPrefixSearchWithValue(chars, begin);
+    }
+
+    public BaseSearcher getSearcher(String text)
+    {
+        return new Searcher(snapshot.trie, text);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DynamicCustomDictionary{" +
+                "path=" + Arrays.toString(path) +
+                ", trie=" + snapshot.trie +
+                '}';
+    }
+
+    /**
+     * 词典中是否含有词语
+     * @param key 词语
+     * @return 是否包含
+     */
+    public boolean contains(String key)
+    {
+        return snapshot.contains(key);
+    }
+
+    /**
+     * 获取一个BinTrie的查询工具
+     * @param charArray 文本
+     * @return 查询者
+     */
+    public BaseSearcher getSearcher(char[] charArray)
+    {
+        return new Searcher(snapshot.trie, charArray);
+    }
+
+    static class Searcher extends BaseSearcher<CoreDictionary.Attribute>
+    {
+        /**
+         * 分词从何处开始，这是一个状态
+         */
+        int begin;
+
+        private LinkedList<Map.Entry<String, CoreDictionary.Attribute>> entryList;
+        private final BinTrie<CoreDictionary.Attribute> trie;
+
+        protected Searcher(BinTrie<CoreDictionary.Attribute> trie, char[] c)
+        {
+            super(c);
+            this.trie = trie;
+            entryList = new LinkedList<Map.Entry<String, CoreDictionary.Attribute>>();
+        }
+
+        protected Searcher(BinTrie<CoreDictionary.Attribute> trie, String text)
+        {
+            super(text);
+            this.trie = trie;
+            entryList = new LinkedList<Map.Entry<String, CoreDictionary.Attribute>>();
+        }
+
+        @Override
+        public Map.Entry<String, CoreDictionary.Attribute> next()
+        {
+            // 保证首次调用找到一个词语
+            while (entryList.size() == 0 && begin < c.length)
+            {
+                entryList = trie.commonPrefixSearchWithValue(c, begin);
+                ++begin;
+            }
+            // 之后调用仅在缓存用完的时候调用一次
+            if (entryList.size() == 0 && begin < c.length)
+            {
+                entryList = trie.commonPrefixSearchWithValue(c, begin);
+                ++begin;
+            }
+            if (entryList.size() == 0)
+            {
+                return null;
+            }
+            Map.Entry<String, CoreDictionary.Attribute> result = entryList.getFirst();
+            entryList.removeFirst();
+            offset = begin - 1;
+            return result;
+        }
+    }
+
+    /**
+     * 获取词典对应的trie树
+     *
+     * @return
+     * @deprecated 谨慎操作，有可能废弃此接口
+     */
+    public BinTrie<CoreDictionary.Attribute> getTrie()
+    {
+        return snapshot.trie;
+    }
+
+    /**
+     * 解析一段文本（目前采用了BinTrie+DAT的混合储存形式，此方法可以统一两个数据结构）
+     * @param text         文本
+     * @param processor    处理器
+     */
+    public void parseText(char[] text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        snapshot.parseText(text, processor);
+    }
+
+    /**
+     * 解析一段文本（目前采用了BinTrie+DAT的混合储存形式，此方法可以统一两个数据结构）
+     * @param text         文本
+     * @param processor    处理器
+     */
+    public void parseText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        snapshot.parseText(text, processor);
+    }
+
+    /**
+     * 最长匹配
+     *
+     * @param text      文本
+     * @param processor 处理器
+     */
+    public void parseLongestText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        snapshot.parseLongestText(text, processor);
+    }
+
+    /**
+     * 全切分，扫描过程中不创建词语字符串，也不为每个位置创建候选列表
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器，命中的位置相对于整个text
+     */
+    public void parseText(char[] text, int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        snapshot.parseText(text, begin, end, processor);
+    }
+
+    /**
+     * 最长匹配，扫描过程中不创建任何对象
+     *
+     * @param text      文本
+     * @param begin     扫描的起点（包含）
+     * @param end       扫描的终点（不包含）
+     * @param processor 处理器，命中的位置相对于整个text
+     */
+    public void parseLongestText(char[] text, int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+    {
+        snapshot.parseLongestText(text, begin, end, processor);
+    }
+
+    /**
+     * 热更新（重新加载）<br>
+     * 集群环境（或其他IOAdapter）需要自行删除缓存文件（路径 = path[0] + Predefine.BIN_EXT）
+     * @return 是否加载成功
+     */
+    public boolean reload()
+    {
+        String path[] = this.path;
+        if (path == null || path.length == 0) return false;
+        IOUtil.deleteFile(path[0] + Predefine.BIN_EXT); // 删掉缓存
+        // 在锁外构建新词典，期间读写都不受影响
+        DoubleArrayTrie<CoreDictionary.Attribute> mainDat = loadMainDictionary(path[0]);
+        if (mainDat == null) return false;
+        synchronized (this)
+        {
+            Snapshot current = snapshot;
+            publish(new Snapshot(mainDat, current.trie, current.version + 1));
+            compactionLog = null;   // 正在进行的合并基于旧的主词典，作废
+        }
+        return true;
+    }
+
+    /**
+     * 将动态插入的词条（BinTrie）合并进主词典（DAT），然后原子地替换快照<br>
+     * 动态词条多了之后，BinTrie的查询速度和内存占用都不如DAT。合并时先在锁外从当前快照构建新的DAT，
+     * 期间的增删照常进行并被记录下来，构建完毕后在锁内重放到新快照上再发布，所以合并不会阻塞读写，也不会丢失更新。<br>
+     * 合并后动态词条成为主词典的一部分，热更新（reload）时以词典文件为准
+     *
+     * @param persist 是否将合并后的词典写入缓存文件（path[0] + Predefine.BIN_EXT），下次启动直接加载
+     * @return 是否进行了合并（没有动态词条、已有合并在进行或合并期间词典被重新加载时返回false）
+     */
+    public boolean compact(boolean persist)
+    {
+        Snapshot base;
+        List<Map.Entry<String, CoreDictionary.Attribute>> log = new ArrayList<Map.Entry<String, CoreDictionary.Attribute>>();
+        synchronized (this)
+        {
+            base = snapshot;
+            if (compactionLog != null || base.trie == null || base.trie.size() == 0) return false;
+            compactionLog = log;
+        }
+        try
+        {
+            long start = System.currentTimeMillis();
+            DoubleArrayTrie<CoreDictionary.Attribute> merged = merge(base);
+            if (persist && path != null && path.length > 0 && saveDat(path[0], merged) && HanLP.Config.DictionaryMapped)
+            {
+                DoubleArrayTrie<CoreDictionary.Attribute> mapped = mapDat(path[0]);
+                if (mapped != null) merged = mapped;
+            }
+            synchronized (this)
+            {
+                if (compactionLog != log) return false;
+                Snapshot compacted = new Snapshot(merged, null, snapshot.version + 1);
+                for (Map.Entry<String, CoreDictionary.Attribute> entry : log)
+                {
+                    compacted = apply(compacted, entry.getKey(), entry.getValue());
+                }
+                publish(compacted);
+            }
+            logger.info("用户词典合并完毕:" + merged.size() + "个词条，耗时" + (System.currentTimeMillis() - start) + "ms");
+            return true;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (compactionLog == log) compactionLog = null;
+            }
+        }
+    }
+
+    /**
+     * 将快照中的DAT与BinTrie合并为一棵新的DAT，已删除的词条被丢弃
+     */
+    private static DoubleArrayTrie<CoreDictionary.Attribute> merge(Snapshot base)
+    {
+        List<Map.Entry<String, CoreDictionary.Attribute>> datEntryList = base.dat.entryList();
+        List<String> keyList = new ArrayList<String>(datEntryList.size() + base.trie.size());
+        List<CoreDictionary.Attribute> valueList = new ArrayList<CoreDictionary.Attribute>(datEntryList.size() + base.trie.size());
+        Iterator<Map.Entry<String, CoreDictionary.Attribute>> datIterator = datEntryList.iterator();
+        Iterator<Map.Entry<String, CoreDictionary.Attribute>> trieIterator = base.trie.entrySet().iterator();
+        Map.Entry<String, CoreDictionary.Attribute> a = datIterator.hasNext() ? datIterator.next() : null;
+        Map.Entry<String, CoreDictionary.Attribute> b = trieIterator.hasNext() ? trieIterator.next() : null;
+        // 两路归并，两者都是按字典序排列的
+        while (a != null || b != null)
+        {
+            int cmp = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            Map.Entry<String, CoreDictionary.Attribute> entry = cmp < 0 ? a : b;   // 相同的键以BinTrie为准
+            if (entry.getValue() != null)
+            {
+                keyList.add(entry.getKey());
+                valueList.add(entry.getValue());
+            }
+            if (cmp <= 0) a = datIterator.hasNext() ? datIterator.next() : null;
+            if (cmp >= 0) b = trieIterator.hasNext() ? trieIterator.next() : null;
+        }
+        if (keyList.isEmpty())
+        {
+            keyList.add(Predefine.TAG_OTHER);   // 当作空白占位符
+            valueList.add(null);
+        }
+        return buildDat(keyList, valueList);
+    }
+
+    /**
+     * 将双数组缓存为主词典的bin文件，格式与{@link #loadDat(String, DoubleArrayTrie)}一致
+     *
+     * @param mainPath 主词典路径
+     * @param dat      双数组
+     * @return 是否成功
+     */
+    private static boolean saveDat(String mainPath, DoubleArrayTrie<CoreDictionary.Attribute> dat)
+    {
+        try
+        {
+            // 按编号顺序缓存用户词性，加载时按同样的顺序创建，编号才能对得上
+            LinkedHashSet<Nature> customNatureCollector = new LinkedHashSet<Nature>();
+            Nature[] natures = Nature.values();
+            for (int i = Nature.begin.ordinal() + 1; i < natures.length; ++i)
+            {
+                customNatureCollector.add(natures[i]);
+            }
+            // 旧的缓存可能正被映射着，原地截断会让映射失效，所以先删除再写新文件
+            IOUtil.deleteFile(mainPath + Predefine.BIN_EXT);
+            DataOutputStream out = new DataOutputStream(IOUtil.newOutputStream(mainPath + Predefine.BIN_EXT));
+            IOUtil.writeCustomNature(out, customNatureCollector);
+            out.writeInt(dat.size());
+            for (int i = 0; i < dat.size(); ++i)
+            {
+                dat.get(i).save(out);
+            }
+            dat.save(out);
+            if (dat.getPrefilter() != null) dat.getPrefilter().save(out);
+            out.close();
+        }
+        catch (Exception e)
+        {
+            logger.warning("用户词典" + mainPath + "缓存失败！\n" + TextUtility.exceptionToString(e));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 开启自动合并：动态词条数达到阈值，或每隔一段时间，在后台线程中调用{@link #compact(boolean)}
+     *
+     * @param sizeThreshold 动态词条数达到多少时合并，小于等于0表示不按词条数触发
+     * @param periodMillis  每隔多少毫秒尝试合并一次，小于等于0表示不定时触发
+     * @param persist       合并后是否写入缓存文件
+     */
+    public synchronized void enableAutoCompaction(int sizeThreshold, long periodMillis, final boolean persist)
+    {
+        disableAutoCompaction();
+        compactionThreshold = sizeThreshold;
+        compactionPersist = persist;
+        compactionExecutor = new ScheduledThreadPoolExecutor(1, SegmentExecutor.newThreadFactory("HanLP-CustomDictionary-"));
+        if (periodMillis > 0)
+        {
+            compactionExecutor.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    compactQuietly(persist);
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 关闭自动合并（正在进行的合并会被打断或作废）
+     */
+    public synchronized void disableAutoCompaction()
+    {
+        compactionThreshold = 0;
+        if (compactionExecutor != null)
+        {
+            compactionExecutor.shutdownNow();
+            compactionExecutor = null;
+        }
+    }
+
+    /**
+     * 提交一次后台合并，已有合并在排队时忽略
+     */
+    private void compactInBackground()
+    {
+        ScheduledThreadPoolExecutor executor = compactionExecutor;
+        if (executor == null || !compactionScheduled.compareAndSet(false, true)) return;
+        final boolean persist = compactionPersist;
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    compactionScheduled.set(false);
+                    compactQuietly(persist);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            compactionScheduled.set(false);
+        }
+    }
+
+    private void compactQuietly(boolean persist)
+    {
+        try
+        {
+            compact(persist);
+        }
+        catch (Exception e)
+        {
+            logger.warning("用户词典合并失败\n" + TextUtility.exceptionToString(e));
+        }
+    }
+
+    /**
+     * 词典版本号，词典每被修改一次（add、insert、remove、reload）就加一
+     *
+     * @return 版本号
+     */
+    public long getVersion()
+    {
+        return snapshot.version;
+    }
+
+    /**
+     * 获取当前快照。快照是不可变的，分词一个句子时应当自始至终使用同一个快照
+     *
+     * @return 当前快照
+     */
+    public Snapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * 主词典的前缀过滤器，可以读取它的跳过率（动态插入的词条不经过过滤器）
+     *
+     * @return 过滤器
+     */
+    public PrefixFilter getPrefilter()
+    {
+        return snapshot.dat.getPrefilter();
+    }
+
+    /**
+     * 发布新快照
+     */
+    private void publish(Snapshot newSnapshot)
+    {
+        Snapshot previous = snapshot;
+        snapshot = newSnapshot;
+        if (previous != null) CombinedDictionary.onPublish(previous.dat, newSnapshot.dat);
+        onPublish(newSnapshot);
+    }
+
+    /**
+     * 新快照发布后的回调，子类可以覆盖此方法同步自己的状态（调用时持有本词典的锁）
+     *
+     * @param snapshot 新快照
+     */
+    protected void onPublish(Snapshot snapshot)
+    {
+    }
+
+    /**
+     * 用户词典某一时刻的只读视图<br>
+     * 快照发布后不再被修改（写操作总是复制出新的快照），因此可以被任意多个线程无锁地读取
+     */
+    public static final class Snapshot
+    {
+        /**
+         * 主词典
+         */
+        public final DoubleArrayTrie<CoreDictionary.Attribute> dat;
+        /**
+         * 动态插入的词条，可能为null
+         */
+        public final BinTrie<CoreDictionary.Attribute> trie;
+        /**
+         * 版本号
+         */
+        public final long version;
+
+        Snapshot(DoubleArrayTrie<CoreDictionary.Attribute> dat, BinTrie<CoreDictionary.Attribute> trie, long version)
+        {
+            this.dat = dat;
+            this.trie = trie;
+            this.version = version;
+        }
+
+        /**
+         * 查单词
+         *
+         * @param key
+         * @return 词典中共享的属性，请勿修改
+         */
+        public CoreDictionary.Attribute get(String key)
+        {
+            if (HanLP.Config.Normalization) key = CharTable.convert(key);
+            CoreDictionary.Attribute attribute = dat.get(key);
+            if (attribute != null) return attribute;
+            if (trie == null) return null;
+            return trie.get(key);
+        }
+
+        /**
+         * 词典中是否含有词语
+         * @param key 词语
+         * @return 是否包含
+         */
+        public boolean contains(String key)
+        {
+            int index = dat.exactMatchSearch(key);
+            if (index >= 0 && dat.get(index) != null) return true;
+            return trie != null && trie.containsKey(key);
+        }
+
+        /**
+         * 解析一段文本（目前采用了BinTrie+DAT的混合储存形式，此方法可以统一两个数据结构）
+         * @param text         文本
+         * @param processor    处理器
+         */
+        public void parseText(char[] text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            parseText(text, 0, text.length, processor);
+        }
+
+        /**
+         * 解析一段文本（目前采用了BinTrie+DAT的混合储存形式，此方法可以统一两个数据结构）
+         * @param text         文本
+         * @param processor    处理器
+         */
+        public void parseText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            char[] charArray = text.toCharArray();
+            parseText(charArray, 0, charArray.length, processor);
+        }
+
+        /**
+         * 只用动态插入的词条（BinTrie）全切分，命中的顺序与{@link #parseText(char[], int, int, AhoCorasickDoubleArrayTrie.IHit)}中的相同
+         *
+         * @param text      文本
+         * @param begin     扫描的起点（包含）
+         * @param end       扫描的终点（不包含）
+         * @param processor 处理器，命中的位置相对于整个text
+         */
+        public void parseTrieText(char[] text, int begin, int end, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            if (trie == null) return;
+            for (int i = begin; i < end; ++i)
+            {
+                BaseNode<CoreDictionary.Attribute> state = trie;
+                for (int j = i; j < end; ++j)
+                {
+                    state = state.transition(text[j]);
+                    if (state == null) break;
+                    CoreDictionary.Attribute value = state.getValue();
+                    if (value != null) processor.hit(i, j + 1, value);
+                }
+            }
+        }
+
+        /**
+         * 全切分，扫描过程中不创建词语字符串，也不为每个位置创建候选列表
+         *
+         * @param text      文本
+         * @param begin     扫描的起点（包含）
+         * @param end       扫描的终点（不包含）
+         * @param processor 处理器，命中的位置相对于整个text
+         */
+        public void parseText(char[] text, int begin, int end, final AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            parseTrieText(text, begin, end, processor);
+            final DoubleArrayTrie<CoreDictionary.Attribute> dat = this.dat;
+            dat.parseText(text, begin, end, new DoubleArrayTrie.IHitIndex()
+            {
+                @Override
+                public void hit(int begin, int end, int index)
+                {
+                    CoreDictionary.Attribute value = dat.get(index);
+                    if (value != null) processor.hit(begin, end, value);  // 值为null的词条已删除
+                }
+            });
+        }
+
+        /**
+         * 最长匹配
+         *
+         * @param text      文本
+         * @param processor 处理器
+         */
+        public void parseLongestText(String text, AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            char[] charArray = text.toCharArray();
+            parseLongestText(charArray, 0, charArray.length, processor);
+        }
+
+        /**
+         * 最长匹配，扫描过程中不创建任何对象。两个数据结构在同一位置的匹配一样长时以DAT为准
+         *
+         * @param text      文本
+         * @param begin     扫描的起点（包含）
+         * @param end       扫描的终点（不包含）
+         * @param processor 处理器，命中的位置相对于整个text
+         */
+        public void parseLongestText(char[] text, int begin, int end, final AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor)
+        {
+            final DoubleArrayTrie<CoreDictionary.Attribute> dat = this.dat;
+            if (trie == null)
+            {
+                dat.parseLongestText(text, begin, end, new DoubleArrayTrie.IHitIndex()
+                {
+                    @Override
+                    public void hit(int begin, int end, int index)
+                    {
+                        processor.hit(begin, end, dat.get(index));
+                    }
+                });
+                return;
+            }
+            int root = dat.rootBase();
+            final PrefixFilter prefilter = dat.getPrefilter();
+            for (int i = begin; i < end; )
+            {
+                int length = 0;
+                CoreDictionary.Attribute value = null;
+                int b = prefilter == null || prefilter.mayStart(text, i, end) ? root : -1;
+                for (int j = i; j < end && b >= 0; ++j)
+                {
+                    b = dat.transition(text[j], b);
+                    if (b < 0) break;
+                    CoreDictionary.Attribute output = dat.output(b);
+                    if (output != null)
+                    {
+                        length = j - i + 1;
+                        value = output;
+                    }
+                }
+                BaseNode<CoreDictionary.Attribute> state = trie;
+                for (int j = i; j < end; ++j)
+                {
+                    state = state.transition(text[j]);
+                    if (state == null) break;
+                    if (j - i + 1 > length && state.getValue() != null)
+                    {
+                        length = j - i + 1;
+                        value = state.getValue();
+                    }
+                }
+                if (value != null)
+                {
+                    processor.hit(i, i + length, value);
+                    i += length;
+                }
+                else
+                {
+                    ++i;
+                }
+            }
+        }
+    }
+}
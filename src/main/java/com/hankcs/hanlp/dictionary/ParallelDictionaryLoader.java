@@ -0,0 +1,372 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.hanlp.seg.SegmentExecutor;
+import com.hankcs.hanlp.utility.LexiconUtility;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.*;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 并行加载多个用户词典文本文件<br>
+ * 流水线分三步：各文件并行读入行；按行切块并行解析，每块排好序成为一个有序段；有序段两两归并，每一轮内部也是并行的。
+ * 归并代替了逐条插入TreeMap，结果与顺序加载完全一致：同一个词出现多次时，以后面的文件、后面的行为准。
+ * 输出的键按字典序排列，可以直接用来构建DoubleArrayTrie。
+ */
+public class ParallelDictionaryLoader
+{
+    /**
+     * 每个解析任务处理的行数
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * 用全部CPU加载
+     *
+     * @see #load(String[], int, List, List, LinkedHashSet)
+     */
+    public static boolean load(String[] path, List<String> keyList, List<CoreDictionary.Attribute> valueList, LinkedHashSet<Nature> customNatureCollector)
+    {
+        return load(path, Runtime.getRuntime().availableProcessors(), keyList, valueList, customNatureCollector);
+    }
+
+    /**
+     * 加载词典
+     *
+     * @param path                  词典路径，每个路径后面可以用空格隔开跟一个默认词性
+     * @param threadNumber          线程数
+     * @param keyList               储存按字典序排列的词语
+     * @param valueList             储存对应的属性
+     * @param customNatureCollector 收集用户词性（按词性编号排列）
+     * @return 是否所有文件都加载成功（失败的文件会被跳过）
+     */
+    public static boolean load(String[] path, int threadNumber, List<String> keyList, List<CoreDictionary.Attribute> valueList, LinkedHashSet<Nature> customNatureCollector)
+    {
+        boolean success = true;
+        final List<String> fileList = new ArrayList<String>(path.length);
+        final List<Nature> defaultNatureList = new ArrayList<Nature>(path.length);
+        for (String p : path)
+        {
+            Nature defaultNature = Nature.n;
+            int cut = p.indexOf(' ');
+            if (cut > 0)
+            {
+                // 有默认词性
+                String nature = p.substring(cut + 1);
+                p = p.substring(0, cut);
+                try
+                {
+                    defaultNature = LexiconUtility.convertStringToNature(nature, customNatureCollector);
+                }
+                catch (Exception e)
+                {
+                    logger.severe("配置文件【" + p + "】写错了！" + e);
+                    success = false;
+                    continue;
+                }
+            }
+            logger.info("以默认词性[" + defaultNature + "]加载自定义词典" + p + "中……");
+            fileList.add(p);
+            defaultNatureList.add(defaultNature);
+        }
+
+        // 1. 各文件并行读入
+        final String[][] lines = new String[fileList.size()][];
+        SegmentExecutor.invokeAll(null, threadNumber, fileList.size(), new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                lines[index] = readLines(fileList.get(index));
+            }
+        });
+
+        // 2. 切块并行解析，每块成为一个有序段
+        final List<Chunk> chunkList = new ArrayList<Chunk>();
+        for (int i = 0; i < lines.length; ++i)
+        {
+            if (lines[i] == null)
+            {
+                logger.warning("失败：" + fileList.get(i));
+                success = false;
+                continue;
+            }
+            for (int from = 0; from < lines[i].length; from += CHUNK_SIZE)
+            {
+                chunkList.add(new Chunk(lines[i], from, Math.min(from + CHUNK_SIZE, lines[i].length),
+                                        defaultNatureList.get(i), fileList.get(i).endsWith(".csv")));
+            }
+        }
+        final Run[] runs = new Run[chunkList.size()];
+        final List<LinkedHashSet<Nature>> collectorList = new ArrayList<LinkedHashSet<Nature>>(runs.length);
+        for (int i = 0; i < runs.length; ++i)
+        {
+            collectorList.add(new LinkedHashSet<Nature>());
+        }
+        final AttributePool pool = new AttributePool();    // 只在本次加载中使用，各块并发驻留
+        SegmentExecutor.invokeAll(null, threadNumber, runs.length, new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                runs[index] = chunkList.get(index).parse(pool, collectorList.get(index));
+            }
+        });
+        chunkList.clear();
+        Arrays.fill(lines, null);
+
+        // 3. 两两归并，靠后的段优先
+        Run merged = mergeAll(runs, threadNumber);
+        if (merged != null)
+        {
+            for (int i = 0; i < merged.size; ++i)
+            {
+                keyList.add(merged.key[i]);
+                valueList.add(merged.value[i]);
+            }
+        }
+
+        TreeSet<Nature> natureSet = new TreeSet<Nature>(new Comparator<Nature>()
+        {
+            @Override
+            public int compare(Nature o1, Nature o2)
+            {
+                return o1.ordinal() - o2.ordinal();
+            }
+        });
+        for (LinkedHashSet<Nature> collector : collectorList)
+        {
+            natureSet.addAll(collector);
+        }
+        natureSet.addAll(customNatureCollector);
+        customNatureCollector.clear();
+        customNatureCollector.addAll(natureSet);
+        return success;
+    }
+
+    private static String[] readLines(String path)
+    {
+        try
+        {
+            BufferedReader br = new BufferedReader(new InputStreamReader(IOUtil.newInputStream(path), "UTF-8"));
+            List<String> lineList = new ArrayList<String>();
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                if (lineList.isEmpty()) line = IOUtil.removeUTF8BOM(line);
+                lineList.add(line);
+            }
+            br.close();
+            return lineList.toArray(new String[0]);
+        }
+        catch (Exception e)
+        {
+            logger.severe("自定义词典" + path + "读取错误！" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 反复两两归并，直到只剩一个有序段
+     */
+    private static Run mergeAll(Run[] runs, int threadNumber)
+    {
+        while (runs.length > 1)
+        {
+            final Run[] current = runs;
+            final Run[] next = new Run[(current.length + 1) / 2];
+            SegmentExecutor.invokeAll(null, threadNumber, next.length, new SegmentExecutor.Task()
+            {
+                @Override
+                public void run(int index)
+                {
+                    int left = index * 2;
+                    next[index] = left + 1 < current.length ? merge(current[left], current[left + 1]) : current[left];
+                }
+            });
+            runs = next;
+        }
+        return runs.length == 0 ? null : runs[0];
+    }
+
+    /**
+     * 归并两个有序段，键相同时以right为准
+     */
+    static Run merge(Run left, Run right)
+    {
+        Run run = new Run(left.size + right.size);
+        int i = 0, j = 0;
+        while (i < left.size && j < right.size)
+        {
+            int cmp = left.key[i].compareTo(right.key[j]);
+            if (cmp < 0)
+            {
+                run.add(left.key[i], left.value[i]);
+                ++i;
+            }
+            else
+            {
+                run.add(right.key[j], right.value[j]);
+                if (cmp == 0) ++i;
+                ++j;
+            }
+        }
+        for (; i < left.size; ++i) run.add(left.key[i], left.value[i]);
+        for (; j < right.size; ++j) run.add(right.key[j], right.value[j]);
+        return run;
+    }
+
+    /**
+     * 按字典序排列、键不重复的一段词条
+     */
+    static class Run
+    {
+        String[] key;
+        CoreDictionary.Attribute[] value;
+        int size;
+
+        Run(int capacity)
+        {
+            key = new String[capacity];
+            value = new CoreDictionary.Attribute[capacity];
+        }
+
+        void add(String k, CoreDictionary.Attribute v)
+        {
+            key[size] = k;
+            value[size] = v;
+            ++size;
+        }
+    }
+
+    /**
+     * 一个文件中的若干行
+     */
+    private static class Chunk
+    {
+        final String[] lines;
+        final int from;
+        final int to;
+        final Nature defaultNature;
+        final boolean csv;
+
+        Chunk(String[] lines, int from, int to, Nature defaultNature, boolean csv)
+        {
+            this.lines = lines;
+            this.from = from;
+            this.to = to;
+            this.defaultNature = defaultNature;
+            this.csv = csv;
+        }
+
+        Run parse(AttributePool pool, LinkedHashSet<Nature> customNatureCollector)
+        {
+            Map<String, Nature> natureCache = new HashMap<String, Nature>();
+            Item[] items = new Item[to - from];
+            int size = 0;
+            List<String> param = new ArrayList<String>();
+            for (int n = from; n < to; ++n)
+            {
+                split(lines[n], csv, param);
+                if (param.isEmpty() || param.get(0).length() == 0) continue;   // 排除空行
+                String word = param.get(0);
+                if (HanLP.Config.Normalization) word = CharTable.convert(word); // 正规化
+                int natureCount = (param.size() - 1) / 2;
+                CoreDictionary.Attribute attribute;
+                try
+                {
+                    if (natureCount == 0)
+                    {
+                        attribute = new CoreDictionary.Attribute(defaultNature);
+                    }
+                    else
+                    {
+                        attribute = new CoreDictionary.Attribute(natureCount);
+                        for (int i = 0; i < natureCount; ++i)
+                        {
+                            attribute.nature[i] = toNature(param.get(1 + 2 * i), natureCache, customNatureCollector);
+                            attribute.frequency[i] = Integer.parseInt(param.get(2 + 2 * i));
+                            attribute.totalFrequency += attribute.frequency[i];
+                        }
+                    }
+                }
+                catch (Exception e)
+                {
+                    logger.warning("自定义词典第" + (n + 1) + "行格式错误：" + lines[n]);
+                    continue;
+                }
+                items[size++] = new Item(word, pool.intern(attribute));
+            }
+            Arrays.sort(items, 0, size);   // 稳定排序，相同的键保持行序
+            Run run = new Run(size);
+            for (int i = 0; i < size; ++i)
+            {
+                if (i + 1 < size && items[i].key.equals(items[i + 1].key)) continue;   // 以后面的行为准
+                run.add(items[i].key, items[i].value);
+            }
+            return run;
+        }
+
+        private static Nature toNature(String name, Map<String, Nature> natureCache, LinkedHashSet<Nature> customNatureCollector)
+        {
+            Nature nature = natureCache.get(name);
+            if (nature == null)
+            {
+                synchronized (Nature.class)
+                {
+                    nature = LexiconUtility.convertStringToNature(name, customNatureCollector);
+                }
+                natureCache.put(name, nature);
+            }
+            return nature;
+        }
+    }
+
+    /**
+     * 与line.split(csv ? "," : "\\s")的结果相同，但不经过正则表达式
+     */
+    static void split(String line, boolean csv, List<String> param)
+    {
+        param.clear();
+        int begin = 0;
+        int length = line.length();
+        for (int i = 0; i < length; ++i)
+        {
+            char c = line.charAt(i);
+            if (csv ? c == ',' : (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'))
+            {
+                param.add(line.substring(begin, i));
+                begin = i + 1;
+            }
+        }
+        param.add(line.substring(begin));
+        // String.split会去掉末尾的空串
+        int size = param.size();
+        while (size > 0 && param.get(size - 1).length() == 0) param.remove(--size);
+        if (size == 0 && length == 0) param.add("");
+    }
+
+    private static class Item implements Comparable<Item>
+    {
+        final String key;
+        final CoreDictionary.Attribute value;
+
+        Item(String key, CoreDictionary.Attribute value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Item o)
+        {
+            return key.compareTo(o.key);
+        }
+    }
+}
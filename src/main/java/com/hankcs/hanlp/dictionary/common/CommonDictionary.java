@@ -11,15 +11,23 @@
  */
 package com.hankcs.hanlp.dictionary.common;
 
+import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.ITrie;
+import com.hankcs.hanlp.collection.trie.MappedDoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.PrefixFilter;
+import com.hankcs.hanlp.collection.trie.TailDoubleArrayTrie;
 import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.ByteBufferArray;
 import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.utility.ByteUtil;
 import com.hankcs.hanlp.utility.TextUtility;
 
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import static com.hankcs.hanlp.utility.Predefine.BIN_EXT;
@@ -32,7 +40,11 @@ import static com.hankcs.hanlp.utility.Predefine.logger;
  */
 public abstract class CommonDictionary<V>
 {
-    DoubleArrayTrie<V> trie;
+    /**
+     * 加载时选定实现：一般为{@link DoubleArrayTrie}（或映射的{@link MappedDoubleArrayTrie}），
+     * 配置了{@link HanLP.Config#DictionaryCompact}时为{@link TailDoubleArrayTrie}
+     */
+    ITrie<V> trie;
 
     /**
      * 从字节中加载值数组
@@ -50,8 +62,13 @@ public abstract class CommonDictionary<V>
      */
     public boolean load(String path)
     {
-        trie = new DoubleArrayTrie<V>();
+        boolean compact = HanLP.Config.DictionaryCompact;
+        trie = compact ? new TailDoubleArrayTrie<V>() : new DoubleArrayTrie<V>();
         long start = System.currentTimeMillis();
+        if (!compact && HanLP.Config.DictionaryMapped && loadMapped(path + BIN_EXT))
+        {
+            return true;
+        }
         if (loadDat(ByteArray.createByteArray(path + BIN_EXT)))
         {
             return true;
@@ -74,25 +91,54 @@ public abstract class CommonDictionary<V>
             return false;
         }
         onLoaded(map);
-        Set<Map.Entry<String, V>> entrySet = map.entrySet();
-        List<String> keyList = new ArrayList<String>(entrySet.size());
-        List<V> valueList = new ArrayList<V>(entrySet.size());
-        for (Map.Entry<String, V> entry : entrySet)
-        {
-            keyList.add(entry.getKey());
-            valueList.add(entry.getValue());
-        }
-        int resultCode = trie.build(keyList, valueList);
+        List<V> valueList = new ArrayList<V>(map.values());
+        int resultCode = trie.build(map);
         if (resultCode != 0)
         {
             logger.warning("trie建立失败");
             return false;
         }
+        DoubleArrayTrie<V> dat = getDoubleArrayTrie();
+        if (dat != null) dat.setPrefilter(PrefixFilter.build(dat));
         logger.info(path + "加载成功，耗时" + (System.currentTimeMillis() - start) + "ms");
-        saveDat(path + BIN_EXT, valueList);
+        if (saveDat(path + BIN_EXT, valueList) && !compact && HanLP.Config.DictionaryMapped)
+        {
+            // 换成映射的，刚构建的双数组随即被回收
+            ITrie<V> built = trie;
+            if (!loadMapped(path + BIN_EXT)) trie = built;
+        }
         return true;
     }
 
+    /**
+     * 映射bin缓存，值在堆上解码，双数组直接从映射中读取
+     *
+     * @param path bin缓存的路径
+     * @return 是否成功
+     */
+    protected boolean loadMapped(String path)
+    {
+        ByteBuffer buffer = IOUtil.map(path);
+        if (buffer == null) return false;
+        try
+        {
+            ByteBufferArray byteArray = new ByteBufferArray(buffer);
+            V[] valueArray = loadValueArray(byteArray);
+            if (valueArray == null) return false;
+            MappedDoubleArrayTrie<V> mapped = MappedDoubleArrayTrie.open(buffer, byteArray.getOffset(), valueArray);
+            if (mapped == null) return false;
+            PrefixFilter prefilter = PrefixFilter.load(buffer, byteArray.getOffset() + 4 + mapped.getSize() * 8);
+            mapped.setPrefilter(prefilter == null ? PrefixFilter.build(mapped) : prefilter);
+            trie = mapped;
+            return true;
+        }
+        catch (Exception e)
+        {
+            logger.warning("映射" + path + "失败" + TextUtility.exceptionToString(e));
+            return false;
+        }
+    }
+
     /**
      * 从dat路径加载
      *
@@ -106,7 +152,37 @@ public abstract class CommonDictionary<V>
         {
             return false;
         }
-        return trie.load(byteArray.getBytes(), byteArray.getOffset(), valueArray);
+        int offset = byteArray.getOffset();
+        // 缓存的格式与配置不符时返回false，从文本重建
+        boolean compact;
+        if (byteArray instanceof ByteBufferArray)   // 词典包中映射的分区
+        {
+            ByteBuffer buffer = ((ByteBufferArray) byteArray).getBuffer();
+            compact = buffer.limit() >= offset + 4 && buffer.getInt(offset) == TailDoubleArrayTrie.MAGIC;
+        }
+        else
+        {
+            byte[] bytes = byteArray.getBytes();
+            compact = bytes.length >= offset + 4 && ByteUtil.bytesHighFirstToInt(bytes, offset) == TailDoubleArrayTrie.MAGIC;
+        }
+        DoubleArrayTrie<V> dat = getDoubleArrayTrie();
+        if (compact == (dat != null)) return false;
+        if (compact) return trie.load(byteArray, valueArray);
+        // 过滤器追加在双数组之后，旧的缓存没有，现场构建
+        PrefixFilter prefilter;
+        if (byteArray instanceof ByteBufferArray)
+        {
+            if (!dat.load(byteArray, valueArray)) return false;
+            prefilter = PrefixFilter.load(byteArray);
+        }
+        else
+        {
+            byte[] bytes = byteArray.getBytes();
+            if (!dat.load(bytes, offset, valueArray)) return false;
+            prefilter = PrefixFilter.load(bytes, offset + 4 + dat.getSize() * 8);
+        }
+        dat.setPrefilter(prefilter == null ? PrefixFilter.build(dat) : prefilter);
+        return true;
     }
 
     /**
@@ -127,6 +203,8 @@ public abstract class CommonDictionary<V>
                 saveValue(item, out);
             }
             trie.save(out);
+            DoubleArrayTrie<V> dat = getDoubleArrayTrie();
+            if (dat != null && dat.getPrefilter() != null) dat.getPrefilter().save(out);
             out.close();
         }
         catch (Exception e)
@@ -168,6 +246,17 @@ public abstract class CommonDictionary<V>
         return get(key) != null;
     }
 
+    /**
+     * 前缀过滤器，可以读取它的跳过率
+     *
+     * @return 过滤器，可能为null
+     */
+    public PrefixFilter getPrefilter()
+    {
+        DoubleArrayTrie<V> dat = getDoubleArrayTrie();
+        return dat == null ? null : dat.getPrefilter();
+    }
+
     /**
      * 词典大小
      *
@@ -178,6 +267,17 @@ public abstract class CommonDictionary<V>
         return trie.size();
     }
 
+    /**
+     * 只有双数组带前缀过滤器
+     *
+     * @return 双数组，紧凑模式下为null
+     */
+    @SuppressWarnings("unchecked")
+    private DoubleArrayTrie<V> getDoubleArrayTrie()
+    {
+        return trie instanceof DoubleArrayTrie ? (DoubleArrayTrie<V>) trie : null;
+    }
+
     /**
      * 从一行词典条目创建值
      *
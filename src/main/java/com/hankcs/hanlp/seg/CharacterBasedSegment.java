@@ -19,6 +19,7 @@ import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.dictionary.CoreDictionaryTransformMatrixDictionary;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.seg.common.Term;
 import com.hankcs.hanlp.seg.common.Vertex;
 
@@ -37,10 +38,22 @@ public abstract class CharacterBasedSegment extends Segment
      */
     public static CoreDictionary.Attribute guessAttribute(Term term)
     {
-        CoreDictionary.Attribute attribute = CoreDictionary.get(term.word);
+        return guessAttribute(term, CustomDictionary.snapshot());
+    }
+
+    /**
+     * 查询或猜测一个词语的属性，
+     * 先查词典，然后对字母、数字串的属性进行判断，最后猜测未登录词
+     * @param term
+     * @param dictionary 用户词典的快照
+     * @return
+     */
+    public static CoreDictionary.Attribute guessAttribute(Term term, DynamicCustomDictionary.Snapshot dictionary)
+    {
+        CoreDictionary.Attribute attribute = CoreDictionary.trie.get(term.word);
         if (attribute == null)
         {
-            attribute = CustomDictionary.get(term.word);
+            attribute = dictionary.get(term.word);
         }
         if (attribute == null)
         {
@@ -49,7 +62,7 @@ public abstract class CharacterBasedSegment extends Segment
                 if (Nature.nx == term.nature)
                     attribute = new CoreDictionary.Attribute(Nature.nx);
                 else if (Nature.m == term.nature)
-                    attribute = CoreDictionary.get(CoreDictionary.M_WORD_ID);
+                    attribute = CoreDictionary.trie.get(CoreDictionary.M_WORD_ID);
             }
             else if (term.word.trim().length() == 0)
                 attribute = new CoreDictionary.Attribute(Nature.x);
@@ -84,7 +97,7 @@ public abstract class CharacterBasedSegment extends Segment
         }
         if (config.useCustomDictionary)
         {
-            combineByCustomDictionary(vertexList);
+            combineByCustomDictionary(vertexList, getCustomDictionary().snapshot());
             termList = convert(vertexList, config.offset);
         }
         return termList;
@@ -108,9 +121,10 @@ public abstract class CharacterBasedSegment extends Segment
     {
         ArrayList<Vertex> vertexList = new ArrayList<Vertex>(wordList.size() + 2);
         if (appendStart) vertexList.add(Vertex.newB());
+        DynamicCustomDictionary.Snapshot dictionary = getCustomDictionary().snapshot();
         for (Term word : wordList)
         {
-            CoreDictionary.Attribute attribute = guessAttribute(word);
+            CoreDictionary.Attribute attribute = guessAttribute(word, dictionary);
             Vertex vertex = new Vertex(word.word, attribute);
             vertexList.add(vertex);
         }
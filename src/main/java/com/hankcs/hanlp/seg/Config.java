@@ -48,6 +48,10 @@ public class Config
      * 用户词典高优先级
      */
     public boolean forceCustomDictionary = false;
+    /**
+     * 用核心词典与用户词典合并而成的词典查词（不影响结果）
+     */
+    public boolean combinedDictionary = false;
     /**
      * 词性标注
      */
@@ -77,6 +81,23 @@ public class Config
         ner = nameRecognize || translatedNameRecognize || japaneseNameRecognize || placeRecognize || organizationRecognize;
     }
 
+    /**
+     * 影响分词结果的配置项的指纹（线程数不影响结果，不计入），可用作缓存的键
+     *
+     * @return 指纹，配置相同则指纹相同
+     */
+    public long fingerprint()
+    {
+        long flags = 0;
+        boolean[] switches = new boolean[]{nameRecognize, translatedNameRecognize, japaneseNameRecognize, placeRecognize,
+            organizationRecognize, useCustomDictionary, forceCustomDictionary, speechTagging, ner, offset, numberQuantifierRecognize};
+        for (int i = 0; i < switches.length; ++i)
+        {
+            if (switches[i]) flags |= 1L << i;
+        }
+        return ((long) indexMode << 32) | flags;
+    }
+
     /**
      * 是否是索引模式
      *
@@ -12,12 +12,15 @@
 package com.hankcs.hanlp.seg.Dijkstra;
 
 import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.CombinedDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.recognition.nr.JapanesePersonRecognition;
 import com.hankcs.hanlp.recognition.nr.PersonRecognition;
 import com.hankcs.hanlp.recognition.nr.TranslatedPersonRecognition;
 import com.hankcs.hanlp.recognition.ns.PlaceRecognition;
 import com.hankcs.hanlp.recognition.nt.OrganizationRecognition;
 import com.hankcs.hanlp.seg.Dijkstra.Path.State;
+import com.hankcs.hanlp.seg.SegmentListener;
 import com.hankcs.hanlp.seg.WordBasedSegment;
 import com.hankcs.hanlp.seg.common.*;
 
@@ -32,11 +35,16 @@ public class DijkstraSegment extends WordBasedSegment
     @Override
     public List<Term> segSentence(char[] sentence)
     {
+        final SegmentListener listener = this.listener;
+        final long sentenceStart = listener == null ? 0 : System.nanoTime();
         WordNet wordNetOptimum = new WordNet(sentence);
         WordNet wordNetAll = new WordNet(wordNetOptimum.charArray);
+        final DynamicCustomDictionary.Snapshot dictionary = getCustomDictionary().snapshot(); // 整个句子使用同一个用户词典快照
+        final CombinedDictionary.Scan scan = newScan(dictionary);
         ////////////////生成词网////////////////////
-        generateWordNet(wordNetAll);
+        generateWordNet(wordNetAll, dictionary, scan);
         ///////////////生成词图////////////////////
+        long start = listener == null ? 0 : System.nanoTime();
         Graph graph = generateBiGraph(wordNetAll);
         if (HanLP.Config.DEBUG)
         {
@@ -44,12 +52,14 @@ public class DijkstraSegment extends WordBasedSegment
         }
         List<Vertex> vertexList = dijkstra(graph);
 //        fixResultByRule(vertexList);
+        if (listener != null) start = lap(listener, SegmentListener.Stage.VITERBI, start);
 
         if (config.useCustomDictionary)
         {
             if (config.indexMode > 0)
-                combineByCustomDictionary(vertexList, wordNetAll);
-            else combineByCustomDictionary(vertexList);
+                combineByCustomDictionary(vertexList, dictionary, scan, wordNetAll);
+            else combineByCustomDictionary(vertexList, dictionary, scan);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.CUSTOM_DICTIONARY, start);
         }
 
         if (HanLP.Config.DEBUG)
@@ -61,6 +71,7 @@ public class DijkstraSegment extends WordBasedSegment
         if (config.numberQuantifierRecognize)
         {
             mergeNumberQuantifier(vertexList, wordNetAll, config);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.NUMBER_QUANTIFIER, start);
         }
 
         // 实体命名识别
@@ -71,18 +82,22 @@ public class DijkstraSegment extends WordBasedSegment
             if (config.nameRecognize)
             {
                 PersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.PERSON_RECOGNITION, start);
             }
             if (config.translatedNameRecognize)
             {
                 TranslatedPersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.TRANSLATED_PERSON_RECOGNITION, start);
             }
             if (config.japaneseNameRecognize)
             {
                 JapanesePersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.JAPANESE_PERSON_RECOGNITION, start);
             }
             if (config.placeRecognize)
             {
                 PlaceRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.PLACE_RECOGNITION, start);
             }
             if (config.organizationRecognize)
             {
@@ -93,11 +108,17 @@ public class DijkstraSegment extends WordBasedSegment
                 wordNetOptimum.addAll(vertexList);
                 preSize = wordNetOptimum.size();
                 OrganizationRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.ORGANIZATION_RECOGNITION, start);
             }
             if (wordNetOptimum.size() != preSize)
             {
                 graph = generateBiGraph(wordNetOptimum);
                 vertexList = dijkstra(graph);
+                if (listener != null)
+                {
+                    start = lap(listener, SegmentListener.Stage.NER_VITERBI, start);
+                    listener.onCount(SegmentListener.Counter.NER_PASS, 1);
+                }
                 if (HanLP.Config.DEBUG)
                 {
                     System.out.printf("细分词网：\n%s\n", wordNetOptimum);
@@ -109,16 +130,29 @@ public class DijkstraSegment extends WordBasedSegment
         // 如果是索引模式则全切分
         if (config.indexMode > 0)
         {
-            return decorateResultForIndexMode(vertexList, wordNetAll);
+            List<Term> termList = decorateResultForIndexMode(vertexList, wordNetAll);
+            if (listener != null)
+            {
+                lap(listener, SegmentListener.Stage.INDEX_MODE, start);
+                onSentence(listener, sentence, sentenceStart);
+            }
+            return termList;
         }
 
         // 是否标注词性
         if (config.speechTagging)
         {
             speechTagging(vertexList);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.SPEECH_TAGGING, start);
         }
 
-        return convert(vertexList, config.offset);
+        List<Term> termList = convert(vertexList, config.offset);
+        if (listener != null)
+        {
+            lap(listener, SegmentListener.Stage.CONVERT, start);
+            onSentence(listener, sentence, sentenceStart);
+        }
+        return termList;
     }
 
     /**
@@ -12,12 +12,14 @@
 package com.hankcs.hanlp.seg.NShort;
 
 import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.algorithm.Dijkstra;
 import com.hankcs.hanlp.recognition.nr.JapanesePersonRecognition;
 import com.hankcs.hanlp.recognition.nr.PersonRecognition;
 import com.hankcs.hanlp.recognition.nr.TranslatedPersonRecognition;
 import com.hankcs.hanlp.recognition.ns.PlaceRecognition;
 import com.hankcs.hanlp.recognition.nt.OrganizationRecognition;
+import com.hankcs.hanlp.seg.SegmentListener;
 import com.hankcs.hanlp.seg.WordBasedSegment;
 import com.hankcs.hanlp.seg.NShort.Path.*;
 import com.hankcs.hanlp.seg.common.Graph;
@@ -38,11 +40,15 @@ public class NShortSegment extends WordBasedSegment
     @Override
     public List<Term> segSentence(char[] sentence)
     {
+        final SegmentListener listener = this.listener;
+        final long sentenceStart = listener == null ? 0 : System.nanoTime();
         WordNet wordNetOptimum = new WordNet(sentence);
         WordNet wordNetAll = new WordNet(sentence);
+        final DynamicCustomDictionary.Snapshot dictionary = getCustomDictionary().snapshot(); // 整个句子使用同一个用户词典快照
 //        char[] charArray = text.toCharArray();
         // 粗分
-        List<List<Vertex>> coarseResult = biSegment(sentence, 2, wordNetOptimum, wordNetAll);
+        List<List<Vertex>> coarseResult = biSegment(sentence, 2, wordNetOptimum, wordNetAll, dictionary);
+        long start = listener == null ? 0 : System.nanoTime();
         boolean NERexists = false;
         for (List<Vertex> vertexList : coarseResult)
         {
@@ -58,18 +64,22 @@ public class NShortSegment extends WordBasedSegment
                 if (config.nameRecognize)
                 {
                     PersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                    if (listener != null) start = lap(listener, SegmentListener.Stage.PERSON_RECOGNITION, start);
                 }
                 if (config.translatedNameRecognize)
                 {
                     TranslatedPersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                    if (listener != null) start = lap(listener, SegmentListener.Stage.TRANSLATED_PERSON_RECOGNITION, start);
                 }
                 if (config.japaneseNameRecognize)
                 {
                     JapanesePersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                    if (listener != null) start = lap(listener, SegmentListener.Stage.JAPANESE_PERSON_RECOGNITION, start);
                 }
                 if (config.placeRecognize)
                 {
                     PlaceRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                    if (listener != null) start = lap(listener, SegmentListener.Stage.PLACE_RECOGNITION, start);
                 }
                 if (config.organizationRecognize)
                 {
@@ -77,6 +87,7 @@ public class NShortSegment extends WordBasedSegment
                     vertexList = Dijkstra.compute(generateBiGraph(wordNetOptimum));
                     wordNetOptimum.addAll(vertexList);
                     OrganizationRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                    if (listener != null) start = lap(listener, SegmentListener.Stage.ORGANIZATION_RECOGNITION, start);
                 }
                 if (!NERexists && preSize != wordNetOptimum.size())
                 {
@@ -90,6 +101,11 @@ public class NShortSegment extends WordBasedSegment
         {
             Graph graph = generateBiGraph(wordNetOptimum);
             vertexList = Dijkstra.compute(graph);
+            if (listener != null)
+            {
+                start = lap(listener, SegmentListener.Stage.NER_VITERBI, start);
+                listener.onCount(SegmentListener.Counter.NER_PASS, 1);
+            }
             if (HanLP.Config.DEBUG)
             {
                 System.out.printf("细分词网：\n%s\n", wordNetOptimum);
@@ -101,28 +117,43 @@ public class NShortSegment extends WordBasedSegment
         if (config.numberQuantifierRecognize)
         {
             mergeNumberQuantifier(vertexList, wordNetAll, config);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.NUMBER_QUANTIFIER, start);
         }
 
         // 如果是索引模式则全切分
         if (config.indexMode > 0)
         {
-            return decorateResultForIndexMode(vertexList, wordNetAll);
+            List<Term> termList = decorateResultForIndexMode(vertexList, wordNetAll);
+            if (listener != null)
+            {
+                lap(listener, SegmentListener.Stage.INDEX_MODE, start);
+                onSentence(listener, sentence, sentenceStart);
+            }
+            return termList;
         }
 
         // 是否标注词性
         if (config.speechTagging)
         {
             speechTagging(vertexList);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.SPEECH_TAGGING, start);
         }
 
         if (config.useCustomDictionary)
         {
             if (config.indexMode > 0)
-                combineByCustomDictionary(vertexList, wordNetAll);
-            else combineByCustomDictionary(vertexList);
+                combineByCustomDictionary(vertexList, dictionary, wordNetAll);
+            else combineByCustomDictionary(vertexList, dictionary);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.CUSTOM_DICTIONARY, start);
         }
 
-        return convert(vertexList, config.offset);
+        List<Term> termList = convert(vertexList, config.offset);
+        if (listener != null)
+        {
+            lap(listener, SegmentListener.Stage.CONVERT, start);
+            onSentence(listener, sentence, sentenceStart);
+        }
+        return termList;
     }
 
     /**
@@ -134,13 +165,20 @@ public class NShortSegment extends WordBasedSegment
      * @return 一系列粗分结果
      */
     public List<List<Vertex>> biSegment(char[] sSentence, int nKind, WordNet wordNetOptimum, WordNet wordNetAll)
+    {
+        return biSegment(sSentence, nKind, wordNetOptimum, wordNetAll, getCustomDictionary().snapshot());
+    }
+
+    private List<List<Vertex>> biSegment(char[] sSentence, int nKind, WordNet wordNetOptimum, WordNet wordNetAll, DynamicCustomDictionary.Snapshot dictionary)
     {
         List<List<Vertex>> coarseResult = new LinkedList<List<Vertex>>();
         ////////////////生成词网////////////////////
-        generateWordNet(wordNetAll);
+        generateWordNet(wordNetAll, dictionary);
 //        logger.trace("词网大小：" + wordNetAll.size());
 //        logger.trace("打印词网：\n" + wordNetAll);
         ///////////////生成词图////////////////////
+        final SegmentListener listener = this.listener;
+        long start = listener == null ? 0 : System.nanoTime();
         Graph graph = generateBiGraph(wordNetAll);
 //        logger.trace(graph.toString());
         if (HanLP.Config.DEBUG)
@@ -166,6 +204,7 @@ public class NShortSegment extends WordBasedSegment
             generateWord(vertexes, wordNetOptimum);
             coarseResult.add(vertexes);
         }
+        if (listener != null) lap(listener, SegmentListener.Stage.VITERBI, start);
         return coarseResult;
     }
 
@@ -16,7 +16,7 @@ import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
 import com.hankcs.hanlp.corpus.io.IOUtil;
 import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.CoreDictionary;
-import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.seg.DictionaryBasedSegment;
 import com.hankcs.hanlp.seg.common.Term;
 
@@ -78,10 +78,11 @@ public class DoubleArrayTrieSegment extends DictionaryBasedSegment
         matchLongest(sentence, wordNet, natureArray, trie);
         if (config.useCustomDictionary)
         {
-            matchLongest(sentence, wordNet, natureArray, CustomDictionary.dat);
-            if (CustomDictionary.trie != null)
+            DynamicCustomDictionary.Snapshot dictionary = getCustomDictionary().snapshot();
+            matchLongest(sentence, wordNet, natureArray, dictionary.dat);
+            if (dictionary.trie != null)
             {
-                CustomDictionary.trie.parseLongestText(charArray, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+                dictionary.trie.parseLongestText(charArray, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
                 {
                     @Override
                     public void hit(int begin, int end, CoreDictionary.Attribute value)
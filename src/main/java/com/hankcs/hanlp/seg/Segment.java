@@ -16,19 +16,22 @@ import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
 import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
 import com.hankcs.hanlp.collection.trie.bintrie.BaseNode;
 import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CombinedDictionary;
 import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.dictionary.other.CharTable;
 import com.hankcs.hanlp.dictionary.other.CharType;
 import com.hankcs.hanlp.seg.NShort.Path.AtomNode;
 import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.TermBuffer;
 import com.hankcs.hanlp.seg.common.Vertex;
 import com.hankcs.hanlp.seg.common.WordNet;
 import com.hankcs.hanlp.utility.Predefine;
 import com.hankcs.hanlp.utility.SentencesUtil;
-import com.hankcs.hanlp.utility.TextUtility;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import static com.hankcs.hanlp.utility.Predefine.logger;
 
@@ -45,6 +48,26 @@ public abstract class Segment
      * 分词器配置
      */
     protected Config config;
+    /**
+     * 挂载的用户词典，null表示使用全局的{@link CustomDictionary}
+     */
+    protected volatile DynamicCustomDictionary customDictionary;
+    /**
+     * 多线程分词使用的线程池，null表示使用{@link SegmentExecutor}的默认共享线程池
+     */
+    protected Executor executor;
+    /**
+     * 句子级别的分词结果缓存，null表示不缓存
+     */
+    private volatile SegmentCache cache;
+    /**
+     * 分词流水线的监听器，null表示不采集耗时
+     */
+    protected volatile SegmentListener listener;
+    /**
+     * 多线程分词时每个文本块的最小长度
+     */
+    static final int MIN_CHUNK_LENGTH = 1024;
 
     /**
      * 构造一个分词器
@@ -195,47 +218,73 @@ public abstract class Segment
      * @return 合并后的结果
      */
     protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList)
+    {
+        return combineByCustomDictionary(vertexList, CustomDictionary.snapshot());
+    }
+
+    /**
+     * 使用用户词典合并粗分结果
+     * @param vertexList 粗分结果
+     * @param dictionary 用户词典的快照
+     * @return 合并后的结果
+     */
+    protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList, DynamicCustomDictionary.Snapshot dictionary)
+    {
+        return combineByCustomDictionary(vertexList, dictionary, (CombinedDictionary.Scan) null);
+    }
+
+    /**
+     * 使用用户词典合并粗分结果
+     * @param vertexList 粗分结果
+     * @param dictionary 用户词典的快照
+     * @param scan 生成词网时合并词典的扫描，不为null时直接利用其中用户词典的命中，不再查询DAT
+     * @return 合并后的结果
+     */
+    protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList, DynamicCustomDictionary.Snapshot dictionary, CombinedDictionary.Scan scan)
     {
         assert vertexList.size() >= 2 : "vertexList至少包含 始##始 和 末##末";
         Vertex[] wordNet = new Vertex[vertexList.size()];
         vertexList.toArray(wordNet);
-        // DAT合并
-        DoubleArrayTrie<CoreDictionary.Attribute> dat = CustomDictionary.dat;
         int length = wordNet.length - 1; // 跳过首尾
-        for (int i = 1; i < length; ++i)
+        // DAT合并
+        if (scan == null || !combineByScan(wordNet, scan))
         {
-            int state = 1;
-            state = dat.transition(wordNet[i].realWord, state);
-            if (state > 0)
+            DoubleArrayTrie<CoreDictionary.Attribute> dat = dictionary.dat;
+            for (int i = 1; i < length; ++i)
             {
-                int to = i + 1;
-                int end = to;
-                CoreDictionary.Attribute value = dat.output(state);
-                for (; to < length; ++to)
+                int state = 1;
+                state = dat.transition(wordNet[i].realWord, state);
+                if (state > 0)
                 {
-                    state = dat.transition(wordNet[to].realWord, state);
-                    if (state < 0) break;
-                    CoreDictionary.Attribute output = dat.output(state);
-                    if (output != null)
+                    int to = i + 1;
+                    int end = to;
+                    CoreDictionary.Attribute value = dat.output(state);
+                    for (; to < length; ++to)
                     {
-                        value = output;
-                        end = to + 1;
+                        state = dat.transition(wordNet[to].realWord, state);
+                        if (state < 0) break;
+                        CoreDictionary.Attribute output = dat.output(state);
+                        if (output != null)
+                        {
+                            value = output;
+                            end = to + 1;
+                        }
+                    }
+                    if (value != null)
+                    {
+                        combineWords(wordNet, i, end, value);
+                        i = end - 1;
                     }
-                }
-                if (value != null)
-                {
-                    combineWords(wordNet, i, end, value);
-                    i = end - 1;
                 }
             }
         }
         // BinTrie合并
-        if (CustomDictionary.trie != null)
+        if (dictionary.trie != null)
         {
             for (int i = 1; i < length; ++i)
             {
                 if (wordNet[i] == null) continue;
-                BaseNode<CoreDictionary.Attribute> state = CustomDictionary.trie.transition(wordNet[i].realWord.toCharArray(), 0);
+                BaseNode<CoreDictionary.Attribute> state = dictionary.trie.transition(wordNet[i].realWord, 0);
                 if (state != null)
                 {
                     int to = i + 1;
@@ -244,7 +293,7 @@ public abstract class Segment
                     for (; to < length; ++to)
                     {
                         if (wordNet[to] == null) continue;
-                        state = state.transition(wordNet[to].realWord.toCharArray(), 0);
+                        state = state.transition(wordNet[to].realWord, 0);
                         if (state == null) break;
                         if (state.getValue() != null)
                         {
@@ -276,29 +325,115 @@ public abstract class Segment
      */
     protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList, final WordNet wordNetAll)
     {
-        List<Vertex> outputList = combineByCustomDictionary(vertexList);
+        return combineByCustomDictionary(vertexList, CustomDictionary.snapshot(), wordNetAll);
+    }
+
+    /**
+     * 使用用户词典合并粗分结果，并将用户词语收集到全词图中
+     * @param vertexList 粗分结果
+     * @param dictionary 用户词典的快照
+     * @param wordNetAll 收集用户词语到全词图中
+     * @return 合并后的结果
+     */
+    protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList, DynamicCustomDictionary.Snapshot dictionary, final WordNet wordNetAll)
+    {
+        return combineByCustomDictionary(vertexList, dictionary, null, wordNetAll);
+    }
+
+    /**
+     * 使用用户词典合并粗分结果，并将用户词语收集到全词图中
+     * @param vertexList 粗分结果
+     * @param dictionary 用户词典的快照
+     * @param scan 生成词网时合并词典的扫描，可以为null
+     * @param wordNetAll 收集用户词语到全词图中
+     * @return 合并后的结果
+     */
+    protected static List<Vertex> combineByCustomDictionary(List<Vertex> vertexList, DynamicCustomDictionary.Snapshot dictionary, CombinedDictionary.Scan scan, final WordNet wordNetAll)
+    {
+        List<Vertex> outputList = combineByCustomDictionary(vertexList, dictionary, scan);
+        final char[] charArray = wordNetAll.charArray;
+        final int[] parentLength = new int[1];
+        AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor = new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+        {
+            @Override
+            public void hit(int begin, int end, CoreDictionary.Attribute value)
+            {
+                if (end - begin == parentLength[0]) return;
+                wordNetAll.add(begin + 1, new Vertex(new String(charArray, begin, end - begin), value));   // 第0行是始##始
+            }
+        };
         int line = 0;
-        for (final Vertex vertex : outputList)
+        for (Vertex vertex : outputList)
         {
-            final int parentLength = vertex.realWord.length();
-            final int currentLine = line;
-            if (parentLength >= 3)
+            parentLength[0] = vertex.realWord.length();
+            if (parentLength[0] >= 3 && line + parentLength[0] <= charArray.length + 1)
             {
-                CustomDictionary.parseText(vertex.realWord, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+                // 直接扫描原句中对应的区间，不为每个词语复制字符
+                if (scan == null || scan.textLength() != charArray.length)
                 {
-                    @Override
-                    public void hit(int begin, int end, CoreDictionary.Attribute value)
-                    {
-                        if (end - begin == parentLength) return;
-                        wordNetAll.add(currentLine + begin, new Vertex(vertex.realWord.substring(begin, end), value));
-                    }
-                });
+                    dictionary.parseText(charArray, line - 1, line - 1 + parentLength[0], processor);
+                }
+                else
+                {
+                    dictionary.parseTrieText(charArray, line - 1, line - 1 + parentLength[0], processor);
+                    scan.parseCustomText(line - 1, line - 1 + parentLength[0], processor);
+                }
             }
-            line += parentLength;
+            line += parentLength[0];
         }
         return outputList;
     }
 
+    /**
+     * 利用合并词典的扫描结果执行DAT合并，与沿着粗分结果查询DAT等价：
+     * 从每个词语的起点出发，找到终点恰好落在词语边界上的最长的用户词语
+     *
+     * @param wordNet 词图
+     * @param scan    扫描
+     * @return 是否执行了合并（词图与扫描的句子对不上时返回false）
+     */
+    private static boolean combineByScan(Vertex[] wordNet, CombinedDictionary.Scan scan)
+    {
+        int length = wordNet.length - 1;
+        // 在第k个字符处开始的词语的下标
+        int[] vertexAt = new int[scan.textLength() + 1];
+        Arrays.fill(vertexAt, -1);
+        int offset = 0;
+        for (int i = 1; i < length; ++i)
+        {
+            if (offset >= scan.textLength()) return false;
+            vertexAt[offset] = i;
+            offset += wordNet[i].realWord.length();
+        }
+        if (offset != scan.textLength()) return false;
+        vertexAt[offset] = length;
+        offset = 0;
+        for (int i = 1; i < length; ++i)
+        {
+            int begin = offset;
+            offset += wordNet[i].realWord.length();
+            CoreDictionary.Attribute value = null;
+            int end = -1;
+            for (int j = scan.from(begin), to = scan.to(begin); j < to; ++j)
+            {
+                CoreDictionary.Attribute output = scan.customValue(j);
+                if (output != null && vertexAt[begin + scan.length(j)] >= 0)
+                {
+                    value = output;
+                    end = begin + scan.length(j);
+                }
+            }
+            if (value != null)
+            {
+                int to = vertexAt[end];
+                combineWords(wordNet, i, to, value);
+                i = to - 1;
+                offset = end;
+            }
+        }
+        return true;
+    }
+
     /**
      * 将连续的词语合并为一个
      * @param wordNet 词图
@@ -468,64 +603,50 @@ public abstract class Segment
      * @return 单词列表
      */
     public List<Term> seg(String text)
+    {
+        return segCached(text, false);
+    }
+
+    /**
+     * 先查缓存，未命中再分词并写入缓存
+     *
+     * @param text  待分词文本
+     * @param batch 是否为批量分词中的一篇文本
+     * @return 单词列表
+     */
+    private List<Term> segCached(String text, boolean batch)
+    {
+        SegmentCache cache = this.cache;
+        if (cache != null)
+        {
+            DynamicCustomDictionary dictionary = getCustomDictionary();
+            long version = dictionary.getVersion();
+            long fingerprint = cacheFingerprint();
+            List<Term> termList = cache.get(text, fingerprint, version);
+            if (termList != null) return termList;
+            termList = batch ? segBatchItem(text) : segWithoutCache(text);
+            return cache.put(text, fingerprint, version, dictionary.getVersion(), termList);
+        }
+        return batch ? segBatchItem(text) : segWithoutCache(text);
+    }
+
+    private long cacheFingerprint()
+    {
+        long fingerprint = config.fingerprint();
+        if (HanLP.Config.Normalization) fingerprint |= 1L << 31;
+        return fingerprint;
+    }
+
+    private List<Term> segWithoutCache(String text)
     {
         char[] charArray = text.toCharArray();
         if (HanLP.Config.Normalization)
         {
             CharTable.normalization(charArray);
         }
-        if (config.threadNumber > 1 && charArray.length > 10000)    // 小文本多线程没意义，反而变慢了
-        {
-            List<String> sentenceList = SentencesUtil.toSentenceList(charArray);
-            String[] sentenceArray = new String[sentenceList.size()];
-            sentenceList.toArray(sentenceArray);
-            //noinspection unchecked
-            List<Term>[] termListArray = new List[sentenceArray.length];
-            final int per = sentenceArray.length / config.threadNumber;
-            WorkThread[] threadArray = new WorkThread[config.threadNumber];
-            for (int i = 0; i < config.threadNumber - 1; ++i)
-            {
-                int from = i * per;
-                threadArray[i] = new WorkThread(sentenceArray, termListArray, from, from + per);
-                threadArray[i].start();
-            }
-            threadArray[config.threadNumber - 1] = new WorkThread(sentenceArray, termListArray, (config.threadNumber - 1) * per, sentenceArray.length);
-            threadArray[config.threadNumber - 1].start();
-            try
-            {
-                for (WorkThread thread : threadArray)
-                {
-                    thread.join();
-                }
-            }
-            catch (InterruptedException e)
-            {
-                logger.severe("线程同步异常：" + TextUtility.exceptionToString(e));
-                return Collections.emptyList();
-            }
-            List<Term> termList = new LinkedList<Term>();
-            if (config.offset || config.indexMode > 0)  // 由于分割了句子，所以需要重新校正offset
-            {
-                int sentenceOffset = 0;
-                for (int i = 0; i < sentenceArray.length; ++i)
-                {
-                    for (Term term : termListArray[i])
-                    {
-                        term.offset += sentenceOffset;
-                        termList.add(term);
-                    }
-                    sentenceOffset += sentenceArray[i].length();
-                }
-            }
-            else
-            {
-                for (List<Term> list : termListArray)
-                {
-                    termList.addAll(list);
-                }
-            }
-
-            return termList;
+        if (config.threadNumber > 1 && charArray.length >= MIN_CHUNK_LENGTH * 2)    // 小文本多线程没意义，反而变慢了
+        {
+            return segParallel(charArray);
         }
 //        if (text.length() > 10000)  // 针对大文本，先拆成句子，后分词，避免内存峰值太大
 //        {
@@ -557,6 +678,87 @@ public abstract class Segment
         return segSentence(charArray);
     }
 
+    /**
+     * 多线程分词：按字符长度将文本切分为若干块（在句子边界处断开），交给共享线程池并行分词
+     *
+     * @param charArray 已规范化的文本
+     * @return 单词列表
+     */
+    private List<Term> segParallel(final char[] charArray)
+    {
+        final int[] bounds = splitChunks(charArray, Math.max(MIN_CHUNK_LENGTH, charArray.length / (config.threadNumber * 4)));
+        final int chunkCount = bounds.length - 1;
+        //noinspection unchecked
+        final List<Term>[] termListArray = new List[chunkCount];
+        SegmentExecutor.invokeAll(executor, config.threadNumber, chunkCount, new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                termListArray[index] = segSentence(Arrays.copyOfRange(charArray, bounds[index], bounds[index + 1]));
+            }
+        });
+        List<Term> termList = new LinkedList<Term>();
+        boolean adjustOffset = config.offset || config.indexMode > 0;  // 由于分割了文本，所以需要重新校正offset
+        for (int i = 0; i < chunkCount; ++i)
+        {
+            for (Term term : termListArray[i])
+            {
+                if (adjustOffset) term.offset += bounds[i];
+                termList.add(term);
+            }
+        }
+
+        return termList;
+    }
+
+    /**
+     * 按长度切分文本，切分点只落在标点或空白之后，不会切断词语<br>
+     * 从期望长度开始向后找：两倍长度以内优先句末标点，其次逗号与空白；都没有时继续向后找到第一个标点或空白，
+     * 一直没有就把剩下的文本作为最后一块
+     *
+     * @param charArray   文本
+     * @param chunkLength 期望的块长度
+     * @return 每个块的起点，最后一个元素为文本长度
+     */
+    static int[] splitChunks(char[] charArray, int chunkLength)
+    {
+        List<Integer> boundList = new ArrayList<Integer>();
+        boundList.add(0);
+        int begin = 0;
+        while (charArray.length - begin > chunkLength + chunkLength / 2)
+        {
+            int limit = begin + chunkLength * 2;
+            int end = -1, weakEnd = -1;
+            for (int i = begin + chunkLength; i <= charArray.length; ++i)
+            {
+                if (i > limit && weakEnd != -1) break;  // 超出两倍长度后，遇到第一个分隔符就停
+                char c = charArray[i - 1];
+                if (c == '。' || c == '！' || c == '？' || c == '!' || c == '?' || c == '\n' || c == '；' || c == ';')
+                {
+                    end = i;
+                    break;
+                }
+                if (weakEnd == -1 && (c == '，' || c == ',' || Character.isWhitespace(c)))
+                {
+                    weakEnd = i;
+                }
+            }
+            if (end == -1) end = weakEnd;
+            if (end == -1) end = charArray.length;
+            boundList.add(end);
+            begin = end;
+        }
+        // 最后一块可能已经切到文本末尾，不能留下空块
+        if (begin < charArray.length || begin == 0) boundList.add(charArray.length);
+        int[] bounds = new int[boundList.size()];
+        for (int i = 0; i < bounds.length; ++i)
+        {
+            bounds[i] = boundList.get(i);
+        }
+        return bounds;
+    }
+
     /**
      * 分词
      *
@@ -573,6 +775,184 @@ public abstract class Segment
         return segSentence(text);
     }
 
+    /**
+     * 分词，结果写入紧凑的缓冲区，不为每个单词创建Term对象<br>
+     * 此方法是线程安全的（前提是每个线程使用自己的缓冲区）
+     *
+     * @param text   待分词文本
+     * @param buffer 缓冲区，原有内容会被清空
+     * @return 传入的缓冲区
+     */
+    public TermBuffer seg(String text, TermBuffer buffer)
+    {
+        return seg(text.toCharArray(), buffer);
+    }
+
+    /**
+     * 分词，结果写入紧凑的缓冲区，不为每个单词创建Term对象
+     *
+     * @param text   待分词文本
+     * @param buffer 缓冲区，原有内容会被清空
+     * @return 传入的缓冲区
+     */
+    public TermBuffer seg(char[] text, TermBuffer buffer)
+    {
+        assert text != null;
+        if (HanLP.Config.Normalization)
+        {
+            CharTable.normalization(text);
+        }
+        buffer.reset(text);
+        segSentence(text, buffer);
+        return buffer;
+    }
+
+    /**
+     * 给一个句子分词，结果追加到缓冲区<br>
+     * 默认实现先生成Term列表再转存，子类可以覆盖此方法直接写入缓冲区
+     *
+     * @param sentence 待分词句子
+     * @param buffer   缓冲区
+     */
+    protected void segSentence(char[] sentence, TermBuffer buffer)
+    {
+        addAll(buffer, segSentence(sentence));
+    }
+
+    /**
+     * 将Term列表转存到缓冲区
+     *
+     * @param buffer   缓冲区
+     * @param termList 单词列表
+     */
+    protected void addAll(TermBuffer buffer, List<Term> termList)
+    {
+        boolean offsetFilled = config.offset || config.isIndexMode();
+        int offset = 0;
+        for (Term term : termList)
+        {
+            int length = term.length();
+            buffer.add(offsetFilled ? term.offset : offset, length, term.nature);
+            offset += length;
+        }
+    }
+
+    /**
+     * 批量分词，多篇文本在线程池上并行分词<br>
+     * 此方法是线程安全的
+     *
+     * @param textList 文本列表
+     * @return 每篇文本的单词列表，顺序与输入一致
+     */
+    public List<List<Term>> seg(List<String> textList)
+    {
+        final String[] textArray = textList.toArray(new String[0]);
+        //noinspection unchecked
+        final List<Term>[] termListArray = new List[textArray.length];
+        SegmentExecutor.invokeAll(executor, batchParallelism(), textArray.length, new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                termListArray[index] = segCached(textArray[index], true);
+            }
+        });
+
+        return Arrays.asList(termListArray);
+    }
+
+    /**
+     * 批量分词的回调
+     */
+    public interface BatchCallback
+    {
+        /**
+         * 一篇文本分词完毕
+         *
+         * @param index    文本在输入列表中的下标
+         * @param termList 分词结果
+         */
+        void onResult(int index, List<Term> termList);
+    }
+
+    /**
+     * 批量分词，每篇文本分完就按输入顺序回调，不必等待整批结束<br>
+     * 回调可能发生在任意一个工作线程上，但不会并发，且严格按照输入顺序；方法返回时所有回调均已完成
+     *
+     * @param textList 文本列表
+     * @param callback 回调
+     */
+    public void seg(List<String> textList, final BatchCallback callback)
+    {
+        final String[] textArray = textList.toArray(new String[0]);
+        //noinspection unchecked
+        final List<Term>[] pending = new List[textArray.length];
+        final int[] emitted = new int[1];
+        final boolean[] emitting = new boolean[1];
+        SegmentExecutor.invokeAll(executor, batchParallelism(), textArray.length, new SegmentExecutor.Task()
+        {
+            @Override
+            public void run(int index)
+            {
+                List<Term> termList = segCached(textArray[index], true);
+                synchronized (pending)
+                {
+                    pending[index] = termList;
+                    if (emitting[0]) return;    // 正在回调的线程会接着发出这一篇
+                    emitting[0] = true;
+                }
+                // 回调在锁外进行，其他线程可以继续存入结果；同一时刻只有一个线程在回调
+                while (true)
+                {
+                    int i;
+                    synchronized (pending)
+                    {
+                        i = emitted[0];
+                        if (i == pending.length || pending[i] == null)
+                        {
+                            emitting[0] = false;
+                            return;
+                        }
+                        termList = pending[i];
+                        pending[i] = null;
+                        emitted[0] = i + 1;
+                    }
+                    callback.onResult(i, termList);
+                }
+            }
+        });
+    }
+
+    private int batchParallelism()
+    {
+        return config.threadNumber > 1 ? config.threadNumber : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 批量分词中的单篇文本，文本之间已经并行了，所以单篇文本不再拆分
+     */
+    private List<Term> segBatchItem(String text)
+    {
+        char[] charArray = text.toCharArray();
+        if (HanLP.Config.Normalization)
+        {
+            CharTable.normalization(charArray);
+        }
+        return segBatchSentence(charArray);
+    }
+
+    /**
+     * 批量分词时对单篇文本分词，同一个工作线程会连续调用许多次<br>
+     * 默认实现即{@link #segSentence(char[])}，子类可以覆盖此方法复用线程内的临时对象
+     *
+     * @param sentence 待分词文本
+     * @return 单词列表
+     */
+    protected List<Term> segBatchSentence(char[] sentence)
+    {
+        return segSentence(sentence);
+    }
+
     /**
      * 分词断句 输出句子形式
      *
@@ -687,6 +1067,33 @@ public abstract class Segment
         return this;
     }
 
+    /**
+     * 启用用户词典，并挂载一个专属的词典代替全局的{@link CustomDictionary}<br>
+     *     适合多租户场景：每个租户一个词典实例，核心词典等只读资源由所有分词器共享
+     *
+     * @param customDictionary 用户词典，null表示恢复使用全局词典
+     * @return 分词器本身
+     */
+    public Segment enableCustomDictionary(DynamicCustomDictionary customDictionary)
+    {
+        config.useCustomDictionary = true;
+        this.customDictionary = customDictionary;
+        SegmentCache cache = this.cache;
+        if (cache != null) cache.clear();   // 不同词典的版本号不可比较
+        return this;
+    }
+
+    /**
+     * 获取此分词器使用的用户词典
+     *
+     * @return 挂载的词典，未挂载时为全局词典{@link CustomDictionary#DEFAULT}
+     */
+    public DynamicCustomDictionary getCustomDictionary()
+    {
+        DynamicCustomDictionary customDictionary = this.customDictionary;
+        return customDictionary == null ? CustomDictionary.DEFAULT : customDictionary;
+    }
+
     /**
      * 是否尽可能强制使用用户词典（使用户词典的优先级尽可能高）<br>
      *     警告：具体实现由各子类决定，可能会破坏分词器的统计特性（例如，如果用户词典
@@ -771,31 +1178,6 @@ public abstract class Segment
         return this;
     }
 
-    class WorkThread extends Thread
-    {
-        String[] sentenceArray;
-        List<Term>[] termListArray;
-        int from;
-        int to;
-
-        public WorkThread(String[] sentenceArray, List<Term>[] termListArray, int from, int to)
-        {
-            this.sentenceArray = sentenceArray;
-            this.termListArray = termListArray;
-            this.from = from;
-            this.to = to;
-        }
-
-        @Override
-        public void run()
-        {
-            for (int i = from; i < to; ++i)
-            {
-                termListArray[i] = segSentence(sentenceArray[i].toCharArray());
-            }
-        }
-    }
-
     /**
      * 开启多线程
      * @param enable true表示开启[系统CPU核心数]个线程，false表示单线程
@@ -818,4 +1200,83 @@ public abstract class Segment
         config.threadNumber = threadNumber;
         return this;
     }
+
+    /**
+     * 挂载分词流水线的监听器，采集每个阶段的耗时与计数<br>
+     * 比如挂载一个{@link SegmentStatistics}，之后打印它即可看到各阶段的耗时分布
+     *
+     * @param listener 监听器，null表示卸载（不再有任何开销）
+     * @return
+     */
+    public Segment enableListener(SegmentListener listener)
+    {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * 报告一个阶段的耗时，并返回当前时间作为下一个阶段的起点
+     *
+     * @param listener 监听器（非null）
+     * @param stage    阶段
+     * @param start    阶段的起点
+     * @return 当前时间
+     */
+    protected static long lap(SegmentListener listener, SegmentListener.Stage stage, long start)
+    {
+        long now = System.nanoTime();
+        listener.onStage(stage, now - start);
+        return now;
+    }
+
+    /**
+     * 报告一个句子分完：句子的总耗时、句子数与字符数
+     *
+     * @param listener      监听器（非null）
+     * @param sentence      句子
+     * @param sentenceStart 句子的起点
+     */
+    protected static void onSentence(SegmentListener listener, char[] sentence, long sentenceStart)
+    {
+        lap(listener, SegmentListener.Stage.SENTENCE, sentenceStart);
+        listener.onCount(SegmentListener.Counter.SENTENCE, 1);
+        listener.onCount(SegmentListener.Counter.CHAR, sentence.length);
+    }
+
+    /**
+     * 开启句子级别的分词结果缓存（LRU）<br>
+     * 命中时返回新生成的Term列表，与不开缓存时一样可以随意修改。
+     * 用户词典被修改后缓存自动失效。
+     *
+     * @param capacity 最多缓存多少个句子，小于等于0表示关闭缓存
+     * @return
+     */
+    public Segment enableCache(int capacity)
+    {
+        cache = capacity > 0 ? new SegmentCache(capacity) : null;
+        return this;
+    }
+
+    /**
+     * 获取缓存（可用于查看命中率等统计数据）
+     *
+     * @return 缓存，未开启时为null
+     */
+    public SegmentCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * 开启多线程，并使用指定的线程池（而不是默认的共享线程池）
+     * @param threadNumber 每次分词最多使用的线程数量（包括调用线程）
+     * @param executor 线程池
+     * @return 自己
+     */
+    public Segment enableMultithreading(int threadNumber, Executor executor)
+    {
+        config.threadNumber = threadNumber;
+        this.executor = executor;
+        return this;
+    }
 }
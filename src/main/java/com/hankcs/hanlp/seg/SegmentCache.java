@@ -0,0 +1,278 @@
+package com.hankcs.hanlp.seg;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 句子级别的分词结果缓存<br>
+ * 有界的LRU缓存，按哈希分成若干段，每段一把锁，适合高并发下反复分词相同的短文本（比如搜索词）。<br>
+ * 键为文本与分词器配置。Term是可以修改的，所以缓存只保存单词、词性与偏移量，每次命中都生成新的Term列表，调用方随意修改也不会影响缓存。
+ * 用户词典一旦被修改（增删改或重新加载），缓存自动失效。
+ */
+public class SegmentCache
+{
+    private static final int STRIPE_NUMBER = 16;
+    private final Stripe[] stripes;
+    private final int capacity;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    /**
+     * 缓存中的结果对应的用户词典版本，-1表示尚未缓存任何结果
+     */
+    private volatile long dictionaryVersion;
+
+    /**
+     * 构造一个缓存
+     *
+     * @param capacity 最多缓存多少个句子
+     */
+    public SegmentCache(int capacity)
+    {
+        if (capacity < 1) throw new IllegalArgumentException("缓存容量应当大于等于1");
+        this.capacity = capacity;
+        int stripeNumber = Math.min(STRIPE_NUMBER, capacity);
+        stripes = new Stripe[stripeNumber];
+        for (int i = 0; i < stripeNumber; ++i)
+        {
+            stripes[i] = new Stripe((capacity + stripeNumber - 1) / stripeNumber);
+        }
+        dictionaryVersion = -1;
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param text    文本
+     * @param config  配置指纹
+     * @param version 当前的用户词典版本
+     * @return 新生成的单词列表，未命中时返回null
+     */
+    List<Term> get(String text, long config, long version)
+    {
+        if (version != dictionaryVersion)
+        {
+            synchronized (this)
+            {
+                if (version != dictionaryVersion)
+                {
+                    clear();
+                    dictionaryVersion = version;
+                }
+            }
+        }
+        Key key = new Key(text, config);
+        Stripe stripe = stripeOf(key);
+        Entry entry;
+        synchronized (stripe)
+        {
+            entry = stripe.get(key);
+        }
+        if (entry == null)
+        {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.toTermList();
+    }
+
+    /**
+     * 放入缓存
+     *
+     * @param text     文本
+     * @param config   配置指纹
+     * @param version  分词开始前的用户词典版本
+     * @param current  分词结束后的用户词典版本，与version不同说明分词期间词典被修改，放弃缓存
+     * @param termList 单词列表
+     * @return 传入的单词列表，缓存中保存的是它的副本
+     */
+    List<Term> put(String text, long config, long version, long current, List<Term> termList)
+    {
+        if (version != dictionaryVersion || version != current) return termList;
+        Key key = new Key(text, config);
+        Entry entry = new Entry(termList);
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe)
+        {
+            stripe.put(key, entry);
+        }
+        return termList;
+    }
+
+    private Stripe stripeOf(Key key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * 清空缓存（统计数据保留）
+     */
+    public void clear()
+    {
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * 当前缓存的句子数
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 容量
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * 命中率
+     *
+     * @return 0到1之间的命中率，尚未查询过时为0
+     */
+    public double getHitRate()
+    {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total == 0 ? 0 : hit / (double) total;
+    }
+
+    /**
+     * 统计数据清零
+     */
+    public void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("SegmentCache{size=%d, capacity=%d, hit=%d, miss=%d, hitRate=%.2f%%}",
+                             size(), capacity, getHitCount(), getMissCount(), getHitRate() * 100);
+    }
+
+    private static class Stripe extends LinkedHashMap<Key, Entry>
+    {
+        private final int capacity;
+
+        Stripe(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * 一个句子的分词结果，创建后不再修改
+     */
+    private static class Entry
+    {
+        final String[] word;
+        final Nature[] nature;
+        final int[] offset;
+
+        Entry(List<Term> termList)
+        {
+            int size = termList.size();
+            word = new String[size];
+            nature = new Nature[size];
+            offset = new int[size];
+            int i = 0;
+            for (Term term : termList)
+            {
+                word[i] = term.word;
+                nature[i] = term.nature;
+                offset[i] = term.offset;
+                ++i;
+            }
+        }
+
+        List<Term> toTermList()
+        {
+            List<Term> termList = new ArrayList<Term>(word.length);
+            for (int i = 0; i < word.length; ++i)
+            {
+                Term term = new Term(word[i], nature[i]);
+                term.offset = offset[i];
+                termList.add(term);
+            }
+            return termList;
+        }
+    }
+
+    private static class Key
+    {
+        final String text;
+        final long config;
+
+        Key(String text, long config)
+        {
+            this.text = text;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return config == key.config && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * text.hashCode() + (int) (config ^ (config >>> 32));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.hankcs.hanlp.seg;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分词器共享的有界线程池<br>
+ * 所有分词器的多线程模式默认共用同一个线程池，线程数不超过CPU核心数，空闲一段时间后自动回收，
+ * 因此再多的并发请求也不会造成线程风暴。<br>
+ * 任务按下标动态领取：调用线程自己也参与领取，工作线程领完就退出，先做完的线程会继续领取剩下的任务，
+ * 效果类似工作窃取；线程池繁忙时任务会退化为调用线程串行执行，不会死锁。
+ */
+public class SegmentExecutor
+{
+    private static volatile ExecutorService defaultExecutor;
+
+    /**
+     * 一个可按下标执行的任务
+     */
+    public interface Task
+    {
+        /**
+         * 执行第index个任务
+         *
+         * @param index 任务下标
+         */
+        void run(int index);
+    }
+
+    /**
+     * 获取默认的共享线程池（懒加载）
+     *
+     * @return 线程池
+     */
+    public static ExecutorService getDefault()
+    {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null)
+        {
+            synchronized (SegmentExecutor.class)
+            {
+                executor = defaultExecutor;
+                if (executor == null)
+                {
+                    executor = newExecutor(Runtime.getRuntime().availableProcessors());
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 替换默认的共享线程池（旧线程池不会被关闭）
+     *
+     * @param executor 新的线程池，null表示下次使用时重新创建
+     */
+    public static void setDefault(ExecutorService executor)
+    {
+        defaultExecutor = executor;
+    }
+
+    /**
+     * 创建一个有界的守护线程池
+     *
+     * @param threadNumber 最大线程数
+     * @return 线程池
+     */
+    public static ExecutorService newExecutor(int threadNumber)
+    {
+        if (threadNumber < 1) throw new IllegalArgumentException("线程数应当大于等于1");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadNumber, threadNumber, 60L, TimeUnit.SECONDS,
+                                                             new ArrayBlockingQueue<Runnable>(threadNumber * 4),
+                                                             newThreadFactory("HanLP-Segment-"),
+                                                             new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 创建一个生产守护线程的线程工厂，守护线程不会阻止JVM退出
+     *
+     * @param prefix 线程名前缀
+     * @return 线程工厂
+     */
+    public static ThreadFactory newThreadFactory(final String prefix)
+    {
+        return new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 并行执行taskCount个任务，所有任务完成后才返回
+     *
+     * @param executor    线程池，null表示使用默认线程池
+     * @param parallelism 并行度（包括调用线程）
+     * @param taskCount   任务数
+     * @param task        任务
+     */
+    public static void invokeAll(Executor executor, int parallelism, final int taskCount, final Task task)
+    {
+        if (parallelism > taskCount) parallelism = taskCount;
+        if (parallelism <= 1)
+        {
+            for (int i = 0; i < taskCount; ++i)
+            {
+                task.run(i);
+            }
+            return;
+        }
+        if (executor == null) executor = getDefault();
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(taskCount);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int i;
+                while ((i = next.getAndIncrement()) < taskCount)
+                {
+                    try
+                    {
+                        if (error.get() == null) task.run(i);
+                    }
+                    catch (Throwable e)
+                    {
+                        error.compareAndSet(null, e);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        for (int i = 1; i < parallelism; ++i)
+        {
+            try
+            {
+                executor.execute(worker);
+            }
+            catch (RejectedExecutionException e)
+            {
+                break;  // 线程池满了，剩下的由调用线程自己做
+            }
+        }
+        worker.run();
+        // 已被领取的任务一定在某个正在运行的线程上，等它们做完即可
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                done.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        Throwable e = error.get();
+        if (e != null)
+        {
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof Error) throw (Error) e;
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hankcs.hanlp.seg;
+
+/**
+ * 分词流水线的监听器，用于采集每个阶段的耗时和计数<br>
+ * 通过{@link Segment#enableListener(SegmentListener)}挂载，未挂载时分词器不会调用System.nanoTime，没有额外开销。<br>
+ * 回调发生在分词线程上，多线程分词时实现类需要自己保证线程安全
+ *
+ * @see SegmentStatistics
+ */
+public interface SegmentListener
+{
+    /**
+     * 分词流水线的阶段
+     */
+    enum Stage
+    {
+        /**
+         * 查询核心词典生成词网
+         */
+        CORE_DICTIONARY,
+        /**
+         * 强制模式下查询用户词典生成词网
+         */
+        FORCE_CUSTOM_DICTIONARY,
+        /**
+         * 原子分词（补全词网中的空行）
+         */
+        ATOM_SEGMENT,
+        /**
+         * 粗分的最短路（Viterbi、Dijkstra或N-最短路，含构建词图）
+         */
+        VITERBI,
+        /**
+         * 用户词典合并粗分结果
+         */
+        CUSTOM_DICTIONARY,
+        /**
+         * 数词与数量词合并
+         */
+        NUMBER_QUANTIFIER,
+        /**
+         * 中国人名识别
+         */
+        PERSON_RECOGNITION,
+        /**
+         * 音译人名识别
+         */
+        TRANSLATED_PERSON_RECOGNITION,
+        /**
+         * 日本人名识别
+         */
+        JAPANESE_PERSON_RECOGNITION,
+        /**
+         * 地名识别
+         */
+        PLACE_RECOGNITION,
+        /**
+         * 机构名识别（含层叠的最短路）
+         */
+        ORGANIZATION_RECOGNITION,
+        /**
+         * 命名实体识别之后的细分最短路
+         */
+        NER_VITERBI,
+        /**
+         * 索引模式全切分
+         */
+        INDEX_MODE,
+        /**
+         * 词性标注
+         */
+        SPEECH_TAGGING,
+        /**
+         * 将路径转为分词结果
+         */
+        CONVERT,
+        /**
+         * 一个句子的全部耗时
+         */
+        SENTENCE
+    }
+
+    /**
+     * 计数器
+     */
+    enum Counter
+    {
+        /**
+         * 分过的句子数
+         */
+        SENTENCE,
+        /**
+         * 分过的字符数
+         */
+        CHAR,
+        /**
+         * 粗分词网中的顶点数
+         */
+        VERTEX,
+        /**
+         * 命名实体识别改变了词网、因而重新求解最短路的句子数，每个句子至多计一次，与{@link Stage#NER_VITERBI}一一对应
+         */
+        NER_PASS
+    }
+
+    /**
+     * 某个阶段结束
+     *
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    void onStage(Stage stage, long nanos);
+
+    /**
+     * 计数器增加
+     *
+     * @param counter 计数器
+     * @param delta   增量
+     */
+    void onCount(Counter counter, long delta);
+}
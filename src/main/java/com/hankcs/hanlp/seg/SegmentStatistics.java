@@ -0,0 +1,152 @@
+package com.hankcs.hanlp.seg;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的分词统计，为每个阶段维护一个纳秒级的对数直方图，并累计各计数器<br>
+ * 直方图第i个桶统计耗时落在[2^i, 2^(i+1))纳秒的次数，分位数按桶的上界估计
+ */
+public class SegmentStatistics implements SegmentListener
+{
+    private static final int BUCKET_NUMBER = 64;
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    /**
+     * 每个阶段的直方图，下标为stage.ordinal() * BUCKET_NUMBER + 桶号
+     */
+    private final AtomicLongArray histogram = new AtomicLongArray(STAGES.length * BUCKET_NUMBER);
+    private final AtomicLongArray totalNanos = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+
+    @Override
+    public void onStage(Stage stage, long nanos)
+    {
+        int bucket = nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        histogram.incrementAndGet(stage.ordinal() * BUCKET_NUMBER + bucket);
+        totalNanos.addAndGet(stage.ordinal(), nanos);
+    }
+
+    @Override
+    public void onCount(Counter counter, long delta)
+    {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * 某阶段发生的次数
+     */
+    public long getCount(Stage stage)
+    {
+        long count = 0;
+        int offset = stage.ordinal() * BUCKET_NUMBER;
+        for (int i = 0; i < BUCKET_NUMBER; ++i)
+        {
+            count += histogram.get(offset + i);
+        }
+        return count;
+    }
+
+    /**
+     * 某阶段的总耗时（纳秒）
+     */
+    public long getTotalNanos(Stage stage)
+    {
+        return totalNanos.get(stage.ordinal());
+    }
+
+    /**
+     * 某阶段的平均耗时（纳秒）
+     */
+    public double getMeanNanos(Stage stage)
+    {
+        long count = getCount(stage);
+        return count == 0 ? 0 : getTotalNanos(stage) / (double) count;
+    }
+
+    /**
+     * 估计某阶段耗时的分位数
+     *
+     * @param stage    阶段
+     * @param quantile 0到1之间，比如0.99
+     * @return 耗时上界（纳秒），没有数据时为0
+     */
+    public long getQuantileNanos(Stage stage, double quantile)
+    {
+        long count = getCount(stage);
+        if (count == 0) return 0;
+        long target = (long) Math.ceil(count * quantile);
+        if (target < 1) target = 1;
+        int offset = stage.ordinal() * BUCKET_NUMBER;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_NUMBER; ++i)
+        {
+            seen += histogram.get(offset + i);
+            if (seen >= target) return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 直方图的副本
+     *
+     * @param stage 阶段
+     * @return 第i个元素为耗时落在[2^i, 2^(i+1))纳秒的次数
+     */
+    public long[] getHistogram(Stage stage)
+    {
+        long[] result = new long[BUCKET_NUMBER];
+        int offset = stage.ordinal() * BUCKET_NUMBER;
+        for (int i = 0; i < BUCKET_NUMBER; ++i)
+        {
+            result[i] = histogram.get(offset + i);
+        }
+        return result;
+    }
+
+    /**
+     * 计数器的值
+     */
+    public long getCount(Counter counter)
+    {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * 清零
+     */
+    public void reset()
+    {
+        for (int i = 0; i < histogram.length(); ++i)
+        {
+            histogram.set(i, 0);
+        }
+        for (int i = 0; i < totalNanos.length(); ++i)
+        {
+            totalNanos.set(i, 0);
+        }
+        for (int i = 0; i < counters.length(); ++i)
+        {
+            counters.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : STAGES)
+        {
+            long count = getCount(stage);
+            if (count == 0) continue;
+            sb.append(String.format("%-30s count=%-8d total=%.3fms mean=%.1fus p50<%.1fus p99<%.1fus\n",
+                                    stage, count, getTotalNanos(stage) / 1e6, getMeanNanos(stage) / 1e3,
+                                    getQuantileNanos(stage, 0.5) / 1e3, getQuantileNanos(stage, 0.99) / 1e3));
+        }
+        for (Counter counter : COUNTERS)
+        {
+            sb.append(counter).append('=').append(getCount(counter)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -12,16 +12,22 @@
 package com.hankcs.hanlp.seg.Viterbi;
 
 import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.CombinedDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.recognition.nr.JapanesePersonRecognition;
 import com.hankcs.hanlp.recognition.nr.PersonRecognition;
 import com.hankcs.hanlp.recognition.nr.TranslatedPersonRecognition;
 import com.hankcs.hanlp.recognition.ns.PlaceRecognition;
 import com.hankcs.hanlp.recognition.nt.OrganizationRecognition;
+import com.hankcs.hanlp.seg.SegmentListener;
 import com.hankcs.hanlp.seg.WordBasedSegment;
 import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.TermBuffer;
 import com.hankcs.hanlp.seg.common.Vertex;
 import com.hankcs.hanlp.seg.common.WordNet;
+import com.hankcs.hanlp.seg.common.WordNetArena;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -33,13 +39,77 @@ import java.util.List;
  */
 public class ViterbiSegment extends WordBasedSegment
 {
+    /**
+     * 是否复用线程内的词网对象池
+     */
+    private boolean arenaEnabled = false;
+
+    /**
+     * 是否开启对象池模式<br>
+     * 开启后词网、顶点与路径由每个线程的对象池提供，句子分完即归还，适合高吞吐的短句分词
+     *
+     * @param enable 是否开启
+     * @return 分词器本身
+     */
+    public ViterbiSegment enableArena(boolean enable)
+    {
+        arenaEnabled = enable;
+        return this;
+    }
+
     @Override
     protected List<Term> segSentence(char[] sentence)
     {
-//        long start = System.currentTimeMillis();
-        WordNet wordNetAll = new WordNet(sentence);
+        return segSentenceWithArena(sentence, null);
+    }
+
+    @Override
+    protected void segSentence(char[] sentence, TermBuffer buffer)
+    {
+        segSentenceWithArena(sentence, buffer);
+    }
+
+    /**
+     * 批量分词的工作线程连续处理许多篇文本，总是复用线程内的词网对象池
+     */
+    @Override
+    protected List<Term> segBatchSentence(char[] sentence)
+    {
+        return segSentenceWithArena(sentence, null, true);
+    }
+
+    private List<Term> segSentenceWithArena(char[] sentence, TermBuffer buffer)
+    {
+        return segSentenceWithArena(sentence, buffer, arenaEnabled);
+    }
+
+    /**
+     * @param buffer 不为null时结果写入缓冲区并返回null
+     * @param useArena 是否使用对象池
+     */
+    private List<Term> segSentenceWithArena(char[] sentence, TermBuffer buffer, boolean useArena)
+    {
+        WordNetArena arena = useArena ? WordNetArena.acquire() : null;
+        if (arena == null) return segSentence(sentence, null, buffer);
+        try
+        {
+            return segSentence(sentence, arena, buffer);
+        }
+        finally
+        {
+            arena.release();
+        }
+    }
+
+    private List<Term> segSentence(char[] sentence, WordNetArena arena, TermBuffer buffer)
+    {
+        final SegmentListener listener = this.listener;
+        final long sentenceStart = listener == null ? 0 : System.nanoTime();
+        final DynamicCustomDictionary.Snapshot dictionary = getCustomDictionary().snapshot(); // 整个句子使用同一个用户词典快照
+        final CombinedDictionary.Scan scan = newScan(dictionary);
+        WordNet wordNetAll = arena == null ? new WordNet(sentence) : arena.newWordNet(sentence);
         ////////////////生成词网////////////////////
-        generateWordNet(wordNetAll);
+        generateWordNet(wordNetAll, dictionary, scan);
         ///////////////生成词图////////////////////
 //        System.out.println("构图：" + (System.currentTimeMillis() - start));
         if (HanLP.Config.DEBUG)
@@ -47,14 +117,17 @@ public class ViterbiSegment extends WordBasedSegment
             System.out.printf("粗分词网：\n%s\n", wordNetAll);
         }
 //        start = System.currentTimeMillis();
-        List<Vertex> vertexList = viterbi(wordNetAll);
+        long start = listener == null ? 0 : System.nanoTime();
+        List<Vertex> vertexList = viterbi(wordNetAll, arena);
 //        System.out.println("最短路：" + (System.currentTimeMillis() - start));
+        if (listener != null) start = lap(listener, SegmentListener.Stage.VITERBI, start);
 
         if (config.useCustomDictionary)
         {
             if (config.indexMode > 0)
-                combineByCustomDictionary(vertexList, wordNetAll);
-            else combineByCustomDictionary(vertexList);
+                combineByCustomDictionary(vertexList, dictionary, scan, wordNetAll);
+            else combineByCustomDictionary(vertexList, dictionary, scan);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.CUSTOM_DICTIONARY, start);
         }
 
         if (HanLP.Config.DEBUG)
@@ -66,42 +139,53 @@ public class ViterbiSegment extends WordBasedSegment
         if (config.numberQuantifierRecognize)
         {
             mergeNumberQuantifier(vertexList, wordNetAll, config);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.NUMBER_QUANTIFIER, start);
         }
 
         // 实体命名识别
         if (config.ner)
         {
-            WordNet wordNetOptimum = new WordNet(sentence, vertexList);
+            WordNet wordNetOptimum = arena == null ? new WordNet(sentence, vertexList) : arena.newWordNet(sentence, vertexList);
             int preSize = wordNetOptimum.size();
             if (config.nameRecognize)
             {
                 PersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.PERSON_RECOGNITION, start);
             }
             if (config.translatedNameRecognize)
             {
                 TranslatedPersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.TRANSLATED_PERSON_RECOGNITION, start);
             }
             if (config.japaneseNameRecognize)
             {
                 JapanesePersonRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.JAPANESE_PERSON_RECOGNITION, start);
             }
             if (config.placeRecognize)
             {
                 PlaceRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.PLACE_RECOGNITION, start);
             }
             if (config.organizationRecognize)
             {
                 // 层叠隐马模型——生成输出作为下一级隐马输入
                 wordNetOptimum.clean();
-                vertexList = viterbi(wordNetOptimum);
+                vertexList = viterbi(wordNetOptimum, arena);
                 wordNetOptimum.clear();
                 wordNetOptimum.addAll(vertexList);
                 preSize = wordNetOptimum.size();
                 OrganizationRecognition.recognition(vertexList, wordNetOptimum, wordNetAll);
+                if (listener != null) start = lap(listener, SegmentListener.Stage.ORGANIZATION_RECOGNITION, start);
             }
             if (wordNetOptimum.size() != preSize)
             {
-                vertexList = viterbi(wordNetOptimum);
+                vertexList = viterbi(wordNetOptimum, arena);
+                if (listener != null)
+                {
+                    start = lap(listener, SegmentListener.Stage.NER_VITERBI, start);
+                    listener.onCount(SegmentListener.Counter.NER_PASS, 1);
+                }
                 if (HanLP.Config.DEBUG)
                 {
                     System.out.printf("细分词网：\n%s\n", wordNetOptimum);
@@ -112,23 +196,61 @@ public class ViterbiSegment extends WordBasedSegment
         // 如果是索引模式则全切分
         if (config.indexMode > 0)
         {
-            return decorateResultForIndexMode(vertexList, wordNetAll);
+            List<Term> termList = decorateResultForIndexMode(vertexList, wordNetAll);
+            if (buffer != null)
+            {
+                addAll(buffer, termList);
+                termList = null;
+            }
+            if (listener != null)
+            {
+                lap(listener, SegmentListener.Stage.INDEX_MODE, start);
+                onSentence(listener, sentence, sentenceStart);
+            }
+            return termList;
         }
 
         // 是否标注词性
         if (config.speechTagging)
         {
             speechTagging(vertexList);
+            if (listener != null) start = lap(listener, SegmentListener.Stage.SPEECH_TAGGING, start);
+        }
+
+        List<Term> termList = null;
+        if (buffer != null) addPath(buffer, vertexList);
+        else termList = convert(vertexList, config.offset);
+        if (listener != null)
+        {
+            lap(listener, SegmentListener.Stage.CONVERT, start);
+            onSentence(listener, sentence, sentenceStart);
         }
+        return termList;
+    }
 
-        return convert(vertexList, config.offset);
+    /**
+     * 将路径（首尾为始##始和末##末）直接写入缓冲区，不创建Term
+     */
+    private static void addPath(TermBuffer buffer, List<Vertex> vertexList)
+    {
+        int offset = 0;
+        int length = vertexList.size() - 2;
+        Iterator<Vertex> iterator = vertexList.iterator();
+        iterator.next();
+        for (int i = 0; i < length; ++i)
+        {
+            Vertex vertex = iterator.next();
+            int wordLength = vertex.realWord.length();
+            buffer.add(offset, wordLength, vertex.guessNature());
+            offset += wordLength;
+        }
     }
 
-    private static List<Vertex> viterbi(WordNet wordNet)
+    private static List<Vertex> viterbi(WordNet wordNet, WordNetArena arena)
     {
         // 避免生成对象，优化速度
         LinkedList<Vertex> nodes[] = wordNet.getVertexes();
-        LinkedList<Vertex> vertexList = new LinkedList<Vertex>();
+        LinkedList<Vertex> vertexList = arena == null ? new LinkedList<Vertex>() : arena.newPath();
         for (Vertex node : nodes[1])
         {
             node.updateFrom(nodes[0].getFirst());
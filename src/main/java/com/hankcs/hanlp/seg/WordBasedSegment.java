@@ -22,6 +22,7 @@ import com.hankcs.hanlp.seg.common.Graph;
 import com.hankcs.hanlp.seg.common.Term;
 import com.hankcs.hanlp.seg.common.Vertex;
 import com.hankcs.hanlp.seg.common.WordNet;
+import com.hankcs.hanlp.seg.common.WordNetArena;
 import com.hankcs.hanlp.utility.TextUtility;
 
 import java.util.*;
@@ -39,6 +40,21 @@ public abstract class WordBasedSegment extends Segment
         super();
     }
 
+    /**
+     * 是否用核心词典与用户词典合并而成的词典查词<br>
+     * 开启后每个句子只扫描一遍就得到词网的全部候选与用户词典的命中，分词结果与关闭时完全相同。
+     * 合并词典在后台线程中构建，需要一两秒，构建完成之前照常分别查询两个词典；也可以在预热阶段调用{@link CombinedDictionary#prepare}同步构建。
+     *
+     * @param enable
+     * @return 分词器本身
+     * @see CombinedDictionary
+     */
+    public Segment enableCombinedDictionary(boolean enable)
+    {
+        config.combinedDictionary = enable;
+        return this;
+    }
+
     /**
      * 对粗分结果执行一些规则上的合并拆分等等，同时合成新词网
      *
@@ -384,26 +400,112 @@ public abstract class WordBasedSegment extends Segment
      * @param wordNetStorage
      */
     protected void generateWordNet(final WordNet wordNetStorage)
+    {
+        generateWordNet(wordNetStorage, getCustomDictionary().snapshot());
+    }
+
+    /**
+     * 生成一元词网
+     *
+     * @param wordNetStorage
+     * @param dictionary     用户词典的快照
+     */
+    protected void generateWordNet(final WordNet wordNetStorage, DynamicCustomDictionary.Snapshot dictionary)
+    {
+        generateWordNet(wordNetStorage, dictionary, null);
+    }
+
+    /**
+     * 启用合并词典时，为一个句子准备合并词典的扫描
+     *
+     * @param dictionary 用户词典的快照
+     * @return 扫描，未启用或不支持时返回null
+     */
+    protected CombinedDictionary.Scan newScan(DynamicCustomDictionary.Snapshot dictionary)
+    {
+        return config.combinedDictionary ? CombinedDictionary.newScan(dictionary) : null;
+    }
+
+    /**
+     * 生成一元词网
+     *
+     * @param wordNetStorage
+     * @param dictionary     用户词典的快照
+     * @param scan           合并词典的扫描，不为null时一遍扫描得到核心词典与用户词典的候选，结果留给粗分后的合并使用
+     */
+    protected void generateWordNet(final WordNet wordNetStorage, DynamicCustomDictionary.Snapshot dictionary, CombinedDictionary.Scan scan)
     {
         final char[] charArray = wordNetStorage.charArray;
+        final SegmentListener listener = this.listener;
+        long start = listener == null ? 0 : System.nanoTime();
 
-        // 核心词典查询
-        DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = CoreDictionary.trie.getSearcher(charArray, 0);
-        while (searcher.next())
+        if (scan != null)
         {
-            wordNetStorage.add(searcher.begin + 1, new Vertex(new String(charArray, searcher.begin, searcher.length), searcher.value, searcher.index));
+            // 核心词典与用户词典一起查询
+            scan.scan(charArray);
+            boolean pooled = wordNetStorage.isPooled();
+            for (int begin = 0; begin < charArray.length; ++begin)
+            {
+                for (int i = scan.from(begin), to = scan.to(begin); i < to; ++i)
+                {
+                    if (!scan.isCore(i)) continue;
+                    int length = scan.length(i);
+                    int index = scan.coreIndex(i);
+                    if (pooled)
+                    {
+                        String word = WordNetArena.wordOf(CoreDictionary.trie, charArray, begin, length, index);
+                        wordNetStorage.add(begin + 1, wordNetStorage.newVertex(null, word, scan.coreValue(i), index));
+                    }
+                    else
+                    {
+                        wordNetStorage.add(begin + 1, new Vertex(new String(charArray, begin, length), scan.coreValue(i), index));
+                    }
+                }
+            }
         }
+        else
+        {
+            // 核心词典查询
+            DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = CoreDictionary.trie.getSearcher(charArray, 0);
+            if (wordNetStorage.isPooled())
+            {
+                while (searcher.next())
+                {
+                    String word = WordNetArena.wordOf(CoreDictionary.trie, charArray, searcher.begin, searcher.length, searcher.index);
+                    wordNetStorage.add(searcher.begin + 1, wordNetStorage.newVertex(null, word, searcher.value, searcher.index));
+                }
+            }
+            else
+            {
+                while (searcher.next())
+                {
+                    wordNetStorage.add(searcher.begin + 1, new Vertex(new String(charArray, searcher.begin, searcher.length), searcher.value, searcher.index));
+                }
+            }
+        }
+        if (listener != null) start = lap(listener, SegmentListener.Stage.CORE_DICTIONARY, start);
         // 强制用户词典查询
         if (config.forceCustomDictionary)
         {
-            CustomDictionary.parseText(charArray, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+            AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor = new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
             {
                 @Override
                 public void hit(int begin, int end, CoreDictionary.Attribute value)
                 {
                     wordNetStorage.add(begin + 1, new Vertex(new String(charArray, begin, end - begin), value));
                 }
-            });
+            };
+            if (scan != null)
+            {
+                // 与分别查询时一样，动态插入的词条先于主词典
+                dictionary.parseTrieText(charArray, 0, charArray.length, processor);
+                scan.parseCustomText(0, charArray.length, processor);
+            }
+            else
+            {
+                dictionary.parseText(charArray, processor);
+            }
+            if (listener != null) start = lap(listener, SegmentListener.Stage.FORCE_CUSTOM_DICTIONARY, start);
         }
         // 原子分词，保证图连通
         LinkedList<Vertex>[] vertexes = wordNetStorage.getVertexes();
@@ -421,6 +523,11 @@ public abstract class WordBasedSegment extends Segment
             }
             else i += vertexes[i].getLast().realWord.length();
         }
+        if (listener != null)
+        {
+            lap(listener, SegmentListener.Stage.ATOM_SEGMENT, start);
+            listener.onCount(SegmentListener.Counter.VERTEX, wordNetStorage.size());
+        }
     }
 
     /**
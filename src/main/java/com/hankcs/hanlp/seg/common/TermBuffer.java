@@ -0,0 +1,186 @@
+package com.hankcs.hanlp.seg.common;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑的分词结果缓冲区<br>
+ * 用三个int数组（起点、长度、词性编号）代替Term列表，分词时不为每个单词创建对象，
+ * 词语字符串只在调用{@link #word(int)}时才生成。缓冲区可以反复使用，适合建索引等只需要偏移量的场景。<br>
+ * 此类不是线程安全的，每个线程应当使用自己的缓冲区
+ */
+public class TermBuffer
+{
+    /**
+     * 词性未知时的编号
+     */
+    public static final int NO_NATURE = -1;
+
+    private char[] text;
+    private int[] begin;
+    private int[] length;
+    private int[] nature;
+    private int size;
+
+    public TermBuffer()
+    {
+        this(64);
+    }
+
+    /**
+     * 构造一个缓冲区
+     *
+     * @param capacity 初始容量
+     */
+    public TermBuffer(int capacity)
+    {
+        if (capacity < 1) capacity = 1;
+        begin = new int[capacity];
+        length = new int[capacity];
+        nature = new int[capacity];
+    }
+
+    /**
+     * 清空缓冲区，准备接收一段新文本的分词结果
+     *
+     * @param text 文本（分词器规范化之后的字符）
+     */
+    public void reset(char[] text)
+    {
+        this.text = text;
+        size = 0;
+    }
+
+    /**
+     * 追加一个单词
+     *
+     * @param begin  起点
+     * @param length 长度
+     * @param nature 词性，可以为null
+     */
+    public void add(int begin, int length, Nature nature)
+    {
+        add(begin, length, nature == null ? NO_NATURE : nature.ordinal());
+    }
+
+    /**
+     * 追加一个单词
+     *
+     * @param begin  起点
+     * @param length 长度
+     * @param nature 词性编号
+     */
+    public void add(int begin, int length, int nature)
+    {
+        if (size == this.begin.length)
+        {
+            int capacity = size * 2;
+            this.begin = grow(this.begin, capacity);
+            this.length = grow(this.length, capacity);
+            this.nature = grow(this.nature, capacity);
+        }
+        this.begin[size] = begin;
+        this.length[size] = length;
+        this.nature[size] = nature;
+        ++size;
+    }
+
+    private static int[] grow(int[] array, int capacity)
+    {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * 单词个数
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * 第i个单词的起点
+     */
+    public int begin(int i)
+    {
+        return begin[i];
+    }
+
+    /**
+     * 第i个单词的长度
+     */
+    public int length(int i)
+    {
+        return length[i];
+    }
+
+    /**
+     * 第i个单词的终点（不包含）
+     */
+    public int end(int i)
+    {
+        return begin[i] + length[i];
+    }
+
+    /**
+     * 第i个单词的词性编号，即{@link Nature#ordinal()}，未知词性为{@link #NO_NATURE}
+     */
+    public int natureOrdinal(int i)
+    {
+        return nature[i];
+    }
+
+    /**
+     * 第i个单词的词性
+     *
+     * @return 词性，未知时为null
+     */
+    public Nature nature(int i)
+    {
+        int id = nature[i];
+        return id == NO_NATURE ? null : Nature.values()[id];
+    }
+
+    /**
+     * 生成第i个单词的字符串
+     */
+    public String word(int i)
+    {
+        return new String(text, begin[i], length[i]);
+    }
+
+    /**
+     * 分词的文本
+     */
+    public char[] text()
+    {
+        return text;
+    }
+
+    /**
+     * 转为普通的Term列表（会为每个单词创建对象）
+     *
+     * @return 单词列表，offset已填好
+     */
+    public List<Term> toTermList()
+    {
+        List<Term> termList = new ArrayList<Term>(size);
+        for (int i = 0; i < size; ++i)
+        {
+            Term term = new Term(word(i), nature(i));
+            term.offset = begin[i];
+            termList.add(term);
+        }
+        return termList;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toTermList().toString();
+    }
+}
@@ -83,6 +83,27 @@ public class Vertex
     }
 
     public Vertex(String word, String realWord, CoreDictionary.Attribute attribute, int wordID)
+    {
+        reset(word, realWord, attribute, wordID);
+    }
+
+    /**
+     * 供对象池使用的空白节点，必须调用reset之后才能使用
+     */
+    Vertex()
+    {
+    }
+
+    /**
+     * 重新初始化节点（复用对象，避免重复分配），最短路相关的变量也会被清空
+     *
+     * @param word      编译后的词
+     * @param realWord  真实词
+     * @param attribute 属性
+     * @param wordID    等效词ID
+     * @return 自己
+     */
+    Vertex reset(String word, String realWord, CoreDictionary.Attribute attribute, int wordID)
     {
         if (attribute == null) attribute = new CoreDictionary.Attribute(Nature.n, 1);   // 安全起见
         this.wordID = wordID;
@@ -91,6 +112,10 @@ public class Vertex
         assert realWord.length() > 0 : "构造空白节点会导致死循环！";
         this.word = word;
         this.realWord = realWord;
+        this.from = null;
+        this.weight = 0;
+        this.index = 0;
+        return this;
     }
 
     /**
@@ -135,13 +160,13 @@ public class Vertex
             else if (nature.startsWith('m'))
             {
                 wordID = CoreDictionary.M_WORD_ID;
-                this.attribute = CoreDictionary.get(CoreDictionary.M_WORD_ID);
+                this.attribute = CoreDictionary.trie.get(CoreDictionary.M_WORD_ID);
                 return Predefine.TAG_NUMBER;
             }
             else if (nature.startsWith('x'))
             {
                 wordID = CoreDictionary.X_WORD_ID;
-                this.attribute = CoreDictionary.get(CoreDictionary.X_WORD_ID);
+                this.attribute = CoreDictionary.trie.get(CoreDictionary.X_WORD_ID);
                 return Predefine.TAG_CLUSTER;
             }
 //                case xx:
@@ -153,7 +178,7 @@ public class Vertex
             else if (nature == Nature.t)
             {
                 wordID = CoreDictionary.T_WORD_ID;
-                this.attribute = CoreDictionary.get(CoreDictionary.T_WORD_ID);
+                this.attribute = CoreDictionary.trie.get(CoreDictionary.T_WORD_ID);
                 return Predefine.TAG_TIME;
             }
         }
@@ -194,7 +219,7 @@ public class Vertex
      */
     public Vertex(String realWord)
     {
-        this(null, realWord, CoreDictionary.get(realWord));
+        this(null, realWord, CoreDictionary.trie.get(realWord));
     }
 
     public Vertex(char realWord, CoreDictionary.Attribute attribute)
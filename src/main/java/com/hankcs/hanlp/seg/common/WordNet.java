@@ -52,6 +52,11 @@ public class WordNet
      */
     public char[] charArray;
 
+    /**
+     * 词网所属的对象池，null表示普通词网
+     */
+    WordNetArena arena;
+
     /**
      * 为一个句子生成空白词网
      *
@@ -92,6 +97,45 @@ public class WordNet
         }
     }
 
+    /**
+     * 由对象池构造词网，行与首尾节点均由对象池提供
+     *
+     * @param charArray 句子
+     * @param vertexes  已清空的行
+     * @param arena     对象池
+     */
+    WordNet(char[] charArray, LinkedList<Vertex>[] vertexes, WordNetArena arena)
+    {
+        this.charArray = charArray;
+        this.vertexes = vertexes;
+        this.arena = arena;
+    }
+
+    /**
+     * 本词网是否来自对象池
+     *
+     * @return 是否来自对象池
+     */
+    public boolean isPooled()
+    {
+        return arena != null;
+    }
+
+    /**
+     * 创建一个属于本词网的顶点，如果本词网来自对象池，则复用池中的顶点
+     *
+     * @param word      编译后的词，null表示自动编译
+     * @param realWord  真实词
+     * @param attribute 属性
+     * @param wordID    等效词ID
+     * @return 顶点
+     */
+    public Vertex newVertex(String word, String realWord, CoreDictionary.Attribute attribute, int wordID)
+    {
+        if (arena == null) return new Vertex(word, realWord, attribute, wordID);
+        return arena.newVertex(word, realWord, attribute, wordID);
+    }
+
     /**
      * 添加顶点
      *
@@ -281,7 +325,8 @@ public class WordNet
                     break;
             }
             // 这些通用符的量级都在10万左右
-            add(line + offset, new Vertex(sWord, atomNode.sWord, new CoreDictionary.Attribute(nature, 10000), id));
+            add(line + offset, arena == null ? new Vertex(sWord, atomNode.sWord, new CoreDictionary.Attribute(nature, 10000), id) :
+                arena.newVertex(sWord, atomNode.sWord, WordNetArena.atomAttribute(nature), id));
             offset += atomNode.sWord.length();
         }
     }
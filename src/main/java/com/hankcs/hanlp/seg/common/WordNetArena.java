@@ -0,0 +1,249 @@
+package com.hankcs.hanlp.seg.common;
+
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.utility.Predefine;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 词网对象池（每个线程一个）<br>
+ * 分词时复用词网的行、顶点与最短路路径，一个句子分完后整体归还，下一个句子接着用。
+ * 这样稳定状态下的分词几乎只分配返回的Term列表。<br>
+ * 注意：池中的顶点在release之后会被复用，所以不能把顶点泄露到分词结果之外。
+ */
+public class WordNetArena
+{
+    private static final ThreadLocal<WordNetArena> LOCAL = new ThreadLocal<WordNetArena>()
+    {
+        @Override
+        protected WordNetArena initialValue()
+        {
+            return new WordNetArena();
+        }
+    };
+
+    private static final CoreDictionary.Attribute BEGIN_ATTRIBUTE = new CoreDictionary.Attribute(Nature.begin, Predefine.MAX_FREQUENCY / 10);
+    private static final CoreDictionary.Attribute END_ATTRIBUTE = new CoreDictionary.Attribute(Nature.end, Predefine.MAX_FREQUENCY / 10);
+    private static final int BEGIN_WORD_ID = CoreDictionary.getWordID(Predefine.TAG_BIGIN);
+    private static final int END_WORD_ID = CoreDictionary.getWordID(Predefine.TAG_END);
+    /**
+     * 原子分词产生的节点的属性，属性是只读的，可以全局共享
+     */
+    private static final CoreDictionary.Attribute[] ATOM_ATTRIBUTES = new CoreDictionary.Attribute[]{
+        new CoreDictionary.Attribute(Nature.n, 10000),
+        new CoreDictionary.Attribute(Nature.m, 10000),
+        new CoreDictionary.Attribute(Nature.w, 10000),
+        new CoreDictionary.Attribute(Nature.nx, 10000),
+    };
+
+    /**
+     * 核心词典中词语的字符串缓存，下标为词语id（字符串不可变，可以在线程间共享）
+     */
+    private static volatile WordCache wordCache;
+
+    /**
+     * 行池
+     */
+    private LinkedList<Vertex>[] rowPool;
+    private int rowUsed;
+    /**
+     * 顶点池
+     */
+    private Vertex[] vertexPool;
+    private int vertexUsed;
+    /**
+     * 最短路径
+     */
+    private final LinkedList<Vertex> path;
+    /**
+     * 是否正在使用，防止同一线程重入
+     */
+    private boolean busy;
+
+    @SuppressWarnings("unchecked")
+    private WordNetArena()
+    {
+        rowPool = new LinkedList[64];
+        vertexPool = new Vertex[256];
+        path = new LinkedList<Vertex>();
+    }
+
+    /**
+     * 借出当前线程的对象池
+     *
+     * @return 对象池，null表示当前线程的对象池正在使用中（重入），此时应当退回普通分配
+     */
+    public static WordNetArena acquire()
+    {
+        WordNetArena arena = LOCAL.get();
+        if (arena.busy) return null;
+        arena.busy = true;
+        return arena;
+    }
+
+    /**
+     * 归还对象池，此后本次借出的词网、顶点与路径都不可再用
+     */
+    public void release()
+    {
+        for (int i = 0; i < rowUsed; ++i)
+        {
+            rowPool[i].clear();
+        }
+        rowUsed = 0;
+        vertexUsed = 0;
+        path.clear();
+        busy = false;
+    }
+
+    /**
+     * 为句子创建一个空白词网（只含首尾节点）
+     *
+     * @param charArray 句子
+     * @return 词网
+     */
+    public WordNet newWordNet(char[] charArray)
+    {
+        WordNet wordNet = new WordNet(charArray, newRows(charArray.length + 2), this);
+        LinkedList<Vertex>[] vertexes = wordNet.getVertexes();
+        vertexes[0].add(newVertex(Predefine.TAG_BIGIN, " ", BEGIN_ATTRIBUTE, BEGIN_WORD_ID));
+        vertexes[vertexes.length - 1].add(newVertex(Predefine.TAG_END, " ", END_ATTRIBUTE, END_WORD_ID));
+        wordNet.size = 2;
+        return wordNet;
+    }
+
+    /**
+     * 由一条路径创建词网
+     *
+     * @param charArray  句子
+     * @param vertexList 路径
+     * @return 词网
+     */
+    public WordNet newWordNet(char[] charArray, List<Vertex> vertexList)
+    {
+        WordNet wordNet = new WordNet(charArray, newRows(charArray.length + 2), this);
+        LinkedList<Vertex>[] vertexes = wordNet.getVertexes();
+        int i = 0;
+        for (Vertex vertex : vertexList)
+        {
+            vertexes[i].add(vertex);
+            ++wordNet.size;
+            i += vertex.realWord.length();
+        }
+        return wordNet;
+    }
+
+    /**
+     * 借出一条空白路径
+     *
+     * @return 已清空的路径
+     */
+    public LinkedList<Vertex> newPath()
+    {
+        path.clear();
+        return path;
+    }
+
+    /**
+     * 从池中取出一个顶点
+     */
+    Vertex newVertex(String word, String realWord, CoreDictionary.Attribute attribute, int wordID)
+    {
+        if (vertexUsed == vertexPool.length)
+        {
+            Vertex[] newPool = new Vertex[vertexPool.length * 2];
+            System.arraycopy(vertexPool, 0, newPool, 0, vertexPool.length);
+            vertexPool = newPool;
+        }
+        Vertex vertex = vertexPool[vertexUsed];
+        if (vertex == null)
+        {
+            vertex = new Vertex();
+            vertexPool[vertexUsed] = vertex;
+        }
+        ++vertexUsed;
+        return vertex.reset(word, realWord, attribute, wordID);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LinkedList<Vertex>[] newRows(int length)
+    {
+        if (rowUsed + length > rowPool.length)
+        {
+            LinkedList<Vertex>[] newPool = new LinkedList[Math.max(rowPool.length * 2, rowUsed + length)];
+            System.arraycopy(rowPool, 0, newPool, 0, rowPool.length);
+            rowPool = newPool;
+        }
+        LinkedList<Vertex>[] rows = new LinkedList[length];
+        for (int i = 0; i < length; ++i)
+        {
+            LinkedList<Vertex> row = rowPool[rowUsed];
+            if (row == null)
+            {
+                row = new LinkedList<Vertex>();
+                rowPool[rowUsed] = row;
+            }
+            ++rowUsed;
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * 原子节点的共享属性
+     *
+     * @param nature 词性
+     * @return 频次为10000的只读属性
+     */
+    static CoreDictionary.Attribute atomAttribute(Nature nature)
+    {
+        if (nature == Nature.m) return ATOM_ATTRIBUTES[1];
+        if (nature == Nature.w) return ATOM_ATTRIBUTES[2];
+        if (nature == Nature.nx) return ATOM_ATTRIBUTES[3];
+        if (nature == Nature.n) return ATOM_ATTRIBUTES[0];
+        return new CoreDictionary.Attribute(nature, 10000);
+    }
+
+    /**
+     * 获取核心词典中某个词语的字符串，首次访问时创建，之后复用
+     *
+     * @param trie      核心词典
+     * @param charArray 文本
+     * @param begin     起点
+     * @param length    长度
+     * @param index     词语id
+     * @return 词语
+     */
+    public static String wordOf(DoubleArrayTrie<CoreDictionary.Attribute> trie, char[] charArray, int begin, int length, int index)
+    {
+        WordCache cache = wordCache;
+        if (cache == null || cache.trie != trie)
+        {
+            cache = new WordCache(trie);
+            wordCache = cache;
+        }
+        if (index >= cache.words.length) return new String(charArray, begin, length);
+        String word = cache.words[index];
+        if (word == null || word.length() != length)
+        {
+            word = new String(charArray, begin, length);
+            cache.words[index] = word;
+        }
+        return word;
+    }
+
+    private static class WordCache
+    {
+        final DoubleArrayTrie<CoreDictionary.Attribute> trie;
+        final String[] words;
+
+        WordCache(DoubleArrayTrie<CoreDictionary.Attribute> trie)
+        {
+            this.trie = trie;
+            this.words = new String[trie.size()];
+        }
+    }
+}
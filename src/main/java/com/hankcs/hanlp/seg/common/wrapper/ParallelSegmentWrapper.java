@@ -0,0 +1,280 @@
+package com.hankcs.hanlp.seg.common.wrapper;
+
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.SegmentExecutor;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 并行的流式分词器，适合分词无限长的输入（比如几个G的语料）<br>
+ * 流水线分为四级：读取线程读入字符并断句 -> 有界队列 -> N个分词线程 -> 按原始顺序输出的迭代器。<br>
+ * 在途的句子数不超过队列容量，消费得慢时读取线程会阻塞，所以无论输入多大，内存占用都是平稳的。<br>
+ * 每次next()返回一个句子的分词结果，Term的offset相对于句子；用完后请调用close()
+ */
+public class ParallelSegmentWrapper implements Iterator<List<Term>>, Closeable
+{
+    /**
+     * 没有遇到标点时，句子的最大长度
+     */
+    private static final int MAX_SENTENCE_LENGTH = 1024;
+    /**
+     * 结束标记
+     */
+    private static final Future<List<Term>> EOF = new FutureTask<List<Term>>(new Callable<List<Term>>()
+    {
+        @Override
+        public List<Term> call() throws Exception
+        {
+            return null;
+        }
+    });
+
+    private final Reader reader;
+    private final Segment segment;
+    private final int threadNumber;
+    /**
+     * 按输入顺序排列的在途句子，容量即背压的上限
+     */
+    private final BlockingQueue<Future<List<Term>>> orderQueue;
+    private ExecutorService workers;
+    private Thread readerThread;
+    private volatile Throwable readerError;
+    private List<Term> nextSentence;
+    private boolean finished;
+
+    /**
+     * 构造一个并行流式分词器
+     *
+     * @param reader  输入
+     * @param segment 分词器
+     */
+    public ParallelSegmentWrapper(Reader reader, Segment segment)
+    {
+        this(reader, segment, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 构造一个并行流式分词器
+     *
+     * @param reader       输入
+     * @param segment      分词器
+     * @param threadNumber 分词线程数
+     */
+    public ParallelSegmentWrapper(Reader reader, Segment segment, int threadNumber)
+    {
+        this(reader, segment, threadNumber, threadNumber * 64);
+    }
+
+    /**
+     * 构造一个并行流式分词器
+     *
+     * @param reader       输入
+     * @param segment      分词器
+     * @param threadNumber 分词线程数
+     * @param capacity     最多有多少个句子在途（已读入但尚未被消费）
+     */
+    public ParallelSegmentWrapper(Reader reader, Segment segment, int threadNumber, int capacity)
+    {
+        if (threadNumber < 1) throw new IllegalArgumentException("线程数应当大于等于1");
+        if (capacity < 1) throw new IllegalArgumentException("队列容量应当大于等于1");
+        this.reader = reader;
+        this.segment = segment;
+        this.threadNumber = threadNumber;
+        this.orderQueue = new ArrayBlockingQueue<Future<List<Term>>>(capacity);
+    }
+
+    private void start()
+    {
+        workers = new ThreadPoolExecutor(threadNumber, threadNumber, 0L, TimeUnit.MILLISECONDS,
+                                         new LinkedBlockingQueue<Runnable>(),
+                                         SegmentExecutor.newThreadFactory("HanLP-SegmentWrapper-"));
+        readerThread = SegmentExecutor.newThreadFactory("HanLP-SegmentReader-").newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    readSentences();
+                }
+                catch (InterruptedException e)
+                {
+                    return; // 被close打断
+                }
+                catch (Throwable e)
+                {
+                    readerError = e;
+                }
+                try
+                {
+                    orderQueue.put(EOF);
+                }
+                catch (InterruptedException ignored)
+                {
+                }
+            }
+        });
+        readerThread.start();
+    }
+
+    /**
+     * 读取线程：逐块读入字符，在句末标点处断句，然后提交给分词线程
+     */
+    private void readSentences() throws IOException, InterruptedException
+    {
+        char[] buffer = new char[8192];
+        StringBuilder sb = new StringBuilder();
+        int n;
+        while ((n = reader.read(buffer)) != -1)
+        {
+            for (int i = 0; i < n; ++i)
+            {
+                char c = buffer[i];
+                sb.append(c);
+                switch (c)
+                {
+                    case '\n':
+                    case '\r':
+                    case '。':
+                    case '！':
+                    case '？':
+                    case '!':
+                    case '?':
+                    case '；':
+                    case ';':
+                    case '…':
+                        submit(sb);
+                        break;
+                    default:
+                        if (sb.length() >= MAX_SENTENCE_LENGTH && !Character.isHighSurrogate(c)) submit(sb);
+                }
+            }
+        }
+        submit(sb);
+    }
+
+    private void submit(StringBuilder sb) throws InterruptedException
+    {
+        final String sentence = sb.toString().trim();
+        sb.setLength(0);
+        if (sentence.length() == 0) return;
+        Future<List<Term>> future = workers.submit(new Callable<List<Term>>()
+        {
+            @Override
+            public List<Term> call() throws Exception
+            {
+                return segment.seg(sentence);
+            }
+        });
+        orderQueue.put(future);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (nextSentence != null) return true;
+        if (finished) return false;
+        if (readerThread == null) start();
+        try
+        {
+            Future<List<Term>> future = orderQueue.take();
+            if (future == EOF)
+            {
+                finished = true;
+                workers.shutdown();
+                if (readerError != null) throw new RuntimeException("读取输入时发生异常", readerError);
+                return false;
+            }
+            nextSentence = future.get();
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException("分词时发生异常", e.getCause());
+        }
+    }
+
+    /**
+     * 下一个句子的分词结果
+     *
+     * @return 单词列表
+     */
+    @Override
+    public List<Term> next()
+    {
+        if (!hasNext()) throw new NoSuchElementException();
+        List<Term> termList = nextSentence;
+        nextSentence = null;
+        return termList;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 以单词为单位的迭代器，与本迭代器共享进度
+     *
+     * @return 逐个输出单词的迭代器
+     */
+    public Iterator<Term> termIterator()
+    {
+        return new Iterator<Term>()
+        {
+            Iterator<Term> current = Collections.<Term>emptyList().iterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                while (!current.hasNext())
+                {
+                    if (!ParallelSegmentWrapper.this.hasNext()) return false;
+                    current = ParallelSegmentWrapper.this.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Term next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * 停止所有线程并关闭输入
+     */
+    @Override
+    public void close() throws IOException
+    {
+        finished = true;
+        nextSentence = null;
+        if (readerThread != null)
+        {
+            readerThread.interrupt();
+            workers.shutdownNow();
+            orderQueue.clear();
+        }
+        reader.close();
+    }
+}
@@ -50,6 +50,16 @@ public class StandardTokenizer
         return SEGMENT.seg(text);
     }
 
+    /**
+     * 批量分词
+     * @param textList 文本列表
+     * @return 每篇文本的分词结果，顺序与输入一致
+     */
+    public static List<List<Term>> segment(List<String> textList)
+    {
+        return SEGMENT.seg(textList);
+    }
+
     /**
      * 切分为句子形式
      * @param text 文本
@@ -20,10 +20,12 @@ import com.hankcs.hanlp.corpus.document.sentence.word.Word;
 import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
 import com.hankcs.hanlp.dictionary.other.CharTable;
 import com.hankcs.hanlp.model.perceptron.tagset.NERTagSet;
 import com.hankcs.hanlp.seg.CharacterBasedSegment;
 import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.TermBuffer;
 
 import java.util.*;
 
@@ -73,7 +75,8 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
         if (attributeList != null)
         {
             final int[] offset = new int[]{0};
-            CustomDictionary.parseLongestText(sentence, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+            char[] charArray = sentence.toCharArray();
+            getCustomDictionary().parseLongestText(charArray, 0, charArray.length, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
             {
                 @Override
                 public void hit(int begin, int end, CoreDictionary.Attribute value)
@@ -107,7 +110,8 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
         if (config.useCustomDictionary)
         {
             final int[] offset = new int[]{0};
-            CustomDictionary.parseLongestText(sentence, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+            char[] charArray = sentence.toCharArray();
+            getCustomDictionary().parseLongestText(charArray, 0, charArray.length, new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
             {
                 @Override
                 public void hit(int begin, int end, CoreDictionary.Attribute value)
@@ -321,30 +325,12 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
         {
             if (posTagger != null)
             {
-                String[] wordArray = new String[wordList.size()];
-                offset = 0;
-                int id = 0;
-                for (String word : wordList)
-                {
-                    wordArray[id] = normalized.substring(offset, offset + word.length());
-                    ++id;
-                    offset += word.length();
-                }
+                String[] wordArray = toNormalizedWordArray(original, normalized, wordList);
                 String[] posArray = tag(wordArray);
                 Iterator<Term> iterator = termList.iterator();
-                Iterator<CoreDictionary.Attribute> attributeIterator = attributeList == null ? null : attributeList.iterator();
-                for (int i = 0; i < posArray.length; i++)
+                for (Nature nature : mergeNature(posArray, attributeList))
                 {
-                    if (attributeIterator != null && attributeIterator.hasNext())
-                    {
-                        CoreDictionary.Attribute attribute = attributeIterator.next();
-                        if (attribute != null)
-                        {
-                            iterator.next().nature = attribute.nature[0]; // 使用词典中的词性覆盖词性标注器的结果
-                            continue;
-                        }
-                    }
-                    iterator.next().nature = Nature.create(posArray[i]);
+                    iterator.next().nature = nature;
                 }
 
                 if (config.ner && neRecognizer != null)
@@ -431,21 +417,113 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
             {
                 for (Term term : termList)
                 {
-                    CoreDictionary.Attribute attribute = CoreDictionary.get(term.word);
-                    if (attribute != null)
-                    {
-                        term.nature = attribute.nature[0];
-                    }
-                    else
-                    {
-                        term.nature = Nature.n;
-                    }
+                    term.nature = dictionaryNature(term.word);
                 }
             }
         }
         return termList;
     }
 
+    @Override
+    protected void segSentence(char[] sentence, TermBuffer buffer)
+    {
+        if (sentence.length == 0) return;
+        if (config.speechTagging && posTagger != null && config.ner && neRecognizer != null)
+        {
+            addAll(buffer, segSentence(sentence)); // 命名实体需要合并单词，退回Term列表
+            return;
+        }
+        String original = new String(sentence);
+        char[] normalizedArray = sentence.clone();
+        CharTable.normalization(normalizedArray);
+        String normalized = new String(normalizedArray);
+        List<String> wordList = new LinkedList<String>();
+        List<CoreDictionary.Attribute> attributeList = segmentWithAttribute(original, normalized, wordList);
+        if (!config.speechTagging)
+        {
+            int offset = 0;
+            for (String word : wordList)
+            {
+                buffer.add(offset, word.length(), TermBuffer.NO_NATURE);
+                offset += word.length();
+            }
+            return;
+        }
+        Nature[] natureArray = null;
+        if (posTagger != null)
+        {
+            natureArray = mergeNature(tag(toNormalizedWordArray(original, normalized, wordList)), attributeList);
+        }
+        int offset = 0;
+        int id = 0;
+        for (String word : wordList)
+        {
+            buffer.add(offset, word.length(), natureArray == null ? dictionaryNature(word) : natureArray[id++]);
+            offset += word.length();
+        }
+    }
+
+    /**
+     * 取出词性标注器需要的单词。正规化没有改动文本时直接复用分词结果，否则从正规化后的文本中截取
+     *
+     * @param original   原文
+     * @param normalized 正规化后的文本
+     * @param wordList   原文的分词结果
+     * @return 正规化后的单词
+     */
+    private static String[] toNormalizedWordArray(String original, String normalized, List<String> wordList)
+    {
+        String[] wordArray = new String[wordList.size()];
+        if (original.equals(normalized))
+        {
+            return wordList.toArray(wordArray);
+        }
+        int offset = 0;
+        int id = 0;
+        for (String word : wordList)
+        {
+            wordArray[id++] = normalized.substring(offset, offset + word.length());
+            offset += word.length();
+        }
+        return wordArray;
+    }
+
+    /**
+     * 合并词性标注器的结果与用户词典中的词性，后者优先
+     *
+     * @param posArray      词性标注器的结果
+     * @param attributeList 用户词典中的属性，可以为null，元素为null表示不在词典中
+     * @return 每个词的词性
+     */
+    private static Nature[] mergeNature(String[] posArray, List<CoreDictionary.Attribute> attributeList)
+    {
+        Nature[] natureArray = new Nature[posArray.length];
+        Iterator<CoreDictionary.Attribute> attributeIterator = attributeList == null ? null : attributeList.iterator();
+        for (int i = 0; i < posArray.length; i++)
+        {
+            if (attributeIterator != null && attributeIterator.hasNext())
+            {
+                CoreDictionary.Attribute attribute = attributeIterator.next();
+                if (attribute != null)
+                {
+                    natureArray[i] = attribute.nature[0]; // 使用词典中的词性覆盖词性标注器的结果
+                    continue;
+                }
+            }
+            natureArray[i] = Nature.create(posArray[i]);
+        }
+        return natureArray;
+    }
+
+    /**
+     * 没有词性标注器时，取核心词典中的第一个词性，查不到则为名词
+     */
+    private static Nature dictionaryNature(String word)
+    {
+        CoreDictionary.Attribute attribute = CoreDictionary.trie.get(word);
+        return attribute == null ? Nature.n : attribute.nature[0];
+    }
+
     /**
      * 返回用户词典中的attribute的分词
      *
@@ -467,7 +545,7 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
             else
             {
                 segmenter.segment(original, normalized, wordList);
-                attributeList = combineWithCustomDictionary(wordList);
+                attributeList = combineWithCustomDictionary(wordList, getCustomDictionary().snapshot());
             }
         }
         else
@@ -485,12 +563,24 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
      * @return 合并后的结果
      */
     protected static List<CoreDictionary.Attribute> combineWithCustomDictionary(List<String> vertexList)
+    {
+        return combineWithCustomDictionary(vertexList, CustomDictionary.snapshot());
+    }
+
+    /**
+     * 使用用户词典合并粗分结果
+     *
+     * @param vertexList 粗分结果
+     * @param dictionary 用户词典的快照
+     * @return 合并后的结果
+     */
+    protected static List<CoreDictionary.Attribute> combineWithCustomDictionary(List<String> vertexList, DynamicCustomDictionary.Snapshot dictionary)
     {
         String[] wordNet = new String[vertexList.size()];
         vertexList.toArray(wordNet);
         CoreDictionary.Attribute[] attributeArray = new CoreDictionary.Attribute[wordNet.length];
         // DAT合并
-        DoubleArrayTrie<CoreDictionary.Attribute> dat = CustomDictionary.dat;
+        DoubleArrayTrie<CoreDictionary.Attribute> dat = dictionary.dat;
         int length = wordNet.length;
         for (int i = 0; i < length; ++i)
         {
@@ -520,12 +610,12 @@ public class AbstractLexicalAnalyzer extends CharacterBasedSegment implements Le
             }
         }
         // BinTrie合并
-        if (CustomDictionary.trie != null)
+        if (dictionary.trie != null)
         {
             for (int i = 1; i < length; ++i)
             {
                 if (wordNet[i] == null) continue;
-                BaseNode<CoreDictionary.Attribute> state = CustomDictionary.trie.transition(wordNet[i], 0);
+                BaseNode<CoreDictionary.Attribute> state = dictionary.trie.transition(wordNet[i], 0);
                 if (state != null)
                 {
                     int to = i + 1;
@@ -83,13 +83,7 @@ public class LexiconUtility
         if (attribute == null) return false;
 
         if (CoreDictionary.trie.set(word, attribute)) return true;
-        if (CustomDictionary.dat.set(word, attribute)) return true;
-        if (CustomDictionary.trie == null)
-        {
-            CustomDictionary.add(word);
-        }
-        CustomDictionary.trie.put(word, attribute);
-        return true;
+        return CustomDictionary.put(word, attribute);
     }
 
     /**
@@ -165,4 +165,9 @@ public class Predefine
      * 二进制文件后缀
      */
     public final static String BIN_EXT = ".bin";
+
+    /**
+     * 内存映射文件后缀
+     */
+    public final static String MAP_EXT = ".map";
 }
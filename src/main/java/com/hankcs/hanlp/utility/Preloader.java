@@ -0,0 +1,367 @@
+package com.hankcs.hanlp.utility;
+
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.SegmentExecutor;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.hankcs.hanlp.utility.Predefine.logger;
+
+/**
+ * 词典预加载与预热<br>
+ * HanLP的词典在静态初始化时才加载，第一个用到地名识别、音译人名识别的请求会卡上好几秒，而且这些词典是串行加载的。
+ * 预加载器在后台线程池中并行加载选定的词典（以及用户提交的模型加载任务），记录每个组件的耗时，
+ * 再用选定的分词器反复切分一些句子，让JIT提前编译热点代码。服务在预热完成之后再接入流量，延迟就是可预期的。<br>
+ * 用法：
+ * <pre>
+ * Future&lt;Preloader.Report&gt; future = new Preloader().addAll().warmup(HanLP.newSegment()).start();
+ * System.out.println(future.get());
+ * </pre>
+ */
+public class Preloader
+{
+    /**
+     * 可以预加载的词典
+     */
+    public enum Component
+    {
+        /**
+         * 核心词典
+         */
+        CORE_DICTIONARY("com.hankcs.hanlp.dictionary.CoreDictionary"),
+        /**
+         * 字符类型与字符正规化表
+         */
+        CHAR_TABLE("com.hankcs.hanlp.dictionary.other.CharType", "com.hankcs.hanlp.dictionary.other.CharTable"),
+        /**
+         * 二元文法词典
+         */
+        BIGRAM("com.hankcs.hanlp.dictionary.CoreBiGramTableDictionary"),
+        /**
+         * 词性转移矩阵
+         */
+        TRANSFORM_MATRIX("com.hankcs.hanlp.dictionary.CoreDictionaryTransformMatrixDictionary"),
+        /**
+         * 用户词典
+         */
+        CUSTOM_DICTIONARY("com.hankcs.hanlp.dictionary.CustomDictionary"),
+        /**
+         * 人名识别
+         */
+        PERSON("com.hankcs.hanlp.dictionary.nr.PersonDictionary"),
+        /**
+         * 音译人名识别
+         */
+        TRANSLATED_PERSON("com.hankcs.hanlp.dictionary.nr.TranslatedPersonDictionary"),
+        /**
+         * 日本人名识别
+         */
+        JAPANESE_PERSON("com.hankcs.hanlp.dictionary.nr.JapanesePersonDictionary"),
+        /**
+         * 地名识别
+         */
+        PLACE("com.hankcs.hanlp.dictionary.ns.PlaceDictionary"),
+        /**
+         * 机构名识别
+         */
+        ORGANIZATION("com.hankcs.hanlp.dictionary.nt.OrganizationDictionary"),
+        /**
+         * 停用词
+         */
+        STOP_WORD("com.hankcs.hanlp.dictionary.stopword.CoreStopWordDictionary"),
+        /**
+         * 同义词
+         */
+        SYNONYM("com.hankcs.hanlp.dictionary.CoreSynonymDictionary"),
+        /**
+         * 拼音
+         */
+        PINYIN("com.hankcs.hanlp.dictionary.py.PinyinDictionary"),
+        /**
+         * 简繁转换
+         */
+        TRADITIONAL_CHINESE("com.hankcs.hanlp.dictionary.ts.TraditionalChineseDictionary",
+                            "com.hankcs.hanlp.dictionary.ts.SimplifiedChineseDictionary");
+
+        private final String[] classNames;
+
+        Component(String... classNames)
+        {
+            this.classNames = classNames;
+        }
+
+        /**
+         * 触发词典类的静态初始化
+         */
+        void load() throws ClassNotFoundException
+        {
+            for (String className : classNames)
+            {
+                Class.forName(className, true, Preloader.class.getClassLoader());
+            }
+        }
+    }
+
+    /**
+     * 预热时切分的句子
+     */
+    private static final String[] WARMUP_TEXT = new String[]{
+        "商品和服务，工信处女干事每月经过下属科室都要亲口交代24口交换机等技术性器件的安装工作",
+        "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。",
+        "王国强、高峰、汪洋、张朝阳光着头、韩寒、小四",
+        "微软公司於1975年由比爾·蓋茲和保羅·艾倫創立，18年啟動以智慧雲端、前端為導向的大改組。",
+        "北川景子参演了林诗栋导演的《锦衣之下》",
+        "上海华安工业（集团）公司董事长谭旭光和秘书胡花蕊来到美国纽约现代艺术博物馆参观",
+        "2018年8月25日下午3点，气温31.5℃，湿度78%，东南风3级",
+        "HanLP是一系列模型与算法组成的NLP工具包，目标是普及自然语言处理在生产环境中的应用。",
+    };
+
+    private final LinkedHashMap<String, Runnable> taskMap = new LinkedHashMap<String, Runnable>();
+    private final List<Segment> segmentList = new ArrayList<Segment>();
+    private int warmupRounds = 200;
+    private int threadNumber = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 预加载一些词典
+     *
+     * @param components 词典
+     * @return 自己
+     */
+    public Preloader add(Component... components)
+    {
+        for (final Component component : components)
+        {
+            taskMap.put(component.name(), new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        component.load();
+                    }
+                    catch (ClassNotFoundException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * 预加载全部词典
+     *
+     * @return 自己
+     */
+    public Preloader addAll()
+    {
+        return add(Component.values());
+    }
+
+    /**
+     * 添加一个自定义的加载任务，比如加载感知机或CRF模型
+     *
+     * @param name 任务名称，出现在报告中
+     * @param task 任务
+     * @return 自己
+     */
+    public Preloader add(String name, Runnable task)
+    {
+        taskMap.put(name, task);
+        return this;
+    }
+
+    /**
+     * 加载完成后用这些分词器预热
+     *
+     * @param segments 分词器
+     * @return 自己
+     */
+    public Preloader warmup(Segment... segments)
+    {
+        segmentList.addAll(Arrays.asList(segments));
+        return this;
+    }
+
+    /**
+     * 设置预热的轮数
+     *
+     * @param warmupRounds 每个分词器把预热语料切分多少遍
+     * @return 自己
+     */
+    public Preloader setWarmupRounds(int warmupRounds)
+    {
+        this.warmupRounds = warmupRounds;
+        return this;
+    }
+
+    /**
+     * 设置加载词典的线程数
+     *
+     * @param threadNumber 线程数
+     * @return 自己
+     */
+    public Preloader setThreadNumber(int threadNumber)
+    {
+        if (threadNumber < 1) throw new IllegalArgumentException("线程数应当大于等于1");
+        this.threadNumber = threadNumber;
+        return this;
+    }
+
+    /**
+     * 在后台线程中预加载与预热，立即返回
+     *
+     * @return 完成后得到报告
+     */
+    public Future<Report> start()
+    {
+        FutureTask<Report> future = new FutureTask<Report>(new Callable<Report>()
+        {
+            @Override
+            public Report call()
+            {
+                return run();
+            }
+        });
+        SegmentExecutor.newThreadFactory("HanLP-Preloader-").newThread(future).start();
+        return future;
+    }
+
+    /**
+     * 在当前线程中预加载与预热，完成后返回
+     *
+     * @return 报告
+     */
+    public Report run()
+    {
+        final Report report = new Report();
+        long start = System.currentTimeMillis();
+        final List<Map.Entry<String, Runnable>> taskList = new ArrayList<Map.Entry<String, Runnable>>(taskMap.entrySet());
+        if (!taskList.isEmpty())
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(threadNumber, SegmentExecutor.newThreadFactory("HanLP-Preloader-"));
+            try
+            {
+                SegmentExecutor.invokeAll(executor, threadNumber, taskList.size(), new SegmentExecutor.Task()
+                {
+                    @Override
+                    public void run(int index)
+                    {
+                        Map.Entry<String, Runnable> task = taskList.get(index);
+                        long begin = System.currentTimeMillis();
+                        try
+                        {
+                            task.getValue().run();
+                            report.time(task.getKey(), System.currentTimeMillis() - begin);
+                        }
+                        catch (Throwable e)
+                        {
+                            logger.warning("预加载" + task.getKey() + "失败：" + e);
+                            report.error(task.getKey(), e);
+                        }
+                    }
+                });
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+        // 预热没法并行，多个线程同时切分反而测不准各个分词器的耗时
+        for (Segment segment : segmentList)
+        {
+            String name = "warmup:" + segment.getClass().getSimpleName();
+            long begin = System.currentTimeMillis();
+            try
+            {
+                for (int i = 0; i < warmupRounds; ++i)
+                {
+                    for (String text : WARMUP_TEXT)
+                    {
+                        segment.seg(text);
+                    }
+                }
+                report.time(name, System.currentTimeMillis() - begin);
+            }
+            catch (Throwable e)
+            {
+                logger.warning("预热" + name + "失败：" + e);
+                report.error(name, e);
+            }
+        }
+        report.totalTime = System.currentTimeMillis() - start;
+        logger.info("预加载完毕：" + report);
+        return report;
+    }
+
+    /**
+     * 预加载报告
+     */
+    public static class Report
+    {
+        private final Map<String, Long> timeMap = new LinkedHashMap<String, Long>();
+        private final Map<String, Throwable> errorMap = new LinkedHashMap<String, Throwable>();
+        private volatile long totalTime;
+
+        private synchronized void time(String name, long time)
+        {
+            timeMap.put(name, time);
+        }
+
+        private synchronized void error(String name, Throwable e)
+        {
+            errorMap.put(name, e);
+        }
+
+        /**
+         * 每个组件的耗时（毫秒），按完成的先后排列。由于并行加载，被依赖的词典的耗时可能算在先开始的组件上
+         */
+        public synchronized Map<String, Long> getTimeMap()
+        {
+            return new LinkedHashMap<String, Long>(timeMap);
+        }
+
+        /**
+         * 失败的组件及其异常
+         */
+        public synchronized Map<String, Throwable> getErrorMap()
+        {
+            return new LinkedHashMap<String, Throwable>(errorMap);
+        }
+
+        /**
+         * 总耗时（毫秒）
+         */
+        public long getTotalTime()
+        {
+            return totalTime;
+        }
+
+        /**
+         * 是否全部成功
+         */
+        public synchronized boolean isSuccessful()
+        {
+            return errorMap.isEmpty();
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("共耗时").append(totalTime).append("ms");
+            for (Map.Entry<String, Long> entry : timeMap.entrySet())
+            {
+                sb.append("，").append(entry.getKey()).append(' ').append(entry.getValue()).append("ms");
+            }
+            for (Map.Entry<String, Throwable> entry : errorMap.entrySet())
+            {
+                sb.append("，").append(entry.getKey()).append("失败");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -45,6 +45,66 @@ public class AhoCorasickDoubleArrayTrieTest extends TestCase
         }
     }
 
+    public void testParseTexts() throws Exception
+    {
+        TreeMap<String, String> map = new TreeMap<String, String>();
+        IOUtil.LineIterator iterator = new IOUtil.LineIterator("data/dictionary/CoreNatureDictionary.mini.txt");
+        while (iterator.hasNext())
+        {
+            String line = iterator.next().split("\\s")[0];
+            map.put(line, line);
+        }
+        AhoCorasickDoubleArrayTrie<String> act = new AhoCorasickDoubleArrayTrie<String>(map);
+        List<String> textList = new ArrayList<String>();
+        for (String key : map.keySet())
+        {
+            if (textList.size() >= 3000) break;
+            textList.add(key + "，商品和服务" + key);
+        }
+        textList.add("");
+        textList.add("ⅩⅩⅩ");
+
+        for (int threadNumber : new int[]{1, 4})
+        {
+            int[][] hitsArray = act.parseTexts(textList, null, threadNumber);
+            assertEquals(textList.size(), hitsArray.length);
+            for (int i = 0; i < textList.size(); ++i)
+            {
+                String text = textList.get(i);
+                List<AhoCorasickDoubleArrayTrie<String>.Hit<String>> expected = act.parseText(text);
+                int[] hits = hitsArray[i];
+                assertEquals(expected.size() * 3, hits.length);
+                int j = 0;
+                for (AhoCorasickDoubleArrayTrie<String>.Hit<String> hit : expected)
+                {
+                    assertEquals(hit.begin, hits[j]);
+                    assertEquals(hit.end, hits[j + 1]);
+                    assertEquals(hit.value, act.get(hits[j + 2]));
+                    assertEquals(hit.value, text.substring(hits[j], hits[j + 1]));
+                    j += 3;
+                }
+            }
+            // 没有命中的文档共用一个空数组
+            assertSame(hitsArray[textList.size() - 1], hitsArray[textList.size() - 2]);
+        }
+
+        // 缓冲区反复使用，片段的下标相对整个数组
+        AhoCorasickDoubleArrayTrie.HitBuffer buffer = new AhoCorasickDoubleArrayTrie.HitBuffer(1);
+        char[] charArray = "商品和服务，商品和服务".toCharArray();
+        act.parseText(charArray, 6, charArray.length, buffer);
+        int size = buffer.size();
+        assertTrue(size > 0);
+        for (int i = 0; i < size; ++i)
+        {
+            assertTrue(buffer.begin(i) >= 6);
+            assertEquals(act.get(buffer.index(i)), new String(charArray, buffer.begin(i), buffer.end(i) - buffer.begin(i)));
+        }
+        buffer.clear();
+        act.parseText("商品和服务", buffer);
+        assertEquals(size, buffer.size());
+        assertEquals(0, act.parseTexts(Collections.<String>emptyList()).length);
+    }
+
     /**
      * 测试构建和匹配，使用《我的团长我的团》.txt作为测试数据，并且判断匹配是否正确
      * @throws Exception
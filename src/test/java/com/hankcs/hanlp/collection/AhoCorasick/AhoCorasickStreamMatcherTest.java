@@ -0,0 +1,153 @@
+package com.hankcs.hanlp.collection.AhoCorasick;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+public class AhoCorasickStreamMatcherTest extends TestCase
+{
+    private static final String TEXT = "商品和服务，工信处女干事每月经过下属科室都要亲口交代24口交换机等技术性器件的安装工作。" +
+        "log: user=hers 😀商品 ok";
+
+    private static AhoCorasickDoubleArrayTrie<String> buildTrie()
+    {
+        TreeMap<String, String> map = new TreeMap<String, String>();
+        for (String key : new String[]{"商品", "和服", "服务", "商品和服务", "工信处", "女干事", "口交", "交换机", "技术性",
+            "he", "hers", "her", "😀商品", "作。l"})
+        {
+            map.put(key, key);
+        }
+        return new AhoCorasickDoubleArrayTrie<String>(map);
+    }
+
+    private static class Collector implements AhoCorasickStreamMatcher.IHit<String>
+    {
+        List<String> hits = new ArrayList<String>();
+
+        @Override
+        public void hit(long begin, long end, String value, int index)
+        {
+            hits.add(begin + "," + end + "," + value);
+        }
+    }
+
+    public void testReader() throws Exception
+    {
+        AhoCorasickDoubleArrayTrie<String> trie = buildTrie();
+        List<String> expected = new ArrayList<String>();
+        for (AhoCorasickDoubleArrayTrie<String>.Hit<String> hit : trie.parseText(TEXT))
+        {
+            expected.add(hit.begin + "," + hit.end + "," + hit.value);
+        }
+        for (int bufferSize : new int[]{1, 2, 3, 7, AhoCorasickStreamMatcher.DEFAULT_BUFFER_SIZE})
+        {
+            AhoCorasickStreamMatcher<String> matcher = new AhoCorasickStreamMatcher<String>(trie, bufferSize);
+            Collector collector = new Collector();
+            assertEquals(TEXT.length(), matcher.parseText(new StringReader(TEXT), collector));
+            assertEquals(expected, collector.hits);
+            // 第二遍从头开始
+            collector = new Collector();
+            matcher.parseText(new StringReader(TEXT), collector);
+            assertEquals(expected, collector.hits);
+        }
+    }
+
+    public void testChannel() throws Exception
+    {
+        AhoCorasickDoubleArrayTrie<String> trie = buildTrie();
+        byte[] bytes = TEXT.getBytes("UTF-8");
+        int expectedCount = trie.parseText(TEXT).size();
+        for (int bufferSize : new int[]{1, 2, 3, 5, AhoCorasickStreamMatcher.DEFAULT_BUFFER_SIZE})
+        {
+            AhoCorasickStreamMatcher<String> matcher = new AhoCorasickStreamMatcher<String>(trie, bufferSize);
+            Collector collector = new Collector();
+            assertEquals(bytes.length, matcher.parseText(Channels.newChannel(new ByteArrayInputStream(bytes)), collector));
+            assertEquals(TEXT.length(), matcher.getCharCount());
+            assertEquals(expectedCount, collector.hits.size());
+            for (String hit : collector.hits)
+            {
+                String[] fields = hit.split(",");
+                int begin = Integer.parseInt(fields[0]);
+                int end = Integer.parseInt(fields[1]);
+                // 字节下标可以直接切出模式串
+                assertEquals(fields[2], new String(bytes, begin, end - begin, "UTF-8"));
+            }
+        }
+
+        // 直接缓冲区分两段喂进去，断点落在一个汉字中间
+        AhoCorasickStreamMatcher<String> matcher = new AhoCorasickStreamMatcher<String>(trie, 4);
+        Collector collector = new Collector();
+        for (int[] range : new int[][]{{0, 4}, {4, bytes.length}})
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(range[1] - range[0]);
+            buffer.put(bytes, range[0], range[1] - range[0]);
+            buffer.flip();
+            matcher.feed(buffer, collector);
+            assertFalse(buffer.hasRemaining());
+        }
+        matcher.finish(collector);
+        assertEquals(expectedCount, collector.hits.size());
+        assertEquals("0,15,商品和服务", collector.hits.get(3));
+    }
+
+    public void testMixedInput() throws Exception
+    {
+        AhoCorasickStreamMatcher<String> matcher = new AhoCorasickStreamMatcher<String>(buildTrie(), 4);
+        Collector collector = new Collector();
+        char[] text = "商品和".toCharArray();
+        matcher.feed(text, 0, text.length, collector);
+        try
+        {
+            matcher.feed(ByteBuffer.wrap("服务".getBytes("UTF-8")), collector);
+            fail();
+        }
+        catch (IllegalStateException ignored)
+        {
+        }
+        // reset之后可以换成字节输入
+        matcher.reset();
+        matcher.feed(ByteBuffer.wrap("商品".getBytes("UTF-8")), collector);
+        matcher.finish(collector);
+        try
+        {
+            matcher.feed(text, 0, text.length, collector);
+            fail();
+        }
+        catch (IllegalStateException ignored)
+        {
+        }
+        assertEquals(Arrays.asList("0,2,商品", "0,6,商品"), collector.hits);
+    }
+
+    public void testMalformed() throws Exception
+    {
+        AhoCorasickDoubleArrayTrie<String> trie = buildTrie();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write("商品".getBytes("UTF-8"));
+        out.write(0xE5);    // 没写完的三字节序列
+        out.write("hers".getBytes("UTF-8"));
+        out.write(0xE5);
+        out.write(0x95);
+        byte[] bytes = out.toByteArray();
+        AhoCorasickStreamMatcher<String> matcher = new AhoCorasickStreamMatcher<String>(trie, 2);
+        Collector collector = new Collector();
+        matcher.parseText(Channels.newChannel(new ByteArrayInputStream(bytes)), collector);
+        List<String> expected = new ArrayList<String>();
+        expected.add("1,7,商品");
+        expected.add("8,10,he");
+        expected.add("8,11,her");
+        expected.add("8,12,hers");
+        assertEquals(expected, collector.hits);
+        // 0xFF、商、品、截断的序列、h、e、r、s、结尾截断的序列
+        assertEquals(9, matcher.getCharCount());
+    }
+}
@@ -0,0 +1,212 @@
+package com.hankcs.hanlp.collection.trie;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class DoubleArrayTrieBuilderTest extends TestCase
+{
+    private static List<String> randomKeys(int count, long seed)
+    {
+        Random random = new Random(seed);
+        String alphabet = "商品和服务工信处女干事每月经过下属科室ab1";
+        TreeSet<String> keySet = new TreeSet<String>();
+        while (keySet.size() < count)
+        {
+            int length = 1 + random.nextInt(6);
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; ++i)
+            {
+                // 偶尔混入码点很大的字符，让兄弟节点跨度很大
+                sb.append(random.nextInt(20) == 0 ? (char) (0xF900 + random.nextInt(0x600)) : alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            keySet.add(sb.toString());
+        }
+        return new ArrayList<String>(keySet);
+    }
+
+    private static Integer[] indexes(int size)
+    {
+        Integer[] value = new Integer[size];
+        for (int i = 0; i < size; ++i)
+        {
+            value[i] = i;
+        }
+        return value;
+    }
+
+    private static byte[] save(DoubleArrayTrie<?> trie)
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        assertTrue(trie.save(out));
+        return buffer.toByteArray();
+    }
+
+    private static List<String> parse(DoubleArrayTrie<Integer> trie, char[] text)
+    {
+        final List<String> hits = new ArrayList<String>();
+        trie.parseText(text, 0, text.length, new DoubleArrayTrie.IHitIndex()
+        {
+            @Override
+            public void hit(int begin, int end, int index)
+            {
+                hits.add(begin + "," + end + "," + index);
+            }
+        });
+        return hits;
+    }
+
+    private static void assertSameAsBuild(List<String> keys, DoubleArrayTrie<Integer> trie)
+    {
+        DoubleArrayTrie<Integer> expected = new DoubleArrayTrie<Integer>();
+        assertEquals(0, expected.build(keys, indexes(keys.size())));
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            String key = keys.get(i);
+            assertEquals(i, trie.exactMatchSearch(key));
+            assertEquals(Integer.valueOf(i), trie.get(key));
+            assertEquals(expected.commonPrefixSearch(key), trie.commonPrefixSearch(key));
+            assertEquals(expected.exactMatchSearch(key + "乙"), trie.exactMatchSearch(key + "乙"));
+            String prefix = key.substring(0, key.length() - 1);
+            assertEquals(expected.exactMatchSearch(prefix), trie.exactMatchSearch(prefix));
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < keys.size(); i += 3)
+        {
+            text.append(keys.get(i)).append('，');
+        }
+        char[] charArray = text.toString().toCharArray();
+        assertEquals(parse(expected, charArray), parse(trie, charArray));
+        assertEquals(keys.size(), trie.entryList().size());
+    }
+
+    public void testSameAsBuild() throws Exception
+    {
+        List<String> keys = randomKeys(5000, 42);
+        for (int threadNumber : new int[]{1, 4})
+        {
+            for (int batchSize : new int[]{100, DoubleArrayTrieBuilder.DEFAULT_BATCH_SIZE})
+            {
+                DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(threadNumber).setBatchSize(batchSize);
+                assertEquals(keys.size(), builder.addAll(keys.iterator()));
+                assertSameAsBuild(keys, builder.<Integer>build(indexes(keys.size())));
+            }
+        }
+    }
+
+    public void testSave() throws Exception
+    {
+        List<String> keys = randomKeys(3000, 7);
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(2).setBatchSize(200);
+        builder.addAll(keys.iterator());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        assertTrue(builder.save(out));
+        out.close();
+        byte[] bytes = buffer.toByteArray();
+        Integer[] value = indexes(keys.size());
+        DoubleArrayTrie<Integer> trie = builder.build(value);
+        // 直接写出与组装后再写出的字节相同
+        assertTrue(Arrays.equals(save(trie), bytes));
+        assertEquals(builder.getSize(), trie.getSize());
+
+        DoubleArrayTrie<Integer> loaded = new DoubleArrayTrie<Integer>();
+        assertTrue(loaded.load(bytes, 0, value));
+        assertSameAsBuild(keys, loaded);
+        MappedDoubleArrayTrie<Integer> mapped = MappedDoubleArrayTrie.open(ByteBuffer.wrap(bytes), 0, value);
+        assertNotNull(mapped);
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            assertEquals(i, mapped.exactMatchSearch(keys.get(i)));
+        }
+    }
+
+    public void testStream() throws Exception
+    {
+        String dictionary = "\uFEFF一一道来 l 4\n\n一丁不识\ti 1\n一七八糟 i 1\n商品 n 1\n商品和服务 nz 1\n";
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(1);
+        assertEquals(5, builder.addAll(new BufferedReader(new StringReader(dictionary))));
+        assertEquals(5, builder.size());
+        DoubleArrayTrie<String> trie = builder.build(new String[]{"l", "i", "i", "n", "nz"});
+        assertEquals("nz", trie.get("商品和服务"));
+        assertEquals("n", trie.get("商品"));
+        assertNull(trie.get("商品和"));
+        assertEquals(3, trie.exactMatchSearch("商品"));
+        assertEquals("l", trie.get("一一道来"));
+        try
+        {
+            builder.add("乙");
+            fail();
+        }
+        catch (IllegalStateException ignored)
+        {
+        }
+    }
+
+    public void testUnsorted() throws Exception
+    {
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(1);
+        builder.add("商品");
+        for (String key : new String[]{"商品", "商", "和"})
+        {
+            try
+            {
+                builder.add(key);
+                fail(key);
+            }
+            catch (IllegalArgumentException ignored)
+            {
+            }
+        }
+        builder.add("服务");
+        assertEquals(2, builder.size());
+
+        // 多线程时出错会关闭线程池，已提交的批不受影响，之后照常添加
+        List<String> keys = randomKeys(3000, 3);
+        builder = new DoubleArrayTrieBuilder(2).setBatchSize(100);
+        builder.addAll(keys.subList(0, 2000).iterator());
+        try
+        {
+            builder.add(keys.get(0));
+            fail();
+        }
+        catch (IllegalArgumentException ignored)
+        {
+        }
+        builder.addAll(keys.subList(2000, keys.size()).iterator());
+        assertSameAsBuild(keys, builder.<Integer>build(indexes(keys.size())));
+    }
+
+    public void testEmptyKey() throws Exception
+    {
+        List<String> keys = Arrays.asList("", "a", "ab", "商品");
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(1);
+        builder.addAll(keys.iterator());
+        DoubleArrayTrie<Integer> trie = builder.build(indexes(keys.size()));
+        assertEquals(0, trie.exactMatchSearch(""));
+        assertSameAsBuild(keys.subList(1, keys.size()), rebuild(keys.subList(1, keys.size())));
+        assertEquals(-1, new DoubleArrayTrieBuilder(1).build(null).exactMatchSearch("a"));
+        DoubleArrayTrie<Integer> expected = new DoubleArrayTrie<Integer>();
+        expected.build(keys, indexes(keys.size()));
+        assertEquals(expected.exactMatchSearch(""), trie.exactMatchSearch(""));
+        assertEquals(expected.commonPrefixSearch("abc"), trie.commonPrefixSearch("abc"));
+        assertEquals(Integer.valueOf(3), trie.get("商品"));
+    }
+
+    private static DoubleArrayTrie<Integer> rebuild(List<String> keys)
+    {
+        DoubleArrayTrieBuilder builder = new DoubleArrayTrieBuilder(1);
+        builder.addAll(keys.iterator());
+        return builder.build(indexes(keys.size()));
+    }
+}
@@ -5,6 +5,10 @@ import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 
 public class DoubleArrayTrieTest extends TestCase
@@ -48,6 +52,23 @@ public class DoubleArrayTrieTest extends TestCase
         }
     }
 
+    public void testLongestSearcherWithoutValue() throws Exception
+    {
+        // 只当作集合用的双数组没有值数组
+        DoubleArrayTrie<String> trie = new DoubleArrayTrie<String>();
+        List<String> keys = Arrays.asList("he", "her", "his");
+        trie.build(keys, null, null, keys.size());
+        String text = "her3he6his-hers! ";
+        DoubleArrayTrie<String>.LongestSearcher searcher = trie.getLongestSearcher(text.toCharArray(), 0);
+        StringBuilder actual = new StringBuilder();
+        while (searcher.next())
+        {
+            assertNull(searcher.value);
+            actual.append(text.substring(searcher.begin, searcher.begin + searcher.length)).append(' ');
+        }
+        assertEquals("her he his her ", actual.toString());
+    }
+
     public void testTransmit() throws Exception
     {
         DoubleArrayTrie<CoreDictionary.Attribute> dat = CustomDictionary.dat;
@@ -118,4 +139,65 @@ public class DoubleArrayTrieTest extends TestCase
         {
         }
     }
-}
\ No newline at end of file
+
+    public void testEntryList() throws Exception
+    {
+        TreeMap<String, String> map = new TreeMap<String, String>();
+        IOUtil.LineIterator iterator = new IOUtil.LineIterator("data/dictionary/CoreNatureDictionary.mini.txt");
+        while (iterator.hasNext())
+        {
+            String line = iterator.next();
+            map.put(line.split("\\s")[0], line);
+        }
+        DoubleArrayTrie<String> trie = new DoubleArrayTrie<String>(map);
+        List<Map.Entry<String, String>> entryList = trie.entryList();
+        assertEquals(map.size(), entryList.size());
+        Iterator<Map.Entry<String, String>> expected = map.entrySet().iterator();
+        for (Map.Entry<String, String> entry : entryList)
+        {
+            Map.Entry<String, String> next = expected.next();
+            assertEquals(next.getKey(), entry.getKey());
+            assertEquals(next.getValue(), entry.getValue());
+        }
+    }
+
+    public void testParseTextIndex() throws Exception
+    {
+        TreeMap<String, String> buildFrom = new TreeMap<String, String>();
+        for (String key : new String[]{"he", "her", "hers", "his", "s", "she"})
+        {
+            buildFrom.put(key, key);
+        }
+        final DoubleArrayTrie<String> trie = new DoubleArrayTrie<String>(buildFrom);
+        final char[] text = "ushers-his-her".toCharArray();
+        StringBuilder expected = new StringBuilder();
+        DoubleArrayTrie<String>.Searcher searcher = trie.getSearcher(text, 0);
+        while (searcher.next())
+        {
+            expected.append(searcher.begin).append(':').append(searcher.value).append(' ');
+        }
+        final StringBuilder actual = new StringBuilder();
+        trie.parseText(text, 0, text.length, new DoubleArrayTrie.IHitIndex()
+        {
+            @Override
+            public void hit(int begin, int end, int index)
+            {
+                assertEquals(new String(text, begin, end - begin), trie.get(index));
+                actual.append(begin).append(':').append(trie.get(index)).append(' ');
+            }
+        });
+        assertEquals(expected.toString(), actual.toString());
+
+        // 只扫描区间[1, 13)
+        actual.setLength(0);
+        trie.parseLongestText(text, 1, 13, new DoubleArrayTrie.IHitIndex()
+        {
+            @Override
+            public void hit(int begin, int end, int index)
+            {
+                actual.append(new String(text, begin, end - begin)).append(' ');
+            }
+        });
+        assertEquals("she s his he ", actual.toString());
+    }
+}
@@ -0,0 +1,258 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.dictionary.item.EnumItem;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.corpus.tag.NR;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
+import com.hankcs.hanlp.dictionary.nr.NRDictionary;
+import com.hankcs.hanlp.dictionary.nr.PersonDictionary;
+import com.hankcs.hanlp.seg.Viterbi.ViterbiSegment;
+import junit.framework.TestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.TreeMap;
+
+public class MappedDoubleArrayTrieTest extends TestCase
+{
+    private static final String TEXT = "商品和服务，工信处女干事每月经过下属科室都要亲口交代24口交换机等技术性器件的安装工作";
+
+    private static MappedDoubleArrayTrie<CoreDictionary.Attribute> mapCoreDictionary() throws Exception
+    {
+        File file = File.createTempFile("CoreNatureDictionary", ".map");
+        file.deleteOnExit();
+        assertTrue(MappedDoubleArrayTrie.save(CoreDictionary.trie, CoreDictionary.ATTRIBUTE_CODEC, file.getPath()));
+        MappedDoubleArrayTrie<CoreDictionary.Attribute> mapped = MappedDoubleArrayTrie.open(file.getPath(), CoreDictionary.ATTRIBUTE_CODEC);
+        assertNotNull(mapped);
+        return mapped;
+    }
+
+    public void testSameAsHeap() throws Exception
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> heap = CoreDictionary.trie;
+        MappedDoubleArrayTrie<CoreDictionary.Attribute> mapped = mapCoreDictionary();
+        assertEquals(heap.size(), mapped.size());
+        for (int i = 0; i < heap.size(); i += 97)
+        {
+            assertEquals(heap.getValueAt(i).toString(), mapped.getValueAt(i).toString());
+            assertEquals(heap.getValueAt(i).totalFrequency, mapped.getValueAt(i).totalFrequency);
+        }
+        for (String word : new String[]{"商品", "服务", "工信处", "交换机", "不存在的词语", "始##始"})
+        {
+            assertEquals(heap.exactMatchSearch(word), mapped.exactMatchSearch(word));
+            assertEquals(heap.commonPrefixSearch(word), mapped.commonPrefixSearch(word));
+            assertEquals(heap.transition(word, 1), mapped.transition(word, 1));
+            assertEquals(String.valueOf(heap.output(heap.transition(word, 1))), String.valueOf(mapped.output(mapped.transition(word, 1))));
+        }
+
+        char[] text = TEXT.toCharArray();
+        StringBuilder expected = new StringBuilder();
+        DoubleArrayTrie<CoreDictionary.Attribute>.Searcher searcher = heap.getSearcher(text, 0);
+        while (searcher.next())
+        {
+            expected.append(searcher.begin).append(':').append(searcher.length).append(':').append(searcher.index).append(' ');
+        }
+        StringBuilder actual = new StringBuilder();
+        searcher = mapped.getSearcher(text, 0);
+        while (searcher.next())
+        {
+            actual.append(searcher.begin).append(':').append(searcher.length).append(':').append(searcher.index).append(' ');
+        }
+        assertEquals(expected.toString(), actual.toString());
+
+        expected.setLength(0);
+        DoubleArrayTrie<CoreDictionary.Attribute>.LongestSearcher longestSearcher = heap.getLongestSearcher(text, 0);
+        while (longestSearcher.next())
+        {
+            expected.append(longestSearcher.begin).append(':').append(longestSearcher.length).append(' ');
+        }
+        actual.setLength(0);
+        longestSearcher = mapped.getLongestSearcher(text, 0);
+        while (longestSearcher.next())
+        {
+            actual.append(longestSearcher.begin).append(':').append(longestSearcher.length).append(' ');
+        }
+        assertEquals(expected.toString(), actual.toString());
+
+        assertEquals(scan(heap, text, false), scan(mapped, text, false));
+        assertEquals(scan(heap, text, true), scan(mapped, text, true));
+    }
+
+    private static String scan(DoubleArrayTrie<CoreDictionary.Attribute> trie, char[] text, boolean longest)
+    {
+        final StringBuilder sb = new StringBuilder();
+        DoubleArrayTrie.IHitIndex processor = new DoubleArrayTrie.IHitIndex()
+        {
+            @Override
+            public void hit(int begin, int end, int index)
+            {
+                sb.append(begin).append(':').append(end).append(':').append(index).append(' ');
+            }
+        };
+        if (longest) trie.parseLongestText(text, 0, text.length, processor);
+        else trie.parseText(text, 0, text.length, processor);
+        return sb.toString();
+    }
+
+    public void testSegment() throws Exception
+    {
+        String expected = new ViterbiSegment().seg(TEXT).toString();
+        DoubleArrayTrie<CoreDictionary.Attribute> heap = CoreDictionary.trie;
+        CoreDictionary.trie = mapCoreDictionary();
+        try
+        {
+            assertEquals(expected, new ViterbiSegment().seg(TEXT).toString());
+        }
+        finally
+        {
+            CoreDictionary.trie = heap;
+        }
+    }
+
+    public void testSmallTrie() throws Exception
+    {
+        TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, CoreDictionary.Attribute>();
+        for (String key : new String[]{"he", "her", "his", "she"})
+        {
+            map.put(key, CoreDictionary.Attribute.create("n " + key.length()));
+        }
+        DoubleArrayTrie<CoreDictionary.Attribute> trie = new DoubleArrayTrie<CoreDictionary.Attribute>(map);
+        File file = File.createTempFile("small", ".map");
+        file.deleteOnExit();
+        assertTrue(MappedDoubleArrayTrie.save(trie, CoreDictionary.ATTRIBUTE_CODEC, file.getPath()));
+        MappedDoubleArrayTrie<CoreDictionary.Attribute> mapped = MappedDoubleArrayTrie.open(file.getPath(), CoreDictionary.ATTRIBUTE_CODEC);
+        for (String key : map.keySet())
+        {
+            assertEquals(map.get(key).toString(), mapped.get(key).toString());
+        }
+        assertNull(mapped.get("hers"));
+        assertEquals(2, mapped.commonPrefixSearchWithValue("hers").size());
+
+        // 继承的统计与保存方法读的是映射的缓冲区
+        assertEquals(trie.getNonzeroSize(), mapped.getNonzeroSize());
+        int[] base = mapped.getBase();
+        int[] check = mapped.getCheck();
+        assertEquals(mapped.getSize(), base.length);
+        for (int i = 0; i < base.length; ++i)
+        {
+            assertEquals(trie.getBase()[i], base[i]);
+            assertEquals(trie.getCheck()[i], check[i]);
+        }
+        File dat = File.createTempFile("small", ".dat");
+        dat.deleteOnExit();
+        assertTrue(mapped.save(dat.getPath()));
+        DoubleArrayTrie<CoreDictionary.Attribute> loaded = new DoubleArrayTrie<CoreDictionary.Attribute>();
+        assertTrue(loaded.load(dat.getPath(), trie.getValueArray(new CoreDictionary.Attribute[0])));
+        for (String key : map.keySet())
+        {
+            assertEquals(map.get(key).toString(), loaded.get(key).toString());
+        }
+        try
+        {
+            mapped.load(dat.getPath());
+            fail();
+        }
+        catch (UnsupportedOperationException ignored)
+        {
+        }
+    }
+
+    public void testOpenBinSection() throws Exception
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> heap = CoreDictionary.trie;
+        File file = File.createTempFile("CoreNatureDictionary", ".bin");
+        file.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeByte(1);
+        out.writeInt(heap.size());  // 双数组之前的内容，起点故意不对齐
+        assertTrue(heap.save(out));
+        out.close();
+        ByteBuffer buffer = IOUtil.mapFile(file.getPath());
+        assertNotNull(buffer);
+        MappedDoubleArrayTrie<CoreDictionary.Attribute> mapped = MappedDoubleArrayTrie.open(buffer, 5, heap.getValueArray(new CoreDictionary.Attribute[0]));
+        assertNotNull(mapped);
+        assertEquals(heap.getSize(), mapped.getSize());
+        assertEquals(heap.size(), mapped.size());
+        for (String word : new String[]{"商品", "服务", "工信处", "交换机", "不存在的词语", "始##始"})
+        {
+            assertEquals(heap.exactMatchSearch(word), mapped.exactMatchSearch(word));
+            assertEquals(heap.commonPrefixSearch(word), mapped.commonPrefixSearch(word));
+            assertEquals(heap.transition(word, 1), mapped.transition(word, 1));
+            assertSame(heap.get(word), mapped.get(word));
+        }
+        char[] text = TEXT.toCharArray();
+        assertEquals(scan(heap, text, false), scan(mapped, text, false));
+        assertEquals(scan(heap, text, true), scan(mapped, text, true));
+        // 遍历与过滤器也适用于映射的双数组
+        assertEquals(heap.entryList().toString(), mapped.entryList().toString());
+        PrefixFilter prefilter = PrefixFilter.build(mapped);
+        for (int i = 0; i < text.length; ++i)
+        {
+            assertEquals(PrefixFilter.build(heap).mayStart(text, i, text.length), prefilter.mayStart(text, i, text.length));
+        }
+        mapped.setPrefilter(prefilter);
+        assertEquals(scan(heap, text, false), scan(mapped, text, false));
+        // 写时复制
+        DoubleArrayTrie<CoreDictionary.Attribute> copy = mapped.shallowCopy();
+        assertTrue(copy.set("商品", null));
+        assertNull(copy.get("商品"));
+        assertNotNull(mapped.get("商品"));
+        assertSame(prefilter, copy.getPrefilter());
+        assertNull(MappedDoubleArrayTrie.open(buffer, buffer.limit() - 2, new CoreDictionary.Attribute[0]));
+    }
+
+    public void testMappedDictionary() throws Exception
+    {
+        File file = File.createTempFile("mapped", ".txt");
+        file.deleteOnExit();
+        new File(file.getPath() + ".bin").deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("攻城狮 nz 1\n单身狗 nz 1\n白富美 nz 1\n");
+        writer.close();
+        boolean saved = HanLP.Config.DictionaryMapped;
+        HanLP.Config.DictionaryMapped = true;
+        try
+        {
+            // 第一次生成缓存后映射，第二次直接映射
+            for (int i = 0; i < 2; ++i)
+            {
+                DynamicCustomDictionary dictionary = new DynamicCustomDictionary(file.getPath());
+                assertTrue(dictionary.snapshot().dat instanceof MappedDoubleArrayTrie);
+                assertNotNull(dictionary.getPrefilter());
+                assertTrue(dictionary.contains("单身狗"));
+                assertEquals("nz", dictionary.get("攻城狮").nature[0].toString());
+                dictionary.remove("单身狗");
+                assertFalse(dictionary.contains("单身狗"));
+                assertTrue(dictionary.insert("程序猿", "nz 1"));
+                assertTrue(dictionary.compact(false));
+                assertTrue(dictionary.contains("程序猿"));
+                assertFalse(dictionary.contains("单身狗"));
+            }
+            DynamicCustomDictionary dictionary = new DynamicCustomDictionary(file.getPath());
+            dictionary.insert("程序猿", "nz 1");
+            assertTrue(dictionary.compact(true));
+            assertTrue(dictionary.snapshot().dat instanceof MappedDoubleArrayTrie);
+            assertTrue(new DynamicCustomDictionary(file.getPath()).contains("程序猿"));
+            assertTrue(dictionary.contains("单身狗"));
+
+            NRDictionary nrDictionary = new NRDictionary();
+            assertTrue(nrDictionary.load(HanLP.Config.PersonDictionaryPath));
+            for (String word : new String[]{"王", "张三", "先生", "不存在的词语"})
+            {
+                EnumItem<NR> expected = PersonDictionary.dictionary.get(word);
+                assertEquals(String.valueOf(expected), String.valueOf(nrDictionary.get(word)));
+            }
+            assertEquals(PersonDictionary.dictionary.size(), nrDictionary.size());
+        }
+        finally
+        {
+            HanLP.Config.DictionaryMapped = saved;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
+import com.hankcs.hanlp.dictionary.nr.PersonDictionary;
+import com.hankcs.hanlp.utility.Predefine;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PrefixFilterTest extends TestCase
+{
+    private static final String TEXT = "商品和服务，工信处女干事每月经过下属科室都要亲口交代24口交换机等技术性器件的安装工作";
+
+    private static DoubleArrayTrie<String> buildTrie()
+    {
+        TreeMap<String, String> map = new TreeMap<String, String>();
+        for (String key : new String[]{"商品", "和", "服务", "工信处", "交换机", "技术性", "安装工作", "a", "ab"})
+        {
+            map.put(key, key);
+        }
+        return new DoubleArrayTrie<String>(map);
+    }
+
+    private static List<String> parse(DoubleArrayTrie<String> trie, String text, boolean longest)
+    {
+        final List<String> hits = new ArrayList<String>();
+        char[] charArray = text.toCharArray();
+        DoubleArrayTrie.IHitIndex processor = new DoubleArrayTrie.IHitIndex()
+        {
+            @Override
+            public void hit(int begin, int end, int index)
+            {
+                hits.add(begin + "," + end + "," + index);
+            }
+        };
+        if (longest) trie.parseLongestText(charArray, 0, charArray.length, processor);
+        else trie.parseText(charArray, 0, charArray.length, processor);
+        return hits;
+    }
+
+    public void testNoFalseNegative() throws Exception
+    {
+        PrefixFilter filter = PrefixFilter.build(CoreDictionary.trie);
+        assertNotNull(filter);
+        for (Map.Entry<String, CoreDictionary.Attribute> entry : CoreDictionary.trie.entryList())
+        {
+            String key = entry.getKey();
+            assertTrue(key, filter.mayContain(key, 0, key.length()));
+            assertTrue(key, filter.mayStart((key + "。").toCharArray(), 0, key.length()));
+        }
+        DoubleArrayTrie<String> trie = buildTrie();
+        filter = PrefixFilter.build(trie);
+        assertTrue(filter.mayStartWith('商'));
+        assertFalse(filter.mayStartWith('品'));
+        assertTrue(filter.mayContain("和", 0, 1));
+        assertFalse(filter.mayContain("商", 0, 1));
+        assertFalse(filter.mayContain("每月", 0, 2));
+    }
+
+    public void testSameAsUnfiltered() throws Exception
+    {
+        DoubleArrayTrie<String> trie = buildTrie();
+        for (String text : new String[]{TEXT, "ab", "a", "", "商", "商品和服务ab"})
+        {
+            List<String> full = parse(trie, text, false);
+            List<String> longest = parse(trie, text, true);
+            trie.setPrefilter(PrefixFilter.build(trie));
+            assertEquals(full, parse(trie, text, false));
+            assertEquals(longest, parse(trie, text, true));
+            assertEquals(trie.shallowCopy().getPrefilter(), trie.getPrefilter());
+            trie.setPrefilter(null);
+        }
+        trie.setPrefilter(PrefixFilter.build(trie));
+        assertEquals("交换机", trie.get("交换机"));
+        assertNull(trie.get("交换"));
+        assertNull(trie.get("每月"));
+        assertEquals(-1, trie.exactMatchSearch("安装".toCharArray(), 0, 2, 0));
+    }
+
+    public void testStatistics() throws Exception
+    {
+        DoubleArrayTrie<String> trie = buildTrie();
+        PrefixFilter filter = PrefixFilter.build(trie);
+        trie.setPrefilter(filter);
+        PrefixFilter.enableStatistics(true);
+        try
+        {
+            parse(trie, TEXT, false);
+            assertEquals(TEXT.length(), filter.getProbeCount());
+            assertTrue(filter.getSkipCount() > TEXT.length() / 2);
+            assertTrue(filter.getSkipRatio() > 0.5 && filter.getSkipRatio() < 1);
+            trie.get("每月");
+            assertEquals(TEXT.length() + 1, filter.getProbeCount());
+            filter.resetStatistics();
+            assertEquals(0.0, filter.getSkipRatio());
+        }
+        finally
+        {
+            PrefixFilter.enableStatistics(false);
+        }
+    }
+
+    public void testSaveAndLoad() throws Exception
+    {
+        PrefixFilter filter = PrefixFilter.build(CoreDictionary.trie);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(42);
+        filter.save(out);
+        out.close();
+        byte[] bytes = buffer.toByteArray();
+        PrefixFilter loaded = PrefixFilter.load(bytes, 4);
+        assertNotNull(loaded);
+        assertEquals(filter.getMemoryUsage(), loaded.getMemoryUsage());
+        char[] text = TEXT.toCharArray();
+        for (int i = 0; i < text.length; ++i)
+        {
+            assertEquals(filter.mayStart(text, i, text.length), loaded.mayStart(text, i, text.length));
+        }
+        // 旧的缓存没有过滤器段
+        assertNull(PrefixFilter.load(bytes, 0));
+        assertNull(PrefixFilter.load(bytes, bytes.length));
+    }
+
+    public void testDictionaries() throws Exception
+    {
+        assertNotNull(PersonDictionary.dictionary.getPrefilter());
+        File file = File.createTempFile("prefilter", ".txt");
+        file.deleteOnExit();
+        File bin = new File(file.getPath() + Predefine.BIN_EXT);
+        bin.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("攻城狮 nz 1\n单身狗 nz 1\n");
+        writer.close();
+        DynamicCustomDictionary dictionary = new DynamicCustomDictionary(file.getPath());
+        PrefixFilter filter = dictionary.getPrefilter();
+        assertNotNull(filter);
+        assertTrue(bin.isFile());
+        // 第二次从缓存读取过滤器
+        dictionary = new DynamicCustomDictionary(file.getPath());
+        assertNotNull(dictionary.getPrefilter());
+        assertNotSame(filter, dictionary.getPrefilter());
+        assertFalse(dictionary.getPrefilter().mayStartWith('商'));
+        assertTrue(dictionary.contains("单身狗"));
+        dictionary.insert("商品", "nz 1");
+        assertTrue(dictionary.contains("商品"));
+    }
+
+    public void testFalsePositiveRate() throws Exception
+    {
+        DoubleArrayTrie<CoreDictionary.Attribute> trie = CoreDictionary.trie;
+        assertTrue(trie.size() > 100000);
+        PrefixFilter filter = PrefixFilter.build(trie);
+        List<Character> firstList = new ArrayList<Character>();
+        for (char c = '\u4E00'; c <= '\u9FA5'; ++c)
+        {
+            if (filter.mayStartWith(c)) firstList.add(c);
+        }
+        Random random = new Random(0);
+        int trial = 0, positive = 0;
+        while (trial < 200000)
+        {
+            char c1 = firstList.get(random.nextInt(firstList.size()));
+            char c2 = (char) ('\u4E00' + random.nextInt(0x9FA6 - 0x4E00));
+            String bigram = new String(new char[]{c1, c2});
+            if (trie.transition(bigram, trie.rootBase()) >= 0) continue;    // 真的是某个词条的前两个字
+            ++trial;
+            if (filter.mayContain(bigram, 0, 2)) ++positive;
+        }
+        double rate = positive / (double) trial;
+        assertTrue(String.valueOf(rate), rate < 0.01);
+    }
+}
@@ -0,0 +1,177 @@
+package com.hankcs.hanlp.collection.trie;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.io.IOUtil;
+import com.hankcs.hanlp.dictionary.nt.NTDictionary;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class TailDoubleArrayTrieTest extends TestCase
+{
+    private static List<String> randomKeys(int count, long seed)
+    {
+        Random random = new Random(seed);
+        String alphabet = "中华人民共和国北京市海淀区公司大学ab1";
+        TreeSet<String> keySet = new TreeSet<String>();
+        while (keySet.size() < count)
+        {
+            int length = 1 + random.nextInt(12);
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; ++i)
+            {
+                sb.append(random.nextInt(20) == 0 ? (char) (0xF900 + random.nextInt(0x600)) : alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            keySet.add(sb.toString());
+        }
+        return new ArrayList<String>(keySet);
+    }
+
+    private static Integer[] indexes(int size)
+    {
+        Integer[] value = new Integer[size];
+        for (int i = 0; i < size; ++i)
+        {
+            value[i] = i;
+        }
+        return value;
+    }
+
+    private static void assertSameAsDoubleArrayTrie(List<String> keys, TailDoubleArrayTrie<Integer> trie)
+    {
+        DoubleArrayTrie<Integer> expected = new DoubleArrayTrie<Integer>();
+        assertEquals(0, expected.build(keys, indexes(keys.size())));
+        assertEquals(keys.size(), trie.size());
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            String key = keys.get(i);
+            assertEquals(i, trie.exactMatchSearch(key));
+            assertEquals(Integer.valueOf(i), trie.get(key));
+            assertTrue(trie.containsKey(key));
+            assertEquals(expected.commonPrefixSearch(key), trie.commonPrefixSearch(key));
+            for (String other : new String[]{key + "乙", key + "中", key.substring(0, key.length() - 1), "乙" + key})
+            {
+                assertEquals(other, expected.exactMatchSearch(other), trie.exactMatchSearch(other));
+                assertEquals(other, expected.commonPrefixSearch(other), trie.commonPrefixSearch(other));
+            }
+        }
+    }
+
+    private static byte[] save(TailDoubleArrayTrie<?> trie)
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        assertTrue(trie.save(new DataOutputStream(buffer)));
+        return buffer.toByteArray();
+    }
+
+    public void testSameAsDoubleArrayTrie() throws Exception
+    {
+        List<String> keys = randomKeys(5000, 42);
+        TailDoubleArrayTrie<Integer> trie = new TailDoubleArrayTrie<Integer>();
+        assertEquals(0, trie.build(keys, indexes(keys.size())));
+        assertSameAsDoubleArrayTrie(keys, trie);
+        assertTrue(trie.getTailSize() > 0);
+    }
+
+    public void testSaveAndLoad() throws Exception
+    {
+        List<String> keys = randomKeys(3000, 7);
+        TreeMap<String, Integer> map = new TreeMap<String, Integer>();
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            map.put(keys.get(i), i);
+        }
+        TailDoubleArrayTrie<Integer> trie = new TailDoubleArrayTrie<Integer>();
+        assertEquals(0, trie.build(map));
+        byte[] bytes = save(trie);
+        TailDoubleArrayTrie<Integer> loaded = new TailDoubleArrayTrie<Integer>();
+        assertTrue(loaded.load(new ByteArray(bytes), indexes(keys.size())));
+        assertSameAsDoubleArrayTrie(keys, loaded);
+        assertTrue(Arrays.equals(bytes, save(loaded)));
+        assertEquals(trie.getMemoryUsage(), loaded.getMemoryUsage());
+        // 普通双数组的字节不能当作TAIL双数组加载
+        DoubleArrayTrie<Integer> dat = new DoubleArrayTrie<Integer>();
+        dat.build(map);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        dat.save(new DataOutputStream(buffer));
+        assertFalse(new TailDoubleArrayTrie<Integer>().load(new ByteArray(buffer.toByteArray()), indexes(keys.size())));
+    }
+
+    public void testCornerCase() throws Exception
+    {
+        TailDoubleArrayTrie<Integer> trie = new TailDoubleArrayTrie<Integer>();
+        assertEquals(0, trie.build(Collections.<String>emptyList(), new Integer[0]));
+        assertNull(trie.get("a"));
+        assertNull(trie.get(""));
+        assertTrue(trie.commonPrefixSearch("a").isEmpty());
+
+        assertEquals(0, trie.build(Collections.singletonList("中华人民共和国"), indexes(1)));
+        assertEquals(0, trie.exactMatchSearch("中华人民共和国"));
+        assertEquals(-1, trie.exactMatchSearch("中华人民"));
+        assertEquals(-1, trie.exactMatchSearch(""));
+        assertEquals(Collections.singletonList(0), trie.commonPrefixSearch("中华人民共和国万岁"));
+
+        List<String> keys = Arrays.asList("", "a", "ab", "abc", "b");
+        assertEquals(0, trie.build(keys, indexes(keys.size())));
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            assertEquals(i, trie.exactMatchSearch(keys.get(i)));
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3), trie.commonPrefixSearch("abcd"));
+        assertEquals(-1, trie.exactMatchSearch("c"));
+
+        assertEquals(-1, trie.build(Arrays.asList("b", "a"), indexes(2)));
+        assertEquals(-1, trie.build(Arrays.asList("a", "a"), indexes(2)));
+    }
+
+    public void testCompactDictionary() throws Exception
+    {
+        File file = File.createTempFile("organization", ".txt");
+        file.deleteOnExit();
+        File bin = new File(file.getPath() + ".bin");
+        bin.deleteOnExit();
+        assertTrue(IOUtil.saveTxt(file.getPath(), IOUtil.readTxt(HanLP.Config.OrganizationDictionaryPath)));
+        NTDictionary expected = new NTDictionary();
+        assertTrue(expected.load(file.getPath()));
+        long datLength = bin.length();
+        boolean saved = HanLP.Config.DictionaryCompact;
+        HanLP.Config.DictionaryCompact = true;
+        try
+        {
+            // 第一次发现缓存格式不符，重建；第二次从缓存加载
+            for (int i = 0; i < 2; ++i)
+            {
+                NTDictionary dictionary = new NTDictionary();
+                assertTrue(dictionary.load(file.getPath()));
+                assertEquals(expected.size(), dictionary.size());
+                assertNull(dictionary.getPrefilter());
+                for (String line : IOUtil.readLineListWithLessMemory(file.getPath()))
+                {
+                    String word = line.split("\\s")[0];
+                    assertEquals(String.valueOf(expected.get(word)), String.valueOf(dictionary.get(word)));
+                }
+                assertNull(dictionary.get("不存在的词语"));
+            }
+            assertTrue(bin.length() < datLength);
+        }
+        finally
+        {
+            HanLP.Config.DictionaryCompact = saved;
+        }
+        // 关掉之后缓存又换回普通双数组
+        NTDictionary dictionary = new NTDictionary();
+        assertTrue(dictionary.load(file.getPath()));
+        assertNotNull(dictionary.getPrefilter());
+        assertEquals(String.valueOf(expected.get("公司")), String.valueOf(dictionary.get("公司")));
+    }
+}
@@ -0,0 +1,163 @@
+package com.hankcs.hanlp.corpus.io;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+import com.hankcs.hanlp.collection.trie.MappedDoubleArrayTrie;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.dictionary.DynamicCustomDictionary;
+import com.hankcs.hanlp.utility.Predefine;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+public class DictionaryPackTest extends TestCase
+{
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        root = File.createTempFile("pack", "");
+        root.delete();
+        assertTrue(new File(root, "data/dictionary/custom").mkdirs());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(root, "data/dictionary/custom/my.txt")), "UTF-8");
+        writer.write("攻城狮 nz 1\n单身狗 nz 1\n");
+        writer.close();
+        writer = new OutputStreamWriter(new FileOutputStream(new File(root, "data/dictionary/readme.txt")), "UTF-8");
+        writer.write("hello");
+        writer.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        delete(root);
+    }
+
+    private static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files) delete(child);
+        }
+        file.delete();
+    }
+
+    private String pack() throws Exception
+    {
+        String output = new File(root, "data.pack").getPath();
+        DictionaryPack.pack(root.getPath(), DictionaryPack.list(root.getPath(), "data"), output);
+        return output;
+    }
+
+    public void testPackAndRead() throws Exception
+    {
+        List<String> nameList = DictionaryPack.list(root.getPath(), "data");
+        assertEquals(2, nameList.size());
+        DictionaryPack pack = DictionaryPack.open(pack());
+        assertNotNull(pack);
+        assertEquals(2, pack.size());
+        assertTrue(pack.contains("data/dictionary/readme.txt"));
+        ByteBuffer section = pack.section("data/dictionary/readme.txt");
+        assertEquals(5, section.remaining());
+        assertNull(pack.section("data/dictionary/missing.txt"));
+
+        PackIOAdapter adapter = new PackIOAdapter(pack, root.getPath(), null);
+        assertEquals("data/dictionary/readme.txt", adapter.nameOf(root.getPath() + "/data/dictionary/readme.txt"));
+        IIOAdapter saved = HanLP.Config.IOAdapter;
+        HanLP.Config.IOAdapter = adapter;
+        try
+        {
+            assertTrue(Arrays.equals("hello".getBytes("UTF-8"), IOUtil.readBytes(root.getPath() + "/data/dictionary/readme.txt")));
+            // 词典包优先，包中没有的文件交给本地文件系统
+            new File(root, "data/dictionary/readme.txt").delete();
+            assertEquals("hello", IOUtil.readTxt(root.getPath() + "/data/dictionary/readme.txt", "UTF-8"));
+            Writer writer = new OutputStreamWriter(new FileOutputStream(new File(root, "data/extra.txt")), "UTF-8");
+            writer.write("world");
+            writer.close();
+            assertEquals("world", IOUtil.readTxt(root.getPath() + "/data/extra.txt", "UTF-8"));
+            // 从词典包加载词典，缓存写到本地
+            DynamicCustomDictionary dictionary = new DynamicCustomDictionary(root.getPath() + "/data/dictionary/custom/my.txt");
+            assertTrue(dictionary.contains("攻城狮"));
+            assertTrue(new File(root, "data/dictionary/custom/my.txt" + Predefine.BIN_EXT).isFile());
+        }
+        finally
+        {
+            HanLP.Config.IOAdapter = saved;
+        }
+    }
+
+    public void testChecksum() throws Exception
+    {
+        String output = pack();
+        DictionaryPack pack = DictionaryPack.open(output);
+        ByteBuffer section = pack.section("data/dictionary/readme.txt");
+        int offset = (int) new File(output).length() - 1;
+        RandomAccessFile raf = new RandomAccessFile(output, "rw");
+        raf.seek(offset);
+        int b = raf.read();
+        raf.seek(offset);
+        raf.write(b ^ 0xFF);
+        raf.close();
+        assertNotNull(section);
+        // 只有最后一个分区被破坏
+        pack = DictionaryPack.open(output);
+        assertNotNull(pack.section("data/dictionary/custom/my.txt"));
+        assertNull(pack.section("data/dictionary/readme.txt"));
+        assertNotNull(DictionaryPack.open(output, false).section("data/dictionary/readme.txt"));
+    }
+
+    public void testLoadFromSection() throws Exception
+    {
+        // 先在本地生成缓存，打包后删除本地文件，词典只能从词典包中的分区加载
+        String path = root.getPath() + "/data/dictionary/custom/my.txt";
+        assertTrue(new DynamicCustomDictionary(path).contains("单身狗"));
+        DictionaryPack pack = DictionaryPack.open(pack());
+        assertTrue(new File(path).delete());
+        assertTrue(new File(path + Predefine.BIN_EXT).delete());
+        IIOAdapter saved = HanLP.Config.IOAdapter;
+        HanLP.Config.IOAdapter = new PackIOAdapter(pack, root.getPath(), null);
+        try
+        {
+            ByteArray byteArray = ByteArray.createByteArray(path + Predefine.BIN_EXT);
+            assertTrue(byteArray instanceof ByteBufferArray);
+            assertTrue(byteArray.hasMore());
+            DynamicCustomDictionary dictionary = new DynamicCustomDictionary(path);
+            assertTrue(dictionary.contains("攻城狮"));
+            assertEquals("nz 1 ", dictionary.get("单身狗").toString());
+            assertFalse(new File(path + Predefine.BIN_EXT).exists());
+        }
+        finally
+        {
+            HanLP.Config.IOAdapter = saved;
+        }
+    }
+
+    public void testMappedSection() throws Exception
+    {
+        TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, CoreDictionary.Attribute>();
+        for (String key : new String[]{"he", "her", "his", "she"})
+        {
+            map.put(key, CoreDictionary.Attribute.create("n " + key.length()));
+        }
+        DoubleArrayTrie<CoreDictionary.Attribute> trie = new DoubleArrayTrie<CoreDictionary.Attribute>(map);
+        assertTrue(MappedDoubleArrayTrie.save(trie, CoreDictionary.ATTRIBUTE_CODEC, new File(root, "data/small.map").getPath()));
+        DictionaryPack pack = DictionaryPack.open(pack());
+        MappedDoubleArrayTrie<CoreDictionary.Attribute> mapped = MappedDoubleArrayTrie.open(pack.section("data/small.map"), CoreDictionary.ATTRIBUTE_CODEC);
+        assertNotNull(mapped);
+        for (String key : map.keySet())
+        {
+            assertEquals(map.get(key).toString(), mapped.get(key).toString());
+        }
+        assertNull(mapped.get("hers"));
+    }
+}
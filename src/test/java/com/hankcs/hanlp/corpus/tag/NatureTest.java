@@ -2,6 +2,8 @@ package com.hankcs.hanlp.corpus.tag;
 
 import junit.framework.TestCase;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class NatureTest extends TestCase
 {
     public void testFromString() throws Exception
@@ -12,4 +14,37 @@ public class NatureTest extends TestCase
         assertEquals(one, Nature.fromString("新词性1"));
         assertEquals(two, Nature.fromString("新词性2"));
     }
-}
\ No newline at end of file
+
+    public void testConcurrentCreate() throws Exception
+    {
+        final int threadNumber = 8;
+        final AtomicReferenceArray<Nature> created = new AtomicReferenceArray<Nature>(threadNumber * 100);
+        Thread[] threads = new Thread[threadNumber];
+        for (int t = 0; t < threadNumber; ++t)
+        {
+            final int id = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 100; ++i)
+                    {
+                        created.set(id * 100 + i, Nature.create("并发词性" + i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        for (int t = 0; t < threadNumber; ++t)
+        {
+            for (int i = 0; i < 100; ++i)
+            {
+                Nature nature = created.get(t * 100 + i);
+                assertSame(Nature.fromString("并发词性" + i), nature);
+                assertSame(nature, Nature.values()[nature.ordinal()]);
+            }
+        }
+    }
+}
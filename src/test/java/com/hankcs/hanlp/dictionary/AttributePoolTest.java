@@ -0,0 +1,105 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.corpus.io.ByteArray;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.utility.LexiconUtility;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+public class AttributePoolTest extends TestCase
+{
+    public void testIntern() throws Exception
+    {
+        AttributePool pool = new AttributePool();
+        CoreDictionary.Attribute a = CoreDictionary.Attribute.create("nz 1 v 2");
+        CoreDictionary.Attribute b = CoreDictionary.Attribute.create("nz 1 v 2");
+        CoreDictionary.Attribute c = CoreDictionary.Attribute.create("nz 2 v 1");
+        assertSame(a, pool.intern(a));
+        assertSame(a, pool.intern(b));
+        assertSame(c, pool.intern(c));
+        assertEquals(2, pool.size());
+        for (int i = 0; i < 10000; ++i)
+        {
+            pool.intern(new CoreDictionary.Attribute(Nature.n, i));
+        }
+        assertEquals(10002, pool.size());
+        assertSame(a, pool.intern(CoreDictionary.Attribute.create("nz 1 v 2")));
+        assertEquals(7, pool.intern(new CoreDictionary.Attribute(Nature.n, 7)).frequency[0]);
+    }
+
+    public void testRead() throws Exception
+    {
+        AttributePool pool = new AttributePool();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CoreDictionary.Attribute.create("nr 3 ns 4").save(out);
+        CoreDictionary.Attribute.create("nr 3 ns 4").save(out);
+        out.close();
+        ByteArray byteArray = new ByteArray(bytes.toByteArray());
+        CoreDictionary.Attribute first = pool.read(byteArray, Nature.values());
+        CoreDictionary.Attribute second = pool.read(byteArray, Nature.values());
+        assertSame(first, second);
+        assertEquals("nr 3 ns 4 ", first.toString());
+        assertEquals(7, first.totalFrequency);
+    }
+
+    public void testConcurrentIntern() throws Exception
+    {
+        final AttributePool pool = new AttributePool();
+        final CoreDictionary.Attribute[][] result = new CoreDictionary.Attribute[4][1000];
+        Thread[] threads = new Thread[result.length];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            final int id = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < result[id].length; ++i)
+                    {
+                        result[id][i] = pool.intern(new CoreDictionary.Attribute(Nature.nz, i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(1000, pool.size());
+        for (int t = 1; t < result.length; ++t)
+        {
+            for (int i = 0; i < result[t].length; ++i)
+            {
+                assertSame(result[0][i], result[t][i]);
+            }
+        }
+    }
+
+    public void testGetterReturnsCopy() throws Exception
+    {
+        CoreDictionary.Attribute shared = CoreDictionary.trie.get("商品");
+        String expected = shared.toString();
+        CoreDictionary.Attribute attribute = CoreDictionary.get("商品");
+        assertNotSame(shared, attribute);
+        attribute.nature[0] = Nature.v;
+        attribute.frequency[0] = 42;
+        attribute.totalFrequency = 42;
+        assertEquals(expected, CoreDictionary.get("商品").toString());
+        assertEquals(expected, LexiconUtility.getAttribute("商品").toString());
+
+        // 签名相同的两个词语共享同一个享元
+        CustomDictionary.insert("享元测试甲", "nz 1");
+        CustomDictionary.insert("享元测试乙", "nz 1");
+        attribute = CustomDictionary.get("享元测试甲");
+        attribute.nature[0] = Nature.v;
+        assertEquals("nz 1 ", CustomDictionary.get("享元测试乙").toString());
+        assertEquals("nz 1 ", LexiconUtility.getAttribute("享元测试甲").toString());
+        CustomDictionary.remove("享元测试甲");
+        CustomDictionary.remove("享元测试乙");
+    }
+}
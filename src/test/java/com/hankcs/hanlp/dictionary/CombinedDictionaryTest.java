@@ -0,0 +1,135 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.Viterbi.ViterbiSegment;
+import com.hankcs.hanlp.seg.WordBasedSegment;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class CombinedDictionaryTest extends TestCase
+{
+    private static final String TEXT = "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰";
+
+    private DynamicCustomDictionary dictionary;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        File file = File.createTempFile("combined", ".txt");
+        file.deleteOnExit();
+        new File(file.getPath() + ".bin").deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("攻城狮 nz 1\n单身狗 nz 1\n白富美 nz 1\n人生 nz 1\n走上人生巅峰 v 1\n");
+        writer.close();
+        dictionary = new DynamicCustomDictionary(file.getPath());
+    }
+
+    public void testScan() throws Exception
+    {
+        assertNotNull(CombinedDictionary.prepare(dictionary.snapshot().dat));
+        CombinedDictionary.Scan scan = CombinedDictionary.newScan(dictionary.snapshot());
+        assertNotNull(scan);
+        char[] text = TEXT.toCharArray();
+        scan.scan(text);
+        assertEquals(text.length, scan.textLength());
+        int count = 0;
+        for (int begin = 0; begin < text.length; ++begin)
+        {
+            int previous = 0;
+            for (int i = scan.from(begin); i < scan.to(begin); ++i)
+            {
+                assertTrue(scan.length(i) > previous);
+                previous = scan.length(i);
+                String word = new String(text, begin, scan.length(i));
+                assertEquals(CoreDictionary.contains(word), scan.isCore(i));
+                assertSame(dictionary.snapshot().get(word), scan.customValue(i));
+                if (scan.isCore(i)) assertSame(CoreDictionary.trie.get(word), scan.coreValue(i));
+                ++count;
+            }
+        }
+        assertEquals(scan.size(), count);
+        int i = scan.to(TEXT.indexOf("人生")) - 1;
+        assertEquals(2, scan.length(i));
+        assertEquals(CombinedDictionary.CORE | CombinedDictionary.CUSTOM, scan.source(i));
+        assertEquals(Nature.nz, scan.customValue(i).nature[0]);
+
+        // 删除的词条按快照过滤，不需要重新构建
+        CombinedDictionary combined = CombinedDictionary.of(dictionary.snapshot().dat);
+        dictionary.remove("单身狗");
+        assertSame(combined, CombinedDictionary.of(dictionary.snapshot().dat));
+        scan = CombinedDictionary.newScan(dictionary.snapshot());
+        scan.scan(text);
+        int begin = TEXT.indexOf("单身狗");
+        for (i = scan.from(begin); i < scan.to(begin); ++i)
+        {
+            if (scan.length(i) == 3) assertNull(scan.customValue(i));
+        }
+    }
+
+    public void testSameAsSeparateLookup() throws Exception
+    {
+        dictionary.insert("逆袭单身", "nz 1");
+        dictionary.remove("白富美");
+        String[] texts = new String[]{TEXT, "商品和服务", "攻城狮攻城狮的人生", "走上人生巅峰的单身狗在2018年迎娶了白富美"};
+        for (boolean force : new boolean[]{false, true})
+        {
+            for (boolean indexMode : new boolean[]{false, true})
+            {
+                Segment[] segments = new Segment[]{new ViterbiSegment(), new DijkstraSegment()};
+                for (Segment segment : segments)
+                {
+                    segment.enableCustomDictionary(dictionary).enableCustomDictionaryForcing(force).enableIndexMode(indexMode);
+                    for (String text : texts)
+                    {
+                        String expected = segment.seg(text).toString();
+                        ((WordBasedSegment) segment).enableCombinedDictionary(true);
+                        assertEquals(expected, segment.seg(text).toString());
+                        ((WordBasedSegment) segment).enableCombinedDictionary(false);
+                    }
+                }
+            }
+        }
+    }
+
+    private static CombinedDictionary await(DynamicCustomDictionary dictionary) throws InterruptedException
+    {
+        for (int i = 0; i < 600; ++i)
+        {
+            CombinedDictionary combined = CombinedDictionary.of(dictionary.snapshot().dat);
+            if (combined != null) return combined;
+            Thread.sleep(100);
+        }
+        return null;
+    }
+
+    public void testBuildInBackground() throws Exception
+    {
+        // 第一次获取不等待构建，分词照常分别查询
+        assertNull(CombinedDictionary.of(dictionary.snapshot().dat));
+        Segment segment = new ViterbiSegment().enableCustomDictionary(dictionary);
+        String expected = segment.seg(TEXT).toString();
+        ((WordBasedSegment) segment).enableCombinedDictionary(true);
+        assertEquals(expected, segment.seg(TEXT).toString());
+        CombinedDictionary combined = await(dictionary);
+        assertNotNull(combined);
+        assertEquals(expected, segment.seg(TEXT).toString());
+
+        // 合并动态词条后发布了新的主词典，新的合并词典也在后台构建
+        dictionary.insert("逆袭单身", "nz 1");
+        assertTrue(dictionary.compact(false));
+        ((WordBasedSegment) segment).enableCombinedDictionary(false);
+        expected = segment.seg(TEXT).toString();
+        ((WordBasedSegment) segment).enableCombinedDictionary(true);
+        assertEquals(expected, segment.seg(TEXT).toString());
+        CombinedDictionary rebuilt = await(dictionary);
+        assertNotNull(rebuilt);
+        assertNotSame(combined, rebuilt);
+        assertEquals(expected, segment.seg(TEXT).toString());
+    }
+}
@@ -1,5 +1,6 @@
 package com.hankcs.hanlp.dictionary;
 
+import com.hankcs.hanlp.HanLP;
 import junit.framework.TestCase;
 
 public class CoreBiGramTableDictionaryTest extends TestCase
@@ -10,4 +11,41 @@ public class CoreBiGramTableDictionaryTest extends TestCase
         CoreBiGramTableDictionary.reload();
         assertEquals(biFrequency, CoreBiGramTableDictionary.getBiFrequency("高性能", "计算"));
     }
-}
\ No newline at end of file
+
+    public void testHashTable() throws Exception
+    {
+        int[] start = CoreBiGramTableDictionary.start;
+        int[] pair = CoreBiGramTableDictionary.pair;
+        HanLP.Config.BiGramHashTable = true;
+        try
+        {
+            CoreBiGramTableDictionary.reload();
+            assertNotNull(CoreBiGramTableDictionary.hashTable);
+            assertSameFrequency(start, pair);
+            // 再从缓存中加载一次哈希表
+            assertTrue(CoreBiGramTableDictionary.load(HanLP.Config.BiGramDictionaryPath));
+            assertSameFrequency(start, pair);
+        }
+        finally
+        {
+            HanLP.Config.BiGramHashTable = false;
+            CoreBiGramTableDictionary.reload();
+        }
+        assertNull(CoreBiGramTableDictionary.hashTable);
+    }
+
+    private static void assertSameFrequency(int[] start, int[] pair)
+    {
+        for (int idA = 0; idA < start.length - 1; ++idA)
+        {
+            for (int offset = start[idA]; offset < start[idA + 1]; ++offset)
+            {
+                assertEquals(pair[(offset << 1) + 1], CoreBiGramTableDictionary.getBiFrequency(idA, pair[offset << 1]));
+            }
+            if (start[idA + 1] == start[idA])
+            {
+                assertEquals(0, CoreBiGramTableDictionary.getBiFrequency(idA, idA));
+            }
+        }
+    }
+}
@@ -169,4 +169,104 @@ public class CustomDictionaryTest extends TestCase
         CustomDictionary.remove("123");
         CustomDictionary.remove("摩根");
     }
-}
\ No newline at end of file
+
+    public void testSnapshot() throws Exception
+    {
+        DynamicCustomDictionary.Snapshot before = CustomDictionary.snapshot();
+        assertTrue(CustomDictionary.insert("快照隔离测试词", "nz 1"));
+        DynamicCustomDictionary.Snapshot after = CustomDictionary.snapshot();
+        assertNull(before.get("快照隔离测试词"));
+        assertNotNull(after.get("快照隔离测试词"));
+        assertEquals(before.version + 1, after.version);
+
+        String oldAttribute = before.get("一个心眼儿").toString();
+        CustomDictionary.insert("一个心眼儿", "v 7");
+        assertEquals(oldAttribute, before.get("一个心眼儿").toString());
+        assertEquals("v 7 ", CustomDictionary.get("一个心眼儿").toString());
+        CustomDictionary.insert("一个心眼儿", oldAttribute);
+
+        CustomDictionary.remove("快照隔离测试词");
+        assertNotNull(after.get("快照隔离测试词"));
+        assertFalse(CustomDictionary.contains("快照隔离测试词"));
+    }
+
+    public void testConcurrentUpdate() throws Exception
+    {
+        final Segment segment = HanLP.newSegment();
+        final String text = "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰";
+        final int wordCount = 2000;
+        final Throwable[] error = new Throwable[1];
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < wordCount; ++i)
+                {
+                    CustomDictionary.insert("热更新" + i, "nz 1");
+                }
+            }
+        };
+        Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; ++t)
+        {
+            readers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 500; ++i)
+                        {
+                            assertFalse(segment.seg(text).isEmpty());
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        error[0] = e;
+                    }
+                }
+            };
+        }
+        writer.start();
+        for (Thread reader : readers) reader.start();
+        writer.join();
+        for (Thread reader : readers) reader.join();
+        assertNull(error[0]);
+        for (int i = 0; i < wordCount; ++i)
+        {
+            assertTrue(CustomDictionary.contains("热更新" + i));
+            CustomDictionary.remove("热更新" + i);
+        }
+        assertFalse(CustomDictionary.contains("热更新0"));
+    }
+
+    public void testCompact() throws Exception
+    {
+        for (int i = 0; i < 100; ++i)
+        {
+            CustomDictionary.insert("合并测试" + i, "nz 1");
+        }
+        CustomDictionary.insert("一个心眼儿", "v 7");
+        int size = CustomDictionary.dat.size();
+        assertTrue(CustomDictionary.compact(false));
+        DynamicCustomDictionary.Snapshot compacted = CustomDictionary.snapshot();
+        assertNull(compacted.trie);
+        assertTrue(compacted.dat.size() >= size + 100);
+        assertEquals("nz 1 ", CustomDictionary.get("合并测试42").toString());
+        assertEquals("v 7 ", CustomDictionary.get("一个心眼儿").toString());
+        assertEquals("合并测试42", HanLP.segment("合并测试42").get(0).word);
+        assertFalse(CustomDictionary.compact(false));
+
+        CustomDictionary.remove("合并测试42");
+        assertFalse(CustomDictionary.contains("合并测试42"));
+        assertNull(CustomDictionary.get("合并测试42"));
+        assertNotNull(compacted.get("合并测试42"));
+        for (int i = 0; i < 100; ++i)
+        {
+            CustomDictionary.remove("合并测试" + i);
+        }
+        CustomDictionary.insert("一个心眼儿", "nz 1");
+    }
+}
@@ -0,0 +1,114 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.Viterbi.ViterbiSegment;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.utility.Predefine;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+public class DynamicCustomDictionaryTest extends TestCase
+{
+    private static final String TEXT = "攻城狮逆袭单身狗，迎娶白富美，走上人生巅峰";
+
+    public void testTenants() throws Exception
+    {
+        DynamicCustomDictionary a = new DynamicCustomDictionary();
+        DynamicCustomDictionary b = new DynamicCustomDictionary();
+        a.insert("攻城狮", "nz 1");
+        b.insert("人生巅峰", "nz 1");
+        Segment segmentA = new ViterbiSegment().enableCustomDictionary(a);
+        Segment segmentB = new ViterbiSegment().enableCustomDictionary(b);
+        List<Term> resultA = segmentA.seg(TEXT);
+        List<Term> resultB = segmentB.seg(TEXT);
+        assertTrue(containsWord(resultA, "攻城狮"));
+        assertFalse(containsWord(resultA, "人生巅峰"));
+        assertTrue(containsWord(resultB, "人生巅峰"));
+        assertFalse(containsWord(resultB, "攻城狮"));
+        assertNull(CustomDictionary.get("攻城狮"));
+        assertSame(a, segmentA.getCustomDictionary());
+        assertSame(CustomDictionary.DEFAULT, new ViterbiSegment().getCustomDictionary());
+    }
+
+    public void testLoadAndCache() throws Exception
+    {
+        File file = File.createTempFile("tenant", ".txt");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("单身狗 nz 1\n白富美 nz 1\n");
+        writer.close();
+        File bin = new File(file.getPath() + Predefine.BIN_EXT);
+        bin.deleteOnExit();
+
+        DynamicCustomDictionary dictionary = new DynamicCustomDictionary(file.getPath());
+        assertTrue(bin.exists());
+        assertTrue(dictionary.contains("单身狗"));
+        dictionary = new DynamicCustomDictionary(file.getPath());
+        assertEquals("nz 1 ", dictionary.get("白富美").toString());
+        assertTrue(containsWord(new ViterbiSegment().enableCustomDictionary(dictionary).seg(TEXT), "单身狗"));
+
+        dictionary.insert("迎娶", "v 1");
+        assertTrue(dictionary.compact(true));
+        assertTrue(new DynamicCustomDictionary(file.getPath()).contains("迎娶"));
+    }
+
+    public void testPartialLoadNotCached() throws Exception
+    {
+        File file = File.createTempFile("tenant", ".txt");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("单身狗 nz 1\n");
+        writer.close();
+        File bin = new File(file.getPath() + Predefine.BIN_EXT);
+        bin.deleteOnExit();
+
+        // 第二个文件不存在，读到的部分照常可用，但不生成缓存
+        DynamicCustomDictionary dictionary = new DynamicCustomDictionary(file.getPath(), file.getPath() + ".missing.txt");
+        assertTrue(dictionary.contains("单身狗"));
+        assertFalse(bin.exists());
+    }
+
+    public void testScan() throws Exception
+    {
+        DynamicCustomDictionary dictionary = new DynamicCustomDictionary();
+        dictionary.insert("白富美", "nz 1");
+        dictionary.insert("人生", "n 1");
+        dictionary.compact(false);
+        dictionary.insert("人生巅峰", "nz 2");    // 留在BinTrie中
+        dictionary.insert("巅峰", "n 3");
+        final char[] text = TEXT.toCharArray();
+        final StringBuilder sb = new StringBuilder();
+        AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute> processor = new AhoCorasickDoubleArrayTrie.IHit<CoreDictionary.Attribute>()
+        {
+            @Override
+            public void hit(int begin, int end, CoreDictionary.Attribute value)
+            {
+                sb.append(new String(text, begin, end - begin)).append(' ');
+            }
+        };
+        dictionary.parseLongestText(text, 0, text.length, processor);
+        assertEquals("白富美 人生巅峰 ", sb.toString());
+        sb.setLength(0);
+        dictionary.parseText(text, 0, text.length, processor);
+        assertEquals("人生巅峰 巅峰 白富美 人生 ", sb.toString());
+        // 只扫描“人生巅峰”之前的部分
+        sb.setLength(0);
+        dictionary.parseLongestText(text, 0, TEXT.indexOf("巅峰"), processor);
+        assertEquals("白富美 人生 ", sb.toString());
+    }
+
+    private static boolean containsWord(List<Term> termList, String word)
+    {
+        for (Term term : termList)
+        {
+            if (term.word.equals(word)) return true;
+        }
+        return false;
+    }
+}
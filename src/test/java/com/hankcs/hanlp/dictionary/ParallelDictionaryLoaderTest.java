@@ -0,0 +1,84 @@
+package com.hankcs.hanlp.dictionary;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+
+public class ParallelDictionaryLoaderTest extends TestCase
+{
+    private static String write(String suffix, String content) throws Exception
+    {
+        File file = File.createTempFile("parallel", suffix);
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(content);
+        writer.close();
+        return file.getPath();
+    }
+
+    public void testSameAsTreeMap() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200000; ++i)
+        {
+            sb.append("词").append(i % 150000).append(" nz ").append(i).append('\n');
+        }
+        String first = write(".txt", sb.toString());
+        String second = write(".txt", "词7 v 1\n\n甲乙丙\n词7 a 2\n");
+        String csv = write(".csv", "词8,n,3\n丁戊,ns,1\n己庚,ns,1000\n");
+        String[] path = new String[]{first, second + " ns", csv};
+
+        TreeMap<String, CoreDictionary.Attribute> map = new TreeMap<String, CoreDictionary.Attribute>();
+        LinkedHashSet<Nature> collector = new LinkedHashSet<Nature>();
+        DynamicCustomDictionary.load(first, Nature.n, map, collector);
+        DynamicCustomDictionary.load(second, Nature.ns, map, collector);
+        DynamicCustomDictionary.load(csv, Nature.n, map, collector);
+
+        for (int threadNumber : new int[]{1, 4})
+        {
+            List<String> keyList = new ArrayList<String>();
+            List<CoreDictionary.Attribute> valueList = new ArrayList<CoreDictionary.Attribute>();
+            assertTrue(ParallelDictionaryLoader.load(path, threadNumber, keyList, valueList, new LinkedHashSet<Nature>()));
+            assertEquals(new ArrayList<String>(map.keySet()), keyList);
+            int i = 0;
+            for (CoreDictionary.Attribute attribute : map.values())
+            {
+                assertEquals(attribute.toString(), valueList.get(i++).toString());
+            }
+        }
+        // 签名相同的词语共享同一个属性，跨块也是如此
+        List<String> keyList = new ArrayList<String>();
+        List<CoreDictionary.Attribute> valueList = new ArrayList<CoreDictionary.Attribute>();
+        ParallelDictionaryLoader.load(path, 4, keyList, valueList, new LinkedHashSet<Nature>());
+        assertSame(valueList.get(keyList.indexOf("甲乙丙")), valueList.get(keyList.indexOf("己庚")));
+        assertEquals("a 2 ", map.get("词7").toString());
+        assertEquals(Nature.ns, map.get("甲乙丙").nature[0]);
+        assertEquals("n 3 ", map.get("词8").toString());
+    }
+
+    public void testSplit() throws Exception
+    {
+        List<String> param = new ArrayList<String>();
+        for (String line : new String[]{"", "a", "a  b", "a\tb 1 ", " a", "a,b,,", "  "})
+        {
+            ParallelDictionaryLoader.split(line, false, param);
+            assertEquals(Arrays.asList(line.split("\\s")), param);
+            ParallelDictionaryLoader.split(line, true, param);
+            assertEquals(Arrays.asList(line.split(",")), param);
+        }
+    }
+
+    public void testMissingFile() throws Exception
+    {
+        List<String> keyList = new ArrayList<String>();
+        List<CoreDictionary.Attribute> valueList = new ArrayList<CoreDictionary.Attribute>();
+        String path = write(".txt", "甲乙 nz 1\n");
+        assertFalse(ParallelDictionaryLoader.load(new String[]{path, path + ".missing"}, keyList, valueList, new LinkedHashSet<Nature>()));
+        assertEquals(Collections.singletonList("甲乙"), keyList);
+    }
+}
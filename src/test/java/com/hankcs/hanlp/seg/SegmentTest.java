@@ -13,6 +13,7 @@ package com.hankcs.hanlp.seg;
 
 import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.collection.AhoCorasick.AhoCorasickDoubleArrayTrie;
+import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.CoreBiGramTableDictionary;
 import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
@@ -23,19 +24,25 @@ import com.hankcs.hanlp.seg.Other.CommonAhoCorasickSegmentUtil;
 import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
 import com.hankcs.hanlp.seg.Segment;
 import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.NShort.NShortSegment;
 import com.hankcs.hanlp.seg.Viterbi.ViterbiSegment;
 import com.hankcs.hanlp.seg.common.ResultTerm;
 import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.TermBuffer;
+import com.hankcs.hanlp.seg.common.wrapper.ParallelSegmentWrapper;
 import com.hankcs.hanlp.seg.common.wrapper.SegmentWrapper;
 import com.hankcs.hanlp.tokenizer.*;
 import junit.framework.TestCase;
 
 import java.io.BufferedReader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author hankcs
@@ -504,4 +511,260 @@ public class SegmentTest extends TestCase
     {
         assertTrue(HanLP.segment("1月中旬应该会发生什么").toString().contains("1月"));
     }
+
+    public void testViterbiArena() throws Exception
+    {
+        String[] texts = new String[]{
+            "商品和服务",
+            "2012年3月4日下午3点，上海市浦东新区张江高科技园区的微软亚洲研究院召开了会议",
+            "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。",
+        };
+        Segment plain = new ViterbiSegment().enableNameRecognize(true).enableOffset(true);
+        Segment pooled = new ViterbiSegment().enableArena(true).enableNameRecognize(true).enableOffset(true);
+        for (int i = 0; i < 3; ++i)
+        {
+            for (String text : texts)
+            {
+                List<Term> expected = plain.seg(text);
+                List<Term> actual = pooled.seg(text);
+                assertEquals(expected.toString(), actual.toString());
+                for (int j = 0; j < expected.size(); ++j)
+                {
+                    assertEquals(expected.get(j).offset, actual.get(j).offset);
+                }
+            }
+        }
+    }
+
+    public void testMultithreadingChunks() throws Exception
+    {
+        StringBuilder sbText = new StringBuilder();
+        for (int i = 0; i < 100; ++i)
+        {
+            sbText.append("签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。\n商品和服务 ");
+        }
+        String text = sbText.toString();
+        List<Term> expected = new ViterbiSegment().enableOffset(true).seg(text);
+        List<Term> actual = new ViterbiSegment().enableOffset(true).enableMultithreading(4).seg(text);
+        assertEquals(expected.toString(), actual.toString());
+        for (Term term : actual)
+        {
+            assertEquals(term.word, text.substring(term.offset, term.offset + term.length()));
+        }
+    }
+
+    public void testBatch() throws Exception
+    {
+        final List<String> textList = new ArrayList<String>();
+        for (int i = 0; i < 100; ++i)
+        {
+            textList.add(i % 2 == 0 ? "商品和服务" + i : "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。");
+        }
+        Segment segment = new ViterbiSegment();
+        List<List<Term>> resultList = segment.seg(textList);
+        assertEquals(textList.size(), resultList.size());
+        for (int i = 0; i < textList.size(); ++i)
+        {
+            assertEquals(segment.seg(textList.get(i)).toString(), resultList.get(i).toString());
+        }
+        final List<Integer> order = new ArrayList<Integer>();
+        segment.seg(textList, new Segment.BatchCallback()
+        {
+            @Override
+            public void onResult(int index, List<Term> termList)
+            {
+                order.add(index);
+            }
+        });
+        assertEquals(textList.size(), order.size());
+        for (int i = 0; i < order.size(); ++i)
+        {
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    public void testBatchCallbackNotConcurrent() throws Exception
+    {
+        List<String> textList = new ArrayList<String>();
+        for (int i = 0; i < 200; ++i)
+        {
+            textList.add("商品和服务" + i);
+        }
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger next = new AtomicInteger();
+        final boolean[] overlapped = new boolean[1];
+        new ViterbiSegment().enableMultithreading(4).seg(textList, new Segment.BatchCallback()
+        {
+            @Override
+            public void onResult(int index, List<Term> termList)
+            {
+                if (running.incrementAndGet() > 1 || next.getAndIncrement() != index) overlapped[0] = true;
+                Thread.yield();     // 回调较慢时其他线程仍在分词
+                running.decrementAndGet();
+            }
+        });
+        assertEquals(textList.size(), next.get());
+        assertFalse(overlapped[0]);
+    }
+
+    public void testBatchCache() throws Exception
+    {
+        Segment segment = new ViterbiSegment().enableCache(100);
+        List<String> textList = Arrays.asList("商品和服务", "缓存测试攻城狮逆袭单身狗", "商品和服务");
+        List<List<Term>> resultList = segment.seg(textList);
+        assertEquals(2, segment.getCache().size());
+        assertEquals(resultList.get(1).toString(), segment.seg(textList.get(1)).toString());
+        assertTrue(segment.getCache().getHitCount() >= 2);
+    }
+
+    public void testParallelSegmentWrapper() throws Exception
+    {
+        StringBuilder sbText = new StringBuilder();
+        for (int i = 0; i < 200; ++i)
+        {
+            sbText.append("签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。商品和服务").append(i).append('\n');
+        }
+        Segment segment = new ViterbiSegment();
+        ParallelSegmentWrapper wrapper = new ParallelSegmentWrapper(new StringReader(sbText.toString()), segment, 4, 8);
+        int count = 0;
+        while (wrapper.hasNext())
+        {
+            List<Term> termList = wrapper.next();
+            String expected = count % 2 == 0 ? "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。" : "商品和服务" + count / 2;
+            assertEquals(segment.seg(expected).toString(), termList.toString());
+            ++count;
+        }
+        wrapper.close();
+        assertEquals(400, count);
+
+        wrapper = new ParallelSegmentWrapper(new StringReader(sbText.toString()), segment, 2);
+        Iterator<Term> iterator = wrapper.termIterator();
+        StringBuilder sbWord = new StringBuilder();
+        while (iterator.hasNext())
+        {
+            sbWord.append(iterator.next().word);
+        }
+        wrapper.close();
+        assertEquals(sbText.toString().replace("\n", ""), sbWord.toString());
+    }
+
+    public void testTermBuffer() throws Exception
+    {
+        String text = "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。";
+        Segment[] segments = new Segment[]{
+            new ViterbiSegment(),
+            new ViterbiSegment().enableArena(true),
+            new ViterbiSegment().enableIndexMode(true),
+            new DijkstraSegment(),
+        };
+        TermBuffer buffer = new TermBuffer(4);
+        for (Segment segment : segments)
+        {
+            List<Term> termList = segment.seg(text);
+            segment.seg(text, buffer);
+            assertEquals(termList.size(), buffer.size());
+            for (int i = 0; i < buffer.size(); ++i)
+            {
+                Term term = termList.get(i);
+                assertEquals(term.word, buffer.word(i));
+                assertEquals(term.nature, buffer.nature(i));
+                assertEquals(term.word, text.substring(buffer.begin(i), buffer.end(i)));
+            }
+        }
+    }
+
+    public void testCache() throws Exception
+    {
+        Segment segment = new ViterbiSegment().enableCache(100);
+        String text = "缓存测试攻城狮逆袭单身狗";
+        List<Term> first = segment.seg(text);
+        String expected = first.toString();
+        // 调用方修改返回的结果不影响缓存
+        first.get(0).word = "改";
+        first.get(0).nature = Nature.x;
+        first.clear();
+        List<Term> second = segment.seg(text);
+        assertEquals(expected, second.toString());
+        assertEquals(1, segment.getCache().getHitCount());
+        assertEquals(1, segment.getCache().getMissCount());
+        second.get(0).word = "改";
+        assertEquals(expected, segment.seg(text).toString());
+        assertNotSame(segment.seg(text).get(0), segment.seg(text).get(0));
+        segment.enableOffset(true);
+        assertEquals(text.indexOf(second.get(1).word), segment.seg(text).get(1).offset);
+        segment.enableOffset(false);
+
+        CustomDictionary.insert("攻城狮逆袭单身狗", "nz 1");
+        List<Term> termList = segment.seg(text);
+        assertTrue(termList.toString().contains("攻城狮逆袭单身狗"));
+        CustomDictionary.remove("攻城狮逆袭单身狗");
+        assertFalse(segment.seg(text).toString().contains("攻城狮逆袭单身狗"));
+    }
+
+    public void testListener() throws Exception
+    {
+        SegmentStatistics statistics = new SegmentStatistics();
+        Segment segment = new ViterbiSegment().enableListener(statistics);
+        String text = "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。";
+        segment.seg(text);
+        segment.seg(text);
+        assertEquals(2, statistics.getCount(SegmentListener.Counter.SENTENCE));
+        assertEquals(text.length() * 2, statistics.getCount(SegmentListener.Counter.CHAR));
+        assertTrue(statistics.getCount(SegmentListener.Counter.VERTEX) > 0);
+        assertEquals(2, statistics.getCount(SegmentListener.Stage.VITERBI));
+        assertEquals(2, statistics.getCount(SegmentListener.Stage.PERSON_RECOGNITION));
+        assertTrue(statistics.getQuantileNanos(SegmentListener.Stage.SENTENCE, 0.99) > 0);
+        segment.enableListener(null).seg(text);
+        assertEquals(2, statistics.getCount(SegmentListener.Counter.SENTENCE));
+    }
+
+    public void testListenerOnOtherSegments() throws Exception
+    {
+        String text = "签约仪式前，秦光荣、李纪恒、仇和等一同会见了参加签约的企业家。";
+        for (Segment segment : new Segment[]{new ViterbiSegment(), new DijkstraSegment(), new NShortSegment()})
+        {
+            SegmentStatistics statistics = new SegmentStatistics();
+            segment.enableOrganizationRecognize(true).enableListener(statistics).seg(text);
+            assertEquals(1, statistics.getCount(SegmentListener.Counter.SENTENCE));
+            assertEquals(text.length(), statistics.getCount(SegmentListener.Counter.CHAR));
+            assertEquals(1, statistics.getCount(SegmentListener.Stage.SENTENCE));
+            assertTrue(statistics.getCount(SegmentListener.Stage.VITERBI) > 0);
+            assertTrue(statistics.getCount(SegmentListener.Stage.ORGANIZATION_RECOGNITION) > 0);
+            // 每次细分只计一次
+            assertEquals(statistics.getCount(SegmentListener.Stage.NER_VITERBI), statistics.getCount(SegmentListener.Counter.NER_PASS));
+            assertTrue(statistics.getCount(SegmentListener.Counter.NER_PASS) <= 1);
+        }
+    }
+
+    public void testSplitChunksNearEnd() throws Exception
+    {
+        // 长度在1.5倍与2倍块长之间，且没有任何句子边界
+        for (int length : new int[]{1501, 1800, 1999, 2000})
+        {
+            char[] text = new char[length];
+            Arrays.fill(text, '商');
+            int[] bounds = Segment.splitChunks(text, 1000);
+            assertEquals(0, bounds[0]);
+            assertEquals(length, bounds[bounds.length - 1]);
+            for (int i = 1; i < bounds.length; ++i)
+            {
+                assertTrue(bounds[i] > bounds[i - 1]);
+            }
+        }
+        char[] text = new char[1800];
+        Arrays.fill(text, '商');
+        text[1200] = '。';
+        assertTrue(Arrays.equals(new int[]{0, 1201, 1800}, Segment.splitChunks(text, 1000)));
+    }
+
+    public void testSplitChunksWithoutDelimiter() throws Exception
+    {
+        // 没有标点与空白时不切，整段作为一块
+        char[] text = new char[5000];
+        Arrays.fill(text, '商');
+        assertTrue(Arrays.equals(new int[]{0, 5000}, Segment.splitChunks(text, 1000)));
+        // 两倍块长以内没有分隔符，向后找到第一个
+        text[3000] = '，';
+        assertTrue(Arrays.equals(new int[]{0, 3001, 5000}, Segment.splitChunks(text, 1000)));
+    }
 }
@@ -0,0 +1,114 @@
+package com.hankcs.hanlp.tokenizer.lexical;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.other.CharTable;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.seg.common.TermBuffer;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AbstractLexicalAnalyzerTest extends TestCase
+{
+    /**
+     * 每两个字切一刀的分词器
+     */
+    private static class PairSegmenter implements Segmenter
+    {
+        @Override
+        public List<String> segment(String text)
+        {
+            List<String> output = new ArrayList<String>();
+            segment(text, text, output);
+            return output;
+        }
+
+        @Override
+        public void segment(String text, String normalized, List<String> output)
+        {
+            for (int i = 0; i < text.length(); i += 2)
+            {
+                output.add(text.substring(i, Math.min(i + 2, text.length())));
+            }
+        }
+    }
+
+    /**
+     * 按词长标注，并记下收到的单词
+     */
+    private static class LengthTagger implements POSTagger
+    {
+        List<String> words = new ArrayList<String>();
+
+        @Override
+        public String[] tag(String... words)
+        {
+            String[] posArray = new String[words.length];
+            for (int i = 0; i < words.length; ++i)
+            {
+                this.words.add(words[i]);
+                posArray[i] = words[i].length() == 2 ? "vn" : "q";
+            }
+            return posArray;
+        }
+
+        @Override
+        public String[] tag(List<String> wordList)
+        {
+            return tag(wordList.toArray(new String[0]));
+        }
+    }
+
+    private static void assertSameAsTermList(AbstractLexicalAnalyzer analyzer, String text)
+    {
+        List<Term> termList = analyzer.seg(text);
+        TermBuffer buffer = analyzer.seg(text, new TermBuffer(2));
+        assertEquals(termList.size(), buffer.size());
+        for (int i = 0; i < buffer.size(); ++i)
+        {
+            Term term = termList.get(i);
+            assertEquals(term.word, buffer.word(i));
+            assertEquals(term.nature, buffer.nature(i));
+            assertEquals(term.offset, buffer.begin(i));
+        }
+    }
+
+    public void testTermBuffer() throws Exception
+    {
+        boolean normalization = HanLP.Config.Normalization;
+        try
+        {
+            for (boolean enable : new boolean[]{false, true})
+            {
+                HanLP.Config.Normalization = enable;
+                assertAllModes();
+            }
+        }
+        finally
+        {
+            HanLP.Config.Normalization = normalization;
+        }
+    }
+
+    private static void assertAllModes()
+    {
+        String text = "商品和服务ＡＢＣ，工信处女干事每月经过下属科室";
+        LengthTagger tagger = new LengthTagger();
+        AbstractLexicalAnalyzer analyzer = new AbstractLexicalAnalyzer(new PairSegmenter(), tagger);
+        analyzer.enablePartOfSpeechTagging(true);
+        assertSameAsTermList(analyzer, text);
+        assertSameAsTermList(analyzer, "商品和服务");
+        analyzer.enableCustomDictionary(false);
+        tagger.words.clear();
+        assertSameAsTermList(analyzer, text);
+        // 标注器收到的是正规化后的单词
+        assertTrue(tagger.words.contains(CharTable.convert("ＢＣ")));
+        analyzer.enablePartOfSpeechTagging(false);
+        assertSameAsTermList(analyzer, text);
+        // 没有词性标注器时查核心词典
+        analyzer = new AbstractLexicalAnalyzer(new PairSegmenter());
+        analyzer.enablePartOfSpeechTagging(true);
+        assertSameAsTermList(analyzer, text);
+    }
+}
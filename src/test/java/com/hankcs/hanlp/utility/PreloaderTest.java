@@ -0,0 +1,58 @@
+package com.hankcs.hanlp.utility;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.hankcs.hanlp.seg.Other.DoubleArrayTrieSegment;
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PreloaderTest extends TestCase
+{
+    public void testPreload() throws Exception
+    {
+        final AtomicBoolean modelLoaded = new AtomicBoolean();
+        Preloader.Report report = new Preloader()
+            .add(Preloader.Component.CORE_DICTIONARY, Preloader.Component.CHAR_TABLE, Preloader.Component.CUSTOM_DICTIONARY)
+            .add("model", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    modelLoaded.set(true);
+                }
+            })
+            .warmup(new DoubleArrayTrieSegment())
+            .setWarmupRounds(2)
+            .setThreadNumber(4)
+            .start().get(5, TimeUnit.MINUTES);
+        assertTrue(report.isSuccessful());
+        assertTrue(modelLoaded.get());
+        Map<String, Long> timeMap = report.getTimeMap();
+        assertTrue(timeMap.containsKey("CORE_DICTIONARY"));
+        assertTrue(timeMap.containsKey("CHAR_TABLE"));
+        assertTrue(timeMap.containsKey("CUSTOM_DICTIONARY"));
+        assertTrue(timeMap.containsKey("model"));
+        assertTrue(timeMap.containsKey("warmup:DoubleArrayTrieSegment"));
+        assertTrue(CoreDictionary.contains("商品"));
+    }
+
+    public void testFailure() throws Exception
+    {
+        Preloader.Report report = new Preloader()
+            .add("broken", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new IllegalStateException("模型不存在");
+                }
+            })
+            .add(Preloader.Component.CORE_DICTIONARY)
+            .run();
+        assertFalse(report.isSuccessful());
+        assertTrue(report.getErrorMap().get("broken") instanceof IllegalStateException);
+        assertTrue(report.getTimeMap().containsKey("CORE_DICTIONARY"));
+    }
+}